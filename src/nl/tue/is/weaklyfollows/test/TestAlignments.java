@@ -0,0 +1,92 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestAlignments {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		//The net p1 -> A -> p2 -> B -> p3 -> C -> p4, in which B can be skipped by a silent transition
+		stat.execute("CREATE TABLE Places(Place VARCHAR(10), Initial_Tokens INT, Final_Tokens INT)");
+		stat.execute("INSERT INTO Places VALUES ('p1',1,0),('p2',0,0),('p3',0,0),('p4',0,1)");
+		stat.execute("CREATE TABLE Transitions(Transition VARCHAR(10), Label VARCHAR(100))");
+		stat.execute("INSERT INTO Transitions VALUES ('t1','A'),('t2','B'),('t3','C'),('t4',NULL)");
+		stat.execute("CREATE TABLE Arcs(Source VARCHAR(10), Target VARCHAR(10))");
+		stat.execute("INSERT INTO Arcs VALUES ('p1','t1'),('t1','p2'),('p2','t2'),('t2','p3'),('p3','t3'),('t3','p4'),('p2','t4'),('t4','p3')");
+		//The variants ABC (three cases), AC (two cases), AXC and CA
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		for (int c = 1; c <= 3; c++){
+			stat.execute("INSERT INTO Log VALUES (" + c + ",'A','01:00:00'),(" + c + ",'B','02:00:00'),(" + c + ",'C','03:00:00')");
+		}
+		stat.execute("INSERT INTO Log VALUES (4,'A','01:00:00'),(4,'C','02:00:00'),(5,'A','01:00:00'),(5,'C','02:00:00')");
+		stat.execute("INSERT INTO Log VALUES (6,'A','01:00:00'),(6,'X','02:00:00'),(6,'C','03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (7,'C','01:00:00'),(7,'A','02:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test that the cases are grouped by variant and that the moves of an alignment skip silent transitions.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("1;A,B,C;3;0;(A,A) (B,B) (C,C); 2;A,C;2;0;(A,A) (C,C); 3;A,X,C;1;1;(A,A) (X,>>) (C,C); ",
+				rows("SELECT VARIANT_ID, VARIANT, CASE_COUNT, COST, ALIGNMENT FROM ALIGNMENTS((SELECT * FROM Log), 'Places', 'Transitions', 'Arcs') WHERE VARIANT_ID < 4"));
+		//C,A has two optimal alignments, so only the cost is fixed
+		assertEquals("4;C,A;1;2; ",
+				rows("SELECT VARIANT_ID, VARIANT, CASE_COUNT, COST FROM ALIGNMENTS((SELECT * FROM Log), 'Places', 'Transitions', 'Arcs') WHERE VARIANT_ID = 4"));
+	}
+
+	/*
+	 * Test the move counts and the fitness, which compares the cost with that of skipping all events and aligning an empty case.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("A,B,C;3;0;0;1.0; A,C;2;0;0;1.0; A,X,C;2;1;0;0.8; C,A;1;1;1;0.5; ",
+				rows("SELECT VARIANT, SYNC_MOVES, LOG_MOVES, MODEL_MOVES, FITNESS FROM ALIGNMENTS((SELECT * FROM Log), 'Places', 'Transitions', 'Arcs')"));
+	}
+
+	/*
+	 * Test that the cost is null if the search exceeds the maximum number of states.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		assertEquals("A,B,C;null;null; A,C;null;null; A,X,C;null;null; C,A;null;null; ",
+				rows("SELECT VARIANT, COST, ALIGNMENT FROM ALIGNMENTS((SELECT * FROM Log), 'Places', 'Transitions', 'Arcs', 2)"));
+		assertEquals("", rows("SELECT * FROM ALIGNMENTS((SELECT * FROM Log WHERE 1 = 0), 'Places', 'Transitions', 'Arcs')"));
+	}
+
+}
@@ -0,0 +1,173 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestCaseIndex {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		//Four cases: ABC, ACB, BC, A(C D)
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','01:00:00'),(1,'B','02:00:00'),(1,'C','03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A','01:00:00'),(2,'C','02:00:00'),(2,'B','03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,'B','01:00:00'),(3,'C','02:00:00')");
+		stat.execute("INSERT INTO Log VALUES (4,'A','01:00:00'),(4,'C D','02:00:00')");
+		stat.execute("CALL CREATE_CASE_INDEX('LOG_IDX', SELECT * FROM Log)");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String cases(String filter) throws SQLException{
+		ResultSet rs = stat.executeQuery("SELECT * FROM CASE_FILTER('LOG_IDX', '" + filter + "') ORDER BY 1");
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			sb.append(rs.getInt(1));
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test label and edge filters.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("124", cases("A"));
+		assertEquals("13", cases("B>C"));
+		assertEquals("4", cases("A>\"C D\""));
+		assertEquals("", cases("C>A"));
+		assertEquals("", cases("X"));
+	}
+
+	/*
+	 * Test combinations of filters.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("1", cases("A AND B>C"));
+		assertEquals("123", cases("B>C OR C>B"));
+		assertEquals("12", cases("A and (B>C or C>B)"));
+		assertEquals("123", cases("A>C OR B AND C AND NOT_A_LABEL OR B>C AND B"));
+	}
+
+	/*
+	 * Test that the filter can be used to drill down into the event log.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM Log WHERE Case_Id IN (SELECT Case_Id FROM CASE_FILTER('LOG_IDX', 'A>B'))");
+		rs.next();
+		assertEquals(3, rs.getInt(1));
+	}
+
+	/*
+	 * Test a large log, of which the bitmaps span several chunks.
+	 */
+	@Test
+	public void testD() throws SQLException {
+		stat.execute("CREATE TABLE BigLog AS SELECT X AS Case_Id, CASEWHEN(MOD(X, 3) = 0, 'A', 'B') AS Event, CAST('01:00:00' AS TIME) AS End_Time FROM SYSTEM_RANGE(1, 100000)");
+		stat.execute("INSERT INTO BigLog SELECT X, CASEWHEN(MOD(X, 5) = 0, 'A', 'C'), CAST('02:00:00' AS TIME) FROM SYSTEM_RANGE(1, 100000)");
+		stat.execute("CALL CREATE_CASE_INDEX('BIG_IDX', SELECT * FROM BigLog)");
+
+		ResultSet rs = stat.executeQuery("SELECT COUNT(*), SUM(Case_Id) FROM CASE_FILTER('BIG_IDX', 'A>A')");
+		rs.next();
+		assertEquals(100000 / 15, rs.getInt(1));
+		assertEquals(15L * (100000 / 15) * (100000 / 15 + 1) / 2, rs.getLong(2));
+		rs = stat.executeQuery("SELECT COUNT(*) FROM CASE_FILTER('BIG_IDX', 'A>A OR B>C OR A AND B')");
+		rs.next();
+		assertEquals(6666 + 53333 + 13334, rs.getInt(1));
+		rs = stat.executeQuery("SELECT COUNT(*) FROM CASE_FILTER('BIG_IDX', 'A AND C')");
+		rs.next();
+		assertEquals(100000 / 3 - 100000 / 15, rs.getInt(1));
+	}
+
+	/*
+	 * Test a filter on an index that does not exist.
+	 */
+	@Test(expected = SQLException.class)
+	public void testE() throws SQLException {
+		stat.execute("CALL DROP_CASE_INDEX('TEMP_IDX')");
+		stat.execute("CALL CREATE_CASE_INDEX('TEMP_IDX', SELECT * FROM Log)");
+		stat.execute("CALL DROP_CASE_INDEX('TEMP_IDX')");
+		stat.executeQuery("SELECT * FROM CASE_FILTER('TEMP_IDX', 'A')");
+	}
+
+	/*
+	 * Test filters on case attributes and their combination with label and edge filters.
+	 */
+	@Test
+	public void testF() throws SQLException {
+		assertEquals("124", cases("FIRST = A"));
+		assertEquals("23", cases("LAST=B OR first = B"));
+		assertEquals("12", cases("LENGTH > 2"));
+		assertEquals("34", cases("LENGTH <= 2"));
+		assertEquals("3", cases("LENGTH = 2 AND ONLY(B C)"));
+		assertEquals("12", cases("DURATION >= 7200000 AND ONLY(A B C)"));
+		assertEquals("4", cases("FIRST = A AND DURATION < 7200000 OR LAST = \"C D\""));
+		assertEquals("13", cases("FIRST = A AND B>C OR FIRST = B"));
+		try {
+			cases("LENGTH < X");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("Expected a number"));
+		}
+	}
+
+	/*
+	 * Test the case attributes and the events of the filtered cases, which can be passed to a process mining function.
+	 */
+	@Test
+	public void testG() throws SQLException {
+		ResultSet rs = stat.executeQuery("SELECT * FROM CASE_ATTRIBUTES('LOG_IDX') ORDER BY 1");
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			sb.append(rs.getInt(1) + ";" + rs.getString(2) + ";" + rs.getString(3) + ";" + rs.getInt(4) + ";" + rs.getLong(5) + ";" + rs.getString(6) + " ");
+		}
+		assertEquals("1;A;C;3;7200000;A,B,C 2;A;B;3;7200000;A,B,C 3;B;C;2;3600000;B,C 4;A;C D;2;3600000;A,C D ", sb.toString());
+		rs = stat.executeQuery("SELECT * FROM DFG(SELECT * FROM CASE_EVENTS('LOG_IDX', 'FIRST = A AND LENGTH = 3')) ORDER BY 1, 2");
+		sb = new StringBuilder();
+		while (rs.next()){
+			sb.append(rs.getString(1) + rs.getString(2) + rs.getInt(3) + " ");
+		}
+		assertEquals("AB1 AC1 BC1 CB1 ", sb.toString());
+	}
+
+	/*
+	 * Test that labels with the names of case attributes still form edges.
+	 */
+	@Test
+	public void testH() throws SQLException {
+		stat.execute("CREATE TABLE Names(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO Names VALUES (1,'LENGTH','01:00:00'),(1,'B','02:00:00'),(2,'FIRST','01:00:00'),(2,'5','02:00:00')");
+		stat.execute("CALL CREATE_CASE_INDEX('NAMES_IDX', SELECT * FROM Names)");
+		ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM CASE_FILTER('NAMES_IDX', 'LENGTH>B')");
+		rs.next();
+		assertEquals(1, rs.getInt(1));
+		rs = stat.executeQuery("SELECT COUNT(*) FROM CASE_FILTER('NAMES_IDX', 'FIRST>5 AND \"LENGTH\" > 5')");
+		rs.next();
+		assertEquals(0, rs.getInt(1));
+		rs = stat.executeQuery("SELECT COUNT(*) FROM CASE_FILTER('NAMES_IDX', 'FIRST>\"5\" AND LENGTH > 1')");
+		rs.next();
+		assertEquals(1, rs.getInt(1));
+		stat.execute("CALL DROP_CASE_INDEX('NAMES_IDX')");
+	}
+}
@@ -0,0 +1,113 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestCaseSample {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		//1000 cases: 990 times ABC and 10 times AC
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIMESTAMP)");
+		stat.execute("INSERT INTO Log SELECT X, 'A', DATEADD('SECOND', 1, TIMESTAMP '2017-01-01 00:00:00') FROM SYSTEM_RANGE(1, 1000)");
+		stat.execute("INSERT INTO Log SELECT X, 'B', DATEADD('SECOND', 2, TIMESTAMP '2017-01-01 00:00:00') FROM SYSTEM_RANGE(1, 990)");
+		stat.execute("INSERT INTO Log SELECT X, 'C', DATEADD('SECOND', 3, TIMESTAMP '2017-01-01 00:00:00') FROM SYSTEM_RANGE(1, 1000)");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private int count(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		rs.next();
+		return rs.getInt(1);
+	}
+
+	/*
+	 * Test that the sample is deterministic, keeps whole cases and has about the requested size.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		int cases = count("SELECT COUNT(DISTINCT Case_Id) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.5)");
+		assertEquals(cases, count("SELECT COUNT(DISTINCT Case_Id) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.5)"));
+		assertTrue((cases > 400) && (cases < 600));
+		assertEquals(0, count("SELECT COUNT(*) FROM (SELECT Case_Id FROM Log WHERE CASE_SAMPLE(Case_Id, 0.5) GROUP BY Case_Id HAVING COUNT(*) < 2)"));
+		assertEquals(1000, count("SELECT COUNT(DISTINCT Case_Id) FROM Log WHERE CASE_SAMPLE(Case_Id, 1)"));
+		assertEquals(0, count("SELECT COUNT(*) FROM Log WHERE CASE_SAMPLE(Case_Id, 0)"));
+		assertTrue(cases != count("SELECT COUNT(DISTINCT Case_Id) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.5, 42)")
+				|| count("SELECT COUNT(*) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.5) <> CASE_SAMPLE(Case_Id, 0.5, 42)") > 0);
+	}
+
+	/*
+	 * Test that a smaller sample is contained in a larger sample and that the sample can be mined.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals(0, count("SELECT COUNT(*) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.1) AND NOT CASE_SAMPLE(Case_Id, 0.2)"));
+		int cases = count("SELECT COUNT(DISTINCT Case_Id) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.2)");
+		ResultSet rs = stat.executeQuery("SELECT * FROM DFG(SELECT * FROM Log WHERE CASE_SAMPLE(Case_Id, 0.2)) WHERE EVENT_LABEL_P = 'A' AND EVENT_LABEL_S = 'B'");
+		assertTrue(rs.next());
+		assertTrue(rs.getInt(3) <= cases);
+		assertTrue(rs.getInt(3) > 0);
+	}
+
+	/*
+	 * Test that the stratified sample keeps each variant.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		assertEquals(1000, count("SELECT COUNT(DISTINCT Case_Id) FROM VARIANT_SAMPLE((SELECT * FROM Log), 1)"));
+		assertEquals(51, count("SELECT COUNT(DISTINCT Case_Id) FROM VARIANT_SAMPLE((SELECT * FROM Log), 0.05)"));
+		assertEquals(1, count("SELECT COUNT(DISTINCT Case_Id) FROM VARIANT_SAMPLE((SELECT * FROM Log), 0.05) WHERE Case_Id > 990"));
+		assertEquals(51, count("SELECT COUNT(DISTINCT Case_Id) FROM VARIANT_SAMPLE((SELECT * FROM Log), 0.05, 42)"));
+		assertEquals(count("SELECT COUNT(*) FROM VARIANT_SAMPLE((SELECT * FROM Log), 0.05)"),
+				count("SELECT COUNT(*) FROM VARIANT_SAMPLE((SELECT * FROM Log), 0.05, 0)"));
+		assertTrue(count("SELECT SUM(DISTINCT CAST(Case_Id AS INT)) FROM VARIANT_SAMPLE((SELECT * FROM Log), 0.05)")
+				!= count("SELECT SUM(DISTINCT CAST(Case_Id AS INT)) FROM VARIANT_SAMPLE((SELECT * FROM Log), 0.05, 42)"));
+		ResultSet rs = stat.executeQuery("SELECT * FROM FOLLOWS(SELECT * FROM VARIANT_SAMPLE((SELECT * FROM Log), 0.01)) WHERE EVENT_LABEL_P = 'A' AND EVENT_LABEL_S = 'C'");
+		assertTrue(rs.next());
+	}
+
+	/*
+	 * Test that with an index on the case identifier only the sampled cases are read, with the same result.
+	 */
+	@Test
+	public void testD() throws SQLException {
+		stat.execute("CREATE TABLE Indexed_Log AS SELECT * FROM Log");
+		stat.execute("CREATE INDEX Indexed_Log_Case ON Indexed_Log(Case_Id)");
+		ResultSet rs = stat.executeQuery("EXPLAIN SELECT * FROM Indexed_Log WHERE CASE_SAMPLE(Case_Id, 0.2, 42)");
+		assertTrue(rs.next());
+		assertTrue(rs.getString(1).contains("INDEXED_LOG_CASE: CASE_SAMPLE(CASE_ID, 0.2, 42)"));
+		assertEquals(count("SELECT COUNT(*) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.2)"),
+				count("SELECT COUNT(*) FROM Indexed_Log WHERE CASE_SAMPLE(Case_Id, 0.2)"));
+		assertEquals(count("SELECT SUM(DISTINCT Case_Id) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.2, 42)"),
+				count("SELECT SUM(DISTINCT Case_Id) FROM Indexed_Log WHERE CASE_SAMPLE(Case_Id, 0.2, 42)"));
+		assertEquals(count("SELECT COUNT(*) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.5) AND Event = 'B'"),
+				count("SELECT COUNT(*) FROM Indexed_Log WHERE CASE_SAMPLE(Case_Id, 0.5) AND Event = 'B'"));
+		assertEquals(0, count("SELECT COUNT(*) FROM Indexed_Log WHERE CASE_SAMPLE(Case_Id, 0)"));
+		assertEquals(3, count("SELECT COUNT(*) FROM Indexed_Log WHERE CASE_SAMPLE(Case_Id, 1) AND Case_Id = 7"));
+		int cases = count("SELECT COUNT(DISTINCT Case_Id) FROM Log WHERE CASE_SAMPLE(Case_Id, 0.2) AND Event = 'B'");
+		rs = stat.executeQuery("SELECT * FROM DFG(SELECT * FROM Indexed_Log WHERE CASE_SAMPLE(Case_Id, 0.2) ORDER BY Case_Id, End_Time) WHERE EVENT_LABEL_P = 'A' AND EVENT_LABEL_S = 'B'");
+		assertTrue(rs.next());
+		assertEquals(cases, rs.getInt(3));
+		stat.execute("DROP TABLE Indexed_Log");
+	}
+}
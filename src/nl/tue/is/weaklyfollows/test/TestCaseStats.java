@@ -0,0 +1,90 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestCaseStats {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','01:00:00'),(1,'B','02:00:00'),(1,'C','02:00:00'),(1,'B','04:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A','01:00:00'),(2,'C','01:30:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(",");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test the throughput time, number of events and rework of each case.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("1,10800000,4,1, 2,1800000,2,0, ",
+				rows("SELECT CASE_ID, DURATION, EVENT_COUNT, REWORK_COUNT FROM CASE_STATS(SELECT * FROM Log ORDER BY 1, 3)"));
+		assertEquals(rows("SELECT Case_Id, MIN(End_Time), MAX(End_Time) FROM Log GROUP BY Case_Id ORDER BY 1"),
+				rows("SELECT CASE_ID, CAST(START_TIME AS TIME), CAST(END_TIME AS TIME) FROM CASE_STATS(SELECT * FROM Log ORDER BY 1, 3)"));
+	}
+
+	/*
+	 * Test the frequency, rework and sojourn time of each activity, where events with the same timestamp have the same sojourn time.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("A,2,0,0,null, B,2,1,10800000,5400000, C,2,0,5400000,2700000, ",
+				rows("SELECT * FROM ACTIVITY_STATS(SELECT * FROM Log ORDER BY 1, 3) ORDER BY 1"));
+		ResultSet rs = stat.executeQuery("SELECT QUANTILE_SOJOURN FROM ACTIVITY_STATS((SELECT * FROM Log ORDER BY 1, 3), 0.5) WHERE EVENT_LABEL = 'C'");
+		assertTrue(rs.next());
+		assertTrue(Math.abs(rs.getLong(1) - 1800000) <= 1800000 / 64);
+		rs = stat.executeQuery("SELECT QUANTILE_SOJOURN FROM ACTIVITY_STATS((SELECT * FROM Log ORDER BY 1, 3), 1) WHERE EVENT_LABEL = 'B'");
+		assertTrue(rs.next());
+		assertTrue(Math.abs(rs.getLong(1) - 7200000) <= 7200000 / 64);
+	}
+
+	/*
+	 * Test that an event log that is not ordered by case and time is rejected.
+	 */
+	@Test(expected = SQLException.class)
+	public void testC() throws SQLException {
+		stat.executeQuery("SELECT * FROM CASE_STATS(SELECT * FROM Log ORDER BY 1, 3 DESC)");
+	}
+
+	/*
+	 * Test that an event log in which a case reappears after another case is rejected.
+	 */
+	@Test(expected = SQLException.class)
+	public void testD() throws SQLException {
+		stat.executeQuery("SELECT * FROM CASE_STATS(SELECT * FROM Log ORDER BY 3, 1)");
+	}
+}
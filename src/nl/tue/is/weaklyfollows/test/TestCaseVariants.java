@@ -0,0 +1,134 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestCaseVariants {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIMESTAMP)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','2017-01-01 01:00:00'),(1,'B','2017-01-01 02:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A','2017-01-01 01:00:00'),(2,'B','2017-01-01 03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,'B','2017-01-01 01:00:00'),(3,'A','2017-01-01 03:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	private String variants() throws SQLException{
+		return rows("SELECT VARIANT, FREQUENCY, EVENT_COUNT FROM V_VARIANTS ORDER BY FREQUENCY DESC, VARIANT");
+	}
+
+	/*
+	 * Test that the variants of the existing cases are materialized and that a variant filter is a semi-join.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		ResultSet rs = stat.executeQuery("CALL CREATE_CASE_VARIANTS('V', 'Log')");
+		rs.next();
+		assertEquals(3, rs.getInt(1));
+		assertEquals("A,B;2;2; B,A;1;2; ", variants());
+		assertEquals("1; 2; ", rows("SELECT DISTINCT Case_Id FROM Log WHERE Case_Id IN (SELECT CASE_ID FROM V_CASES WHERE VARIANT_ID IN "
+				+ "(SELECT VARIANT_ID FROM V_VARIANTS ORDER BY FREQUENCY DESC LIMIT 1)) ORDER BY 1"));
+		assertEquals("1;2;2017-01-01 03:00:00.0; ", rows("SELECT COUNT(DISTINCT VARIANT_ID), MAX(EVENT_COUNT), MAX(LAST_TIME) FROM V_CASES WHERE CASE_ID > 1 AND CASE_ID < 3 OR CASE_ID = 1"));
+		rs = stat.executeQuery("CALL DROP_CASE_VARIANTS('V')");
+		rs.next();
+		assertTrue(rs.getBoolean(1));
+	}
+
+	/*
+	 * Test that the mapping is maintained when events are appended, inserted out of order and rolled back.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		stat.executeQuery("CALL CREATE_CASE_VARIANTS('V', 'Log')");
+		stat.execute("INSERT INTO Log VALUES (1,'C','2017-01-01 04:00:00'),(4,'A','2017-01-01 01:00:00')");
+		assertEquals("A;1;1; A,B;1;2; A,B,C;1;3; B,A;1;2; ", variants());
+		stat.execute("INSERT INTO Log VALUES (3,'C','2017-01-01 02:00:00'),(4,'B','2017-01-01 02:00:00')");
+		assertEquals("A,B;2;2; A,B,C;1;3; B,C,A;1;3; ", variants());
+		conn.setAutoCommit(false);
+		stat.execute("INSERT INTO Log VALUES (2,'C','2017-01-01 04:00:00')");
+		assertEquals("A,B,C;2;3; A,B;1;2; B,C,A;1;3; ", variants());
+		conn.rollback();
+		conn.setAutoCommit(true);
+		assertEquals("A,B;2;2; A,B,C;1;3; B,C,A;1;3; ", variants());
+
+		//The materialized variants are the same as the ones computed from scratch.
+		stat.executeQuery("CALL CREATE_CASE_VARIANTS('W', 'Log')");
+		assertEquals(rows("SELECT CASE_ID, VARIANT_ID, EVENT_COUNT, LAST_TIME FROM V_CASES ORDER BY 1"),
+				rows("SELECT CASE_ID, VARIANT_ID, EVENT_COUNT, LAST_TIME FROM W_CASES ORDER BY 1"));
+		stat.executeQuery("CALL DROP_CASE_VARIANTS('W')");
+		stat.executeQuery("CALL DROP_CASE_VARIANTS('V')");
+		stat.execute("DELETE FROM Log WHERE Event = 'C' OR Case_Id = 4");
+	}
+
+	/*
+	 * Test that events with the same timestamp keep the order in which they are inserted, also when the variant is
+	 * computed again or from scratch.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		stat.executeQuery("CALL CREATE_CASE_VARIANTS('V', 'Log')");
+		stat.execute("INSERT INTO Log VALUES (5,'Z','2017-01-01 05:00:00'),(5,'Y','2017-01-01 05:00:00')");
+		assertEquals("Z,Y;1;2; ", rows("SELECT VARIANT, FREQUENCY, EVENT_COUNT FROM V_VARIANTS WHERE VARIANT LIKE '%Z%'"));
+		stat.execute("INSERT INTO Log VALUES (5,'X','2017-01-01 04:00:00')");
+		assertEquals("X,Z,Y;1;3; ", rows("SELECT VARIANT, FREQUENCY, EVENT_COUNT FROM V_VARIANTS WHERE VARIANT LIKE '%Z%'"));
+		stat.executeQuery("CALL CREATE_CASE_VARIANTS('W', 'Log')");
+		assertEquals(rows("SELECT CASE_ID, VARIANT_ID, EVENT_COUNT, LAST_TIME FROM V_CASES ORDER BY 1"),
+				rows("SELECT CASE_ID, VARIANT_ID, EVENT_COUNT, LAST_TIME FROM W_CASES ORDER BY 1"));
+		stat.executeQuery("CALL DROP_CASE_VARIANTS('W')");
+		stat.executeQuery("CALL DROP_CASE_VARIANTS('V')");
+		stat.execute("DELETE FROM Log WHERE Case_Id = 5");
+	}
+
+	/*
+	 * Test that the event table is looked up by name, also if its name must be quoted.
+	 */
+	@Test
+	public void testD() throws SQLException {
+		stat.execute("CREATE TABLE \"Event Log\" AS SELECT * FROM Log");
+		stat.executeQuery("CALL CREATE_CASE_VARIANTS('Q', 'Event Log')");
+		stat.execute("INSERT INTO \"Event Log\" VALUES (6,'Q','2017-01-01 01:00:00')");
+		assertEquals("Q;1;1; ", rows("SELECT VARIANT, FREQUENCY, EVENT_COUNT FROM Q_VARIANTS WHERE VARIANT = 'Q'"));
+		stat.executeQuery("CALL DROP_CASE_VARIANTS('Q')");
+		stat.execute("DROP TABLE \"Event Log\"");
+		try {
+			stat.executeQuery("CALL CREATE_CASE_VARIANTS('Q', 'Log WHERE 1 = 0')");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("not found"));
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestConcurrencyProfile {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Work(Resource VARCHAR(10), Start_Time TIMESTAMP, End_Time TIMESTAMP)");
+		stat.execute("INSERT INTO Work VALUES ('R1','2020-01-01 01:00:00','2020-01-01 03:00:00'),('R1','2020-01-01 02:00:00','2020-01-01 04:00:00')");
+		stat.execute("INSERT INTO Work VALUES ('R2','2020-01-01 01:30:00','2020-01-01 02:00:00'),('R2','2020-01-01 02:00:00','2020-01-01 02:00:00')");
+		stat.execute("INSERT INTO Work VALUES ('R2',NULL,'2020-01-01 02:00:00'),('R2','2020-01-01 05:00:00','2020-01-01 04:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(",");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test that the step function has a row for each time at which the number of active intervals changes.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("2020-01-01 01:00:00.0,1, 2020-01-01 01:30:00.0,2, 2020-01-01 03:00:00.0,1, 2020-01-01 04:00:00.0,0, ",
+				rows("SELECT * FROM CONCURRENCY_PROFILE(SELECT Start_Time, End_Time FROM Work) ORDER BY 1"));
+	}
+
+	/*
+	 * Test that the profile of each group equals the number of intervals of the group that are active at each change.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("R1,2020-01-01 01:00:00.0,1, R1,2020-01-01 02:00:00.0,2, R1,2020-01-01 03:00:00.0,1, R1,2020-01-01 04:00:00.0,0, "
+				+ "R2,2020-01-01 01:30:00.0,1, R2,2020-01-01 02:00:00.0,0, ",
+				rows("SELECT * FROM CONCURRENCY_PROFILE(SELECT * FROM Work) ORDER BY 1, 2"));
+		assertEquals(rows("SELECT P.Resource, P.TIME, COUNT(W.Resource) FROM CONCURRENCY_PROFILE(SELECT * FROM Work) P LEFT JOIN Work W "
+						+ "ON W.Resource = P.Resource AND W.Start_Time <= P.TIME AND P.TIME < W.End_Time GROUP BY P.Resource, P.TIME ORDER BY 1, 2"),
+				rows("SELECT * FROM CONCURRENCY_PROFILE(SELECT * FROM Work) ORDER BY 1, 2"));
+	}
+
+	/*
+	 * Test the maximum and time-weighted average number of active intervals per bucket.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		assertEquals("2020-01-01 01:00:00.0,2,1.5, 2020-01-01 02:00:00.0,2,2.0, 2020-01-01 03:00:00.0,1,1.0, ",
+				rows("SELECT * FROM CONCURRENCY_PROFILE((SELECT Start_Time, End_Time FROM Work), 3600000) ORDER BY 1"));
+		assertEquals("R2,2020-01-01 01:00:00.0,1,0.5, ",
+				rows("SELECT * FROM CONCURRENCY_PROFILE((SELECT * FROM Work), 1800000 * 2) WHERE Resource = 'R2' ORDER BY 1, 2"));
+	}
+}
@@ -0,0 +1,96 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestDeclareCheck {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		//Four cases: ABC, ACB, BC, AD
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','01:00:00'),(1,'B','02:00:00'),(1,'C','03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A','01:00:00'),(2,'C','02:00:00'),(2,'B','03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,'B','01:00:00'),(3,'C','02:00:00')");
+		stat.execute("INSERT INTO Log VALUES (4,'A','01:00:00'),(4,'D','02:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private int[] check(String constraint) throws SQLException{
+		ResultSet rs = stat.executeQuery("SELECT * FROM DECLARE_CHECK((SELECT * FROM Log), '" + constraint + "')");
+		assertTrue(rs.next());
+		return new int[]{rs.getInt("SATISFIED"), rs.getInt("VIOLATED"), rs.getInt("VACUOUS")};
+	}
+
+	/*
+	 * Test the existence templates.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertArrayEquals(new int[]{3,1,0}, check("existence(A)"));
+		assertArrayEquals(new int[]{1,3,0}, check("absence(B)"));
+		assertArrayEquals(new int[]{3,1,0}, check("init(A)"));
+		assertArrayEquals(new int[]{0,4,0}, check("existence(X)"));
+	}
+
+	/*
+	 * Test the relation templates.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertArrayEquals(new int[]{3,1,1}, check("responded_existence(A,B)"));
+		assertArrayEquals(new int[]{2,2,0}, check("coexistence(A,B)"));
+		assertArrayEquals(new int[]{2,2,0}, check("not_coexistence(A,B)"));
+		assertArrayEquals(new int[]{3,1,1}, check("response(A,B)"));
+		assertArrayEquals(new int[]{3,1,1}, check("precedence(A,B)"));
+		assertArrayEquals(new int[]{2,2,0}, check("succession(A,B)"));
+		assertArrayEquals(new int[]{2,2,1}, check("not_succession(A,B)"));
+		assertArrayEquals(new int[]{3,1,1}, check("chain_response(B,C)"));
+		assertArrayEquals(new int[]{2,2,1}, check("chain_precedence(A,B)"));
+	}
+
+	/*
+	 * Test several constraints in one pass.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		ResultSet rs = stat.executeQuery("SELECT * FROM DECLARE_CHECK((SELECT * FROM Log), 'response(A,B); precedence(B,C)')");
+
+		assertTrue(rs.next());
+		assertEquals("RESPONSE(A,B)", rs.getString("CONSTRAINT"));
+		assertEquals(4, rs.getInt("CASES"));
+		assertEquals(0.75, rs.getDouble("SUPPORT"), 1e-9);
+		assertTrue(rs.next());
+		assertEquals("PRECEDENCE(B,C)", rs.getString("CONSTRAINT"));
+		assertEquals(3, rs.getInt("SATISFIED"));
+		assertFalse(rs.next());
+	}
+
+	/*
+	 * Test an invalid constraint.
+	 */
+	@Test(expected = SQLException.class)
+	public void testD() throws SQLException {
+		check("eventually(A,B)");
+	}
+}
@@ -0,0 +1,100 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestDfgDiff {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME, Period INT)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','01:00:00',1),(1,'B','02:00:00',1),(1,'C','03:00:00',1)");
+		stat.execute("INSERT INTO Log VALUES (2,'A','01:00:00',1),(2,'B','02:00:00',1)");
+		stat.execute("INSERT INTO Log VALUES (3,'A','01:00:00',2),(3,'D','02:00:00',2),(3,'C','03:00:00',2)");
+		stat.execute("INSERT INTO Log VALUES (4,'A','01:00:00',2),(4,'B','02:00:00',2),(4,'C','03:00:00',2)");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(",");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test that the difference contains the edges of both logs, including the labels that occur in only one log.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("A,B,2,1,-1, A,D,0,1,1, B,C,1,1,0, D,C,0,1,1, ",
+				rows("SELECT * FROM DFG_DIFF((SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 1), "
+						+ "(SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 2)) ORDER BY 1, 2"));
+	}
+
+	/*
+	 * Test that the frequencies of each log equal those of DFG.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals(rows("SELECT * FROM DFG(SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 2) ORDER BY 1, 2"),
+				rows("SELECT EVENT_LABEL_P, EVENT_LABEL_S, FREQUENCY_B FROM DFG_DIFF((SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 1), "
+						+ "(SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 2)) WHERE FREQUENCY_B > 0 ORDER BY 1, 2"));
+		assertEquals("", rows("SELECT * FROM DFG_DIFF((SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 3), "
+				+ "(SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 3))"));
+	}
+
+	/*
+	 * Test that an empty or one-row log on either side gives the edges of the other log with 0 on the missing side.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		assertEquals("A,B,0,1,1, A,D,0,1,1, B,C,0,1,1, D,C,0,1,1, ",
+				rows("SELECT * FROM DFG_DIFF((SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 3), "
+						+ "(SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 2)) ORDER BY 1, 2"));
+		assertEquals("A,B,2,0,-2, B,C,1,0,-1, ",
+				rows("SELECT * FROM DFG_DIFF((SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 1), "
+						+ "(SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 3)) ORDER BY 1, 2"));
+		assertEquals("A,B,2,0,-2, B,C,1,0,-1, ",
+				rows("SELECT * FROM DFG_DIFF((SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 1), "
+						+ "(SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 2 AND Case_Id = 3 AND Event = 'A')) ORDER BY 1, 2"));
+		assertEquals("A,B,0,2,2, B,C,0,1,1, ",
+				rows("SELECT * FROM DFG_DIFF((SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 2 AND Case_Id = 3 AND Event = 'A'), "
+						+ "(SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 1)) ORDER BY 1, 2"));
+	}
+
+	/*
+	 * Test that an event log with the wrong number of columns is rejected.
+	 */
+	@Test(expected = SQLException.class)
+	public void testD() throws SQLException {
+		rows("SELECT * FROM DFG_DIFF((SELECT Case_Id, Event, End_Time FROM Log WHERE Period = 1), "
+				+ "(SELECT Case_Id, Event FROM Log WHERE Period = 2))");
+	}
+}
@@ -0,0 +1,109 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestDfgSketch {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		//Four cases: ABC, ACB, B(C D), A(C D) in two partitions
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME, Part INT)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','01:00:00',1),(1,'B','02:00:00',1),(1,'C','03:00:00',1)");
+		stat.execute("INSERT INTO Log VALUES (2,'A','01:00:00',1),(2,'C','02:00:00',1),(2,'B','03:00:00',1)");
+		stat.execute("INSERT INTO Log VALUES (3,'B','01:00:00',2),(3,'C','02:00:00',2),(3,'D','02:00:00',2)");
+		stat.execute("INSERT INTO Log VALUES (4,'A','01:00:00',2),(4,'C','02:00:00',2),(4,'D','02:00:00',2)");
+		stat.execute("CREATE TABLE Sketches(Part INT, Sketch BINARY)");
+		stat.execute("INSERT INTO Sketches VALUES (1, DFG_SKETCH((SELECT Case_Id, Event, End_Time FROM Log WHERE Part = 1 ORDER BY 1, 3), 1024, 4, 100))");
+		stat.execute("INSERT INTO Sketches VALUES (2, DFG_SKETCH((SELECT Case_Id, Event, End_Time FROM Log WHERE Part = 2 ORDER BY 1, 3), 1024, 4, 100))");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String dfg(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery("SELECT * FROM " + query + " ORDER BY 1, 2");
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			sb.append(rs.getString(1) + rs.getString(2) + rs.getLong(3) + " ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test that a sketch with enough counters gives the exact directly follows graph.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		String exact = dfg("DFG(SELECT Case_Id, Event, End_Time FROM Log)");
+		assertEquals(exact, dfg("APPROXIMATE_DFG(DFG_SKETCH(SELECT Case_Id, Event, End_Time FROM Log ORDER BY 1, 3))"));
+		assertEquals(exact, dfg("APPROXIMATE_DFG(SELECT DFG_SKETCH_MERGE(s1.Sketch, s2.Sketch) FROM Sketches s1, Sketches s2 WHERE s1.Part = 1 AND s2.Part = 2)"));
+		ResultSet rs = stat.executeQuery("SELECT DFG_SKETCH_ESTIMATE(DFG_SKETCH_MERGE(s1.Sketch, s2.Sketch), 'A', 'C'), "
+				+ "DFG_SKETCH_ESTIMATE(s1.Sketch, 'A', 'C'), DFG_SKETCH_ESTIMATE(s1.Sketch, 'D', 'A') FROM Sketches s1, Sketches s2 WHERE s1.Part = 1 AND s2.Part = 2");
+		rs.next();
+		assertEquals(2, rs.getLong(1));
+		assertEquals(1, rs.getLong(2));
+		assertEquals(0, rs.getLong(3));
+	}
+
+	/*
+	 * Test that a small sketch keeps the most frequent edges and never underestimates.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		stat.execute("CREATE TABLE BigLog(Case_Id INT, Event VARCHAR(100), End_Time INT)");
+		//Each case is A B followed by one of 500 rare labels.
+		stat.execute("INSERT INTO BigLog SELECT X, 'A', 1 FROM SYSTEM_RANGE(1, 5000)");
+		stat.execute("INSERT INTO BigLog SELECT X, 'B', 2 FROM SYSTEM_RANGE(1, 5000)");
+		stat.execute("INSERT INTO BigLog SELECT X, 'R' || MOD(X, 500), 3 FROM SYSTEM_RANGE(1, 5000)");
+		ResultSet rs = stat.executeQuery("SELECT * FROM APPROXIMATE_DFG(DFG_SKETCH((SELECT Case_Id, Event, DATEADD('SECOND', End_Time, TIMESTAMP '2017-01-01 00:00:00') FROM BigLog ORDER BY 1, 3), 256, 4, 10))");
+		assertTrue(rs.next());
+		assertEquals("A", rs.getString(1));
+		assertEquals("B", rs.getString(2));
+		assertTrue(rs.getLong(3) >= 5000);
+		int count = 1;
+		while (rs.next()){
+			assertTrue(rs.getLong(3) >= 10);
+			count++;
+		}
+		assertEquals(10, count);
+	}
+
+	/*
+	 * Test that an unordered event log and incompatible sketches are rejected.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		try {
+			stat.executeQuery("CALL DFG_SKETCH(SELECT Case_Id, Event, End_Time FROM Log ORDER BY 1, 3 DESC)");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("ordered"));
+		}
+		try {
+			stat.executeQuery("CALL DFG_SKETCH_MERGE(DFG_SKETCH((SELECT Case_Id, Event, End_Time FROM Log ORDER BY 1, 3), 16, 2, 10), "
+					+ "DFG_SKETCH((SELECT Case_Id, Event, End_Time FROM Log ORDER BY 1, 3), 32, 2, 10))");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("merge"));
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import org.h2.util.MappedFile;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestEventLogFile {
+
+	static Connection conn;
+	static Statement stat;
+	static File file;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		file = File.createTempFile("eventlog", ".bin");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+		file.delete();
+	}
+
+	private String fileName(){
+		return file.getAbsolutePath().replace('\\', '/');
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	private int resultSetSize(ResultSet rs) throws SQLException{
+		rs.last();
+		return rs.getRow();
+	}
+
+	/*
+	 * Test that an exported log is imported with the same events, in case and time order.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		stat.execute("CREATE TABLE TestA(Case_Id INT, Event VARCHAR(100), End_Time TIMESTAMP)");
+		stat.execute("INSERT INTO TestA VALUES (2,'B','2016-01-01 02:00:00')");
+		stat.execute("INSERT INTO TestA VALUES (1,'B','2016-01-01 02:00:00')");
+		stat.execute("INSERT INTO TestA VALUES (1,'A','2016-01-01 01:00:00')");
+		stat.execute("INSERT INTO TestA VALUES (2,'C','2016-01-02 03:00:00')");
+
+		ResultSet rs = stat.executeQuery("CALL EXPORT_EVENTLOG('" + fileName() + "', SELECT * FROM TestA)");
+		rs.next();
+		assertEquals("All events should be exported", 4, rs.getInt(1));
+
+		rs = stat.executeQuery("SELECT * FROM IMPORT_EVENTLOG('" + fileName() + "')");
+		assertEquals("The columns should keep their names", "CASE_ID", rs.getMetaData().getColumnName(1));
+		assertEquals("The columns should keep their names", "EVENT", rs.getMetaData().getColumnName(2));
+		assertEquals("The columns should keep their names", "END_TIME", rs.getMetaData().getColumnName(3));
+		String[] expected = {"2 B 2016-01-01 02:00:00.0", "2 C 2016-01-02 03:00:00.0", "1 A 2016-01-01 01:00:00.0", "1 B 2016-01-01 02:00:00.0"};
+		for (String e: expected){
+			assertTrue("The log should have 4 events", rs.next());
+			assertEquals(e, rs.getInt(1) + " " + rs.getString(2) + " " + rs.getTimestamp(3));
+		}
+		assertFalse("The log should have 4 events", rs.next());
+	}
+
+	/*
+	 * Test that the weakly follows relation of an imported log is the same as that of the original log.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		stat.execute("CREATE TABLE TestB(Case_Id VARCHAR(10), Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO TestB VALUES ('c1','A','01:00:00')");
+		stat.execute("INSERT INTO TestB VALUES ('c2','A','01:00:00')");
+		stat.execute("INSERT INTO TestB VALUES ('c1','B','02:00:00')");
+		stat.execute("INSERT INTO TestB VALUES ('c2','B','02:00:00')");
+		stat.execute("INSERT INTO TestB VALUES ('c1','C','03:00:00')");
+		stat.execute("INSERT INTO TestB VALUES ('c2','D','03:00:00')");
+		stat.execute("CALL EXPORT_EVENTLOG('" + fileName() + "', SELECT * FROM TestB)");
+
+		ResultSet rs = stat.executeQuery(
+				"SELECT * FROM FOLLOWS(SELECT * FROM IMPORT_EVENTLOG('" + fileName() + "')) "
+				+ "EXCEPT SELECT * FROM FOLLOWS(SELECT * FROM TestB)");
+		assertTrue("The result should be {}", resultSetSize(rs) == 0);
+		rs = stat.executeQuery("SELECT * FROM FOLLOWS(SELECT * FROM IMPORT_EVENTLOG('" + fileName() + "'))");
+		assertTrue("The result should be {(A,B),(B,C),(B,D)}", resultSetSize(rs) == 3);
+	}
+
+	/*
+	 * Test an empty log.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		stat.execute("CREATE TABLE TestC(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("CALL EXPORT_EVENTLOG('" + fileName() + "', SELECT * FROM TestC)");
+
+		ResultSet rs = stat.executeQuery("SELECT * FROM IMPORT_EVENTLOG('" + fileName() + "')");
+		assertTrue("The result should be {}", resultSetSize(rs) == 0);
+	}
+
+	/*
+	 * Test that labels and case identifiers that are not strings or integers are imported with their own type.
+	 */
+	@Test
+	public void testD() throws SQLException {
+		stat.execute("CREATE TABLE TestD(Case_Id DATE, Event INT, End_Time TIME)");
+		stat.execute("INSERT INTO TestD VALUES ('2016-01-01',10,'01:00:00')");
+		stat.execute("INSERT INTO TestD VALUES ('2016-01-01',2,'02:00:00')");
+		stat.execute("INSERT INTO TestD VALUES ('2016-01-02',10,'01:00:00')");
+		stat.execute("CALL EXPORT_EVENTLOG('" + fileName() + "', SELECT * FROM TestD)");
+
+		ResultSet rs = stat.executeQuery("SELECT * FROM IMPORT_EVENTLOG('" + fileName() + "') ORDER BY 2");
+		assertEquals("The case identifiers should keep their type", Types.DATE, rs.getMetaData().getColumnType(1));
+		assertEquals("The labels should keep their type", Types.INTEGER, rs.getMetaData().getColumnType(2));
+		String[] expected = {"2016-01-01 2", "2016-01-01 10", "2016-01-02 10"};
+		for (String e: expected){
+			assertTrue("The log should have 3 events", rs.next());
+			assertEquals(e, rs.getDate(1) + " " + rs.getObject(2));
+		}
+		assertFalse("The log should have 3 events", rs.next());
+	}
+
+	/*
+	 * Test that a process mining function that gets the imported log directly builds the same log as from its rows.
+	 */
+	@Test
+	public void testE() throws SQLException {
+		stat.execute("CREATE TABLE TestE(Case_Id INT, Event VARCHAR(100), End_Time TIMESTAMP)");
+		stat.execute("INSERT INTO TestE VALUES (1,'A','2016-01-01 01:00:00'),(1,'B','2016-01-01 02:00:00'),(1,'C','2016-01-03 03:00:00')");
+		stat.execute("INSERT INTO TestE VALUES (2,'A','2016-01-01 01:00:00'),(2,'C','2016-01-01 01:30:00')");
+		stat.execute("INSERT INTO TestE VALUES (3,'B','2016-01-01 01:00:00'),(3,'A','2016-01-01 01:00:00'),(3,'D','2016-01-01 05:00:00')");
+		stat.execute("CALL EXPORT_EVENTLOG('" + fileName() + "', SELECT * FROM TestE)");
+
+		String expected = rows("SELECT * FROM DFG(SELECT * FROM TestE) ORDER BY 1, 2");
+		assertEquals("A;B;1; A;C;1; A;D;1; B;C;1; B;D;1; ", expected);
+		assertEquals(expected, rows("SELECT * FROM DFG(IMPORT_EVENTLOG('" + fileName() + "')) ORDER BY 1, 2"));
+		assertEquals(rows("SELECT * FROM FOLLOWS(SELECT * FROM TestE) ORDER BY 1, 2"),
+				rows("SELECT * FROM FOLLOWS(IMPORT_EVENTLOG('" + fileName() + "')) ORDER BY 1, 2"));
+		assertEquals(rows("SELECT * FROM CASE_STATS(SELECT * FROM TestE) ORDER BY 1"),
+				rows("SELECT * FROM CASE_STATS(IMPORT_EVENTLOG('" + fileName() + "')) ORDER BY 1"));
+		assertEquals("", rows("SELECT * FROM DFG_DIFF(IMPORT_EVENTLOG('" + fileName() + "'), SELECT * FROM TestE) WHERE FREQUENCY_A <> FREQUENCY_B"));
+	}
+
+	/*
+	 * Test that a file is read the same in chunks as in one piece, also where values cross a chunk boundary,
+	 * and that a file of another version is rejected.
+	 */
+	@Test
+	public void testF() throws Exception {
+		stat.execute("CREATE TABLE TestF(Case_Id VARCHAR(10), Event VARCHAR(100), End_Time TIMESTAMP)");
+		stat.execute("INSERT INTO TestF SELECT 'c' || (X / 7), 'Event ' || MOD(X, 5), DATEADD('SECOND', X * X, TIMESTAMP '2016-01-01 00:00:00') FROM SYSTEM_RANGE(1, 200)");
+		stat.execute("CALL EXPORT_EVENTLOG('" + fileName() + "', SELECT * FROM TestF)");
+
+		MappedFile whole = new MappedFile(fileName());
+		MappedFile chunked = new MappedFile(fileName(), 8);
+		assertEquals(file.length(), whole.length());
+		assertEquals(file.length(), chunked.length());
+		for (long pos = 0; pos + 8 <= file.length(); pos++){
+			assertEquals(whole.get(pos), chunked.get(pos));
+			assertEquals(whole.getShort(pos), chunked.getShort(pos));
+			assertEquals(whole.getInt(pos), chunked.getInt(pos));
+			assertEquals(whole.getLong(pos), chunked.getLong(pos));
+		}
+		byte[] bytes = new byte[(int) file.length()];
+		byte[] read = new byte[bytes.length - 3];
+		RandomAccessFile f = new RandomAccessFile(file, "r");
+		try {
+			f.readFully(bytes);
+		} finally {
+			f.close();
+		}
+		chunked.get(3, read);
+		for (int i = 0; i < read.length; i++){
+			assertEquals(bytes[i + 3], read[i]);
+		}
+		assertEquals(rows("SELECT * FROM DFG(SELECT * FROM TestF) ORDER BY 1, 2"),
+				rows("SELECT * FROM DFG(IMPORT_EVENTLOG('" + fileName() + "')) ORDER BY 1, 2"));
+
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		try {
+			out.writeInt(0x48324C47);
+			out.writeInt(2);
+		} finally {
+			out.close();
+		}
+		try {
+			stat.executeQuery("SELECT * FROM IMPORT_EVENTLOG('" + fileName() + "')");
+			fail("A file of version 2 should be rejected");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("Cannot read the event log file"));
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import org.h2.api.AggregateFunction;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestFollowsAgg {
+
+	static Connection conn;
+	static Statement stat;
+
+	/**
+	 * A user-defined aggregate that concatenates its values in the order in which they are added.
+	 */
+	public static class Sequence implements AggregateFunction {
+		private final StringBuilder sb = new StringBuilder();
+
+		@Override
+		public void init(Connection conn) throws SQLException {
+		}
+
+		@Override
+		public int getType(int[] inputTypes) throws SQLException {
+			return Types.VARCHAR;
+		}
+
+		@Override
+		public void add(Object value) throws SQLException {
+			sb.append(value);
+		}
+
+		@Override
+		public Object getResult() throws SQLException {
+			return sb.toString();
+		}
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Customer INT, Activity VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,'C','03:00:00'),(1,'A','01:00:00'),(1,'B','02:00:00'),(1,'D','02:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'B','02:00:00'),(2,'A','01:00:00'),(2,'B','03:00:00'),(2,'A','04:00:00'),(2,'B','05:00:00')");
+		stat.execute("CREATE AGGREGATE SEQUENCE_AGG FOR \"nl.tue.is.weaklyfollows.test.TestFollowsAgg$Sequence\"");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test that the aggregate returns the distinct follows pairs of each group, where values with the same order key form a batch.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("1;((A, B), (A, D), (B, C), (D, C)); 2;((A, B), (B, B), (B, A)); ",
+				rows("SELECT Customer, FOLLOWS_AGG(Activity ORDER BY End_Time) FROM Log GROUP BY Customer ORDER BY 1"));
+		assertEquals("2; ", rows("SELECT Customer FROM Log GROUP BY Customer HAVING ARRAY_CONTAINS(FOLLOWS_AGG(Activity ORDER BY End_Time), ('B', 'A'))"));
+		assertEquals("((D, B), (B, A)); ", rows("SELECT FOLLOWS_AGG(Activity ORDER BY End_Time DESC, Activity DESC) FROM Log WHERE Customer = 1 AND Activity <> 'C'"));
+	}
+
+	/*
+	 * Test that the pairs of each group are those of FOLLOWS on the group as a case.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		ResultSet rs = conn.createStatement().executeQuery("SELECT Customer, FOLLOWS_AGG(Activity ORDER BY End_Time) FROM Log GROUP BY Customer");
+		int pairs = 0;
+		int expected = 0;
+		while (rs.next()){
+			Object[] edges = (Object[]) rs.getObject(2);
+			pairs += edges.length;
+			expected += Integer.parseInt(rows("SELECT COUNT(*) FROM FOLLOWS(SELECT * FROM Log WHERE Customer = " + rs.getInt(1) + ")").trim().replace(";", ""));
+			for (Object edge: edges){
+				Object[] pair = (Object[]) edge;
+				assertEquals("1; ", rows("SELECT COUNT(*) FROM FOLLOWS(SELECT * FROM Log WHERE Customer = " + rs.getInt(1) + ") "
+						+ "WHERE EVENT_LABEL_P = '" + pair[0] + "' AND EVENT_LABEL_S = '" + pair[1] + "'"));
+			}
+		}
+		assertEquals(expected, pairs);
+	}
+
+	/*
+	 * Test that a user-defined aggregate with an ORDER BY receives the values of each group in that order.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		assertEquals("1;ABDC;CDBA; 2;ABBAB;BABBA; ",
+				rows("SELECT Customer, SEQUENCE_AGG(Activity ORDER BY End_Time, Activity), SEQUENCE_AGG(Activity ORDER BY End_Time DESC, Activity DESC) "
+						+ "FROM Log GROUP BY Customer ORDER BY 1"));
+		assertEquals("ABBABABDC; ", rows("SELECT SEQUENCE_AGG(Activity ORDER BY Customer DESC, End_Time) FROM Log"));
+	}
+}
@@ -0,0 +1,82 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestHandover {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Case_Id INT, Activity VARCHAR(100), Lifecycle VARCHAR(10), Resource VARCHAR(10), End_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','start','Ann','01:00:00'),(1,'A','complete','Ann','02:00:00'),(1,'B','start','Bob','03:00:00'),(1,'B','complete','Bob','04:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A','start','Bob','01:00:00'),(2,'A','complete','Bob','02:00:00'),(2,'B','start','Ann','03:00:00'),(2,'B','complete','Ann','04:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,'A','start','Ann','01:00:00'),(3,'A','complete','Ann','02:00:00'),(3,'B','start','Bob','03:00:00'),(3,'B','complete','Cid','04:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i) + ((i < rs.getMetaData().getColumnCount())?",":" "));
+			}
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test the handover of work between resources, which is the relation over the resource column.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("Ann,Ann Ann,Bob Bob,Ann Bob,Bob Bob,Cid ",
+				rows("SELECT * FROM FOLLOWS(SELECT Case_Id, Resource, End_Time FROM Log) ORDER BY 1, 2"));
+		assertEquals("Ann,Ann,3 Ann,Bob,2 Bob,Ann,1 Bob,Bob,2 Bob,Cid,1 ",
+				rows("SELECT * FROM DFG(SELECT Case_Id, Resource, End_Time FROM Log) ORDER BY 1, 2"));
+	}
+
+	/*
+	 * Test labels of multiple columns.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("A,complete,B,start A,start,A,complete B,start,B,complete ",
+				rows("SELECT ARRAY_GET(EVENT_LABEL_P, 1), ARRAY_GET(EVENT_LABEL_P, 2), ARRAY_GET(EVENT_LABEL_S, 1), ARRAY_GET(EVENT_LABEL_S, 2) "
+						+ "FROM FOLLOWS(SELECT Case_Id, (Activity, Lifecycle), End_Time FROM Log) ORDER BY 1, 2, 3, 4"));
+		assertEquals("A,complete,Ann,Bob,2 A,complete,Bob,Ann,1 ",
+				rows("SELECT ARRAY_GET(EVENT_LABEL_P, 1), ARRAY_GET(EVENT_LABEL_P, 2), ARRAY_GET(EVENT_LABEL_P, 3), ARRAY_GET(EVENT_LABEL_S, 3), FREQUENCY "
+						+ "FROM DFG(SELECT Case_Id, (Activity, Lifecycle, Resource), End_Time FROM Log) "
+						+ "WHERE ARRAY_GET(EVENT_LABEL_P, 2) = 'complete' ORDER BY 1, 2, 3, 4"));
+	}
+
+	/*
+	 * Test that labels of multiple columns give the same relation as labels that are concatenated in SQL.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		assertEquals(rows("SELECT * FROM DFG(SELECT Case_Id, Activity || '+' || Resource, End_Time FROM Log) ORDER BY 1, 2"),
+				rows("SELECT ARRAY_GET(EVENT_LABEL_P, 1) || '+' || ARRAY_GET(EVENT_LABEL_P, 2), ARRAY_GET(EVENT_LABEL_S, 1) || '+' || ARRAY_GET(EVENT_LABEL_S, 2), FREQUENCY "
+						+ "FROM DFG(SELECT Case_Id, (Activity, Resource), End_Time FROM Log) ORDER BY 1, 2"));
+	}
+}
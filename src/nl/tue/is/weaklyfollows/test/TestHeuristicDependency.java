@@ -0,0 +1,128 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestHeuristicDependency {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		//Three cases: ABC, ABC, ACB
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','01:00:00'),(1,'B','02:00:00'),(1,'C','03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A','01:00:00'),(2,'B','02:00:00'),(2,'C','03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,'A','01:00:00'),(3,'C','02:00:00'),(3,'B','03:00:00')");
+		//One case with loops: A B A B B C
+		stat.execute("CREATE TABLE LoopLog(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO LoopLog VALUES (1,'A','01:00:00'),(1,'B','02:00:00'),(1,'A','03:00:00'),"
+				+ "(1,'B','04:00:00'),(1,'B','05:00:00'),(1,'C','06:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private ResultSet row(ResultSet rs, String antecedent, String consequent) throws SQLException{
+		rs.beforeFirst();
+		while (rs.next()){
+			if (rs.getString(1).equals(antecedent) && rs.getString(2).equals(consequent)){
+				return rs;
+			}
+		}
+		return null;
+	}
+
+	private int resultSetSize(ResultSet rs) throws SQLException{
+		rs.last();
+		return rs.getRow();
+	}
+
+	/*
+	 * Test the frequencies of the directly follows graph.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		ResultSet rs = stat.executeQuery("SELECT * FROM DFG(SELECT * FROM Log)");
+
+		assertTrue("The result should be {(A,B,2),(B,C,2),(A,C,1),(C,B,1)}", resultSetSize(rs) == 4);
+		assertEquals(2, row(rs,"A","B").getInt(3));
+		assertEquals(2, row(rs,"B","C").getInt(3));
+		assertEquals(1, row(rs,"A","C").getInt(3));
+		assertEquals(1, row(rs,"C","B").getInt(3));
+	}
+
+	/*
+	 * Test the dependency measure with and without a threshold.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		ResultSet rs = stat.executeQuery("SELECT * FROM HEURISTIC_DEPENDENCY((SELECT * FROM Log), 0)");
+
+		assertTrue("The result should be {(A,B),(B,C),(A,C),(C,B)}", resultSetSize(rs) == 4);
+		assertEquals(2.0 / 3, row(rs,"A","B").getDouble(4), 1e-9);
+		assertEquals(1.0 / 4, row(rs,"B","C").getDouble(4), 1e-9);
+		assertEquals(-1.0 / 4, row(rs,"C","B").getDouble(4), 1e-9);
+
+		rs = stat.executeQuery("SELECT * FROM HEURISTIC_DEPENDENCY((SELECT * FROM Log), 0.5)");
+		assertTrue("The result should be {(A,B),(A,C)}", resultSetSize(rs) == 2);
+		assertNotNull(row(rs,"A","B"));
+		assertNotNull(row(rs,"A","C"));
+	}
+
+	/*
+	 * Test the length-one and length-two loop measures.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		ResultSet rs = stat.executeQuery("SELECT * FROM HEURISTIC_DEPENDENCY((SELECT * FROM LoopLog), 0.5)");
+
+		assertEquals("B follows B once", 1.0 / 2, row(rs,"B","B").getDouble(4), 1e-9);
+		assertNull("There is no length-two loop measure for B,B", row(rs,"B","B").getObject(5));
+		assertEquals("ABA and BAB occur once", 2.0 / 3, row(rs,"A","B").getDouble(5), 1e-9);
+		assertEquals("ABA and BAB occur once", 2.0 / 3, row(rs,"B","A").getDouble(5), 1e-9);
+	}
+
+	/*
+	 * Test empty log.
+	 */
+	@Test
+	public void testD() throws SQLException {
+		stat.execute("CREATE TABLE EmptyLog(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+
+		assertTrue("The result should be {}", resultSetSize(stat.executeQuery("SELECT * FROM DFG(SELECT * FROM EmptyLog)")) == 0);
+		assertTrue("The result should be {}", resultSetSize(stat.executeQuery("SELECT * FROM HEURISTIC_DEPENDENCY((SELECT * FROM EmptyLog), 0.9)")) == 0);
+	}
+
+	/*
+	 * Test that length-two loops are counted over events with the same timestamp, like the directly follows pairs.
+	 */
+	@Test
+	public void testE() throws SQLException {
+		//A case A {B C} A, where B and C have the same timestamp, and a case D {E D}, where E and D have the same timestamp
+		stat.execute("CREATE TABLE TieLog(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO TieLog VALUES (1,'A','01:00:00'),(1,'B','02:00:00'),(1,'C','02:00:00'),(1,'A','03:00:00')");
+		stat.execute("INSERT INTO TieLog VALUES (2,'D','01:00:00'),(2,'E','02:00:00'),(2,'D','02:00:00')");
+		ResultSet rs = stat.executeQuery("SELECT * FROM HEURISTIC_DEPENDENCY((SELECT * FROM TieLog), -1)");
+
+		assertEquals("A B A occurs once over the batches", 1.0 / 2, row(rs,"A","B").getDouble(5), 1e-9);
+		assertEquals("A C A occurs once over the batches", 1.0 / 2, row(rs,"A","C").getDouble(5), 1e-9);
+		assertEquals("E and D have the same timestamp, so D E D is no loop", 0.0, row(rs,"D","E").getDouble(5), 1e-9);
+	}
+}
@@ -0,0 +1,98 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestInductiveMiner {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	private void insertCases(int firstCase, int count, String... events) throws SQLException{
+		for (int c = firstCase; c < firstCase + count; c++){
+			for (int i = 0; i < events.length; i++){
+				stat.execute("INSERT INTO Log VALUES (" + c + ",'" + events[i] + "','0" + (i + 1) + ":00:00')");
+			}
+		}
+	}
+
+	/*
+	 * Test a sequence with a parallel part, found from the sequence and concurrency cuts.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		stat.execute("DELETE FROM Log");
+		insertCases(1, 2, "A", "B", "C", "D");
+		insertCases(3, 1, "A", "C", "B", "D");
+		assertEquals("1;null;null;SEQUENCE;null; 2;1;1;ACTIVITY;A; 3;1;2;PARALLEL;null; 4;3;1;ACTIVITY;B; 5;3;2;ACTIVITY;C; 6;1;3;ACTIVITY;D; ",
+				rows("SELECT * FROM INDUCTIVE_MINER((SELECT * FROM Log), 0)"));
+	}
+
+	/*
+	 * Test an exclusive choice between a loop and an activity, found from the exclusive choice and loop cuts.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		stat.execute("DELETE FROM Log");
+		insertCases(1, 2, "A", "B", "C");
+		insertCases(3, 1, "A", "D", "C");
+		insertCases(4, 1, "A", "B", "E", "B", "C");
+		assertEquals("SEQUENCE;null; ACTIVITY;A; XOR;null; LOOP;null; ACTIVITY;B; ACTIVITY;E; ACTIVITY;D; ACTIVITY;C; ",
+				rows("SELECT OPERATOR, EVENT_LABEL FROM INDUCTIVE_MINER((SELECT * FROM Log), 0) ORDER BY NODE_ID"));
+		assertEquals("4;1; 7;2; ",
+				rows("SELECT NODE_ID, CHILD_INDEX FROM INDUCTIVE_MINER((SELECT * FROM Log), 0) WHERE PARENT_ID = 3 ORDER BY NODE_ID"));
+	}
+
+	/*
+	 * Test that an infrequent skip is only modelled without noise filtering, and that an empty log gives no tree.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		stat.execute("DELETE FROM Log");
+		insertCases(1, 10, "A", "B", "C");
+		insertCases(11, 1, "A", "C");
+		assertEquals("SEQUENCE;null; ACTIVITY;A; XOR;null; TAU;null; ACTIVITY;B; ACTIVITY;C; ",
+				rows("SELECT OPERATOR, EVENT_LABEL FROM INDUCTIVE_MINER((SELECT * FROM Log), 0) ORDER BY NODE_ID"));
+		assertEquals("SEQUENCE;null; ACTIVITY;A; ACTIVITY;B; ACTIVITY;C; ",
+				rows("SELECT OPERATOR, EVENT_LABEL FROM INDUCTIVE_MINER((SELECT * FROM Log)) ORDER BY NODE_ID"));
+		assertEquals("",
+				rows("SELECT * FROM INDUCTIVE_MINER((SELECT * FROM Log WHERE 1 = 0))"));
+	}
+
+}
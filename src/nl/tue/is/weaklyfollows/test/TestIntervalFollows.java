@@ -0,0 +1,82 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestIntervalFollows {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), Lifecycle VARCHAR(10), Event_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','start','01:00:00'),(1,'B','start','02:00:00'),(1,'B','complete','04:00:00'),(1,'A','complete','05:00:00')");
+		stat.execute("INSERT INTO Log VALUES (1,'C','complete','06:00:00'),(1,'D','start','06:00:00'),(1,'D','complete','08:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A',NULL,'01:00:00'),(2,'B',NULL,'02:00:00'),(2,'C',NULL,'02:00:00'),(2,'D','schedule','02:30:00'),(2,'D',NULL,'03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,'A','start','01:00:00'),(3,'A','complete','02:00:00'),(3,'B','start','03:00:00'),(3,'B','complete','04:00:00'),(3,'C','start','05:00:00'),(3,'C','complete','06:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test that intervals directly follow when nothing lies between them and are concurrent when they overlap.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("CONCURRENTAB1 CONCURRENTBA1 FOLLOWSAB2 FOLLOWSAC2 FOLLOWSAD1 FOLLOWSBC2 FOLLOWSBD2 FOLLOWSCD1 ",
+				rows("SELECT * FROM INTERVAL_FOLLOWS(SELECT Case_Id, Event, Lifecycle, Event_Time FROM Log) ORDER BY 1, 2, 3"));
+		assertEquals("FOLLOWSAB1 FOLLOWSBC1 ",
+				rows("SELECT * FROM INTERVAL_FOLLOWS(SELECT Case_Id, Event, Lifecycle, Event_Time FROM Log WHERE Case_Id = 3) ORDER BY 1, 2, 3"));
+	}
+
+	/*
+	 * Test that events without a lifecycle transition give the weakly follows relation.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals(rows("SELECT * FROM FOLLOWS(SELECT Case_Id, Event, Event_Time FROM Log WHERE Case_Id = 2 AND Lifecycle IS NULL) ORDER BY 1, 2"),
+				rows("SELECT EVENT_LABEL_P, EVENT_LABEL_S FROM INTERVAL_FOLLOWS(SELECT Case_Id, Event, Lifecycle, Event_Time FROM Log WHERE Case_Id = 2) ORDER BY 1, 2"));
+	}
+
+	/*
+	 * Test that start and complete events are paired first in first out and that an unpaired start event has no duration.
+	 * An event without duration is concurrent with an interval that it lies strictly within.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		stat.execute("CREATE TABLE Log2(Case_Id INT, Event VARCHAR(100), Lifecycle VARCHAR(10), Event_Time TIME)");
+		stat.execute("INSERT INTO Log2 VALUES (1,'A','start','01:00:00'),(1,'A','start','02:00:00'),(1,'A','complete','03:00:00'),(1,'A','complete','10:00:00'),(1,'B','complete','05:00:00')");
+		stat.execute("INSERT INTO Log2 VALUES (2,'A','start','01:00:00'),(2,'B','START','02:00:00'),(2,'B','COMPLETE','03:00:00')");
+		assertEquals("CONCURRENTAA2 CONCURRENTAB1 CONCURRENTBA1 FOLLOWSAB2 ",
+				rows("SELECT * FROM INTERVAL_FOLLOWS(SELECT Case_Id, Event, Lifecycle, Event_Time FROM Log2) ORDER BY 1, 2, 3"));
+	}
+}
@@ -0,0 +1,110 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestLabelMapping {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		//Three cases: A1 A2 B C, A2 B, B A1 C
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,'A1','01:00:00'),(1,'A2','02:00:00'),(1,'B','03:00:00'),(1,'C','04:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A2','01:00:00'),(2,'B','02:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,'B','01:00:00'),(3,'A1','02:00:00'),(3,'C','03:00:00')");
+		//A1 and A2 are grouped into A and B into Other, C is not mapped; X does not occur in the log
+		stat.execute("CREATE TABLE Hierarchy(Activity VARCHAR(100), Activity_Group VARCHAR(100))");
+		stat.execute("INSERT INTO Hierarchy VALUES ('A1','A'),('A2','A'),('B','Other'),('X','Other')");
+		//A1 and A2 are grouped into 1, B and C are not mapped
+		stat.execute("CREATE TABLE Numbered(Activity VARCHAR(100), Activity_Group INT)");
+		stat.execute("INSERT INTO Numbered VALUES ('A1',1),('A2',1)");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test the directly follows graph on abstract labels, where an unmapped label keeps its own label.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("A;A;1; A;C;1; A;Other;2; Other;A;1; Other;C;1; ",
+				rows("SELECT * FROM DFG((SELECT * FROM Log), (SELECT * FROM Hierarchy)) ORDER BY 1, 2"));
+		assertEquals("A;C;1; A;Other;2; Other;A;1; Other;C;1; ",
+				rows("SELECT * FROM DFG((SELECT * FROM Log), (SELECT * FROM Hierarchy), TRUE) ORDER BY 1, 2"));
+	}
+
+	/*
+	 * Test the weakly follows relation on abstract labels, with and without collapsing.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("A;A; A;C; A;Other; Other;A; Other;C; ",
+				rows("SELECT * FROM FOLLOWS((SELECT * FROM Log), (SELECT * FROM Hierarchy), FALSE) ORDER BY 1, 2"));
+		assertEquals("A;C; A;Other; Other;A; Other;C; ",
+				rows("SELECT * FROM FOLLOWS((SELECT * FROM Log), (SELECT Activity, Activity_Group FROM Hierarchy), TRUE) ORDER BY 1, 2"));
+		assertEquals("A1;A2; A1;C; A2;B; B;A1; B;C; ",
+				rows("SELECT * FROM FOLLOWS((SELECT * FROM Log), (SELECT * FROM Hierarchy WHERE 1 = 0)) ORDER BY 1, 2"));
+	}
+
+	/*
+	 * Test an empty event log.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		assertEquals("", rows("SELECT * FROM DFG((SELECT * FROM Log WHERE 1 = 0), (SELECT * FROM Hierarchy), TRUE)"));
+	}
+
+	/*
+	 * Test abstract labels of another type than the unmapped labels, which are converted to VARCHAR.
+	 */
+	@Test
+	public void testD() throws SQLException {
+		assertEquals("1;1;1; 1;B;2; 1;C;1; B;1;1; B;C;1; ",
+				rows("SELECT * FROM DFG((SELECT * FROM Log), (SELECT * FROM Numbered)) ORDER BY 1, 2"));
+		assertEquals("1;1;1; 1;B;2; 1;C;1; B;1;1; B;C;1; ",
+				rows("SELECT * FROM DFG((SELECT * FROM Log), (SELECT Activity, CAST(Activity_Group AS VARCHAR) FROM Numbered)) ORDER BY 1, 2"));
+		assertEquals("1;1;1; ",
+				rows("SELECT * FROM DFG((SELECT * FROM Log WHERE Event LIKE 'A%'), (SELECT * FROM Numbered)) ORDER BY 1, 2"));
+	}
+
+	/*
+	 * Test that a mapping of one row, which arrives as a single row value, is rejected rather than ignored.
+	 */
+	@Test(expected = SQLException.class)
+	public void testE() throws SQLException {
+		rows("SELECT * FROM DFG((SELECT * FROM Log), (SELECT * FROM Numbered WHERE Activity = 'A1'))");
+	}
+
+}
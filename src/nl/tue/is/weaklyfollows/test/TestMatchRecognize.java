@@ -0,0 +1,118 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestMatchRecognize {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Customer INT, Activity VARCHAR(100), Time TIMESTAMP)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','2020-01-01 00:00:00'),(1,'D','2020-01-01 01:00:00'),(1,'C','2020-01-01 02:00:00'),"
+				+ "(1,'A','2020-01-02 00:00:00'),(1,'C','2020-01-05 00:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A','2020-01-01 00:00:00'),(2,'B','2020-01-01 01:00:00'),(2,'C','2020-01-01 02:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,'D','2020-01-01 00:00:00'),(3,'A','2020-01-01 01:00:00'),(3,'A','2020-01-01 02:00:00'),"
+				+ "(3,'C','2020-01-01 03:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	private String matches(String pattern, String parameters) throws SQLException{
+		return rows("SELECT CASE_ID, MATCH_NUMBER, EVENT_COUNT, CLASSIFIER FROM MATCH_RECOGNIZE((SELECT Customer, Time, "
+				+ "Activity = 'A' AS A, Activity <> 'B' AS X, Activity = 'C' AS C FROM Log ORDER BY 1, 2), '" + pattern + "'" + parameters + ")");
+	}
+
+	/*
+	 * Test a pattern with a gap, where the matches of a case do not overlap and the match that starts first is the longest.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("1;1;5;A X X X C; 3;1;3;A X C; ", matches("A X* C", ""));
+		assertEquals("1;1;3;A X C; 1;2;2;A C; 2;1;3;A ANY C; 3;1;3;A X C; ", matches("A (X | ANY)? C", ""));
+		assertEquals("1;1;5;A ANY ANY ANY C; 2;1;3;A ANY C; 3;1;3;A ANY C; ", matches("A ANY* C", ""));
+	}
+
+	/*
+	 * Test the maximum duration, the anchors and the bounded quantifiers.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("1;1;3;A X C; 3;1;3;A X C; ", matches("A X* C", ", 2 * 24 * 60 * 60 * 1000"));
+		assertEquals("1;1;2;A ANY; 2;1;2;A ANY; ", matches("^ A ANY", ""));
+		assertEquals("1;1;2;ANY C; 2;1;2;ANY C; 3;1;2;ANY C; ", matches("ANY? C $", ""));
+		assertEquals("3;1;3;A A C; ", matches("A{2} C", ""));
+		assertEquals("1;1;3;A X C; 1;2;2;A C; 2;1;1;C; 3;1;3;A A C; ", matches("A{1,2} X{0,1} C | C", ""));
+	}
+
+	/*
+	 * Test that an invalid pattern and an unordered event log are rejected.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		try {
+			matches("A (X C", "");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("Syntax error in pattern"));
+		}
+		try {
+			rows("SELECT * FROM MATCH_RECOGNIZE((SELECT Customer, Time, Activity = 'A' AS A FROM Log ORDER BY 1, 2 DESC), 'A')");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("must be ordered"));
+		}
+		try {
+			rows("SELECT * FROM MATCH_RECOGNIZE((SELECT Customer, Time, Activity = 'A' AS A FROM Log ORDER BY 2, 1), 'A')");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("must be ordered"));
+		}
+	}
+
+	/*
+	 * Test that with a maximum duration a later start matches where an earlier start in the same state runs out of time.
+	 */
+	@Test
+	public void testD() throws SQLException {
+		stat.execute("CREATE TABLE LateLog(Customer INT, Activity VARCHAR(100), Time TIMESTAMP)");
+		stat.execute("INSERT INTO LateLog VALUES (1,'A','2020-01-01 00:00:00'),(1,'A','2020-01-03 00:00:00'),(1,'C','2020-01-04 00:00:00')");
+		assertEquals("1;1;2020-01-03 00:00:00.0;2;A C; ",
+				rows("SELECT CASE_ID, MATCH_NUMBER, START_TIME, EVENT_COUNT, CLASSIFIER FROM MATCH_RECOGNIZE((SELECT Customer, Time, "
+				+ "Activity = 'A' AS A, Activity <> 'B' AS X, Activity = 'C' AS C FROM LateLog ORDER BY 1, 2), 'A X* C', 2 * 24 * 60 * 60 * 1000)"));
+		assertEquals("1;1;3;A X C; ",
+				rows("SELECT CASE_ID, MATCH_NUMBER, EVENT_COUNT, CLASSIFIER FROM MATCH_RECOGNIZE((SELECT Customer, Time, "
+				+ "Activity = 'A' AS A, Activity <> 'B' AS X, Activity = 'C' AS C FROM LateLog ORDER BY 1, 2), 'A X* C')"));
+	}
+}
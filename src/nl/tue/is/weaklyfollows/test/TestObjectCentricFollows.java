@@ -0,0 +1,85 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestObjectCentricFollows {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		//Two orders with three items, each item is picked and the order is shipped.
+		stat.execute("CREATE TABLE Events(Id INT, Activity VARCHAR(100), Event_Time TIME)");
+		stat.execute("INSERT INTO Events VALUES (6,'Ship','06:00:00'),(1,'Create','01:00:00'),(2,'Create','02:00:00'),(3,'Pick','03:00:00')");
+		stat.execute("INSERT INTO Events VALUES (4,'Pick','04:00:00'),(5,'Pick','05:00:00'),(7,'Ship','07:00:00')");
+		stat.execute("CREATE TABLE Event_Objects(Event_Id INT, Object_Id VARCHAR(10), Object_Type VARCHAR(10))");
+		stat.execute("INSERT INTO Event_Objects VALUES (1,'o1','order'),(1,'i1','item'),(1,'i2','item'),(2,'o2','order'),(2,'i3','item')");
+		stat.execute("INSERT INTO Event_Objects VALUES (3,'i1','item'),(4,'i3','item'),(5,'i2','item')");
+		stat.execute("INSERT INTO Event_Objects VALUES (6,'o1','order'),(6,'i1','item'),(6,'i2','item'),(7,'o2','order'),(7,'i3','item'),(8,'o2','order')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i) + ((i < rs.getMetaData().getColumnCount())?",":" "));
+			}
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test the relation per object type.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("item,Create,Pick,3 item,Pick,Ship,3 order,Create,Ship,2 ",
+				rows("SELECT * FROM OC_FOLLOWS((SELECT * FROM Events), (SELECT * FROM Event_Objects)) ORDER BY 1, 2, 3"));
+	}
+
+	/*
+	 * Test that the relation of a type is the same as the DFG of the log that is flattened to that type.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals(rows("SELECT * FROM DFG(SELECT o.Object_Id, e.Activity, e.Event_Time FROM Events e JOIN Event_Objects o ON e.Id = o.Event_Id "
+						+ "WHERE o.Object_Type = 'item') ORDER BY 1, 2"),
+				rows("SELECT EVENT_LABEL_P, EVENT_LABEL_S, FREQUENCY FROM OC_FOLLOWS((SELECT * FROM Events), (SELECT * FROM Event_Objects)) "
+						+ "WHERE OBJECT_TYPE = 'item' ORDER BY 1, 2"));
+	}
+
+	/*
+	 * Test events with the same timestamp and empty input.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		stat.execute("CREATE TABLE Events2(Id INT, Activity VARCHAR(100), Event_Time TIME)");
+		stat.execute("INSERT INTO Events2 VALUES (1,'A','01:00:00'),(2,'B','02:00:00'),(3,'C','02:00:00'),(4,'D','03:00:00')");
+		stat.execute("CREATE TABLE Event_Objects2(Event_Id INT, Object_Id INT, Object_Type VARCHAR(10))");
+		stat.execute("INSERT INTO Event_Objects2 VALUES (1,1,'x'),(2,1,'x'),(3,1,'x'),(4,1,'x'),(3,2,'y'),(4,2,'y')");
+		assertEquals("x,A,B,1 x,A,C,1 x,B,D,1 x,C,D,1 y,C,D,1 ",
+				rows("SELECT * FROM OC_FOLLOWS((SELECT * FROM Events2), (SELECT * FROM Event_Objects2)) ORDER BY 1, 2, 3"));
+		assertEquals("", rows("SELECT * FROM OC_FOLLOWS((SELECT * FROM Events2), (SELECT * FROM Event_Objects2 WHERE Object_Id = 3))"));
+	}
+}
@@ -0,0 +1,128 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestOnlineDfg {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIMESTAMP)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','2017-01-01 01:00:00'),(1,'B','2017-01-01 02:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String dfg(String name) throws SQLException{
+		ResultSet rs = stat.executeQuery("SELECT * FROM ONLINE_DFG('" + name + "') ORDER BY 1, 2");
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			sb.append(rs.getString(1) + rs.getString(2) + rs.getInt(3) + " ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test that existing and inserted events are counted, with the same pairs as the DFG.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		ResultSet rs = stat.executeQuery("CALL CREATE_ONLINE_DFG('LIVE', 'Log', 86400)");
+		rs.next();
+		assertEquals(2, rs.getInt(1));
+		assertEquals("AB1 ", dfg("LIVE"));
+		stat.execute("INSERT INTO Log VALUES (1,'C','2017-01-01 03:00:00'),(2,'A','2017-01-01 03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'C','2017-01-01 04:00:00'),(2,'D','2017-01-01 04:00:00'),(2,'B','2017-01-01 05:00:00')");
+		assertEquals("AB1 AC1 AD1 BC1 CB1 DB1 ", dfg("LIVE"));
+		ResultSet exact = stat.executeQuery("SELECT * FROM DFG(SELECT * FROM Log) ORDER BY 1, 2");
+		StringBuilder sb = new StringBuilder();
+		while (exact.next()){
+			sb.append(exact.getString(1) + exact.getString(2) + exact.getInt(3) + " ");
+		}
+		assertEquals(sb.toString(), dfg("LIVE"));
+		//An event that is earlier than the last event of its case is not counted.
+		stat.execute("INSERT INTO Log VALUES (2,'E','2017-01-01 04:30:00')");
+		assertFalse(dfg("LIVE").contains("E"));
+	}
+
+	/*
+	 * Test that edges expire when they leave the window.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		stat.execute("CREATE TABLE Stream(Case_Id VARCHAR(10), Event VARCHAR(100), End_Time TIMESTAMP)");
+		stat.execute("CALL CREATE_ONLINE_DFG('WINDOW', 'Stream', 3600)");
+		stat.execute("INSERT INTO Stream VALUES ('x','A','2017-01-01 00:00:00'),('x','B','2017-01-01 00:10:00')");
+		stat.execute("INSERT INTO Stream VALUES ('y','A','2017-01-01 00:30:00'),('y','B','2017-01-01 00:40:00')");
+		assertEquals("AB2 ", dfg("WINDOW"));
+		stat.execute("INSERT INTO Stream VALUES ('z','A','2017-01-01 01:20:00'),('z','C','2017-01-01 01:25:00')");
+		assertEquals("AB1 AC1 ", dfg("WINDOW"));
+		stat.execute("INSERT INTO Stream VALUES ('z','D','2017-01-01 05:00:00')");
+		assertEquals("CD1 ", dfg("WINDOW"));
+		stat.execute("INSERT INTO Stream VALUES ('w','A','2017-01-01 06:00:01')");
+		assertEquals("", dfg("WINDOW"));
+		//Many cases that leave the window do not keep their state.
+		for (int i = 0; i < 1000; i++){
+			stat.execute("INSERT INTO Stream VALUES ('c" + i + "','A',DATEADD('MINUTE', " + i + ", TIMESTAMP '2017-01-02 00:00:00'))");
+			stat.execute("INSERT INTO Stream VALUES ('c" + i + "','B',DATEADD('MINUTE', " + i + ", TIMESTAMP '2017-01-02 00:00:01'))");
+		}
+		ResultSet rs = stat.executeQuery("SELECT * FROM ONLINE_DFG('WINDOW')");
+		assertTrue(rs.next());
+		assertTrue((rs.getInt(3) >= 59) && (rs.getInt(3) <= 61));
+		assertFalse(rs.next());
+		rs("CALL DROP_ONLINE_DFG('WINDOW')");
+		stat.execute("INSERT INTO Stream VALUES ('z','E','2017-01-03 05:00:00')");
+		try {
+			dfg("WINDOW");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("not found"));
+		}
+	}
+
+	/*
+	 * Test that the event table is looked up by name, also if its name must be quoted.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		stat.execute("CREATE TABLE \"Event Stream\"(Case_Id INT, Event VARCHAR(100), End_Time TIMESTAMP)");
+		stat.execute("INSERT INTO \"Event Stream\" VALUES (1,'A','2017-01-01 01:00:00'),(1,'B','2017-01-01 02:00:00')");
+		stat.execute("CALL CREATE_ONLINE_DFG('QUOTED', 'Event Stream', 86400)");
+		stat.execute("INSERT INTO \"Event Stream\" VALUES (1,'C','2017-01-01 03:00:00')");
+		assertEquals("AB1 BC1 ", dfg("QUOTED"));
+		rs("CALL DROP_ONLINE_DFG('QUOTED')");
+		try {
+			stat.execute("CALL CREATE_ONLINE_DFG('QUOTED', 'Log ORDER BY 1; DROP TABLE Log; --', 86400)");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("not found"));
+		}
+		ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM Log");
+		assertTrue(rs.next());
+	}
+
+	private void rs(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		rs.next();
+		assertTrue(rs.getBoolean(1));
+	}
+}
@@ -0,0 +1,74 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestPartitionedFollows {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME, Region VARCHAR(10), Month INT)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','01:00:00','North',1),(1,'B','02:00:00','North',1),(1,'C','03:00:00','North',2)");
+		stat.execute("INSERT INTO Log VALUES (2,'A','01:00:00','South',1),(2,'C','02:00:00','South',1),(2,'D','02:00:00','South',2)");
+		stat.execute("INSERT INTO Log VALUES (3,'B','01:00:00','North',2),(3,'C','02:00:00','North',2)");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test that the relation of each partition is the relation of the events in that partition.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("NorthAB NorthBC SouthAC SouthAD ",
+				rows("SELECT * FROM FOLLOWS(SELECT Region, Case_Id, Event, End_Time FROM Log) ORDER BY 1, 2, 3"));
+		for (String region: new String[]{"North", "South"}){
+			assertEquals(rows("SELECT * FROM FOLLOWS(SELECT Case_Id, Event, End_Time FROM Log WHERE Region = '" + region + "') ORDER BY 1, 2"),
+					rows("SELECT EVENT_LABEL_P, EVENT_LABEL_S FROM FOLLOWS(SELECT Region, Case_Id, Event, End_Time FROM Log) WHERE Region = '" + region + "' ORDER BY 1, 2"));
+		}
+	}
+
+	/*
+	 * Test that a case is split over partitions and that the partition column keeps its name.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("1AB 1AC 2BC ", rows("SELECT * FROM FOLLOWS(SELECT Month, Case_Id, Event, End_Time FROM Log) ORDER BY 1, 2, 3"));
+		ResultSet rs = stat.executeQuery("SELECT Month, COUNT(*) FROM FOLLOWS(SELECT Month, Case_Id, Event, End_Time FROM Log) GROUP BY Month ORDER BY 1");
+		assertTrue(rs.next());
+		assertEquals(1, rs.getInt(1));
+		assertEquals(2, rs.getInt(2));
+		assertEquals("", rows("SELECT * FROM FOLLOWS(SELECT Month, Case_Id, Event, End_Time FROM Log WHERE Month > 2)"));
+	}
+}
@@ -0,0 +1,107 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestPartitionedTable {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	private void createLog() throws SQLException{
+		stat.execute("DROP TABLE IF EXISTS Log");
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIMESTAMP) PARTITION BY RANGE(End_Time) INTERVAL MONTH");
+		stat.execute("CREATE INDEX Log_Case ON Log(Case_Id)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','2017-01-05 01:00:00'),(1,'B','2017-01-20 02:00:00'),(1,'C','2017-02-02 03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A','2017-02-05 01:00:00'),(2,'B','2017-03-01 00:00:00'),(3,'A',NULL)");
+	}
+
+	/*
+	 * Test that a condition on the partition column only reads the overlapping partitions and returns the right rows.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		createLog();
+		String plan = rows("EXPLAIN SELECT Case_Id, Event FROM Log WHERE End_Time >= '2017-02-01 00:00:00' AND End_Time < '2017-03-01 00:00:00'");
+		assertTrue(plan.contains("LOG.partitionScan"));
+		assertEquals("1;C; 2;A; ", rows("SELECT Case_Id, Event FROM Log WHERE End_Time >= '2017-02-01 00:00:00' AND End_Time < '2017-03-01 00:00:00' ORDER BY 1, 2"));
+		assertEquals("1;B; 2;B; ", rows("SELECT Case_Id, Event FROM Log WHERE End_Time IN ('2017-01-20 02:00:00', '2017-03-01 00:00:00') ORDER BY 1, 2"));
+		assertEquals("3;A; ", rows("SELECT Case_Id, Event FROM Log WHERE End_Time IS NULL"));
+		assertEquals("6; ", rows("SELECT COUNT(*) FROM Log"));
+		assertTrue(rows("SELECT SQL FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'LOG'").contains("PARTITION BY RANGE(END_TIME) INTERVAL MONTH"));
+	}
+
+	/*
+	 * Test that an update moves a row to another partition and that a rollback undoes changes in any partition.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		createLog();
+		stat.execute("UPDATE Log SET End_Time = '2017-03-02 00:00:00' WHERE Case_Id = 1 AND Event = 'A'");
+		assertEquals("1;A; 2;B; ", rows("SELECT Case_Id, Event FROM Log WHERE End_Time >= '2017-03-01 00:00:00' ORDER BY 1, 2"));
+		assertEquals("1;B; ", rows("SELECT Case_Id, Event FROM Log WHERE End_Time < '2017-02-01 00:00:00'"));
+		conn.setAutoCommit(false);
+		stat.execute("INSERT INTO Log VALUES (4,'A','2017-01-07 00:00:00'),(4,'B','2018-01-01 00:00:00')");
+		stat.execute("DELETE FROM Log WHERE Case_Id = 2");
+		conn.rollback();
+		conn.setAutoCommit(true);
+		assertEquals("1;3; 2;2; 3;1; ", rows("SELECT Case_Id, COUNT(*) FROM Log GROUP BY Case_Id ORDER BY 1"));
+	}
+
+	/*
+	 * Test that dropping a partition removes its rows, also from the secondary indexes.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		createLog();
+		assertEquals(2, stat.executeUpdate("ALTER TABLE Log DROP PARTITION FOR ('2017-01-15 00:00:00')"));
+		assertEquals(0, stat.executeUpdate("ALTER TABLE Log DROP PARTITION FOR ('2016-01-15 00:00:00')"));
+		assertEquals("1;C; 2;A; 2;B; 3;A; ", rows("SELECT Case_Id, Event FROM Log ORDER BY 1, 2"));
+		assertEquals("1;C; ", rows("SELECT Case_Id, Event FROM Log WHERE Case_Id = 1"));
+		assertEquals(1, stat.executeUpdate("ALTER TABLE Log DROP PARTITION FOR (NULL)"));
+		stat.execute("INSERT INTO Log VALUES (1,'D','2017-01-25 00:00:00')");
+		assertEquals("1;C; 1;D; ", rows("SELECT Case_Id, Event FROM Log WHERE Case_Id = 1 ORDER BY 2"));
+		try {
+			stat.execute("CREATE TABLE Other(Case_Id INT) PARTITION BY RANGE(Case_Id) INTERVAL DAY");
+			fail();
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("PARTITION BY"));
+		}
+	}
+
+}
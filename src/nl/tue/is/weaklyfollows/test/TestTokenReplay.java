@@ -0,0 +1,126 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestTokenReplay {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		//The net p1 -> A -> p2 -> B -> p3, with initial marking [p1] and final marking [p3]
+		stat.execute("CREATE TABLE Places(Place VARCHAR(10), Initial_Tokens INT, Final_Tokens INT)");
+		stat.execute("INSERT INTO Places VALUES ('p1',1,0),('p2',0,0),('p3',0,1)");
+		stat.execute("CREATE TABLE Transitions(Transition VARCHAR(10), Label VARCHAR(100))");
+		stat.execute("INSERT INTO Transitions VALUES ('t1','A'),('t2','B')");
+		stat.execute("CREATE TABLE Arcs(Source VARCHAR(10), Target VARCHAR(10))");
+		stat.execute("INSERT INTO Arcs VALUES ('p1','t1'),('t1','p2'),('p2','t2'),('t2','p3')");
+		//Three cases: AB, A, B
+		stat.execute("CREATE TABLE Log(Case_Id INT, Event VARCHAR(100), End_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,'A','01:00:00'),(1,'B','02:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,'A','01:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,'B','01:00:00')");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private ResultSet row(ResultSet rs, Integer caseId) throws SQLException{
+		rs.beforeFirst();
+		while (rs.next()){
+			if ((caseId == null)?(rs.getObject(1) == null):(caseId.intValue() == rs.getInt(1))){
+				return rs;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Test the token counts and fitness per case.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		ResultSet rs = stat.executeQuery("SELECT * FROM TOKEN_REPLAY((SELECT * FROM Log), 'Places', 'Transitions', 'Arcs')");
+
+		row(rs, 1);
+		assertEquals("A perfectly fitting case", "3 3 0 0 1.0", rs.getLong(2) + " " + rs.getLong(3) + " " + rs.getLong(4) + " " + rs.getLong(5) + " " + rs.getDouble(6));
+		row(rs, 2);
+		assertEquals("A case that misses its last event", "2 2 1 1 0.5", rs.getLong(2) + " " + rs.getLong(3) + " " + rs.getLong(4) + " " + rs.getLong(5) + " " + rs.getDouble(6));
+		row(rs, 3);
+		assertEquals("A case that misses its first event", "2 2 1 1 0.5", rs.getLong(2) + " " + rs.getLong(3) + " " + rs.getLong(4) + " " + rs.getLong(5) + " " + rs.getDouble(6));
+	}
+
+	/*
+	 * Test the aggregate fitness of the log.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		ResultSet rs = stat.executeQuery("SELECT * FROM TOKEN_REPLAY((SELECT * FROM Log), 'Places', 'Transitions', 'Arcs')");
+
+		assertNotNull("There should be an aggregate row", row(rs, null));
+		assertEquals("7 7 2 2", rs.getLong(2) + " " + rs.getLong(3) + " " + rs.getLong(4) + " " + rs.getLong(5));
+		assertEquals(1 - 2.0 / 7, rs.getDouble(6), 1e-9);
+	}
+
+	/*
+	 * Test a log that is replayed by several threads.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		stat.execute("CREATE TABLE BigLog AS SELECT X AS Case_Id, 'A' AS Event, CAST('01:00:00' AS TIME) AS End_Time FROM SYSTEM_RANGE(1, 10000)");
+		stat.execute("INSERT INTO BigLog SELECT X, 'B', CAST('02:00:00' AS TIME) FROM SYSTEM_RANGE(1, 10000)");
+
+		ResultSet rs = stat.executeQuery("SELECT COUNT(*), MIN(Fitness) FROM TOKEN_REPLAY((SELECT * FROM BigLog), 'Places', 'Transitions', 'Arcs')");
+		rs.next();
+		assertEquals("All cases and the aggregate should be returned", 10001, rs.getInt(1));
+		assertEquals("All cases should fit", 1.0, rs.getDouble(2), 1e-9);
+	}
+
+	/*
+	 * Test that the tables of the net are looked up by name, also if their names must be quoted, and that a name is not
+	 * executed as SQL.
+	 */
+	@Test
+	public void testD() throws SQLException {
+		stat.execute("CREATE TABLE \"Net Places\" AS SELECT * FROM Places");
+		stat.execute("CREATE TABLE \"transitions\" AS SELECT * FROM Transitions WHERE 1 = 0");
+
+		ResultSet rs = stat.executeQuery("SELECT * FROM TOKEN_REPLAY((SELECT * FROM Log), 'Net Places', 'Transitions', 'arcs')");
+		assertNotNull("There should be an aggregate row", row(rs, null));
+		assertEquals("7 7 2 2", rs.getLong(2) + " " + rs.getLong(3) + " " + rs.getLong(4) + " " + rs.getLong(5));
+		try {
+			stat.executeQuery("SELECT * FROM TOKEN_REPLAY((SELECT * FROM Log), 'Places', 'transitions', 'Arcs')");
+			fail("The empty transitions table should be used, which the arcs do not match");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("does not connect a place and a transition"));
+		}
+		try {
+			stat.executeQuery("SELECT * FROM TOKEN_REPLAY((SELECT * FROM Log), 'Places', 'Transitions', 'Arcs; DROP TABLE Log')");
+			fail("The arcs table should not be found");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("Arcs; DROP TABLE Log"));
+		}
+		rs = stat.executeQuery("SELECT COUNT(*) FROM Log");
+		rs.next();
+		assertEquals(4, rs.getInt(1));
+		stat.execute("DROP TABLE \"Net Places\"");
+		stat.execute("DROP TABLE \"transitions\"");
+	}
+}
@@ -0,0 +1,142 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestTrace {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Case_Id INT, Activity_Id INT, End_Time TIME)");
+		stat.execute("INSERT INTO Log VALUES (1,1,'01:00:00'),(1,200,'02:00:00'),(1,3,'03:00:00')");
+		stat.execute("INSERT INTO Log VALUES (2,1,'01:00:00'),(2,3,'02:00:00')");
+		stat.execute("INSERT INTO Log VALUES (3,200,'01:00:00'),(3,1,'02:00:00'),(3,70000,'03:00:00')");
+		stat.execute("CREATE TABLE Traces(Case_Id INT PRIMARY KEY, Trace TRACE)");
+		stat.execute("INSERT INTO Traces SELECT Case_Id, GROUP_CONCAT(Activity_Id ORDER BY End_Time) FROM Log GROUP BY Case_Id");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test that a trace is stored packed and converted from and to its string representation and an array.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("1;1,200,3;4; 2;1,3;2; 3;200,1,70000;6; ",
+				rows("SELECT Case_Id, Trace, LENGTH(CAST(Trace AS BINARY)) FROM Traces ORDER BY 1"));
+		assertEquals("2; ", rows("SELECT Case_Id FROM Traces WHERE Trace = '1,3'"));
+		assertEquals("1; 2; ", rows("SELECT Case_Id FROM Traces WHERE Trace < '2' ORDER BY 1"));
+		assertEquals("200; ", rows("SELECT ARRAY_GET(CAST(Trace AS ARRAY), 1) FROM Traces WHERE Case_Id = 3"));
+		assertEquals("1,2; ", rows("SELECT CAST((1, 2) AS TRACE)"));
+		ResultSet rs = stat.executeQuery("SELECT Trace FROM Traces WHERE Case_Id = 3");
+		assertTrue(rs.next());
+		assertArrayEquals(new int[]{200, 1, 70000}, (int[]) rs.getObject(1));
+	}
+
+	/*
+	 * Test the length, contains, prefix and subsequence functions.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("1;3;TRUE;TRUE;TRUE; 2;2;FALSE;TRUE;TRUE; 3;3;TRUE;FALSE;FALSE; ",
+				rows("SELECT Case_Id, TRACE_LENGTH(Trace), TRACE_CONTAINS(Trace, 200), TRACE_PREFIX(Trace, '1'), TRACE_SUBSEQUENCE(Trace, '1,3') FROM Traces ORDER BY 1"));
+		assertEquals("3; ", rows("SELECT Case_Id FROM Traces WHERE TRACE_CONTAINS(Trace, 70000) AND NOT TRACE_CONTAINS(Trace, 70)"));
+		assertEquals("1; ", rows("SELECT Case_Id FROM Traces WHERE TRACE_PREFIX(Trace, CAST('1,200' AS TRACE))"));
+		assertEquals("1; 3; ", rows("SELECT Case_Id FROM Traces WHERE TRACE_SUBSEQUENCE(Trace, '200') ORDER BY 1"));
+		assertEquals("1; 2; 3; ", rows("SELECT Case_Id FROM Traces WHERE TRACE_SUBSEQUENCE(Trace, '') AND TRACE_PREFIX(Trace, '') ORDER BY 1"));
+		assertEquals("null; ", rows("SELECT TRACE_LENGTH(NULL)"));
+	}
+
+	/*
+	 * Test that an int[] is only a trace if it is stored as one, and otherwise remains a Java object.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		stat.execute("CREATE TABLE Objects(Id INT PRIMARY KEY, Value OTHER)");
+		PreparedStatement prep = conn.prepareStatement("INSERT INTO Objects VALUES (?, ?)");
+		prep.setInt(1, 1);
+		prep.setObject(2, new int[]{3, -1, 2});
+		prep.execute();
+		prep.setInt(1, 2);
+		prep.setObject(2, new int[]{3, 1, 2});
+		prep.execute();
+		ResultSet rs = stat.executeQuery("SELECT Value FROM Objects ORDER BY Id");
+		assertTrue(rs.next());
+		assertArrayEquals(new int[]{3, -1, 2}, (int[]) rs.getObject(1));
+		assertTrue(rs.next());
+		assertArrayEquals(new int[]{3, 1, 2}, (int[]) rs.getObject(1));
+
+		prep = conn.prepareStatement("INSERT INTO Traces VALUES (?, ?)");
+		prep.setInt(1, 4);
+		prep.setObject(2, new int[]{5, 6});
+		prep.execute();
+		assertEquals("5,6; ", rows("SELECT Trace FROM Traces WHERE Case_Id = 4"));
+		prep = conn.prepareStatement("SELECT TRACE_LENGTH(CAST(? AS TRACE))");
+		prep.setObject(1, new int[]{5, 6, 7});
+		rs = prep.executeQuery();
+		assertTrue(rs.next());
+		assertEquals(3, rs.getInt(1));
+		stat.execute("DELETE FROM Traces WHERE Case_Id = 4");
+	}
+
+	/*
+	 * Test that only the canonical packed form of a trace is accepted, such that equal traces have equal bytes.
+	 */
+	@Test
+	public void testD() throws SQLException {
+		assertEquals("0,128; ", rows("SELECT CAST(X'008001' AS TRACE)"));
+		assertEquals("2147483647; ", rows("SELECT CAST(X'FFFFFFFF07' AS TRACE)"));
+		String[] malformed = {"8000", "0180", "8080808000", "FFFFFFFF08", "8080808080", "81"};
+		for (String bytes: malformed){
+			try {
+				rows("SELECT CAST(X'" + bytes + "' AS TRACE)");
+				fail("Accepted " + bytes);
+			} catch (SQLException e) {
+				assertTrue(e.getMessage().contains("TRACE"));
+			}
+		}
+		PreparedStatement prep = conn.prepareStatement("INSERT INTO Traces VALUES (?, CAST(? AS TRACE))");
+		prep.setInt(1, 5);
+		prep.setBytes(2, new byte[]{(byte) 0x81, 0x00});
+		try {
+			prep.execute();
+			fail("Stored an overlong encoding");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("TRACE 8100"));
+		}
+		assertEquals("0; ", rows("SELECT COUNT(*) FROM Traces WHERE Case_Id = 5"));
+	}
+}
@@ -0,0 +1,109 @@
+package nl.tue.is.weaklyfollows.test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestWindowFunctions {
+
+	static Connection conn;
+	static Statement stat;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Class.forName("org.h2.Driver");
+		conn = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+		stat = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+		stat.execute("CREATE TABLE Log(Customer INT, Activity VARCHAR(100), End_Time TIME, Cost INT)");
+		stat.execute("INSERT INTO Log VALUES (1,'C','03:00:00',30),(1,'A','01:00:00',10),(1,'B','02:00:00',20)");
+		stat.execute("INSERT INTO Log VALUES (2,'B','02:00:00',5),(2,'A','01:00:00',1),(2,'D','02:00:00',7)");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		stat.close();
+		conn.close();
+	}
+
+	private String rows(String query) throws SQLException{
+		ResultSet rs = stat.executeQuery(query);
+		StringBuilder sb = new StringBuilder();
+		while (rs.next()){
+			for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++){
+				sb.append(rs.getString(i));
+				sb.append(";");
+			}
+			sb.append(" ");
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Test LAG, LEAD and ROW_NUMBER per case, including the offset and default of LAG and LEAD.
+	 */
+	@Test
+	public void testA() throws SQLException {
+		assertEquals("1;A;null;B;1; 1;B;A;C;2; 1;C;B;null;3; 2;A;null;B;1; 2;B;A;D;2; 2;D;B;null;3; ",
+				rows("SELECT Customer, Activity, LAG(Activity) OVER (PARTITION BY Customer ORDER BY End_Time), "
+						+ "LEAD(Activity) OVER (PARTITION BY Customer ORDER BY End_Time), "
+						+ "ROW_NUMBER() OVER (PARTITION BY Customer ORDER BY End_Time) FROM Log ORDER BY Customer, End_Time, Activity"));
+		assertEquals("A;C;-; B;-;-; C;-;A; ",
+				rows("SELECT Activity, LEAD(Activity, 2, '-') OVER (PARTITION BY Customer ORDER BY End_Time), "
+						+ "LAG(Activity, 2, '-') OVER (PARTITION BY Customer ORDER BY End_Time) FROM Log WHERE Customer = 1 ORDER BY Activity"));
+		assertEquals("C;1; B;2; A;3; ",
+				rows("SELECT Activity, ROW_NUMBER() OVER (ORDER BY End_Time DESC) FROM Log WHERE Customer = 1 ORDER BY 2"));
+		assertEquals("1;2;3;4;5;6; ",
+				rows("SELECT GROUP_CONCAT(R SEPARATOR ';') FROM (SELECT ROW_NUMBER() OVER () R FROM Log)"));
+	}
+
+	/*
+	 * Test running aggregates, where rows with the same order key share their value, and aggregates over a whole partition.
+	 */
+	@Test
+	public void testB() throws SQLException {
+		assertEquals("1;A;10;1;10; 1;B;30;2;20; 1;C;60;3;30; 2;A;1;1;1; 2;B;13;3;7; 2;D;13;3;7; ",
+				rows("SELECT Customer, Activity, SUM(Cost) OVER (PARTITION BY Customer ORDER BY End_Time), "
+						+ "COUNT(*) OVER (PARTITION BY Customer ORDER BY End_Time), "
+						+ "MAX(Cost) OVER (PARTITION BY Customer ORDER BY End_Time) FROM Log ORDER BY Customer, Activity"));
+		assertEquals("1;60;20; 2;13;4; ",
+				rows("SELECT DISTINCT Customer, SUM(Cost) OVER (PARTITION BY Customer), AVG(Cost) OVER (PARTITION BY Customer) FROM Log ORDER BY Customer"));
+	}
+
+	/*
+	 * Test that LEAD over the cases returns the same directly follows pairs as a self join, and that a window function is
+	 * rejected where it cannot be used.
+	 */
+	@Test
+	public void testC() throws SQLException {
+		String selfJoin = rows("SELECT L1.Activity, L2.Activity, COUNT(*) FROM Log L1, Log L2 WHERE L1.Customer = 1 AND L2.Customer = 1 AND L2.End_Time = "
+				+ "(SELECT MIN(End_Time) FROM Log L3 WHERE L3.Customer = 1 AND L3.End_Time > L1.End_Time) "
+				+ "GROUP BY L1.Activity, L2.Activity ORDER BY 1, 2");
+		String lead = rows("SELECT P, S, COUNT(*) FROM (SELECT Activity P, LEAD(Activity) OVER (PARTITION BY Customer ORDER BY End_Time) S "
+				+ "FROM Log WHERE Customer = 1) WHERE S IS NOT NULL GROUP BY P, S ORDER BY 1, 2");
+		assertEquals("A;B;1; B;C;1; ", lead);
+		assertEquals(selfJoin, lead);
+		//The condition on the outer query must not be applied before the window is computed.
+		assertEquals("A;B; A;B; ",
+				rows("SELECT * FROM (SELECT Activity P, LEAD(Activity) OVER (PARTITION BY Customer ORDER BY End_Time) S FROM Log) WHERE P = 'A'"));
+		try {
+			rows("SELECT Activity FROM Log WHERE LAG(Activity) OVER (ORDER BY End_Time) IS NULL");
+			fail();
+		} catch (SQLException e) {
+			// expected
+		}
+		try {
+			rows("SELECT Customer, ROW_NUMBER() OVER (ORDER BY Customer) FROM Log GROUP BY Customer");
+			fail();
+		} catch (SQLException e) {
+			// expected
+		}
+	}
+}
@@ -477,6 +477,11 @@ public interface CommandInterface {
      */
     int DROP_SYNONYM = 89;
 
+    /**
+     * The type of a ALTER TABLE DROP PARTITION statement.
+     */
+    int ALTER_TABLE_DROP_PARTITION = 90;
+
     /**
      * Get command type.
      *
@@ -15,6 +15,7 @@ import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -25,6 +26,7 @@ import org.h2.command.ddl.AlterSchemaRename;
 import org.h2.command.ddl.AlterTableAddConstraint;
 import org.h2.command.ddl.AlterTableAlterColumn;
 import org.h2.command.ddl.AlterTableDropConstraint;
+import org.h2.command.ddl.AlterTableDropPartition;
 import org.h2.command.ddl.AlterTableRename;
 import org.h2.command.ddl.AlterTableRenameColumn;
 import org.h2.command.ddl.AlterTableRenameConstraint;
@@ -124,6 +126,7 @@ import org.h2.expression.TableFunction;
 import org.h2.expression.ValueExpression;
 import org.h2.expression.Variable;
 import org.h2.expression.Wildcard;
+import org.h2.expression.WindowFunction;
 import org.h2.index.Index;
 import org.h2.message.DbException;
 import org.h2.result.SortOrder;
@@ -192,6 +195,84 @@ public class Parser {
             return o1 == o2 ? 0 : compareTableFilters(o1, o2);
         }
     };
+    /**
+     * The process mining functions, mapped to the Java methods that implement
+     * them. A function is added to the schema the first time it is used.
+     */
+    private static final HashMap<String, String> PROCESS_MINING_FUNCTIONS =
+            new HashMap<String, String>();
+    static {
+        PROCESS_MINING_FUNCTIONS.put("FOLLOWS",
+                "org.h2.util.WeaklyFollows.weaklyFollows");
+        PROCESS_MINING_FUNCTIONS.put("DFG",
+                "org.h2.util.DirectlyFollows.dfg");
+        PROCESS_MINING_FUNCTIONS.put("HEURISTIC_DEPENDENCY",
+                "org.h2.util.HeuristicDependency.heuristicDependency");
+        PROCESS_MINING_FUNCTIONS.put("DECLARE_CHECK",
+                "org.h2.util.DeclareCheck.declareCheck");
+        PROCESS_MINING_FUNCTIONS.put("TOKEN_REPLAY",
+                "org.h2.util.TokenReplay.tokenReplay");
+        PROCESS_MINING_FUNCTIONS.put("CREATE_CASE_INDEX",
+                "org.h2.util.CaseIndex.createCaseIndex");
+        PROCESS_MINING_FUNCTIONS.put("DROP_CASE_INDEX",
+                "org.h2.util.CaseIndex.dropCaseIndex");
+        PROCESS_MINING_FUNCTIONS.put("CASE_FILTER",
+                "org.h2.util.CaseIndex.caseFilter");
+        PROCESS_MINING_FUNCTIONS.put("CASE_EVENTS",
+                "org.h2.util.CaseIndex.caseEvents");
+        PROCESS_MINING_FUNCTIONS.put("CASE_ATTRIBUTES",
+                "org.h2.util.CaseIndex.caseAttributes");
+        PROCESS_MINING_FUNCTIONS.put("VARIANT_SAMPLE",
+                "org.h2.util.CaseSample.variantSample");
+        PROCESS_MINING_FUNCTIONS.put("DFG_SKETCH",
+                "org.h2.util.DfgSketch.dfgSketch");
+        PROCESS_MINING_FUNCTIONS.put("DFG_SKETCH_MERGE",
+                "org.h2.util.DfgSketch.dfgSketchMerge");
+        PROCESS_MINING_FUNCTIONS.put("DFG_SKETCH_ESTIMATE",
+                "org.h2.util.DfgSketch.dfgSketchEstimate");
+        PROCESS_MINING_FUNCTIONS.put("APPROXIMATE_DFG",
+                "org.h2.util.DfgSketch.approximateDfg");
+        PROCESS_MINING_FUNCTIONS.put("CREATE_ONLINE_DFG",
+                "org.h2.util.OnlineDfg.createOnlineDfg");
+        PROCESS_MINING_FUNCTIONS.put("DROP_ONLINE_DFG",
+                "org.h2.util.OnlineDfg.dropOnlineDfg");
+        PROCESS_MINING_FUNCTIONS.put("ONLINE_DFG",
+                "org.h2.util.OnlineDfg.onlineDfg");
+        PROCESS_MINING_FUNCTIONS.put("OC_FOLLOWS",
+                "org.h2.util.ObjectCentricFollows.objectCentricFollows");
+        PROCESS_MINING_FUNCTIONS.put("INTERVAL_FOLLOWS",
+                "org.h2.util.IntervalFollows.intervalFollows");
+        PROCESS_MINING_FUNCTIONS.put("CASE_STATS",
+                "org.h2.util.CaseStats.caseStats");
+        PROCESS_MINING_FUNCTIONS.put("ACTIVITY_STATS",
+                "org.h2.util.CaseStats.activityStats");
+        PROCESS_MINING_FUNCTIONS.put("CONCURRENCY_PROFILE",
+                "org.h2.util.ConcurrencyProfile.concurrencyProfile");
+        PROCESS_MINING_FUNCTIONS.put("DFG_DIFF",
+                "org.h2.util.DfgDiff.dfgDiff");
+        PROCESS_MINING_FUNCTIONS.put("TRACE_LENGTH",
+                "org.h2.util.TraceFunctions.traceLength");
+        PROCESS_MINING_FUNCTIONS.put("TRACE_CONTAINS",
+                "org.h2.util.TraceFunctions.traceContains");
+        PROCESS_MINING_FUNCTIONS.put("TRACE_PREFIX",
+                "org.h2.util.TraceFunctions.tracePrefix");
+        PROCESS_MINING_FUNCTIONS.put("TRACE_SUBSEQUENCE",
+                "org.h2.util.TraceFunctions.traceSubsequence");
+        PROCESS_MINING_FUNCTIONS.put("MATCH_RECOGNIZE",
+                "org.h2.util.MatchRecognize.matchRecognize");
+        PROCESS_MINING_FUNCTIONS.put("CREATE_CASE_VARIANTS",
+                "org.h2.util.CaseVariants.createCaseVariants");
+        PROCESS_MINING_FUNCTIONS.put("DROP_CASE_VARIANTS",
+                "org.h2.util.CaseVariants.dropCaseVariants");
+        PROCESS_MINING_FUNCTIONS.put("ALIGNMENTS",
+                "org.h2.util.Alignments.alignments");
+        PROCESS_MINING_FUNCTIONS.put("INDUCTIVE_MINER",
+                "org.h2.util.InductiveMiner.inductiveMiner");
+        PROCESS_MINING_FUNCTIONS.put("EXPORT_EVENTLOG",
+                "org.h2.util.EventLogFile.exportEventLog");
+        PROCESS_MINING_FUNCTIONS.put("IMPORT_EVENTLOG",
+                "org.h2.util.EventLogFile.importEventLog");
+    }
     public static final String WITH_STATEMENT_SUPPORTS_LIMITED_STATEMENTS =
             "WITH statement supports only SELECT, CREATE TABLE, INSERT, UPDATE, MERGE or DELETE statements";
 
@@ -2438,7 +2519,6 @@ public class Parser {
         if (currentSelect == null) {
             throw getSyntaxError();
         }
-        currentSelect.setGroupQuery();
         Expression r;
         if (aggregateType == Aggregate.COUNT) {
             if (readIf("*")) {
@@ -2483,6 +2563,14 @@ public class Parser {
                 }
             }
             r = agg;
+        } else if (aggregateType == Aggregate.FOLLOWS_AGG) {
+            Aggregate agg = new Aggregate(Aggregate.FOLLOWS_AGG,
+                    readExpression(), currentSelect, false);
+            if (readIf("ORDER")) {
+                read("BY");
+                agg.setGroupConcatOrder(parseSimpleOrderList());
+            }
+            r = agg;
         } else {
             boolean distinct = readIf("DISTINCT");
             r = new Aggregate(aggregateType, readExpression(), currentSelect,
@@ -2515,11 +2603,13 @@ public class Parser {
         } else {
             functionAlias = findFunctionAlias(session.getCurrentSchemaName(),functionName);
         }
-        if ((functionAlias == null) && functionName.equalsIgnoreCase("FOLLOWS")){
+        String processMiningMethod = PROCESS_MINING_FUNCTIONS.get(
+                StringUtils.toUpperEnglish(functionName));
+        if ((functionAlias == null) && (processMiningMethod != null)){
         	Database db = session.getDatabase();
         	Schema schemaForFunction = (schema != null)?getSchema():database.getSchema(session.getCurrentSchemaName());
             functionAlias = FunctionAlias.newInstance(schemaForFunction, db.allocateObjectId(),
-                    "FOLLOWS", "org.h2.util.WeaklyFollows.weaklyFollows", false, true);
+                    StringUtils.toUpperEnglish(functionName), processMiningMethod, false, true);
             functionAlias.setDeterministic(false);
             db.addSchemaObject(session, functionAlias);
         }
@@ -2546,10 +2636,16 @@ public class Parser {
         do {
             params.add(readExpression());
         } while (readIf(","));
+        ArrayList<SelectOrderBy> orderBy = null;
+        if (readIf("ORDER")) {
+            read("BY");
+            orderBy = parseSimpleOrderList();
+        }
         read(")");
         Expression[] list = new Expression[params.size()];
         params.toArray(list);
         JavaAggregate agg = new JavaAggregate(aggregate, list, currentSelect);
+        agg.setOrder(orderBy);
         currentSelect.setGroupQuery();
         return agg;
     }
@@ -2568,7 +2664,17 @@ public class Parser {
         }
         int agg = getAggregateType(name);
         if (agg >= 0) {
-            return readAggregate(agg, name);
+            Aggregate r = (Aggregate) readAggregate(agg, name);
+            if (readIf("OVER")) {
+                read("(");
+                return readWindow(new WindowFunction(r, currentSelect));
+            }
+            currentSelect.setGroupQuery();
+            return r;
+        }
+        int window = WindowFunction.getWindowFunctionType(name);
+        if (window >= 0) {
+            return readWindowFunction(window);
         }
         Function function = Function.getFunction(database, name);
         if (function == null) {
@@ -2719,7 +2825,10 @@ public class Parser {
             read(")");
             read("OVER");
             read("(");
-            read(")");
+            if (!readIf(")")) {
+                return readWindow(new WindowFunction(WindowFunction.ROW_NUMBER,
+                        new Expression[0], currentSelect));
+            }
             if (currentSelect == null && currentPrepared == null) {
                 throw getSyntaxError();
             }
@@ -2738,6 +2847,42 @@ public class Parser {
         return function;
     }
 
+    private WindowFunction readWindowFunction(int type) {
+        ArrayList<Expression> params = New.arrayList();
+        do {
+            params.add(readExpression());
+        } while (params.size() < 3 && readIf(","));
+        read(")");
+        read("OVER");
+        read("(");
+        Expression[] list = new Expression[params.size()];
+        params.toArray(list);
+        return readWindow(new WindowFunction(type, list, currentSelect));
+    }
+
+    private WindowFunction readWindow(WindowFunction function) {
+        if (currentSelect == null) {
+            throw getSyntaxError();
+        }
+        ArrayList<Expression> partitionBy = null;
+        if (readIf("PARTITION")) {
+            read("BY");
+            partitionBy = New.arrayList();
+            do {
+                partitionBy.add(readExpression());
+            } while (readIf(","));
+        }
+        ArrayList<SelectOrderBy> orderBy = null;
+        if (readIf("ORDER")) {
+            read("BY");
+            orderBy = parseSimpleOrderList();
+        }
+        read(")");
+        function.setWindow(partitionBy, orderBy);
+        currentSelect.addWindowFunction(function);
+        return function;
+    }
+
     private Expression readFunctionWithoutParameters(String name) {
         if (readIf("(")) {
             read(")");
@@ -5793,6 +5938,19 @@ public class Parser {
                 DropIndex command = new DropIndex(session, getSchema());
                 command.setIndexName(indexName);
                 return commandIfTableExists(schema, tableName, ifTableExists, command);
+            } else if (readIf("PARTITION")) {
+                read("FOR");
+                read("(");
+                Expression value = readExpression();
+                read(")");
+                Table table = tableIfTableExists(schema, tableName, ifTableExists);
+                if (table == null) {
+                    return new NoOperation(session);
+                }
+                AlterTableDropPartition command = new AlterTableDropPartition(session);
+                command.setTable(table);
+                command.setValue(value);
+                return command;
             } else if (readIf("PRIMARY")) {
                 read("KEY");
                 Table table = tableIfTableExists(schema, tableName, ifTableExists);
@@ -6406,6 +6564,24 @@ public class Parser {
         if (readIf("HIDDEN")) {
             command.setHidden(true);
         }
+        if (readIf("PARTITION")) {
+            read("BY");
+            read("RANGE");
+            read("(");
+            String columnName = readColumnIdentifier();
+            read(")");
+            read("INTERVAL");
+            String interval;
+            if (readIf("DAY")) {
+                interval = "DAY";
+            } else if (readIf("MONTH")) {
+                interval = "MONTH";
+            } else {
+                read("YEAR");
+                interval = "YEAR";
+            }
+            command.setPartition(columnName, interval);
+        }
         if (readIf("AS")) {
             if (readIf("SORTED")) {
                 command.setSortedInsertMode(true);
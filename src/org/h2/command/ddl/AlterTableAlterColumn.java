@@ -24,6 +24,7 @@ import org.h2.expression.ExpressionVisitor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
+import org.h2.mvstore.db.MVTable;
 import org.h2.result.ResultInterface;
 import org.h2.schema.Schema;
 import org.h2.schema.SchemaObject;
@@ -366,6 +367,12 @@ public class AlterTableAlterColumn extends SchemaCommand {
         data.persistData = table.isPersistData();
         data.persistIndexes = table.isPersistIndexes();
         data.isHidden = table.isHidden();
+        if (table.isMVStore() && ((MVTable) table).isPartitioned()) {
+            MVTable mvTable = (MVTable) table;
+            data.partitionColumn = mvTable.getColumn(
+                    mvTable.getPartitionColumn()).getName();
+            data.partitionInterval = mvTable.getPartitionInterval();
+        }
         data.create = true;
         data.session = session;
         Table newTable = getSchema().createTable(data);
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.ddl;
+
+import org.h2.api.ErrorCode;
+import org.h2.command.CommandInterface;
+import org.h2.engine.Right;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.message.DbException;
+import org.h2.mvstore.db.MVTable;
+import org.h2.table.Table;
+
+/**
+ * This class represents the statement
+ * ALTER TABLE DROP PARTITION FOR
+ */
+public class AlterTableDropPartition extends DefineCommand {
+
+    private Table table;
+    private Expression value;
+
+    public AlterTableDropPartition(Session session) {
+        super(session);
+    }
+
+    public void setTable(Table table) {
+        this.table = table;
+    }
+
+    public void setValue(Expression value) {
+        this.value = value;
+    }
+
+    @Override
+    public int update() {
+        session.commit(true);
+        if (!table.isMVStore() || !((MVTable) table).isPartitioned()) {
+            throw DbException.getUnsupportedException(
+                    "DROP PARTITION " + table.getSQL());
+        }
+        if (!table.canTruncate()) {
+            throw DbException.get(ErrorCode.CANNOT_TRUNCATE_1, table.getSQL());
+        }
+        session.getUser().checkRight(table, Right.DELETE);
+        table.lock(session, true, true);
+        return ((MVTable) table).dropPartition(session,
+                value.optimize(session).getValue(session));
+    }
+
+    @Override
+    public int getType() {
+        return CommandInterface.ALTER_TABLE_DROP_PARTITION;
+    }
+
+}
@@ -339,6 +339,17 @@ public class CreateTable extends SchemaCommand {
         data.isHidden = isHidden;
     }
 
+    /**
+     * Partition the table by range of a date or timestamp column.
+     *
+     * @param columnName the column name
+     * @param interval the interval of a partition: DAY, MONTH or YEAR
+     */
+    public void setPartition(String columnName, String interval) {
+        data.partitionColumn = columnName;
+        data.partitionInterval = interval;
+    }
+
     @Override
     public int getType() {
         return CommandInterface.CREATE_TABLE;
@@ -80,4 +80,15 @@ public class CreateTableData {
      * The table is hidden.
      */
     public boolean isHidden;
+
+    /**
+     * The name of the column to partition the table by, or null if the table
+     * is not partitioned.
+     */
+    public String partitionColumn;
+
+    /**
+     * The interval of a partition: DAY, MONTH or YEAR.
+     */
+    public String partitionInterval;
 }
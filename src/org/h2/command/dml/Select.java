@@ -7,6 +7,7 @@ package org.h2.command.dml;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import org.h2.api.ErrorCode;
@@ -22,6 +23,7 @@ import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.Parameter;
+import org.h2.expression.WindowFunction;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
 import org.h2.index.IndexType;
@@ -84,6 +86,9 @@ public class Select extends Query {
     private boolean sortUsingIndex;
     private SortOrder sort;
     private int currentGroupRowId;
+    private ArrayList<WindowFunction> windowFunctions;
+    private HashMap<Expression, Value[]> currentWindow;
+    private int currentWindowRowId;
 
     public Select(Session session) {
         super(session);
@@ -145,6 +150,32 @@ public class Select extends Query {
         return currentGroupRowId;
     }
 
+    /**
+     * Called if this query contains a window function.
+     *
+     * @param function the window function
+     */
+    public void addWindowFunction(WindowFunction function) {
+        if (windowFunctions == null) {
+            windowFunctions = New.arrayList();
+        }
+        windowFunctions.add(function);
+    }
+
+    /**
+     * Get the values of the window functions for all rows of the query, while
+     * the select list is evaluated.
+     *
+     * @return the values by window function, or null
+     */
+    public HashMap<Expression, Value[]> getCurrentWindow() {
+        return currentWindow;
+    }
+
+    public int getCurrentWindowRowId() {
+        return currentWindowRowId;
+    }
+
     @Override
     public void setOrder(ArrayList<SelectOrderBy> order) {
         orderList = order;
@@ -532,6 +563,130 @@ public class Select extends Query {
         return null;
     }
 
+    /**
+     * Query with window functions. The rows are collected first, together
+     * with the keys of each window and the arguments of each window function.
+     * The rows are sorted once for each distinct window, after which the
+     * window functions with that window are computed by streaming over the
+     * partitions of the sorted rows. The select list is then evaluated for
+     * each row in the original order, with the current rows of the tables
+     * restored.
+     */
+    private void queryWindow(int columnCount, ResultTarget result,
+            long limitRows) {
+        if (limitRows > 0 && offsetExpr != null) {
+            int offset = offsetExpr.getValue(session).getInt();
+            if (offset > 0) {
+                limitRows += offset;
+            }
+        }
+        int functionCount = windowFunctions.size();
+        ArrayList<String> windows = New.arrayList();
+        int[] windowIndex = new int[functionCount];
+        for (int i = 0; i < functionCount; i++) {
+            String sql = windowFunctions.get(i).getWindowSQL();
+            int w = windows.indexOf(sql);
+            if (w < 0) {
+                w = windows.size();
+                windows.add(sql);
+            }
+            windowIndex[i] = w;
+        }
+        WindowFunction[] first = new WindowFunction[windows.size()];
+        for (int i = functionCount - 1; i >= 0; i--) {
+            first[windowIndex[i]] = windowFunctions.get(i);
+        }
+        ArrayList<ArrayList<Value[]>> keys = New.arrayList();
+        for (int w = 0; w < first.length; w++) {
+            keys.add(New.<Value[]>arrayList());
+        }
+        ArrayList<ArrayList<Value[]>> arguments = New.arrayList();
+        for (int i = 0; i < functionCount; i++) {
+            arguments.add(New.<Value[]>arrayList());
+        }
+        int filterCount = filters.size();
+        ArrayList<Row[]> rows = New.arrayList();
+        int rowNumber = 0;
+        setCurrentRowNumber(0);
+        int sampleSize = getSampleSizeValue(session);
+        while (topTableFilter.next()) {
+            setCurrentRowNumber(rowNumber + 1);
+            if (isConditionMet()) {
+                rowNumber++;
+                Row[] current = new Row[filterCount];
+                for (int i = 0; i < filterCount; i++) {
+                    current[i] = filters.get(i).get();
+                }
+                rows.add(current);
+                for (int w = 0; w < first.length; w++) {
+                    keys.get(w).add(first[w].getKeys(session));
+                }
+                for (int i = 0; i < functionCount; i++) {
+                    arguments.get(i).add(
+                            windowFunctions.get(i).getArguments(session));
+                }
+                if (sampleSize > 0 && rowNumber >= sampleSize) {
+                    break;
+                }
+            }
+        }
+        HashMap<Expression, Value[]> window = new HashMap<Expression, Value[]>();
+        for (int w = 0; w < first.length; w++) {
+            int[] sorted = sortWindow(keys.get(w), first[w].getSortOrder());
+            for (int i = 0; i < functionCount; i++) {
+                if (windowIndex[i] == w) {
+                    WindowFunction f = windowFunctions.get(i);
+                    window.put(f, f.getValues(session, keys.get(w),
+                            arguments.get(i), sorted));
+                }
+            }
+        }
+        currentWindow = window;
+        try {
+            for (int r = 0; r < rows.size(); r++) {
+                Row[] current = rows.get(r);
+                for (int i = 0; i < filterCount; i++) {
+                    filters.get(i).set(current[i]);
+                }
+                currentWindowRowId = r;
+                Value[] row = new Value[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = expressionArray[i].getValue(session);
+                }
+                result.addRow(row);
+                if ((sort == null || sortUsingIndex) && limitRows > 0 &&
+                        result.getRowCount() >= limitRows) {
+                    break;
+                }
+            }
+        } finally {
+            currentWindow = null;
+        }
+    }
+
+    /**
+     * Sort the row indexes by the keys of a window. The sort is stable, so
+     * rows with the same keys keep the order in which they were read.
+     */
+    private static int[] sortWindow(final ArrayList<Value[]> keys,
+            final SortOrder order) {
+        Integer[] index = new Integer[keys.size()];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = i;
+        }
+        Arrays.sort(index, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return order.compare(keys.get(a), keys.get(b));
+            }
+        });
+        int[] sorted = new int[index.length];
+        for (int i = 0; i < index.length; i++) {
+            sorted[i] = index[i];
+        }
+        return sorted;
+    }
+
     private void queryQuick(int columnCount, ResultTarget result) {
         Value[] row = new Value[columnCount];
         for (int i = 0; i < columnCount; i++) {
@@ -563,7 +718,8 @@ public class Select extends Query {
         }
         boolean lazy = session.isLazyQueryExecution() &&
                 target == null && !isForUpdate && !isQuickAggregateQuery &&
-                limitRows != 0 && offsetExpr == null && isReadOnly();
+                limitRows != 0 && offsetExpr == null && isReadOnly() &&
+                windowFunctions == null;
         int columnCount = expressions.size();
         LocalResult result = null;
         if (!lazy && (target == null ||
@@ -619,6 +775,8 @@ public class Select extends Query {
                     } else {
                         queryGroup(columnCount, result);
                     }
+                } else if (windowFunctions != null) {
+                    queryWindow(columnCount, to, limitRows);
                 } else if (isDistinctQuery) {
                     queryDistinct(to, limitRows);
                 } else {
@@ -732,6 +890,10 @@ public class Select extends Query {
         if (SysProperties.CHECK && checkInit) {
             DbException.throwInternalError();
         }
+        if (windowFunctions != null && isGroupQuery) {
+            throw DbException.getUnsupportedException(
+                    "window function in an aggregate query");
+        }
         expandColumnList();
         visibleColumnCount = expressions.size();
         ArrayList<String> expressionSQL;
@@ -1388,6 +1550,10 @@ public class Select extends Query {
 
     @Override
     public boolean allowGlobalConditions() {
+        if (windowFunctions != null) {
+            // a condition on the outer query would change the window
+            return false;
+        }
         if (offsetExpr == null && (limitExpr == null || sort == null)) {
             return true;
         }
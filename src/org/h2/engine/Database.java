@@ -61,9 +61,11 @@ import org.h2.table.TableView;
 import org.h2.tools.DeleteDbFiles;
 import org.h2.tools.Server;
 import org.h2.util.BitField;
+import org.h2.util.CaseIndex;
 import org.h2.util.JdbcUtils;
 import org.h2.util.MathUtils;
 import org.h2.util.NetUtils;
+import org.h2.util.OnlineDfg;
 import org.h2.util.New;
 import org.h2.util.SmallLRUCache;
 import org.h2.util.SourceCompiler;
@@ -112,6 +114,8 @@ public class Database implements DataHandler {
     private final HashMap<String, UserAggregate> aggregates = New.hashMap();
     private final HashMap<String, Comment> comments = New.hashMap();
     private final HashMap<String, TableEngine> tableEngines = New.hashMap();
+    private final HashMap<String, CaseIndex> caseIndexes = New.hashMap();
+    private final HashMap<String, OnlineDfg> onlineDfgs = New.hashMap();
 
     private final Set<Session> userSessions =
             Collections.synchronizedSet(new HashSet<Session>());
@@ -2914,4 +2918,24 @@ public class Database implements DataHandler {
         return engine;
     }
 
+    /**
+     * Get the in-memory case indexes of the process mining functions, by
+     * name. Access must be synchronized on the returned map.
+     *
+     * @return the case indexes
+     */
+    public HashMap<String, CaseIndex> getCaseIndexes() {
+        return caseIndexes;
+    }
+
+    /**
+     * Get the online directly follows graphs of the process mining
+     * functions, by name. Access must be synchronized on the returned map.
+     *
+     * @return the online directly follows graphs
+     */
+    public HashMap<String, OnlineDfg> getOnlineDfgs() {
+        return onlineDfgs;
+    }
+
 }
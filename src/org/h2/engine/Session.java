@@ -776,7 +776,13 @@ public class Session extends SessionWithState {
             Iterator<Change> it = transaction.getChanges(savepointId);
             while (it.hasNext()) {
                 Change c = it.next();
-                MVTable t = tableMap.get(c.mapName);
+                String mapName = c.mapName;
+                int dot = mapName.lastIndexOf('.');
+                if (dot > mapName.indexOf('.')) {
+                    // a partition of a partitioned table
+                    mapName = mapName.substring(0, dot);
+                }
+                MVTable t = tableMap.get(mapName);
                 if (t != null) {
                     long key = ((ValueLong) c.key).getLong();
                     ValueArray value = (ValueArray) c.value;
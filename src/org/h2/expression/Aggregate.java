@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import org.h2.api.ErrorCode;
 import org.h2.command.dml.Select;
 import org.h2.command.dml.SelectOrderBy;
@@ -125,6 +126,11 @@ public class Aggregate extends Expression {
      */
     static final int HISTOGRAM = 16;
 
+    /**
+     * The aggregate type for FOLLOWS_AGG(expression ORDER BY ...).
+     */
+    public static final int FOLLOWS_AGG = 17;
+
     private static final HashMap<String, Integer> AGGREGATES = New.hashMap();
 
     private final int type;
@@ -183,6 +189,7 @@ public class Aggregate extends Expression {
         addAggregate("HISTOGRAM", HISTOGRAM);
         addAggregate("BIT_OR", BIT_OR);
         addAggregate("BIT_AND", BIT_AND);
+        addAggregate("FOLLOWS_AGG", FOLLOWS_AGG);
     }
 
     private static void addAggregate(String name, int type) {
@@ -202,7 +209,7 @@ public class Aggregate extends Expression {
     }
 
     /**
-     * Set the order for GROUP_CONCAT() aggregate.
+     * Set the order for the GROUP_CONCAT() and FOLLOWS_AGG() aggregates.
      *
      * @param orderBy the order by list
      */
@@ -257,9 +264,11 @@ public class Aggregate extends Expression {
             group.put(this, data);
         }
         Value v = on == null ? null : on.getValue(session);
-        if (type == GROUP_CONCAT) {
+        if (type == GROUP_CONCAT || type == FOLLOWS_AGG) {
             if (v != ValueNull.INSTANCE) {
-                v = v.convertTo(Value.STRING);
+                if (type == GROUP_CONCAT) {
+                    v = v.convertTo(Value.STRING);
+                }
                 if (groupConcatOrderList != null) {
                     int size = groupConcatOrderList.size();
                     Value[] array = new Value[1 + size];
@@ -318,17 +327,7 @@ public class Aggregate extends Expression {
             if (list == null || list.size() == 0) {
                 return ValueNull.INSTANCE;
             }
-            if (groupConcatOrderList != null) {
-                final SortOrder sortOrder = groupConcatSort;
-                Collections.sort(list, new Comparator<Value>() {
-                    @Override
-                    public int compare(Value v1, Value v2) {
-                        Value[] a1 = ((ValueArray) v1).getList();
-                        Value[] a2 = ((ValueArray) v2).getList();
-                        return sortOrder.compare(a1, a2);
-                    }
-                });
-            }
+            sortGroupList(list);
             StatementBuilder buff = new StatementBuilder();
             String sep = groupConcatSeparator == null ?
                     "," : groupConcatSeparator.getValue(session).getString();
@@ -348,10 +347,94 @@ public class Aggregate extends Expression {
                 buff.append(s);
             }
             v = ValueString.get(buff.toString());
+        } else if (type == FOLLOWS_AGG) {
+            ArrayList<Value> list = ((AggregateDataGroupConcat) data).getList();
+            if (list == null || list.size() == 0) {
+                return ValueNull.INSTANCE;
+            }
+            sortGroupList(list);
+            v = getFollows(list);
         }
         return v;
     }
 
+    private void sortGroupList(ArrayList<Value> list) {
+        if (groupConcatOrderList != null) {
+            final SortOrder sortOrder = groupConcatSort;
+            Collections.sort(list, new Comparator<Value>() {
+                @Override
+                public int compare(Value v1, Value v2) {
+                    Value[] a1 = ((ValueArray) v1).getList();
+                    Value[] a2 = ((ValueArray) v2).getList();
+                    return sortOrder.compare(a1, a2);
+                }
+            });
+        }
+    }
+
+    /**
+     * Get the weakly follows relation of the sorted values of a group, as an
+     * array of distinct (preceding, succeeding) label pairs in the order in
+     * which they first occur. As in FOLLOWS, values with the same order keys
+     * form a batch, and each value of a batch follows each value of the
+     * preceding batch. Without an order, each value is its own batch.
+     *
+     * @param list the sorted values
+     * @return the label pairs
+     */
+    private Value getFollows(ArrayList<Value> list) {
+        ArrayList<Value> edges = New.arrayList();
+        HashSet<ValueArray> seen = New.hashSet();
+        int start = 0;
+        int previousStart = 0;
+        for (int i = 1; i <= list.size(); i++) {
+            if (i < list.size() && groupConcatOrderList != null &&
+                    groupConcatSort.compare(((ValueArray) list.get(i - 1)).getList(),
+                            ((ValueArray) list.get(i)).getList()) == 0) {
+                continue;
+            }
+            // list[start, i) is a batch that follows list[previousStart, start)
+            for (int a = previousStart; a < start; a++) {
+                for (int b = start; b < i; b++) {
+                    ValueArray edge = ValueArray.get(new Value[] {
+                            getLabel(list.get(a)), getLabel(list.get(b)) });
+                    if (seen.add(edge)) {
+                        edges.add(edge);
+                    }
+                }
+            }
+            previousStart = start;
+            start = i;
+        }
+        return ValueArray.get(edges.toArray(new Value[0]));
+    }
+
+    private Value getLabel(Value v) {
+        return groupConcatOrderList != null ? ((ValueArray) v).getList()[0] : v;
+    }
+
+    /**
+     * Get the aggregate type.
+     *
+     * @return the aggregate type, for example COUNT
+     */
+    int getAggregateType() {
+        return type;
+    }
+
+    /**
+     * Get the aggregated expression.
+     *
+     * @return the expression, or null for COUNT(*)
+     */
+    Expression getOn() {
+        return on;
+    }
+
+    boolean isDistinct() {
+        return distinct;
+    }
+
     @Override
     public int getType() {
         return dataType;
@@ -391,6 +474,11 @@ public class Aggregate extends Expression {
             groupConcatSeparator = groupConcatSeparator.optimize(session);
         }
         switch (type) {
+        case FOLLOWS_AGG:
+            dataType = Value.ARRAY;
+            scale = 0;
+            precision = displaySize = Integer.MAX_VALUE;
+            break;
         case GROUP_CONCAT:
             dataType = Value.STRING;
             scale = 0;
@@ -491,7 +579,8 @@ public class Aggregate extends Expression {
     }
 
     private String getSQLGroupConcat() {
-        StatementBuilder buff = new StatementBuilder("GROUP_CONCAT(");
+        StatementBuilder buff = new StatementBuilder(
+                type == FOLLOWS_AGG ? "FOLLOWS_AGG(" : "GROUP_CONCAT(");
         if (distinct) {
             buff.append("DISTINCT ");
         }
@@ -517,6 +606,7 @@ public class Aggregate extends Expression {
         String text;
         switch (type) {
         case GROUP_CONCAT:
+        case FOLLOWS_AGG:
             return getSQLGroupConcat();
         case COUNT_ALL:
             return "COUNT(*)";
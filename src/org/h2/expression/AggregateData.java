@@ -22,7 +22,8 @@ abstract class AggregateData {
     static AggregateData create(int aggregateType) {
         if (aggregateType == Aggregate.SELECTIVITY) {
             return new AggregateDataSelectivity();
-        } else if (aggregateType == Aggregate.GROUP_CONCAT) {
+        } else if (aggregateType == Aggregate.GROUP_CONCAT ||
+                aggregateType == Aggregate.FOLLOWS_AGG) {
             return new AggregateDataGroupConcat();
         } else if (aggregateType == Aggregate.COUNT_ALL) {
             return new AggregateDataCountAll();
@@ -110,6 +110,13 @@ public class Comparison extends Condition {
      */
     public static final int SPATIAL_INTERSECTS = 11;
 
+    /**
+     * This is a pseudo comparison type that is only used for index conditions.
+     * It means the case identifier is in the sample of the function
+     * CASE_SAMPLE. Example: CASE_SAMPLE(CASE_ID, 0.1).
+     */
+    public static final int CASE_SAMPLE = 12;
+
     private final Database database;
     private int compareType;
     private Expression left;
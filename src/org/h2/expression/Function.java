@@ -29,6 +29,7 @@ import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.engine.Mode;
 import org.h2.engine.Session;
+import org.h2.index.IndexCondition;
 import org.h2.message.DbException;
 import org.h2.mvstore.DataUtils;
 import org.h2.schema.Schema;
@@ -45,6 +46,7 @@ import org.h2.table.TableFilter;
 import org.h2.tools.CompressTool;
 import org.h2.tools.Csv;
 import org.h2.util.AutoCloseInputStream;
+import org.h2.util.CaseSample;
 import org.h2.util.DateTimeUtils;
 import org.h2.util.IOUtils;
 import org.h2.util.JdbcUtils;
@@ -129,6 +131,11 @@ public class Function extends Expression implements FunctionCall {
      */
     public static final int VALUES = 250;
 
+    /**
+     * Deterministic case-level sampling of an event log, see CaseSample.
+     */
+    public static final int CASE_SAMPLE = 260;
+
     /**
      * This is called H2VERSION() and not VERSION(), because we return a fake
      * value for VERSION() when running under the PostgreSQL ODBC driver.
@@ -308,6 +315,7 @@ public class Function extends Expression implements FunctionCall {
         addFunction("ORA_HASH", ORA_HASH, VAR_ARGS, Value.INT);
         addFunction("TRANSLATE", TRANSLATE, 3, Value.STRING);
         addFunction("REGEXP_LIKE", REGEXP_LIKE, VAR_ARGS, Value.BOOLEAN);
+        addFunction("CASE_SAMPLE", CASE_SAMPLE, VAR_ARGS, Value.BOOLEAN);
 
         // date
         addFunctionNotDeterministic("CURRENT_DATE", CURRENT_DATE,
@@ -1691,6 +1699,10 @@ public class Function extends Expression implements FunctionCall {
             }
             break;
         }
+        case CASE_SAMPLE:
+            result = ValueBoolean.get(CaseSample.isSampled(v0.getObject(),
+                    v1.getDouble(), v2 == null ? 0 : v2.getLong()));
+            break;
         case VALUES:
             result = session.getVariable(args[0].getSchemaName() + "." +
                     args[0].getTableName() + "." + args[0].getColumnName());
@@ -2265,6 +2277,7 @@ public class Function extends Expression implements FunctionCall {
             max = 4;
             break;
         case REGEXP_LIKE:
+        case CASE_SAMPLE:
             min = 2;
             max = 3;
             break;
@@ -2523,6 +2536,26 @@ public class Function extends Expression implements FunctionCall {
         return this;
     }
 
+    @Override
+    public void createIndexConditions(Session session, TableFilter filter) {
+        if (info.type != CASE_SAMPLE || !(args[0] instanceof ExpressionColumn)) {
+            return;
+        }
+        ExpressionColumn l = (ExpressionColumn) args[0];
+        if (filter != l.getTableFilter()) {
+            return;
+        }
+        ExpressionVisitor visitor = ExpressionVisitor.getNotFromResolverVisitor(filter);
+        ArrayList<Expression> list = New.arrayList();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].isEverything(visitor)) {
+                return;
+            }
+            list.add(args[i]);
+        }
+        filter.addIndexCondition(IndexCondition.getCaseSample(l, list));
+    }
+
     @Override
     public void setEvaluatable(TableFilter tableFilter, boolean b) {
         for (Expression e : args) {
@@ -7,14 +7,19 @@ package org.h2.expression;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import org.h2.api.Aggregate;
 import org.h2.api.ErrorCode;
 import org.h2.command.Parser;
 import org.h2.command.dml.Select;
+import org.h2.command.dml.SelectOrderBy;
 import org.h2.engine.Session;
 import org.h2.engine.UserAggregate;
 import org.h2.message.DbException;
+import org.h2.result.SortOrder;
 import org.h2.table.ColumnResolver;
 import org.h2.table.TableFilter;
 import org.h2.util.StatementBuilder;
@@ -34,6 +39,8 @@ public class JavaAggregate extends Expression {
     private int dataType;
     private Connection userConnection;
     private int lastGroupRowId;
+    private ArrayList<SelectOrderBy> orderList;
+    private SortOrder sort;
 
     public JavaAggregate(UserAggregate userAggregate, Expression[] args,
             Select select) {
@@ -42,12 +49,28 @@ public class JavaAggregate extends Expression {
         this.select = select;
     }
 
+    /**
+     * Set the order in which the values of a group are added to the
+     * aggregate, which makes it an ordered-set aggregate: the values of a
+     * group are collected and sorted before they are added.
+     *
+     * @param orderBy the order by list
+     */
+    public void setOrder(ArrayList<SelectOrderBy> orderBy) {
+        this.orderList = orderBy;
+    }
+
     @Override
     public int getCost() {
         int cost = 5;
         for (Expression e : args) {
             cost += e.getCost();
         }
+        if (orderList != null) {
+            for (SelectOrderBy o : orderList) {
+                cost += o.expression.getCost();
+            }
+        }
         return cost;
     }
 
@@ -74,6 +97,17 @@ public class JavaAggregate extends Expression {
             buff.appendExceptFirst(", ");
             buff.append(e.getSQL());
         }
+        if (orderList != null) {
+            buff.append(" ORDER BY ");
+            buff.resetCount();
+            for (SelectOrderBy o : orderList) {
+                buff.appendExceptFirst(", ");
+                buff.append(o.expression.getSQL());
+                if (o.descending) {
+                    buff.append(" DESC");
+                }
+            }
+        }
         return buff.append(')').toString();
     }
 
@@ -101,6 +135,13 @@ public class JavaAggregate extends Expression {
                 return false;
             }
         }
+        if (orderList != null) {
+            for (SelectOrderBy o : orderList) {
+                if (!o.expression.isEverything(visitor)) {
+                    return false;
+                }
+            }
+        }
         return true;
     }
 
@@ -109,6 +150,11 @@ public class JavaAggregate extends Expression {
         for (Expression arg : args) {
             arg.mapColumns(resolver, level);
         }
+        if (orderList != null) {
+            for (SelectOrderBy o : orderList) {
+                o.expression.mapColumns(resolver, level);
+            }
+        }
     }
 
     @Override
@@ -122,6 +168,18 @@ public class JavaAggregate extends Expression {
             int type = expr.getType();
             argTypes[i] = type;
         }
+        if (orderList != null) {
+            int size = orderList.size();
+            int[] index = new int[size];
+            int[] sortType = new int[size];
+            for (int i = 0; i < size; i++) {
+                SelectOrderBy o = orderList.get(i);
+                o.expression = o.expression.optimize(session);
+                index[i] = len + i;
+                sortType[i] = o.descending ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+            }
+            sort = new SortOrder(session.getDatabase(), index, sortType, null);
+        }
         try {
             Aggregate aggregate = getInstance();
             dataType = aggregate.getInternalType(argTypes);
@@ -136,6 +194,11 @@ public class JavaAggregate extends Expression {
         for (Expression e : args) {
             e.setEvaluatable(tableFilter, b);
         }
+        if (orderList != null) {
+            for (SelectOrderBy o : orderList) {
+                o.expression.setEvaluatable(tableFilter, b);
+            }
+        }
     }
 
     private Aggregate getInstance() throws SQLException {
@@ -151,9 +214,29 @@ public class JavaAggregate extends Expression {
             throw DbException.get(ErrorCode.INVALID_USE_OF_AGGREGATE_FUNCTION_1, getSQL());
         }
         try {
-            Aggregate agg = (Aggregate) group.get(this);
-            if (agg == null) {
+            Object data = group.get(this);
+            Aggregate agg;
+            if (data instanceof ArrayList) {
+                // the first time the value of an ordered group is requested:
+                // sort the collected rows and add them in that order
+                @SuppressWarnings("unchecked")
+                ArrayList<Value[]> rows = (ArrayList<Value[]>) data;
+                final SortOrder sortOrder = sort;
+                Collections.sort(rows, new Comparator<Value[]>() {
+                    @Override
+                    public int compare(Value[] r1, Value[] r2) {
+                        return sortOrder.compare(r1, r2);
+                    }
+                });
+                agg = getInstance();
+                for (Value[] row : rows) {
+                    add(agg, row);
+                }
+                group.put(this, agg);
+            } else if (data == null) {
                 agg = getInstance();
+            } else {
+                agg = (Aggregate) data;
             }
             Object obj = agg.getResult();
             if (obj == null) {
@@ -180,28 +263,46 @@ public class JavaAggregate extends Expression {
         }
         lastGroupRowId = groupRowId;
 
+        int len = args.length;
+        Value[] row = new Value[orderList == null ? len : len + orderList.size()];
+        for (int i = 0; i < len; i++) {
+            row[i] = args[i].getValue(session).convertTo(argTypes[i]);
+        }
+        if (orderList != null) {
+            for (int i = 0; i < orderList.size(); i++) {
+                row[len + i] = orderList.get(i).expression.getValue(session);
+            }
+            @SuppressWarnings("unchecked")
+            ArrayList<Value[]> rows = (ArrayList<Value[]>) group.get(this);
+            if (rows == null) {
+                rows = new ArrayList<Value[]>();
+                group.put(this, rows);
+            }
+            rows.add(row);
+            return;
+        }
         Aggregate agg = (Aggregate) group.get(this);
         try {
             if (agg == null) {
                 agg = getInstance();
                 group.put(this, agg);
             }
-            Object[] argValues = new Object[args.length];
-            Object arg = null;
-            for (int i = 0, len = args.length; i < len; i++) {
-                Value v = args[i].getValue(session);
-                v = v.convertTo(argTypes[i]);
-                arg = v.getObject();
-                argValues[i] = arg;
-            }
-            if (args.length == 1) {
-                agg.add(arg);
-            } else {
-                agg.add(argValues);
-            }
+            add(agg, row);
         } catch (SQLException e) {
             throw DbException.convert(e);
         }
     }
 
+    private void add(Aggregate agg, Value[] row) throws SQLException {
+        if (args.length == 1) {
+            agg.add(row[0].getObject());
+        } else {
+            Object[] argValues = new Object[args.length];
+            for (int i = 0; i < args.length; i++) {
+                argValues[i] = row[i].getObject();
+            }
+            agg.add(argValues);
+        }
+    }
+
 }
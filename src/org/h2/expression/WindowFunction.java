@@ -0,0 +1,517 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import org.h2.api.ErrorCode;
+import org.h2.command.dml.Select;
+import org.h2.command.dml.SelectOrderBy;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.SortOrder;
+import org.h2.table.ColumnResolver;
+import org.h2.table.TableFilter;
+import org.h2.util.New;
+import org.h2.util.StatementBuilder;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+
+/**
+ * A window function, that is ROW_NUMBER, LAG, LEAD or an aggregate function,
+ * followed by OVER (PARTITION BY ... ORDER BY ...). The select statement
+ * collects the rows of the query, sorts them once by the partition and order
+ * keys of the window, and then computes the values of all window functions
+ * with that window in one pass over each partition (see getValues).
+ * Aggregates are running aggregates: with ORDER BY, the value for a row is
+ * the aggregate over the rows of the partition up to and including its last
+ * peer, without ORDER BY it is the aggregate over the whole partition.
+ */
+public class WindowFunction extends Expression {
+
+    /**
+     * The window function type for ROW_NUMBER() OVER (...).
+     */
+    public static final int ROW_NUMBER = 0;
+
+    /**
+     * The window function type for LAG(expression [, offset [, default]])
+     * OVER (...).
+     */
+    public static final int LAG = 1;
+
+    /**
+     * The window function type for LEAD(expression [, offset [, default]])
+     * OVER (...).
+     */
+    public static final int LEAD = 2;
+
+    /**
+     * The window function type for an aggregate function followed by
+     * OVER (...).
+     */
+    public static final int AGGREGATE = 3;
+
+    private static final HashMap<String, Integer> FUNCTIONS = New.hashMap();
+
+    static {
+        FUNCTIONS.put("LAG", LAG);
+        FUNCTIONS.put("LEAD", LEAD);
+    }
+
+    private final int type;
+    private final Select select;
+    private final Expression[] args;
+    private final Aggregate aggregate;
+    private ArrayList<Expression> partitionBy;
+    private ArrayList<SelectOrderBy> orderBy;
+    private SortOrder sort;
+
+    /**
+     * Create a new window function.
+     *
+     * @param type the window function type, ROW_NUMBER, LAG or LEAD
+     * @param args the arguments
+     * @param select the select statement
+     */
+    public WindowFunction(int type, Expression[] args, Select select) {
+        this.type = type;
+        this.args = args;
+        this.select = select;
+        this.aggregate = null;
+    }
+
+    /**
+     * Create a new window function for an aggregate.
+     *
+     * @param aggregate the aggregate
+     * @param select the select statement
+     */
+    public WindowFunction(Aggregate aggregate, Select select) {
+        switch (aggregate.getAggregateType()) {
+        case Aggregate.GROUP_CONCAT:
+        case Aggregate.FOLLOWS_AGG:
+        case Aggregate.HISTOGRAM:
+            throw DbException.getUnsupportedException(
+                    aggregate.getSQL() + " OVER");
+        default:
+            if (aggregate.isDistinct()) {
+                throw DbException.getUnsupportedException(
+                        aggregate.getSQL() + " OVER");
+            }
+        }
+        this.type = AGGREGATE;
+        this.args = new Expression[0];
+        this.select = select;
+        this.aggregate = aggregate;
+    }
+
+    /**
+     * Get the window function type for this name, or -1 if the name is not
+     * the name of a window function that is not also a regular function.
+     *
+     * @param name the function name
+     * @return the window function type, or -1
+     */
+    public static int getWindowFunctionType(String name) {
+        Integer type = FUNCTIONS.get(name);
+        return type == null ? -1 : type.intValue();
+    }
+
+    /**
+     * Set the window of this function.
+     *
+     * @param partitionBy the PARTITION BY expressions, or null
+     * @param orderBy the ORDER BY list, or null
+     */
+    public void setWindow(ArrayList<Expression> partitionBy,
+            ArrayList<SelectOrderBy> orderBy) {
+        this.partitionBy = partitionBy;
+        this.orderBy = orderBy;
+    }
+
+    /**
+     * Get the SQL of the window of this function, which is the same for all
+     * window functions that can share one sort.
+     *
+     * @return the SQL of the window
+     */
+    public String getWindowSQL() {
+        StatementBuilder buff = new StatementBuilder("OVER (");
+        if (partitionBy != null) {
+            buff.append("PARTITION BY ");
+            for (Expression e : partitionBy) {
+                buff.appendExceptFirst(", ");
+                buff.append(e.getSQL());
+            }
+        }
+        if (orderBy != null) {
+            if (partitionBy != null) {
+                buff.append(' ');
+            }
+            buff.append("ORDER BY ");
+            buff.resetCount();
+            for (SelectOrderBy o : orderBy) {
+                buff.appendExceptFirst(", ");
+                buff.append(o.expression.getSQL());
+                if (o.descending) {
+                    buff.append(" DESC");
+                }
+            }
+        }
+        return buff.append(')').toString();
+    }
+
+    /**
+     * Get the sort order of the window keys (see getKeys).
+     *
+     * @return the sort order
+     */
+    public SortOrder getSortOrder() {
+        return sort;
+    }
+
+    /**
+     * Get the partition and order keys of the window for the current row.
+     *
+     * @param session the session
+     * @return the partition keys followed by the order keys
+     */
+    public Value[] getKeys(Session session) {
+        int partitionCount = partitionBy == null ? 0 : partitionBy.size();
+        int orderCount = orderBy == null ? 0 : orderBy.size();
+        Value[] keys = new Value[partitionCount + orderCount];
+        for (int i = 0; i < partitionCount; i++) {
+            keys[i] = partitionBy.get(i).getValue(session);
+        }
+        for (int i = 0; i < orderCount; i++) {
+            keys[partitionCount + i] = orderBy.get(i).expression
+                    .getValue(session);
+        }
+        return keys;
+    }
+
+    /**
+     * Get the arguments of this function for the current row: the value and
+     * the default of LAG and LEAD, or the aggregated value of an aggregate.
+     *
+     * @param session the session
+     * @return the arguments
+     */
+    public Value[] getArguments(Session session) {
+        switch (type) {
+        case LAG:
+        case LEAD:
+            return new Value[] { args[0].getValue(session),
+                    args.length > 2 ? args[2].getValue(session)
+                            : ValueNull.INSTANCE };
+        case AGGREGATE:
+            Expression on = aggregate.getOn();
+            return new Value[] { on == null ? ValueNull.INSTANCE
+                    : on.getValue(session) };
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Compute the values of this function for all rows. The rows must be
+     * sorted by the keys of the window, so each partition is processed in
+     * one pass.
+     *
+     * @param session the session
+     * @param keys the keys of the window of each row (see getKeys)
+     * @param arguments the arguments of each row (see getArguments)
+     * @param sorted the row indexes, sorted by the keys of the window
+     * @return the value of each row
+     */
+    public Value[] getValues(Session session, ArrayList<Value[]> keys,
+            ArrayList<Value[]> arguments, int[] sorted) {
+        Database db = session.getDatabase();
+        int size = sorted.length;
+        Value[] values = new Value[size];
+        int partitionCount = partitionBy == null ? 0 : partitionBy.size();
+        int keyCount = partitionCount + (orderBy == null ? 0 : orderBy.size());
+        int offset = args.length > 1 ? args[1].getValue(session).getInt() : 1;
+        if (type == LAG) {
+            offset = -offset;
+        }
+        int dataType = getType();
+        for (int start = 0, end; start < size; start = end) {
+            end = next(db, keys, sorted, start, size, partitionCount);
+            switch (type) {
+            case ROW_NUMBER:
+                for (int i = start; i < end; i++) {
+                    values[sorted[i]] = ValueLong.get(i - start + 1);
+                }
+                break;
+            case LAG:
+            case LEAD:
+                for (int i = start; i < end; i++) {
+                    int j = i + offset;
+                    Value v = j >= start && j < end ?
+                            arguments.get(sorted[j])[0] :
+                            arguments.get(sorted[i])[1];
+                    values[sorted[i]] = v.convertTo(dataType);
+                }
+                break;
+            default: {
+                AggregateData data = AggregateData.create(
+                        aggregate.getAggregateType());
+                for (int peers = start, peersEnd; peers < end;
+                        peers = peersEnd) {
+                    peersEnd = next(db, keys, sorted, peers, end, keyCount);
+                    for (int i = peers; i < peersEnd; i++) {
+                        data.add(db, dataType, false,
+                                arguments.get(sorted[i])[0]);
+                    }
+                    Value v = data.getValue(db, dataType, false);
+                    for (int i = peers; i < peersEnd; i++) {
+                        values[sorted[i]] = v;
+                    }
+                }
+            }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get the position of the first row after the given row that differs from
+     * it in the first keys.
+     */
+    private static int next(Database db, ArrayList<Value[]> keys,
+            int[] sorted, int from, int to, int keyCount) {
+        Value[] first = keys.get(sorted[from]);
+        int i = from + 1;
+        for (; i < to; i++) {
+            Value[] k = keys.get(sorted[i]);
+            for (int j = 0; j < keyCount; j++) {
+                if (db.compare(first[j], k[j]) != 0) {
+                    return i;
+                }
+            }
+        }
+        return i;
+    }
+
+    @Override
+    public Value getValue(Session session) {
+        HashMap<Expression, Value[]> window = select.getCurrentWindow();
+        if (window == null) {
+            throw DbException.get(
+                    ErrorCode.INVALID_USE_OF_AGGREGATE_FUNCTION_1, getSQL());
+        }
+        return window.get(this)[select.getCurrentWindowRowId()];
+    }
+
+    @Override
+    public int getType() {
+        switch (type) {
+        case ROW_NUMBER:
+            return Value.LONG;
+        case LAG:
+        case LEAD:
+            return args[0].getType();
+        default:
+            return aggregate.getType();
+        }
+    }
+
+    @Override
+    public void mapColumns(ColumnResolver resolver, int level) {
+        for (Expression e : args) {
+            e.mapColumns(resolver, level);
+        }
+        if (aggregate != null) {
+            aggregate.mapColumns(resolver, level);
+        }
+        if (partitionBy != null) {
+            for (Expression e : partitionBy) {
+                e.mapColumns(resolver, level);
+            }
+        }
+        if (orderBy != null) {
+            for (SelectOrderBy o : orderBy) {
+                o.expression.mapColumns(resolver, level);
+            }
+        }
+    }
+
+    @Override
+    public Expression optimize(Session session) {
+        for (int i = 0; i < args.length; i++) {
+            args[i] = args[i].optimize(session);
+        }
+        if (args.length > 1 && !args[1].isConstant()) {
+            throw DbException.getInvalidValueException("offset",
+                    args[1].getSQL());
+        }
+        if (aggregate != null) {
+            aggregate.optimize(session);
+        }
+        int partitionCount = 0;
+        if (partitionBy != null) {
+            partitionCount = partitionBy.size();
+            for (int i = 0; i < partitionCount; i++) {
+                partitionBy.set(i, partitionBy.get(i).optimize(session));
+            }
+        }
+        int orderCount = orderBy == null ? 0 : orderBy.size();
+        int[] index = new int[partitionCount + orderCount];
+        int[] sortType = new int[index.length];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = i;
+            if (i >= partitionCount) {
+                SelectOrderBy o = orderBy.get(i - partitionCount);
+                o.expression = o.expression.optimize(session);
+                sortType[i] = o.descending ? SortOrder.DESCENDING
+                        : SortOrder.ASCENDING;
+            }
+        }
+        sort = new SortOrder(session.getDatabase(), index, sortType, null);
+        return this;
+    }
+
+    @Override
+    public void setEvaluatable(TableFilter tableFilter, boolean b) {
+        for (Expression e : args) {
+            e.setEvaluatable(tableFilter, b);
+        }
+        if (aggregate != null) {
+            aggregate.setEvaluatable(tableFilter, b);
+        }
+        if (partitionBy != null) {
+            for (Expression e : partitionBy) {
+                e.setEvaluatable(tableFilter, b);
+            }
+        }
+        if (orderBy != null) {
+            for (SelectOrderBy o : orderBy) {
+                o.expression.setEvaluatable(tableFilter, b);
+            }
+        }
+    }
+
+    @Override
+    public int getScale() {
+        switch (type) {
+        case ROW_NUMBER:
+            return 0;
+        case LAG:
+        case LEAD:
+            return args[0].getScale();
+        default:
+            return aggregate.getScale();
+        }
+    }
+
+    @Override
+    public long getPrecision() {
+        switch (type) {
+        case ROW_NUMBER:
+            return ValueLong.PRECISION;
+        case LAG:
+        case LEAD:
+            return args[0].getPrecision();
+        default:
+            return aggregate.getPrecision();
+        }
+    }
+
+    @Override
+    public int getDisplaySize() {
+        switch (type) {
+        case ROW_NUMBER:
+            return ValueLong.DISPLAY_SIZE;
+        case LAG:
+        case LEAD:
+            return args[0].getDisplaySize();
+        default:
+            return aggregate.getDisplaySize();
+        }
+    }
+
+    @Override
+    public String getSQL() {
+        StatementBuilder buff = new StatementBuilder();
+        switch (type) {
+        case ROW_NUMBER:
+            buff.append("ROW_NUMBER()");
+            break;
+        case LAG:
+        case LEAD:
+            buff.append(type == LAG ? "LAG(" : "LEAD(");
+            for (Expression e : args) {
+                buff.appendExceptFirst(", ");
+                buff.append(e.getSQL());
+            }
+            buff.append(')');
+            break;
+        default:
+            buff.append(aggregate.getSQL());
+        }
+        return buff.append(' ').append(getWindowSQL()).toString();
+    }
+
+    @Override
+    public void updateAggregate(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public boolean isEverything(ExpressionVisitor visitor) {
+        switch (visitor.getType()) {
+        case ExpressionVisitor.QUERY_COMPARABLE:
+        case ExpressionVisitor.OPTIMIZABLE_MIN_MAX_COUNT_ALL:
+        case ExpressionVisitor.DETERMINISTIC:
+        case ExpressionVisitor.INDEPENDENT:
+            return false;
+        default:
+        }
+        for (Expression e : args) {
+            if (!e.isEverything(visitor)) {
+                return false;
+            }
+        }
+        if (aggregate != null) {
+            Expression on = aggregate.getOn();
+            if (on != null && !on.isEverything(visitor)) {
+                return false;
+            }
+        }
+        if (partitionBy != null) {
+            for (Expression e : partitionBy) {
+                if (!e.isEverything(visitor)) {
+                    return false;
+                }
+            }
+        }
+        if (orderBy != null) {
+            for (SelectOrderBy o : orderBy) {
+                if (!o.expression.isEverything(visitor)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getCost() {
+        int cost = 1;
+        for (Expression e : args) {
+            cost += e.getCost();
+        }
+        if (aggregate != null) {
+            cost += aggregate.getCost();
+        }
+        return cost;
+    }
+
+}
@@ -191,6 +191,11 @@ public abstract class BaseIndex extends SchemaObjectBase implements Index {
                 } else if ((mask & IndexCondition.END) == IndexCondition.END) {
                     rowsCost = rowCount / 3;
                     break;
+                } else if ((mask & IndexCondition.SAMPLE) == IndexCondition.SAMPLE &&
+                        i == 0 && !isScanIndex && canFindNext()) {
+                    // only the rows of the sampled cases are read
+                    rowsCost = 2 + rowCount / 4;
+                    break;
                 } else {
                     break;
                 }
@@ -65,6 +65,11 @@ public class IndexCondition {
      */
     public static final int SPATIAL_INTERSECTS = 16;
 
+    /**
+     * A bit of a search mask meaning 'in the case sample'.
+     */
+    public static final int SAMPLE = 32;
+
     private final Column column;
     /**
      * see constants in {@link Comparison}
@@ -131,6 +136,22 @@ public class IndexCondition {
         return cond;
     }
 
+    /**
+     * Create an index condition with the compare type CASE_SAMPLE and with the
+     * given parameters.
+     *
+     * @param column the case identifier column
+     * @param list the fraction, optionally followed by the seed
+     * @return the index condition
+     */
+    public static IndexCondition getCaseSample(ExpressionColumn column,
+            List<Expression> list) {
+        IndexCondition cond = new IndexCondition(Comparison.CASE_SAMPLE,
+                column, null);
+        cond.expressionList = list;
+        return cond;
+    }
+
     /**
      * Get the current value of the expression.
      *
@@ -187,6 +208,13 @@ public class IndexCondition {
             return "FALSE";
         }
         StatementBuilder buff = new StatementBuilder();
+        if (compareType == Comparison.CASE_SAMPLE) {
+            buff.append("CASE_SAMPLE(").append(column.getSQL());
+            for (Expression e : expressionList) {
+                buff.append(", ").append(e.getSQL());
+            }
+            return buff.append(')').toString();
+        }
         buff.append(column.getSQL());
         switch (compareType) {
         case Comparison.EQUAL:
@@ -269,6 +297,13 @@ public class IndexCondition {
             return END;
         case Comparison.SPATIAL_INTERSECTS:
             return SPATIAL_INTERSECTS;
+        case Comparison.CASE_SAMPLE:
+            if (TableType.TABLE != column.getTable().getTableType()) {
+                // the sample is read from the distinct values of an index,
+                // which is only possible for regular tables
+                return 0;
+            }
+            return SAMPLE;
         default:
             throw DbException.throwInternalError("type=" + compareType);
         }
@@ -427,6 +462,10 @@ public class IndexCondition {
             s.appendExceptFirst("&");
             s.append("SPATIAL_INTERSECTS");
         }
+        if ((i & SAMPLE) == SAMPLE) {
+            s.appendExceptFirst("&");
+            s.append("SAMPLE");
+        }
         return s.toString();
     }
 
@@ -7,8 +7,10 @@ package org.h2.index;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import org.h2.engine.Session;
 import org.h2.expression.Comparison;
+import org.h2.expression.Expression;
 import org.h2.message.DbException;
 import org.h2.result.ResultInterface;
 import org.h2.result.Row;
@@ -18,13 +20,14 @@ import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
 import org.h2.table.TableFilter;
+import org.h2.util.CaseSample;
 import org.h2.value.Value;
 import org.h2.value.ValueGeometry;
 import org.h2.value.ValueNull;
 
 /**
- * The filter used to walk through an index. This class supports IN(..)
- * and IN(SELECT ...) optimizations.
+ * The filter used to walk through an index. This class supports IN(..),
+ * IN(SELECT ...) and CASE_SAMPLE(..) optimizations.
  *
  * @author Thomas Mueller
  * @author Noel Grandin
@@ -46,6 +49,10 @@ public class IndexCursor implements Cursor {
     private Value[] inList;
     private ResultInterface inResult;
     private HashSet<Value> inResultTested;
+    private boolean sample;
+    private double sampleFraction;
+    private long sampleSeed;
+    private SearchRow sampleLast;
 
     public IndexCursor(TableFilter filter) {
         this.tableFilter = filter;
@@ -81,6 +88,8 @@ public class IndexCursor implements Cursor {
         inColumn = null;
         inResult = null;
         inResultTested = null;
+        sample = false;
+        sampleLast = null;
         intersects = null;
         // don't use enhanced for loop to avoid creating objects
         for (int i = 0, size = indexConditions.size(); i < size; i++) {
@@ -105,6 +114,18 @@ public class IndexCursor implements Cursor {
                         inResult = condition.getCurrentResult();
                     }
                 }
+            } else if (condition.getCompareType() == Comparison.CASE_SAMPLE) {
+                if (start == null && end == null) {
+                    // the distinct case identifiers are read from the index,
+                    // so only the rows of the sampled cases are read
+                    if (index.canFindNext() && canUseIndexForIn(column)) {
+                        this.inColumn = column;
+                        List<Expression> list = condition.getExpressionList();
+                        sample = true;
+                        sampleFraction = list.get(0).getValue(s).getDouble();
+                        sampleSeed = list.size() > 1 ? list.get(1).getValue(s).getLong() : 0;
+                    }
+                }
             } else {
                 Value v = condition.getCurrentValue(s);
                 boolean isStart = condition.isStart();
@@ -137,6 +158,7 @@ public class IndexCursor implements Cursor {
                     inColumn = null;
                     inList = null;
                     inResult = null;
+                    sample = false;
                 }
                 if (!session.getDatabase().getSettings().optimizeIsNull) {
                     if (isStart && isEnd) {
@@ -332,6 +354,25 @@ public class IndexCursor implements Cursor {
                     }
                 }
             }
+        } else if (sample) {
+            int id = inColumn.getColumnId();
+            while (true) {
+                // skip to the next distinct case identifier
+                Cursor c = index.findNext(session, sampleLast, null);
+                if (!c.next()) {
+                    break;
+                }
+                Value v = c.getSearchRow().getValue(id);
+                if (sampleLast == null) {
+                    sampleLast = table.getTemplateSimpleRow(true);
+                }
+                sampleLast.setValue(id, v);
+                if (v != ValueNull.INSTANCE &&
+                        CaseSample.isSampled(v.getObject(), sampleFraction, sampleSeed)) {
+                    find(v);
+                    break;
+                }
+            }
         }
     }
 
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.util.HashSet;
+import java.util.List;
+import org.h2.engine.Session;
+import org.h2.index.BaseIndex;
+import org.h2.index.Cursor;
+import org.h2.index.IndexType;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+
+/**
+ * An index on the partition column of a partitioned table. It only reads the
+ * partitions that overlap the range of the condition, and skips the rows of
+ * these partitions that are outside the range. The rows are returned in the
+ * order of the row keys, not in the order of the column.
+ */
+public class MVPartitionIndex extends BaseIndex implements MVIndex {
+
+    private final MVPrimaryIndex mainIndex;
+    private final int columnId;
+
+    public MVPartitionIndex(MVTable table, MVPrimaryIndex mainIndex) {
+        columnId = table.getPartitionColumn();
+        IndexColumn[] cols = IndexColumn.wrap(new Column[] { table
+                .getColumn(columnId) });
+        this.initBaseIndex(table, table.getId(), table.getName() + "_PARTITIONS",
+                cols, IndexType.createScan(false));
+        this.mainIndex = mainIndex;
+    }
+
+    @Override
+    public String getCreateSQL() {
+        return null;
+    }
+
+    @Override
+    public String getPlanSQL() {
+        return table.getSQL() + ".partitionScan";
+    }
+
+    @Override
+    public void addRowsToBuffer(List<Row> rows, String bufferName) {
+        throw DbException.throwInternalError();
+    }
+
+    @Override
+    public void addBufferedRows(List<String> bufferNames) {
+        throw DbException.throwInternalError();
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        // nothing to do
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        int firstPartition = getPartition(first, 0);
+        int lastPartition = getPartition(last, Integer.MAX_VALUE);
+        Cursor cursor = mainIndex.findPartitions(session, firstPartition,
+                lastPartition);
+        return new MVPartitionCursor(cursor, first, last);
+    }
+
+    private int getPartition(SearchRow row, int ifEmpty) {
+        Value v = row == null ? null : row.getValue(columnId);
+        return v == null ? ifEmpty : mainIndex.getPartition(v);
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("PARTITION");
+    }
+
+    @Override
+    public boolean isFirstColumn(Column column) {
+        // the rows are not sorted by the column
+        return false;
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            HashSet<Column> allColumnsSet) {
+        long rowCount = mainIndex.getRowCountApproximation();
+        // at least one partition is read completely
+        long partitionRows = rowCount / mainIndex.getPartitionCount();
+        return 10 * Math.max(getCostRangeIndex(masks, rowCount,
+                filters, filter, sortOrder, true, allColumnsSet),
+                getCostRangeIndex(null, partitionRows,
+                filters, filter, sortOrder, true, allColumnsSet));
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        // nothing to do
+    }
+
+    @Override
+    public void remove(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public void truncate(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public void checkRename() {
+        // ok
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        return mainIndex.getRowCount(session);
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return mainIndex.getRowCountApproximation();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+    /**
+     * A cursor over the rows of the partitions that skips the rows outside
+     * the range.
+     */
+    private class MVPartitionCursor implements Cursor {
+
+        private final Cursor cursor;
+        private final SearchRow first;
+        private final SearchRow last;
+
+        MVPartitionCursor(Cursor cursor, SearchRow first, SearchRow last) {
+            this.cursor = cursor;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        public Row get() {
+            return cursor.get();
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return cursor.getSearchRow();
+        }
+
+        @Override
+        public boolean next() {
+            while (cursor.next()) {
+                Row row = cursor.get();
+                if ((first == null || compareRows(row, first) >= 0) &&
+                        (last == null || compareRows(row, last) <= 0)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.getUnsupportedException("previous");
+        }
+
+    }
+
+}
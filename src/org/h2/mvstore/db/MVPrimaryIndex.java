@@ -5,12 +5,14 @@
  */
 package org.h2.mvstore.db;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 import org.h2.api.ErrorCode;
 import org.h2.engine.Database;
@@ -28,10 +30,13 @@ import org.h2.result.SortOrder;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.TableFilter;
+import org.h2.util.DateTimeUtils;
+import org.h2.util.New;
 import org.h2.value.Value;
 import org.h2.value.ValueArray;
 import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
+import org.h2.value.ValueTimestamp;
 
 /**
  * A table stored in a MVStore.
@@ -48,12 +53,42 @@ public class MVPrimaryIndex extends BaseIndex {
      */
     static final ValueLong MAX = ValueLong.get(Long.MAX_VALUE);
 
+    /**
+     * The number of low bits of the row key of a partitioned table that
+     * number the rows within a partition. The high bits are the partition.
+     */
+    static final int PARTITION_SHIFT = 40;
+
+    /**
+     * The partition of the period that starts at 1970-01-01.
+     */
+    private static final int PARTITION_OFFSET = 1 << 22;
+
     private final MVTable mvTable;
     private final String mapName;
+    private final ValueDataType keyType;
+    private final ValueDataType valueType;
     private TransactionMap<Value, Value> dataMap;
     private final AtomicLong lastKey = new AtomicLong(0);
     private int mainIndexColumn = -1;
 
+    /**
+     * The column the table is partitioned by, or -1.
+     */
+    private final int partitionColumn;
+
+    /**
+     * The number of months of a partition, or 0 if a partition is one day.
+     */
+    private final int partitionMonths;
+
+    /**
+     * The partitions by number, except partition 0 (the rows where the
+     * partition column is NULL) which is kept in the data map.
+     */
+    private final ConcurrentSkipListMap<Integer, Partition> partitions =
+            new ConcurrentSkipListMap<Integer, Partition>();
+
     public MVPrimaryIndex(Database db, MVTable table, int id,
             IndexColumn[] columns, IndexType indexType) {
         this.mvTable = table;
@@ -62,8 +97,8 @@ public class MVPrimaryIndex extends BaseIndex {
         for (int i = 0; i < columns.length; i++) {
             sortTypes[i] = SortOrder.ASCENDING;
         }
-        ValueDataType keyType = new ValueDataType(null, null, null);
-        ValueDataType valueType = new ValueDataType(db.getCompareMode(), db,
+        keyType = new ValueDataType(null, null, null);
+        valueType = new ValueDataType(db.getCompareMode(), db,
                 sortTypes);
         mapName = "table." + getId();
         Transaction t = mvTable.getTransaction(null);
@@ -74,6 +109,87 @@ public class MVPrimaryIndex extends BaseIndex {
         }
         Value k = dataMap.lastKey();
         lastKey.set(k == null ? 0 : k.getLong());
+        partitionColumn = table.getPartitionColumn();
+        String interval = table.getPartitionInterval();
+        partitionMonths = "YEAR".equals(interval) ? 12 :
+                "MONTH".equals(interval) ? 1 : 0;
+        if (partitionColumn >= 0) {
+            String prefix = mapName + ".";
+            for (String name : t.store.store.getMapNames()) {
+                if (name.startsWith(prefix)) {
+                    openPartition(Integer.parseInt(name.substring(prefix.length())));
+                }
+            }
+        }
+    }
+
+    private Partition openPartition(int partition) {
+        Partition p = partitions.get(partition);
+        if (p != null) {
+            return p;
+        }
+        synchronized (partitions) {
+            p = partitions.get(partition);
+            if (p == null) {
+                Transaction t = mvTable.getTransaction(null);
+                TransactionMap<Value, Value> map = t.openMap(
+                        mapName + "." + partition, keyType, valueType);
+                t.commit();
+                if (!mvTable.isPersistData()) {
+                    map.map.setVolatile(true);
+                }
+                Value k = map.lastKey();
+                p = new Partition(map, k == null ?
+                        (long) partition << PARTITION_SHIFT : k.getLong());
+                partitions.put(partition, p);
+            }
+            return p;
+        }
+    }
+
+    /**
+     * Get the partition of a value of the partition column.
+     *
+     * @param v the value
+     * @return the partition, 0 for NULL
+     */
+    int getPartition(Value v) {
+        if (v == ValueNull.INSTANCE) {
+            return 0;
+        }
+        long dateValue = ((ValueTimestamp) v.convertTo(Value.TIMESTAMP))
+                .getDateValue();
+        long period;
+        if (partitionMonths == 0) {
+            period = DateTimeUtils.absoluteDayFromDateValue(dateValue);
+        } else {
+            long month = DateTimeUtils.yearFromDateValue(dateValue) * 12L +
+                    DateTimeUtils.monthFromDateValue(dateValue) - 1 - 1970 * 12;
+            period = month >= 0 ? month / partitionMonths :
+                    (month + 1) / partitionMonths - 1;
+        }
+        long partition = period + PARTITION_OFFSET;
+        if (partition <= 0 || partition >= 2 * PARTITION_OFFSET) {
+            throw DbException.getInvalidValueException("partition", v);
+        }
+        return (int) partition;
+    }
+
+    /**
+     * Get the partition of a row key.
+     *
+     * @param key the key
+     * @return the partition
+     */
+    private int getPartition(long key) {
+        if (partitionColumn < 0 || key < 0) {
+            return 0;
+        }
+        return (int) (key >>> PARTITION_SHIFT);
+    }
+
+    private AtomicLong getLastKey(int partition) {
+        return partition == 0 ? lastKey : openPartition(partition).lastKey;
     }
 
     @Override
@@ -101,7 +217,15 @@ public class MVPrimaryIndex extends BaseIndex {
 
     @Override
     public void add(Session session, Row row) {
-        if (mainIndexColumn == -1) {
+        AtomicLong last = lastKey;
+        if (partitionColumn >= 0) {
+            int partition = getPartition(row.getValue(partitionColumn));
+            last = getLastKey(partition);
+            // an update can move the row to another partition
+            if (row.getKey() == 0 || getPartition(row.getKey()) != partition) {
+                row.setKey(last.incrementAndGet());
+            }
+        } else if (mainIndexColumn == -1) {
             if (row.getKey() == 0) {
                 row.setKey(lastKey.incrementAndGet());
             }
@@ -123,7 +247,7 @@ public class MVPrimaryIndex extends BaseIndex {
             }
         }
 
-        TransactionMap<Value, Value> map = getMap(session);
+        TransactionMap<Value, Value> map = getMap(session, row.getKey());
         Value key = ValueLong.get(row.getKey());
         Value old = map.getLatest(key);
         if (old != null) {
@@ -142,8 +266,8 @@ public class MVPrimaryIndex extends BaseIndex {
         }
         // because it's possible to directly update the key using the _rowid_
         // syntax
-        if (row.getKey() > lastKey.get()) {
-            lastKey.set(row.getKey());
+        if (row.getKey() > last.get()) {
+            last.set(row.getKey());
         }
     }
 
@@ -157,9 +281,9 @@ public class MVPrimaryIndex extends BaseIndex {
                 }
             }
         }
-        TransactionMap<Value, Value> map = getMap(session);
+        TransactionMap<Value, Value> map = getMap(session, row.getKey());
         try {
-            Value old = map.remove(ValueLong.get(row.getKey()));
+            Value old = map == null ? null : map.remove(ValueLong.get(row.getKey()));
             if (old == null) {
                 throw DbException.get(ErrorCode.ROW_NOT_FOUND_WHEN_DELETING_1,
                         getSQL() + ": " + row.getKey());
@@ -196,8 +320,7 @@ public class MVPrimaryIndex extends BaseIndex {
                 max = v;
             }
         }
-        TransactionMap<Value, Value> map = getMap(session);
-        return new MVStoreCursor(session, map.entryIterator(min), max);
+        return find(session, min, max);
     }
 
     @Override
@@ -207,8 +330,8 @@ public class MVPrimaryIndex extends BaseIndex {
 
     @Override
     public Row getRow(Session session, long key) {
-        TransactionMap<Value, Value> map = getMap(session);
-        Value v = map.get(ValueLong.get(key));
+        TransactionMap<Value, Value> map = getMap(session, key);
+        Value v = map == null ? null : map.get(ValueLong.get(key));
         if (v == null) {
             throw DbException.get(ErrorCode.ROW_NOT_FOUND_IN_PRIMARY_INDEX,
                     getSQL() + ": " + key);
@@ -224,7 +347,7 @@ public class MVPrimaryIndex extends BaseIndex {
             TableFilter[] filters, int filter, SortOrder sortOrder,
             HashSet<Column> allColumnsSet) {
         try {
-            return 10 * getCostRangeIndex(masks, dataMap.sizeAsLongMax(),
+            return 10 * getCostRangeIndex(masks, getRowCountMax(),
                     filters, filter, sortOrder, true, allColumnsSet);
         } catch (IllegalStateException e) {
             throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
@@ -244,20 +367,47 @@ public class MVPrimaryIndex extends BaseIndex {
 
     @Override
     public void remove(Session session) {
-        TransactionMap<Value, Value> map = getMap(session);
-        if (!map.isClosed()) {
-            Transaction t = mvTable.getTransaction(session);
-            t.removeMap(map);
+        for (TransactionMap<Value, Value> map : getMaps(session, 0, Integer.MAX_VALUE)) {
+            if (!map.isClosed()) {
+                Transaction t = mvTable.getTransaction(session);
+                t.removeMap(map);
+            }
         }
+        partitions.clear();
     }
 
     @Override
     public void truncate(Session session) {
-        TransactionMap<Value, Value> map = getMap(session);
         if (mvTable.getContainsLargeObject()) {
             database.getLobStorage().removeAllForTable(table.getId());
         }
-        map.clear();
+        for (TransactionMap<Value, Value> map : getMaps(session, 0, Integer.MAX_VALUE)) {
+            map.clear();
+        }
+    }
+
+    /**
+     * Remove a partition. This is not transactional: the map of the partition
+     * is removed (or cleared for partition 0) without logging the rows.
+     *
+     * @param session the session
+     * @param partition the partition
+     * @return the number of rows removed
+     */
+    long dropPartition(Session session, int partition) {
+        if (partition == 0) {
+            TransactionMap<Value, Value> map = getMap(session);
+            long rowCount = map.sizeAsLongMax();
+            map.clear();
+            return rowCount;
+        }
+        Partition p = partitions.remove(partition);
+        if (p == null) {
+            return 0;
+        }
+        long rowCount = p.map.sizeAsLongMax();
+        mvTable.getTransaction(session).removeMap(p.map);
+        return rowCount;
     }
 
     @Override
@@ -267,8 +417,14 @@ public class MVPrimaryIndex extends BaseIndex {
 
     @Override
     public Cursor findFirstOrLast(Session session, boolean first) {
-        TransactionMap<Value, Value> map = getMap(session);
-        ValueLong v = (ValueLong) (first ? map.firstKey() : map.lastKey());
+        ArrayList<TransactionMap<Value, Value>> maps =
+                getMaps(session, 0, Integer.MAX_VALUE);
+        TransactionMap<Value, Value> map = null;
+        ValueLong v = null;
+        for (int i = 0, size = maps.size(); i < size && v == null; i++) {
+            map = maps.get(first ? i : size - 1 - i);
+            v = (ValueLong) (first ? map.firstKey() : map.lastKey());
+        }
         if (v == null) {
             return new MVStoreCursor(session, Collections
                     .<Entry<Value, Value>> emptyList().iterator(), null);
@@ -288,8 +444,11 @@ public class MVPrimaryIndex extends BaseIndex {
 
     @Override
     public long getRowCount(Session session) {
-        TransactionMap<Value, Value> map = getMap(session);
-        return map.sizeAsLong();
+        long rowCount = 0;
+        for (TransactionMap<Value, Value> map : getMaps(session, 0, Integer.MAX_VALUE)) {
+            rowCount += map.sizeAsLong();
+        }
+        return rowCount;
     }
 
     /**
@@ -299,7 +458,11 @@ public class MVPrimaryIndex extends BaseIndex {
      */
     public long getRowCountMax() {
         try {
-            return dataMap.sizeAsLongMax();
+            long rowCount = dataMap.sizeAsLongMax();
+            for (Partition p : partitions.values()) {
+                rowCount += p.map.sizeAsLongMax();
+            }
+            return rowCount;
         } catch (IllegalStateException e) {
             throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
         }
@@ -355,8 +518,36 @@ public class MVPrimaryIndex extends BaseIndex {
      * @return the cursor
      */
     Cursor find(Session session, ValueLong first, ValueLong last) {
-        TransactionMap<Value, Value> map = getMap(session);
-        return new MVStoreCursor(session, map.entryIterator(first), last);
+        if (partitions.isEmpty()) {
+            TransactionMap<Value, Value> map = getMap(session);
+            return new MVStoreCursor(session, map.entryIterator(first), last);
+        }
+        ArrayList<TransactionMap<Value, Value>> maps = getMaps(session,
+                getPartition(first.getLong()), getPartition(last.getLong()));
+        return new MVStoreCursor(session, new PartitionIterator(maps, first), last);
+    }
+
+    /**
+     * Search for the rows of a range of partitions.
+     *
+     * @param session the session
+     * @param first the first partition
+     * @param last the last partition
+     * @return the cursor
+     */
+    Cursor findPartitions(Session session, int first, int last) {
+        return find(session, ValueLong.get(first == 0 ? 0 :
+                (long) first << PARTITION_SHIFT), last >= 2 * PARTITION_OFFSET - 1 ?
+                MAX : ValueLong.get(((long) last + 1 << PARTITION_SHIFT) - 1));
+    }
+
+    /**
+     * Get the number of partitions that contain rows, or could contain rows.
+     *
+     * @return the number of partitions
+     */
+    int getPartitionCount() {
+        return partitions.size() + 1;
     }
 
     @Override
@@ -378,6 +569,102 @@ public class MVPrimaryIndex extends BaseIndex {
         return dataMap.getInstance(t, Long.MAX_VALUE);
     }
 
+    /**
+     * Get the map that stores the row with the given key.
+     *
+     * @param session the session
+     * @param key the key
+     * @return the map, or null if the partition of the key does not exist
+     */
+    private TransactionMap<Value, Value> getMap(Session session, long key) {
+        int partition = getPartition(key);
+        if (partition == 0) {
+            return getMap(session);
+        }
+        Partition p = partitions.get(partition);
+        if (p == null) {
+            return null;
+        }
+        if (session == null) {
+            return p.map;
+        }
+        return p.map.getInstance(mvTable.getTransaction(session), Long.MAX_VALUE);
+    }
+
+    /**
+     * Get the maps of a range of partitions, in the order of the keys.
+     *
+     * @param session the session
+     * @param first the first partition
+     * @param last the last partition
+     * @return the maps
+     */
+    private ArrayList<TransactionMap<Value, Value>> getMaps(Session session,
+            int first, int last) {
+        ArrayList<TransactionMap<Value, Value>> maps = New.arrayList();
+        if (first == 0) {
+            maps.add(getMap(session));
+        }
+        Transaction t = session == null ? null : mvTable.getTransaction(session);
+        for (Partition p : partitions.subMap(first, true, last, true).values()) {
+            maps.add(t == null ? p.map : p.map.getInstance(t, Long.MAX_VALUE));
+        }
+        return maps;
+    }
+
+    /**
+     * A partition of a partitioned table.
+     */
+    private static class Partition {
+
+        final TransactionMap<Value, Value> map;
+        final AtomicLong lastKey;
+
+        Partition(TransactionMap<Value, Value> map, long lastKey) {
+            this.map = map;
+            this.lastKey = new AtomicLong(lastKey);
+        }
+
+    }
+
+    /**
+     * An iterator over the entries of the maps of several partitions.
+     */
+    private static class PartitionIterator implements Iterator<Entry<Value, Value>> {
+
+        private final ArrayList<TransactionMap<Value, Value>> maps;
+        private final Value first;
+        private int index;
+        private Iterator<Entry<Value, Value>> it;
+
+        PartitionIterator(ArrayList<TransactionMap<Value, Value>> maps, Value first) {
+            this.maps = maps;
+            this.first = first;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (it == null || !it.hasNext()) {
+                if (index >= maps.size()) {
+                    return false;
+                }
+                it = maps.get(index++).entryIterator(first);
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<Value, Value> next() {
+            return hasNext() ? it.next() : null;
+        }
+
+        @Override
+        public void remove() {
+            throw DbException.getUnsupportedException("remove");
+        }
+
+    }
+
     /**
      * A cursor.
      */
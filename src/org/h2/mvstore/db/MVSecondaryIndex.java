@@ -249,6 +249,16 @@ public class MVSecondaryIndex extends BaseIndex implements MVIndex {
         }
     }
 
+    /**
+     * Remove the entry of a committed row without logging the change, for
+     * example when the partition of the row is dropped.
+     *
+     * @param row the row
+     */
+    void removeCommitted(Row row) {
+        dataMap.map.remove(convertToKey(row));
+    }
+
     @Override
     public Cursor find(Session session, SearchRow first, SearchRow last) {
         return find(session, first, false, last);
@@ -95,6 +95,9 @@ public class MVTable extends TableBase {
     private int nextAnalyze;
     private boolean containsLargeObject;
     private Column rowIdColumn;
+    private final int partitionColumn;
+    private final String partitionInterval;
+    private MVPartitionIndex partitionIndex;
 
     private final MVTableEngine.Store store;
     private final TransactionStore transactionStore;
@@ -111,6 +114,17 @@ public class MVTable extends TableBase {
             }
         }
         traceLock = database.getTrace(Trace.LOCK);
+        if (data.partitionColumn == null) {
+            partitionColumn = -1;
+        } else {
+            Column col = getColumn(data.partitionColumn);
+            if (col.getType() != Value.DATE && col.getType() != Value.TIMESTAMP) {
+                throw DbException.getUnsupportedException("PARTITION BY RANGE(" +
+                        col.getCreateSQL() + ")");
+            }
+            partitionColumn = col.getColumnId();
+        }
+        partitionInterval = data.partitionInterval;
     }
 
     /**
@@ -122,6 +136,79 @@ public class MVTable extends TableBase {
         primaryIndex = new MVPrimaryIndex(session.getDatabase(), this, getId(),
                 IndexColumn.wrap(getColumns()), IndexType.createScan(true));
         indexes.add(primaryIndex);
+        if (partitionColumn >= 0) {
+            partitionIndex = new MVPartitionIndex(this, primaryIndex);
+            indexes.add(partitionIndex);
+        }
+    }
+
+    @Override
+    public String getCreateSQL() {
+        String sql = super.getCreateSQL();
+        if (sql != null && partitionColumn >= 0) {
+            sql += "\nPARTITION BY RANGE(" + getColumn(partitionColumn).getSQL() +
+                    ") INTERVAL " + partitionInterval;
+        }
+        return sql;
+    }
+
+    public boolean isPartitioned() {
+        return partitionColumn >= 0;
+    }
+
+    /**
+     * Get the column the table is partitioned by.
+     *
+     * @return the column id, or -1 if the table is not partitioned
+     */
+    public int getPartitionColumn() {
+        return partitionColumn;
+    }
+
+    public String getPartitionInterval() {
+        return partitionInterval;
+    }
+
+    /**
+     * Remove the partition that contains the given value of the partition
+     * column. The partition map is removed at once, without logging the rows;
+     * only the entries of the rows in the secondary indexes are removed one
+     * by one.
+     *
+     * @param session the session
+     * @param value the value
+     * @return the number of rows removed
+     */
+    public int dropPartition(Session session, Value value) {
+        lastModificationId = database.getNextModificationDataId();
+        int partition = primaryIndex.getPartition(
+                getColumn(partitionColumn).convert(value));
+        if (indexes.size() > 2 || containsLargeObject) {
+            Cursor cursor = primaryIndex.findPartitions(session, partition,
+                    partition);
+            while (cursor.next()) {
+                Row row = cursor.get();
+                for (int i = 2, size = indexes.size(); i < size; i++) {
+                    Index index = indexes.get(i);
+                    if (index instanceof MVSecondaryIndex) {
+                        ((MVSecondaryIndex) index).removeCommitted(row);
+                    } else {
+                        index.remove(session, row);
+                    }
+                }
+                if (containsLargeObject) {
+                    for (int i = 0, len = row.getColumnCount(); i < len; i++) {
+                        Value v = row.getValue(i);
+                        if (v.isLinkedToTable()) {
+                            session.removeAtCommit(v);
+                        }
+                    }
+                }
+            }
+        }
+        changesSinceAnalyze = 0;
+        return MathUtils.convertLongToInt(
+                primaryIndex.dropPartition(session, partition));
     }
 
     public String getMapName() {
@@ -627,7 +714,7 @@ public class MVTable extends TableBase {
     }
 
     private int getMainIndexColumn(IndexType indexType, IndexColumn[] cols) {
-        if (primaryIndex.getMainIndexColumn() != -1) {
+        if (primaryIndex.getMainIndexColumn() != -1 || partitionColumn >= 0) {
             return -1;
         }
         if (!indexType.isPrimaryKey() || cols.length != 1) {
@@ -801,7 +888,7 @@ public class MVTable extends TableBase {
         // call table.removeIndex
         while (indexes.size() > 1) {
             Index index = indexes.get(1);
-            if (index.getName() != null) {
+            if (index.getName() != null && index != partitionIndex) {
                 database.removeSchemaObject(session, index);
             }
             // needed for session temporary indexes
@@ -269,7 +269,12 @@ public class MVTableEngine implements TableEngine {
                     MVMap<?, ?> map = store.openMap(mapName);
                     store.removeMap(map);
                 } else if (mapName.startsWith("table.") || mapName.startsWith("index.")) {
-                    int id = Integer.parseInt(mapName.substring(1 + mapName.indexOf(".")));
+                    String name = mapName.substring(1 + mapName.indexOf("."));
+                    if (name.indexOf('.') >= 0) {
+                        // a partition of a partitioned table
+                        name = name.substring(0, name.indexOf('.'));
+                    }
+                    int id = Integer.parseInt(name);
                     if (!objectIds.get(id)) {
                         ValueDataType keyType = new ValueDataType(null, null, null);
                         ValueDataType valueType = new ValueDataType(null, null, null);
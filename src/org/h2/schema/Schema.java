@@ -658,6 +658,9 @@ public class Schema extends DbObjectBase {
                 }
                 return database.getTableEngine(data.tableEngine).createTable(data);
             }
+            if (data.partitionColumn != null) {
+                throw DbException.getUnsupportedException("PARTITION BY");
+            }
             return new RegularTable(data);
         }
     }
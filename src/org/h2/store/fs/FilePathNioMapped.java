@@ -36,6 +36,43 @@ public class FilePathNioMapped extends FilePathNio {
         return "nioMapped";
     }
 
+    /**
+     * Map a whole file read-only into memory, in chunks of the given size, such
+     * that files of more than 2 GB can be mapped. Each chunk except the last
+     * also maps the given number of bytes of the next chunk, such that a value
+     * of up to that size that starts in a chunk can be read from that chunk.
+     * The file is closed again, the mapping stays valid until the buffers are
+     * garbage collected.
+     *
+     * @param fileName the file name (with or without the nioMapped: prefix)
+     * @param chunkSize the size of a chunk
+     * @param overlap the number of bytes of the next chunk that are mapped with
+     *            each chunk
+     * @return the read-only mapped buffers, one for each chunk
+     */
+    public static MappedByteBuffer[] mapReadOnly(String fileName,
+            int chunkSize, int overlap) throws IOException {
+        String name = FilePath.get(fileName).unwrap().toString();
+        RandomAccessFile file = new RandomAccessFile(name, "r");
+        try {
+            long length = file.length();
+            int count = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long pos = (long) i * chunkSize;
+                long size = Math.min(length - pos, (long) chunkSize + overlap);
+                mapped[i] = file.getChannel().map(
+                        FileChannel.MapMode.READ_ONLY, pos, size);
+                if (SysProperties.NIO_LOAD_MAPPED) {
+                    mapped[i].load();
+                }
+            }
+            return mapped;
+        } finally {
+            file.close();
+        }
+    }
+
 }
 
 /**
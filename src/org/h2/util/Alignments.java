@@ -0,0 +1,533 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.util.CaseSample.Variant;
+
+/**
+ * Alignment-based conformance checking of an event log on a Petri net as a function that can be invoked in an SQL query.
+ * The cases are grouped by variant and an optimal alignment of each variant is computed with A*. The variants are
+ * divided over at most one thread per processor, each of which keeps the part of the reachability graph of the net that
+ * it has explored, such that it is reused by the next variants.
+ *
+ */
+public class Alignments {
+
+	/**
+	 * The default maximum number of search states per variant.
+	 */
+	private static final int MAX_STATES = 1000000;
+
+	//The kinds of moves, which are stored in the lowest two bits of a move; the other bits hold a transition or a label.
+	private static final int SYNC_MOVE = 0;
+	private static final int LOG_MOVE = 1;
+	private static final int MODEL_MOVE = 2;
+
+	/**
+	 * Computes the alignments of the variants of an event log. See the other alignments.
+	 */
+	public static ResultSet alignments(Connection conn, ResultSet eventLog, String places, String transitions, String arcs) throws SQLException {
+		return alignments(conn, eventLog, places, transitions, arcs, MAX_STATES);
+	}
+
+	/**
+	 * Computes an optimal alignment of each variant of an event log on a Petri net that is stored in tables
+	 * (see PetriNet.read). A variant is the sequence of event labels of a case. An alignment is a sequence of moves
+	 * that explains the variant by a firing sequence of the net from its initial to its final marking: a synchronous
+	 * move fires a transition with the label of the next event, a log move skips an event and a model move fires a
+	 * transition without an event. Log moves and model moves on labelled transitions cost 1, the other moves cost 0.
+	 * The alignment is found with A*, of which the states are a marking and a position in the variant, and of which the
+	 * heuristic is the number of remaining events that have a label that no transition has.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The returned result has one row per variant, ordered by the number of cases, and nine columns:
+	 * - the rank of the variant by the number of cases, starting at 1 (VARIANT_ID)
+	 * - the labels of the variant, separated by commas (VARIANT)
+	 * - the number of cases of the variant (CASE_COUNT)
+	 * - the cost of the alignment (COST)
+	 * - the number of synchronous moves (SYNC_MOVES)
+	 * - the number of log moves (LOG_MOVES)
+	 * - the number of model moves on labelled transitions (MODEL_MOVES)
+	 * - the fitness 1 - COST / (number of events + cost of aligning an empty case) (FITNESS)
+	 * - the moves, e.g. (A,A) (B,&gt;&gt;) (&gt;&gt;,C) for a synchronous move on A, a log move on B and a model move on C,
+	 *   leaving out the moves on transitions without a label (ALIGNMENT)
+	 * If the final marking cannot be reached, or if more than maxStates states are searched, the cost and the
+	 * columns that follow are null.
+	 *
+	 * @param conn			The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog		An event log as specified above.
+	 * @param places		The name of the places table.
+	 * @param transitions	The name of the transitions table.
+	 * @param arcs			The name of the arcs table.
+	 * @param maxStates		The maximum number of states that is searched per variant.
+	 * @return				The alignments as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet alignments(Connection conn, ResultSet eventLog, String places, String transitions, String arcs, int maxStates) throws SQLException {
+		final EventLog log = EventLog.read(conn, eventLog);
+
+		SimpleResultSet result = new SimpleResultSet();
+		result.addColumn("VARIANT_ID", Types.INTEGER, 10, 0);
+		result.addColumn("VARIANT", Types.VARCHAR, Integer.MAX_VALUE, 0);
+		result.addColumn("CASE_COUNT", Types.INTEGER, 10, 0);
+		result.addColumn("COST", Types.INTEGER, 10, 0);
+		result.addColumn("SYNC_MOVES", Types.INTEGER, 10, 0);
+		result.addColumn("LOG_MOVES", Types.INTEGER, 10, 0);
+		result.addColumn("MODEL_MOVES", Types.INTEGER, 10, 0);
+		result.addColumn("FITNESS", Types.DOUBLE, 17, 0);
+		result.addColumn("ALIGNMENT", Types.VARCHAR, Integer.MAX_VALUE, 0);
+		if (log == null){
+			return result;
+		}
+
+		//Group the cases by variant, in the order of the number of cases and then of the first case.
+		final PetriNet net = PetriNet.read(conn, places, transitions, arcs);
+		HashMap<Variant,Integer> variantIndexes = new HashMap<Variant,Integer>();
+		final ArrayList<Variant> variants = new ArrayList<Variant>();
+		final ArrayList<Integer> caseCounts = new ArrayList<Integer>();
+		for (int c = 0; c < log.getCaseCount(); c++){
+			Variant variant = new Variant(log, c);
+			Integer v = variantIndexes.get(variant);
+			if (v == null){
+				variantIndexes.put(variant, variants.size());
+				variants.add(variant);
+				caseCounts.add(1);
+			}else{
+				caseCounts.set(v, caseCounts.get(v) + 1);
+			}
+		}
+		Integer[] order = new Integer[variants.size()];
+		for (int v = 0; v < order.length; v++){
+			order[v] = v;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer v1, Integer v2) {
+				int c = caseCounts.get(v2).compareTo(caseCounts.get(v1));
+				return (c != 0)?c:v1.compareTo(v2);
+			}
+		});
+
+		//Align the variants; each thread takes the next variant that is not aligned yet.
+		final int[][] byLabel = net.getTransitionsByLabel(log);
+		final Alignment[] alignments = new Alignment[variants.size()];
+		final AtomicInteger next = new AtomicInteger();
+		final int states = maxStates;
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), variants.size()));
+		Task[] tasks = new Task[threads - 1];
+		for (int i = 0; i < threads - 1; i++){
+			tasks[i] = new Task() {
+				@Override
+				public void call() {
+					new Aligner(net, byLabel, states).alignAll(variants, next, alignments);
+				}
+			}.execute();
+		}
+		Aligner aligner = new Aligner(net, byLabel, states);
+		aligner.alignAll(variants, next, alignments);
+		for (Task task: tasks){
+			task.get();
+		}
+		Alignment empty = aligner.align(new int[0]);
+
+		for (int i = 0; i < order.length; i++){
+			int v = order[i];
+			int[] labels = variants.get(v).labels;
+			StatementBuilder variant = new StatementBuilder();
+			for (int l: labels){
+				variant.appendExceptFirst(",");
+				variant.append(log.getLabelName(l));
+			}
+			Alignment a = alignments[v];
+			if (a == null){
+				result.addRow(i + 1, variant.toString(), caseCounts.get(v), null, null, null, null, null, null);
+				continue;
+			}
+			int[] counts = new int[3];
+			StatementBuilder moves = new StatementBuilder();
+			for (int move: a.moves){
+				int kind = move & 3;
+				int arg = move >>> 2;
+				if (kind == SYNC_MOVE){
+					moves.appendExceptFirst(" ");
+					moves.append('(').append(net.transitionLabels[arg]).append(',').append(net.transitionLabels[arg]).append(')');
+				}else if (kind == LOG_MOVE){
+					moves.appendExceptFirst(" ");
+					moves.append('(').append(log.getLabelName(arg)).append(",>>)");
+				}else if (net.transitionLabels[arg] != null){
+					moves.appendExceptFirst(" ");
+					moves.append("(>>,").append(net.transitionLabels[arg]).append(')');
+				}else{
+					continue;
+				}
+				counts[kind]++;
+			}
+			int worst = labels.length + ((empty == null)?0:empty.cost);
+			Double fitness = (empty == null)?null:(worst == 0)?1.0:1.0 - (double) a.cost / worst;
+			result.addRow(i + 1, variant.toString(), caseCounts.get(v), a.cost, counts[SYNC_MOVE], counts[LOG_MOVE], counts[MODEL_MOVE],
+					fitness, moves.toString());
+		}
+		return result;
+	}
+
+	/**
+	 * An optimal alignment: its cost and its moves.
+	 */
+	static class Alignment {
+
+		final int cost;
+		final int[] moves;
+
+		Alignment(int cost, int[] moves) {
+			this.cost = cost;
+			this.moves = moves;
+		}
+	}
+
+	/**
+	 * Computes alignments with A*. The markings that it reaches are numbered and stored once, together with the
+	 * transitions that are enabled in them and the markings that these lead to, such that each next variant starts with
+	 * the reachability graph that the previous ones have explored. The search states are kept in arrays of primitives,
+	 * and the priority queue is a binary heap of state numbers.
+	 */
+	static class Aligner {
+
+		private final PetriNet net;
+		private final int placeCount;
+		private final int maxStates;
+		private final int[] transitionLabel;
+		private final boolean[] silent;
+		private final boolean[] modelled;
+
+		//The markings, placeCount values per marking, a hash table of marking numbers and the successors of each marking.
+		private int[] markings;
+		private int markingCount;
+		private int[] markingTable = new int[64];
+		private int[][] successors = new int[16][];
+		private final int[] marking;
+
+		//The search states.
+		private int[] stateMarking = new int[64];
+		private int[] statePosition = new int[64];
+		private int[] stateCost = new int[64];
+		private int[] stateParent = new int[64];
+		private int[] stateMove = new int[64];
+		private boolean[] closed = new boolean[64];
+		private int stateCount;
+		private long[] stateKeys = new long[128];
+		private int[] stateTable = new int[128];
+
+		//The priority queue, ordered by estimated cost and then by position, from the back.
+		private long[] heapKeys = new long[64];
+		private int[] heapStates = new int[64];
+		private int heapSize;
+
+		Aligner(PetriNet net, int[][] byLabel, int maxStates) {
+			this.net = net;
+			this.placeCount = net.getPlaceCount();
+			this.maxStates = maxStates;
+			int t = net.getTransitionCount();
+			transitionLabel = new int[t];
+			Arrays.fill(transitionLabel, -1);
+			silent = new boolean[t];
+			for (int i = 0; i < t; i++){
+				silent[i] = net.transitionLabels[i] == null;
+			}
+			modelled = new boolean[byLabel.length];
+			for (int l = 0; l < byLabel.length; l++){
+				for (int i: byLabel[l]){
+					transitionLabel[i] = l;
+				}
+				modelled[l] = byLabel[l].length > 0;
+			}
+			markings = new int[Math.max(1, placeCount) * 16];
+			marking = new int[placeCount];
+		}
+
+		/**
+		 * Aligns the variants that are not taken by another aligner yet.
+		 */
+		void alignAll(ArrayList<Variant> variants, AtomicInteger next, Alignment[] alignments) {
+			for (int v = next.getAndIncrement(); v < variants.size(); v = next.getAndIncrement()){
+				alignments[v] = align(variants.get(v).labels);
+			}
+		}
+
+		/**
+		 * Returns an optimal alignment of a sequence of label identifiers, or null if the final marking cannot be
+		 * reached or too many states are searched.
+		 */
+		Alignment align(int[] trace) {
+			int n = trace.length;
+			//The heuristic: the number of events from each position on with a label that no transition has.
+			int[] h = new int[n + 1];
+			for (int i = n - 1; i >= 0; i--){
+				h[i] = h[i + 1] + (modelled[trace[i]]?0:1);
+			}
+			stateCount = 0;
+			heapSize = 0;
+			Arrays.fill(stateTable, 0);
+			int finalMarking = intern(net.finalMarking);
+			relax(intern(net.initialMarking), 0, 0, -1, 0, h);
+			while (heapSize > 0){
+				int s = poll();
+				if (closed[s]){
+					continue;
+				}
+				closed[s] = true;
+				int m = stateMarking[s];
+				int i = statePosition[s];
+				int g = stateCost[s];
+				if ((i == n) && (m == finalMarking)){
+					return alignment(s);
+				}
+				if ((i < n) && !relax(m, i + 1, g + 1, s, LOG_MOVE | (trace[i] << 2), h)){
+					return null;
+				}
+				int[] succ = successors(m);
+				for (int k = 0; k < succ.length; k += 2){
+					int t = succ[k];
+					if ((i < n) && (transitionLabel[t] == trace[i]) && !relax(succ[k + 1], i + 1, g, s, SYNC_MOVE | (t << 2), h)){
+						return null;
+					}
+					if (!relax(succ[k + 1], i, g + (silent[t]?0:1), s, MODEL_MOVE | (t << 2), h)){
+						return null;
+					}
+				}
+			}
+			return null;
+		}
+
+		private Alignment alignment(int s) {
+			int length = 0;
+			for (int p = s; stateParent[p] >= 0; p = stateParent[p]){
+				length++;
+			}
+			int[] moves = new int[length];
+			for (int p = s; stateParent[p] >= 0; p = stateParent[p]){
+				moves[--length] = stateMove[p];
+			}
+			return new Alignment(stateCost[s], moves);
+		}
+
+		/**
+		 * Reaches the state of a marking and a position with the given cost, and queues it if that is cheaper than
+		 * before. Returns false if there are too many states.
+		 */
+		private boolean relax(int m, int position, int cost, int parent, int move, int[] h) {
+			long key = ((long) m << 32) | position;
+			int mask = stateTable.length - 1;
+			int slot = hash(key) & mask;
+			while (stateTable[slot] != 0){
+				if (stateKeys[slot] == key){
+					int s = stateTable[slot] - 1;
+					if (!closed[s] && (cost < stateCost[s])){
+						stateCost[s] = cost;
+						stateParent[s] = parent;
+						stateMove[s] = move;
+						offer(s, cost + h[position], position);
+					}
+					return true;
+				}
+				slot = (slot + 1) & mask;
+			}
+			if (stateCount >= maxStates){
+				return false;
+			}
+			int s = stateCount++;
+			if (s == stateMarking.length){
+				int size = s * 2;
+				stateMarking = Arrays.copyOf(stateMarking, size);
+				statePosition = Arrays.copyOf(statePosition, size);
+				stateCost = Arrays.copyOf(stateCost, size);
+				stateParent = Arrays.copyOf(stateParent, size);
+				stateMove = Arrays.copyOf(stateMove, size);
+				closed = Arrays.copyOf(closed, size);
+			}
+			stateMarking[s] = m;
+			statePosition[s] = position;
+			stateCost[s] = cost;
+			stateParent[s] = parent;
+			stateMove[s] = move;
+			closed[s] = false;
+			stateKeys[slot] = key;
+			stateTable[slot] = s + 1;
+			if (stateCount * 2 > stateTable.length){
+				growStateTable();
+			}
+			offer(s, cost + h[position], position);
+			return true;
+		}
+
+		private void growStateTable() {
+			long[] keys = stateKeys;
+			int[] table = stateTable;
+			stateKeys = new long[keys.length * 2];
+			stateTable = new int[table.length * 2];
+			int mask = stateTable.length - 1;
+			for (int i = 0; i < table.length; i++){
+				if (table[i] != 0){
+					int slot = hash(keys[i]) & mask;
+					while (stateTable[slot] != 0){
+						slot = (slot + 1) & mask;
+					}
+					stateKeys[slot] = keys[i];
+					stateTable[slot] = table[i];
+				}
+			}
+		}
+
+		private static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		/**
+		 * Adds a state to the heap. Of two states with the same estimated cost, the one with the highest position is
+		 * taken first.
+		 */
+		private void offer(int s, int estimate, int position) {
+			if (heapSize == heapKeys.length){
+				heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+				heapStates = Arrays.copyOf(heapStates, heapSize * 2);
+			}
+			long key = ((long) estimate << 32) | (Integer.MAX_VALUE - position);
+			int i = heapSize++;
+			while (i > 0){
+				int parent = (i - 1) >>> 1;
+				if (heapKeys[parent] <= key){
+					break;
+				}
+				heapKeys[i] = heapKeys[parent];
+				heapStates[i] = heapStates[parent];
+				i = parent;
+			}
+			heapKeys[i] = key;
+			heapStates[i] = s;
+		}
+
+		private int poll() {
+			int s = heapStates[0];
+			long key = heapKeys[--heapSize];
+			int state = heapStates[heapSize];
+			int i = 0;
+			while (true){
+				int child = 2 * i + 1;
+				if (child >= heapSize){
+					break;
+				}
+				if ((child + 1 < heapSize) && (heapKeys[child + 1] < heapKeys[child])){
+					child++;
+				}
+				if (key <= heapKeys[child]){
+					break;
+				}
+				heapKeys[i] = heapKeys[child];
+				heapStates[i] = heapStates[child];
+				i = child;
+			}
+			heapKeys[i] = key;
+			heapStates[i] = state;
+			return s;
+		}
+
+		/**
+		 * Returns the number of a marking, which is added if it was not reached before.
+		 */
+		private int intern(int[] m) {
+			int mask = markingTable.length - 1;
+			int slot = Arrays.hashCode(m) & mask;
+			while (markingTable[slot] != 0){
+				int id = markingTable[slot] - 1;
+				if (equals(id, m)){
+					return id;
+				}
+				slot = (slot + 1) & mask;
+			}
+			int id = markingCount++;
+			if ((id + 1) * placeCount > markings.length){
+				markings = Arrays.copyOf(markings, markings.length * 2);
+			}
+			System.arraycopy(m, 0, markings, id * placeCount, placeCount);
+			if (id == successors.length){
+				successors = Arrays.copyOf(successors, id * 2);
+			}
+			markingTable[slot] = id + 1;
+			if (markingCount * 2 > markingTable.length){
+				int[] table = new int[markingTable.length * 2];
+				mask = table.length - 1;
+				for (int old: markingTable){
+					if (old != 0){
+						slot = markingHash(old - 1) & mask;
+						while (table[slot] != 0){
+							slot = (slot + 1) & mask;
+						}
+						table[slot] = old;
+					}
+				}
+				markingTable = table;
+			}
+			return id;
+		}
+
+		private int markingHash(int id) {
+			int h = 1;
+			for (int p = id * placeCount, end = p + placeCount; p < end; p++){
+				h = 31 * h + markings[p];
+			}
+			return h;
+		}
+
+		private boolean equals(int id, int[] m) {
+			for (int p = 0, offset = id * placeCount; p < placeCount; p++){
+				if (markings[offset + p] != m[p]){
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the transitions that are enabled in a marking, each followed by the number of the marking that
+		 * firing it leads to.
+		 */
+		private int[] successors(int m) {
+			if (successors[m] != null){
+				return successors[m];
+			}
+			int[] succ = new int[0];
+			int[] current = Arrays.copyOfRange(markings, m * placeCount, (m + 1) * placeCount);
+			for (int t = 0; t < net.getTransitionCount(); t++){
+				if (!net.isEnabled(t, current)){
+					continue;
+				}
+				System.arraycopy(current, 0, marking, 0, placeCount);
+				for (int i = 0; i < net.inPlaces[t].length; i++){
+					marking[net.inPlaces[t][i]] -= net.inWeights[t][i];
+				}
+				for (int i = 0; i < net.outPlaces[t].length; i++){
+					marking[net.outPlaces[t][i]] += net.outWeights[t][i];
+				}
+				succ = Arrays.copyOf(succ, succ.length + 2);
+				succ[succ.length - 2] = t;
+				succ[succ.length - 1] = intern(marking);
+			}
+			successors[m] = succ;
+			return succ;
+		}
+	}
+}
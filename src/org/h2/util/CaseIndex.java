@@ -0,0 +1,513 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.schema.Schema;
+import org.h2.table.Table;
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * An inverted index from the labels and the directly follows edges of an event log to the cases that contain them.
+ * The cases are numbered and the cases of each label and edge are stored as a compressed bitmap, such that
+ * filters on labels and edges, and their AND/OR combinations, are resolved by bitmap operations.
+ * The index also keeps a compact table of case attributes: the first and last label (also as bitmaps per label),
+ * the number of events, the duration and the number of distinct labels, such that filters on them are resolved
+ * into bitmaps by scanning a few arrays or bitmaps instead of the events.
+ *
+ * The indexes are kept in memory by the database, by name. An index must be created again after the database
+ * is opened and after the event log has changed.
+ *
+ */
+public class CaseIndex {
+
+	private final EventLog log;
+	private final HashMap<String,Integer> labelIds = new HashMap<String,Integer>();
+	private final RoaringBitmap[] labelCases;
+	private final HashMap<Long,RoaringBitmap> edgeCases = new HashMap<Long,RoaringBitmap>();
+	private final RoaringBitmap[] firstCases;
+	private final RoaringBitmap[] lastCases;
+	private final int[] caseLengths;
+	private final long[] caseDurations;
+	private final int[] caseLabelCounts;
+
+	/**
+	 * Creates the index of an event log. The edges are the pairs of the weakly follows relation (see FOLLOWS).
+	 *
+	 * @param log	The event log.
+	 */
+	public CaseIndex(EventLog log) {
+		this.log = log;
+		int n = log.getLabelCount();
+		labelCases = new RoaringBitmap[n];
+		firstCases = new RoaringBitmap[n];
+		lastCases = new RoaringBitmap[n];
+		for (int l = 0; l < n; l++){
+			labelIds.put(log.getLabelName(l), l);
+			labelCases[l] = new RoaringBitmap();
+			firstCases[l] = new RoaringBitmap();
+			lastCases[l] = new RoaringBitmap();
+		}
+		int caseCount = log.getCaseCount();
+		caseLengths = new int[caseCount];
+		caseDurations = new long[caseCount];
+		caseLabelCounts = new int[caseCount];
+		int[] labelCase = new int[n];
+		Arrays.fill(labelCase, -1);
+		for (int c = 0; c < caseCount; c++){
+			int end = log.getCaseEnd(c);
+			int sa = log.getCaseStart(c);
+			int sc = log.nextBatch(sa, end);
+			firstCases[log.getEventLabel(sa)].add(c);
+			lastCases[log.getEventLabel(end - 1)].add(c);
+			caseLengths[c] = end - sa;
+			caseDurations[c] = log.getEventTime(end - 1) - log.getEventTime(sa);
+			for (int i = sa; i < end; i++){
+				int label = log.getEventLabel(i);
+				if (labelCase[label] != c){
+					labelCase[label] = c;
+					labelCases[label].add(c);
+					caseLabelCounts[c]++;
+				}
+			}
+			while (sc < end){
+				int ec = log.nextBatch(sc, end);
+				for (int i = sa; i < sc; i++){
+					for (int j = sc; j < ec; j++){
+						Long edge = edge(log.getEventLabel(i), log.getEventLabel(j));
+						RoaringBitmap cases = edgeCases.get(edge);
+						if (cases == null){
+							cases = new RoaringBitmap();
+							edgeCases.put(edge, cases);
+						}
+						cases.add(c);
+					}
+				}
+				sa = sc;
+				sc = ec;
+			}
+		}
+	}
+
+	private static Long edge(int a, int b) {
+		return ((long) a << 32) | b;
+	}
+
+	/**
+	 * Creates an index on an event log and stores it in the database under the given name, replacing an
+	 * existing index with that name.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name		The name of the index.
+	 * @param eventLog	An event log as specified above.
+	 * @return			The number of indexed cases.
+	 * @throws SQLException
+	 */
+	public static int createCaseIndex(Connection conn, String name, ResultSet eventLog) throws SQLException {
+		EventLog log = EventLog.read(conn, eventLog);
+		if (EventLog.isColumnList(conn)){
+			return 0;
+		}
+		if (log == null){
+			log = EventLog.empty();
+		}
+		CaseIndex index = new CaseIndex(log);
+		HashMap<String,CaseIndex> indexes = getDatabase(conn).getCaseIndexes();
+		synchronized (indexes){
+			indexes.put(name, index);
+		}
+		return log.getCaseCount();
+	}
+
+	/**
+	 * Removes an index from the database.
+	 *
+	 * @param conn	The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name	The name of the index.
+	 * @return		True if the index existed.
+	 * @throws SQLException
+	 */
+	public static boolean dropCaseIndex(Connection conn, String name) throws SQLException {
+		HashMap<String,CaseIndex> indexes = getDatabase(conn).getCaseIndexes();
+		synchronized (indexes){
+			return indexes.remove(name) != null;
+		}
+	}
+
+	/**
+	 * Returns the identifiers of the cases that satisfy a filter, using the index with the given name.
+	 *
+	 * The filter consists of terms that are combined with AND, OR and parentheses, where AND takes precedence over OR.
+	 * A term is either a label A, which holds for the cases that contain an event with that label, or an edge A>B, which holds
+	 * for the cases in which an event with label B weakly follows an event with label A. A label that contains spaces or
+	 * the characters ( ) &lt; = &gt; " must be enclosed in double quotes, e.g.: 'A>B AND ("C D" OR D>E)'.
+	 * A term can also be a condition on a case attribute:
+	 * - FIRST = A or LAST = A, which holds for the cases of which the first or last event has label A
+	 * - LENGTH op n, which compares the number of events of the case with n, where op is one of = &lt;&gt; &lt; &lt;= &gt; &gt;=
+	 * - DURATION op n, which compares the time between the first and the last event of the case in milliseconds with n
+	 * - ONLY(A B ...), which holds for the cases of which all events have one of the given labels
+	 * An attribute name is only read as such if it is not quoted and is followed by =, by a comparison with a number or
+	 * by (, such that e.g. LENGTH>B is still an edge, e.g.: 'FIRST = A AND LENGTH > 20 AND DURATION > 2592000000'.
+	 *
+	 * The returned result has one column:
+	 * - the case identifier, with the name of the case identifier column of the indexed event log
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name		The name of the index.
+	 * @param filter	The filter as specified above.
+	 * @return			The cases that satisfy the filter.
+	 * @throws SQLException
+	 */
+	public static ResultSet caseFilter(Connection conn, String name, String filter) throws SQLException {
+		CaseIndex index = getIndex(conn, name);
+		SimpleResultSet result = new SimpleResultSet();
+		EventLog.addCaseIdColumn(result, (index != null)?index.log.getColumnName(0):"CASE_ID", (index != null)?index.log:null);
+		if ((index == null) || (filter == null) || EventLog.isColumnList(conn)){
+			return result;
+		}
+		for (int c: index.filter(filter).toArray()){
+			result.addRow(index.log.getCaseId(c));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the events of the cases that satisfy a filter as specified for caseFilter, using the index with the
+	 * given name. The events are read from the index, such that they can be passed to a process mining function
+	 * without scanning the event log, e.g.: DFG(SELECT * FROM CASE_EVENTS('LOG_IDX', 'FIRST = A AND LENGTH > 20')).
+	 *
+	 * The returned events have the three columns of the indexed event log:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name		The name of the index.
+	 * @param filter	The filter as specified for caseFilter.
+	 * @return			The events of the cases that satisfy the filter, ordered by case and time.
+	 * @throws SQLException
+	 */
+	public static ResultSet caseEvents(Connection conn, String name, String filter) throws SQLException {
+		CaseIndex index = getIndex(conn, name);
+		EventLog log = (index != null)?index.log:null;
+		SimpleResultSet result = new SimpleResultSet();
+		EventLog.addCaseIdColumn(result, (log != null)?log.getColumnName(0):"CASE_ID", log);
+		EventLog.addLabelColumn(result, (log != null)?log.getColumnName(1):"EVENT_LABEL", log);
+		result.addColumn((log != null)?log.getColumnName(2):"EVENT_TIME", Types.TIMESTAMP, 23, 10);
+		if ((index == null) || (filter == null) || EventLog.isColumnList(conn)){
+			return result;
+		}
+		for (int c: index.filter(filter).toArray()){
+			for (int e = log.getCaseStart(c); e < log.getCaseEnd(c); e++){
+				result.addRow(log.getCaseId(c), log.getLabel(log.getEventLabel(e)), new Timestamp(log.getEventTime(e)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the case attributes that are kept by the index with the given name, one row per case.
+	 *
+	 * The returned result has six columns:
+	 * - the case identifier, with the name of the case identifier column of the indexed event log
+	 * - the label of the first event (FIRST_LABEL)
+	 * - the label of the last event (LAST_LABEL)
+	 * - the number of events (LENGTH)
+	 * - the time between the first and the last event in milliseconds (DURATION)
+	 * - the distinct labels, separated by commas (LABELS)
+	 *
+	 * @param conn	The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name	The name of the index.
+	 * @return		The case attributes.
+	 * @throws SQLException
+	 */
+	public static ResultSet caseAttributes(Connection conn, String name) throws SQLException {
+		CaseIndex index = getIndex(conn, name);
+		EventLog log = (index != null)?index.log:null;
+		SimpleResultSet result = new SimpleResultSet();
+		EventLog.addCaseIdColumn(result, (log != null)?log.getColumnName(0):"CASE_ID", log);
+		EventLog.addLabelColumn(result, "FIRST_LABEL", log);
+		EventLog.addLabelColumn(result, "LAST_LABEL", log);
+		result.addColumn("LENGTH", Types.INTEGER, 10, 0);
+		result.addColumn("DURATION", Types.BIGINT, 19, 0);
+		result.addColumn("LABELS", Types.VARCHAR, Integer.MAX_VALUE, 0);
+		if ((index == null) || EventLog.isColumnList(conn)){
+			return result;
+		}
+		StatementBuilder[] labels = new StatementBuilder[log.getCaseCount()];
+		for (int c = 0; c < labels.length; c++){
+			labels[c] = new StatementBuilder();
+		}
+		for (int l = 0; l < index.labelCases.length; l++){
+			for (int c: index.labelCases[l].toArray()){
+				labels[c].appendExceptFirst(",");
+				labels[c].append(log.getLabelName(l));
+			}
+		}
+		for (int c = 0; c < labels.length; c++){
+			result.addRow(log.getCaseId(c), log.getLabel(log.getEventLabel(log.getCaseStart(c))),
+					log.getLabel(log.getEventLabel(log.getCaseEnd(c) - 1)), index.caseLengths[c], index.caseDurations[c], labels[c].toString());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the index with the given name, or null if the name is null.
+	 */
+	private static CaseIndex getIndex(Connection conn, String name) throws SQLException {
+		if (name == null){
+			return null;
+		}
+		CaseIndex index;
+		HashMap<String,CaseIndex> indexes = getDatabase(conn).getCaseIndexes();
+		synchronized (indexes){
+			index = indexes.get(name);
+		}
+		if (index == null){
+			throw new SQLException("Case index " + name + " not found");
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the numbers of the cases that satisfy a filter as specified for caseFilter.
+	 *
+	 * @param filter	The filter.
+	 * @return			The case numbers.
+	 * @throws SQLException
+	 */
+	public RoaringBitmap filter(String filter) throws SQLException {
+		Tokenizer tokenizer = new Tokenizer(filter);
+		RoaringBitmap result = readOr(tokenizer);
+		if (tokenizer.token != null){
+			throw new SQLException("Unexpected " + tokenizer.token + " in filter: " + filter);
+		}
+		return result;
+	}
+
+	private RoaringBitmap readOr(Tokenizer tokenizer) throws SQLException {
+		RoaringBitmap result = readAnd(tokenizer);
+		while (tokenizer.readIf("OR")){
+			result = result.or(readAnd(tokenizer));
+		}
+		return result;
+	}
+
+	private RoaringBitmap readAnd(Tokenizer tokenizer) throws SQLException {
+		RoaringBitmap result = readTerm(tokenizer);
+		while (tokenizer.readIf("AND")){
+			result = result.and(readTerm(tokenizer));
+		}
+		return result;
+	}
+
+	private RoaringBitmap readTerm(Tokenizer tokenizer) throws SQLException {
+		if (tokenizer.readIf("(")){
+			RoaringBitmap result = readOr(tokenizer);
+			if (!tokenizer.readIf(")")){
+				throw new SQLException("Missing ) in filter: " + tokenizer.filter);
+			}
+			return result;
+		}
+		boolean quoted = tokenizer.quoted;
+		String label = tokenizer.readLabel();
+		//A > after a label is an edge, unless the label is LENGTH or DURATION and the > is followed by a number.
+		if (!quoted && (label.equalsIgnoreCase("FIRST") || label.equalsIgnoreCase("LAST")) && tokenizer.readIf("=")){
+			Integer a = labelIds.get(tokenizer.readLabel());
+			return (a == null)?new RoaringBitmap():label.equalsIgnoreCase("FIRST")?firstCases[a]:lastCases[a];
+		}else if (!quoted && (label.equalsIgnoreCase("LENGTH") || label.equalsIgnoreCase("DURATION")) && tokenizer.isComparison()
+				&& (!tokenizer.token.equals(">") || tokenizer.isNumberNext())){
+			String op = tokenizer.token;
+			tokenizer.next();
+			long value = tokenizer.readNumber();
+			boolean length = label.equalsIgnoreCase("LENGTH");
+			RoaringBitmap result = new RoaringBitmap();
+			for (int c = 0; c < caseLengths.length; c++){
+				if (compare(length?caseLengths[c]:caseDurations[c], op, value)){
+					result.add(c);
+				}
+			}
+			return result;
+		}else if (!quoted && label.equalsIgnoreCase("ONLY") && tokenizer.readIf("(")){
+			//A case has only the given labels if it is in the bitmaps of as many of them as it has distinct labels.
+			boolean[] given = new boolean[labelCases.length];
+			int[] counts = new int[caseLengths.length];
+			while (!tokenizer.readIf(")")){
+				Integer a = labelIds.get(tokenizer.readLabel());
+				if ((a != null) && !given[a]){
+					given[a] = true;
+					for (int c: labelCases[a].toArray()){
+						counts[c]++;
+					}
+				}
+			}
+			RoaringBitmap result = new RoaringBitmap();
+			for (int c = 0; c < counts.length; c++){
+				if (counts[c] == caseLabelCounts[c]){
+					result.add(c);
+				}
+			}
+			return result;
+		}
+		Integer a = labelIds.get(label);
+		if (tokenizer.readIf(">")){
+			Integer b = labelIds.get(tokenizer.readLabel());
+			RoaringBitmap cases = ((a != null) && (b != null))?edgeCases.get(edge(a, b)):null;
+			return (cases != null)?cases:new RoaringBitmap();
+		}
+		return (a != null)?labelCases[a]:new RoaringBitmap();
+	}
+
+	private static boolean compare(long x, String op, long value) {
+		if (op.equals("=")){
+			return x == value;
+		}else if (op.equals("<>")){
+			return x != value;
+		}else if (op.equals("<")){
+			return x < value;
+		}else if (op.equals("<=")){
+			return x <= value;
+		}else if (op.equals(">")){
+			return x > value;
+		}
+		return x >= value;
+	}
+
+	/**
+	 * Splits a filter into the tokens ( ) = &lt; &lt;= &lt;&gt; &gt; &gt;= AND OR and labels.
+	 */
+	private static class Tokenizer {
+
+		final String filter;
+		int pos;
+		String token;
+		boolean quoted;
+
+		Tokenizer(String filter) throws SQLException {
+			this.filter = filter;
+			next();
+		}
+
+		void next() throws SQLException {
+			while ((pos < filter.length()) && Character.isWhitespace(filter.charAt(pos))){
+				pos++;
+			}
+			quoted = false;
+			if (pos >= filter.length()){
+				token = null;
+				return;
+			}
+			char ch = filter.charAt(pos);
+			if ((ch == '(') || (ch == ')') || (ch == '=')){
+				token = String.valueOf(ch);
+				pos++;
+			}else if ((ch == '<') || (ch == '>')){
+				int start = pos++;
+				if ((pos < filter.length()) && ((filter.charAt(pos) == '=') || ((ch == '<') && (filter.charAt(pos) == '>')))){
+					pos++;
+				}
+				token = filter.substring(start, pos);
+			}else if (ch == '"'){
+				int end = filter.indexOf('"', pos + 1);
+				if (end < 0){
+					throw new SQLException("Missing \" in filter: " + filter);
+				}
+				token = filter.substring(pos + 1, end);
+				quoted = true;
+				pos = end + 1;
+			}else{
+				int start = pos;
+				while ((pos < filter.length()) && !Character.isWhitespace(filter.charAt(pos)) && ("()<=>\"".indexOf(filter.charAt(pos)) < 0)){
+					pos++;
+				}
+				token = filter.substring(start, pos);
+			}
+		}
+
+		boolean readIf(String keyword) throws SQLException {
+			if ((token != null) && !quoted && token.equalsIgnoreCase(keyword)){
+				next();
+				return true;
+			}
+			return false;
+		}
+
+		boolean isComparison() {
+			return (token != null) && !quoted && ((token.charAt(0) == '<') || (token.charAt(0) == '=') || (token.charAt(0) == '>'));
+		}
+
+		/**
+		 * Returns true if the token after the current token is an unquoted number, without reading it.
+		 */
+		boolean isNumberNext() throws SQLException {
+			int p = pos;
+			String t = token;
+			boolean q = quoted;
+			next();
+			boolean number = (token != null) && !quoted && token.matches("-?[0-9]+");
+			pos = p;
+			token = t;
+			quoted = q;
+			return number;
+		}
+
+		long readNumber() throws SQLException {
+			try {
+				long value = Long.parseLong(token);
+				next();
+				return value;
+			} catch (RuntimeException e) {
+				throw new SQLException("Expected a number in filter: " + filter);
+			}
+		}
+
+		String readLabel() throws SQLException {
+			if ((token == null) || (!quoted && (isComparison() || token.equals("(") || token.equals(")") || token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR")))){
+				throw new SQLException("Expected a label in filter: " + filter);
+			}
+			String label = token;
+			next();
+			return label;
+		}
+	}
+
+	/**
+	 * Returns the database of a connection that is passed to a function.
+	 */
+	static Database getDatabase(Connection conn) {
+		return ((Session) ((JdbcConnection) conn).getSession()).getDatabase();
+	}
+
+	/**
+	 * Returns the quoted name of a table of the current schema that is passed to a function as a string, such that it
+	 * can be used in SQL. The name is matched as given if there is such a table, and otherwise in upper case, like an
+	 * unquoted identifier. A name that matches no table is quoted as given, such that the statement fails.
+	 */
+	static String getTableSQL(Connection conn, String tableName) {
+		Session session = (Session) ((JdbcConnection) conn).getSession();
+		Schema schema = session.getDatabase().getSchema(session.getCurrentSchemaName());
+		Table table = schema.findTableOrView(session, tableName);
+		if (table == null){
+			table = schema.findTableOrView(session, StringUtils.toUpperEnglish(tableName));
+		}
+		return (table != null)?table.getSQL():StringUtils.quoteIdentifier(tableName);
+	}
+
+	public EventLog getEventLog() {
+		return log;
+	}
+}
@@ -0,0 +1,185 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * Deterministic sampling of the cases of an event log. A case is kept or skipped as a whole, depending on
+ * a hash of its case identifier, such that the same cases are sampled each time.
+ *
+ * The built-in function CASE_SAMPLE(caseId, fraction [, seed]) returns true for the sampled cases, such that it
+ * can be used in the WHERE clause of the event log of a process mining function, where it is evaluated while
+ * the event table is scanned, e.g.: SELECT * FROM FOLLOWS(SELECT * FROM Event_Log WHERE CASE_SAMPLE(Case_Id, 0.02)).
+ * If the event table has an index on the case identifier, the condition is pushed into the index scan, which skips
+ * from case to case over the distinct case identifiers of the index and only reads the rows of the sampled cases.
+ * Without such an index, every row of the event table is still read.
+ *
+ */
+public class CaseSample {
+
+	/**
+	 * Returns a hash of a case identifier, uniformly distributed in [0, 1).
+	 *
+	 * @param caseId	The case identifier.
+	 * @param seed		The seed, which selects a different sample for a different value.
+	 * @return			The hash.
+	 */
+	public static double hash(Object caseId, long seed) {
+		long h;
+		if ((caseId instanceof Long) || (caseId instanceof Integer) || (caseId instanceof Short) || (caseId instanceof Byte)){
+			h = ((Number) caseId).longValue();
+		}else{
+			h = String.valueOf(caseId).hashCode();
+		}
+		//The finalization step of MurmurHash3, which mixes all bits.
+		h ^= seed * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (h >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Returns true if the case with the given identifier is in the sample.
+	 *
+	 * @param caseId	The case identifier.
+	 * @param fraction	The fraction of the cases that is sampled.
+	 * @param seed		The seed.
+	 * @return			True if the case is sampled.
+	 */
+	public static boolean isSampled(Object caseId, double fraction, long seed) {
+		return hash(caseId, seed) < fraction;
+	}
+
+	/**
+	 * Samples the cases of an event log, stratified by variant. A variant is the sequence of event labels of a case.
+	 * For each variant, the ceil(fraction * number of cases of the variant) cases with the lowest hash are kept,
+	 * such that each variant is represented in the sample.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The returned event log has the same columns and contains the events of the sampled cases, ordered by case
+	 * and time.
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @param fraction	The fraction of the cases of each variant that is sampled.
+	 * @return			The sampled event log.
+	 * @throws SQLException
+	 */
+	public static ResultSet variantSample(Connection conn, ResultSet eventLog, double fraction) throws SQLException {
+		return variantSample(conn, eventLog, fraction, 0);
+	}
+
+	/**
+	 * Samples the cases of an event log, stratified by variant, as the other variantSample, with a seed that selects
+	 * a different sample of each variant for a different value, like the seed of CASE_SAMPLE.
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified for the other variantSample.
+	 * @param fraction	The fraction of the cases of each variant that is sampled.
+	 * @param seed		The seed.
+	 * @return			The sampled event log.
+	 * @throws SQLException
+	 */
+	public static ResultSet variantSample(Connection conn, ResultSet eventLog, double fraction, long seed) throws SQLException {
+		EventLog log = EventLog.read(conn, eventLog);
+
+		SimpleResultSet result = new SimpleResultSet();
+		EventLog.addCaseIdColumn(result, (log != null)?log.getColumnName(0):"CASE_ID", log);
+		EventLog.addLabelColumn(result, (log != null)?log.getColumnName(1):"EVENT_LABEL", log);
+		result.addColumn((log != null)?log.getColumnName(2):"EVENT_TIME", Types.TIMESTAMP, 0, 0);
+		if (log == null){
+			return result;
+		}
+
+		//Group the cases by variant.
+		HashMap<Variant,ArrayList<Integer>> variants = new HashMap<Variant,ArrayList<Integer>>();
+		for (int c = 0; c < log.getCaseCount(); c++){
+			Variant variant = new Variant(log, c);
+			ArrayList<Integer> cases = variants.get(variant);
+			if (cases == null){
+				cases = new ArrayList<Integer>();
+				variants.put(variant, cases);
+			}
+			cases.add(c);
+		}
+
+		//Keep the cases with the lowest hash of each variant.
+		final double[] hashes = new double[log.getCaseCount()];
+		for (int c = 0; c < log.getCaseCount(); c++){
+			hashes[c] = hash(log.getCaseId(c), seed);
+		}
+		boolean[] sampled = new boolean[log.getCaseCount()];
+		for (ArrayList<Integer> cases: variants.values()){
+			int keep = (int) Math.min(cases.size(), Math.ceil(fraction * cases.size()));
+			Collections.sort(cases, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer c1, Integer c2) {
+					return Double.compare(hashes[c1], hashes[c2]);
+				}
+			});
+			for (int i = 0; i < keep; i++){
+				sampled[cases.get(i)] = true;
+			}
+		}
+
+		for (int c = 0; c < log.getCaseCount(); c++){
+			if (sampled[c]){
+				for (int e = log.getCaseStart(c); e < log.getCaseEnd(c); e++){
+					result.addRow(log.getCaseId(c), log.getLabel(log.getEventLabel(e)), new Timestamp(log.getEventTime(e)));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The sequence of label identifiers of a case, which can be used as a hash key.
+	 */
+	static class Variant {
+
+		final int[] labels;
+		final int hashCode;
+
+		Variant(EventLog log, int caseIndex) {
+			int start = log.getCaseStart(caseIndex);
+			labels = new int[log.getCaseEnd(caseIndex) - start];
+			for (int i = 0; i < labels.length; i++){
+				labels[i] = log.getEventLabel(start + i);
+			}
+			hashCode = Arrays.hashCode(labels);
+		}
+
+		Variant(int[] labels) {
+			this.labels = labels;
+			hashCode = Arrays.hashCode(labels);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof Variant) && Arrays.equals(labels, ((Variant) o).labels);
+		}
+	}
+}
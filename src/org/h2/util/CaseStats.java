@@ -0,0 +1,314 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * Performance statistics of an event log per case and per activity, computed in a single pass over the events,
+ * such that throughput times do not need a GROUP BY over the whole log followed by further aggregations.
+ *
+ */
+public class CaseStats {
+
+	/**
+	 * The number of sub-buckets per power of two in a quantile sketch, which bounds the relative error at 1/64.
+	 */
+	private static final int SUB_BUCKETS = 64;
+
+	private final ResultSet eventLog;
+	private final HashMap<Object,Integer> labelIds = new HashMap<Object,Integer>();
+	private final ArrayList<Object> labels = new ArrayList<Object>();
+	private int[] labelCase = new int[16];
+	private final HashSet<Object> caseIds = new HashSet<Object>();
+
+	private boolean first = true;
+	private int caseCount;
+	private Object caseId;
+	private long time;
+	private long batchTime;
+	private long previousBatchTime;
+
+	/** The label id of the current event. */
+	int label;
+	/** True if the current event is the first event of its case. */
+	boolean caseStart;
+	/** True if the label of the current event occurred before in its case. */
+	boolean rework;
+	/** The time since the events with the preceding timestamp in the case, 0 only for the first events of a case. */
+	long sojourn;
+
+	private CaseStats(ResultSet eventLog) {
+		this.eventLog = eventLog;
+	}
+
+	/**
+	 * Computes the throughput time, the number of events and the amount of rework of each case.
+	 * The events are read as a stream, such that only the current case and the identifiers of the cases are kept in
+	 * memory.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * The events must be ordered by case identifier and timestamp, e.g.: SELECT * FROM Event_Log ORDER BY 1, 3.
+	 *
+	 * The returned statistics have six columns:
+	 * - the case identifier (CASE_ID)
+	 * - the timestamp of the first event of the case (START_TIME)
+	 * - the timestamp of the last event of the case (END_TIME)
+	 * - the throughput time of the case in milliseconds (DURATION)
+	 * - the number of events of the case (EVENT_COUNT)
+	 * - the number of events of which the label occurred before in the case (REWORK_COUNT)
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @return			The statistics of each case as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet caseStats(Connection conn, ResultSet eventLog) throws SQLException {
+		SimpleResultSet result = new SimpleResultSet();
+		if ((eventLog == null) || (eventLog.getMetaData().getColumnCount() != 3) || EventLog.isColumnList(conn)){
+			result.addColumn("CASE_ID", Types.VARCHAR, 255, 0);
+		}else{
+			ResultSetMetaData rsm = eventLog.getMetaData();
+			result.addColumn("CASE_ID", rsm.getColumnType(1), rsm.getPrecision(1), rsm.getScale(1));
+		}
+		result.addColumn("START_TIME", Types.TIMESTAMP, 23, 10);
+		result.addColumn("END_TIME", Types.TIMESTAMP, 23, 10);
+		result.addColumn("DURATION", Types.BIGINT, 19, 0);
+		result.addColumn("EVENT_COUNT", Types.INTEGER, 10, 0);
+		result.addColumn("REWORK_COUNT", Types.INTEGER, 10, 0);
+		if ((eventLog == null) || (eventLog.getMetaData().getColumnCount() != 3) || EventLog.isColumnList(conn)){
+			EventLog.close(eventLog);
+			return result;
+		}
+
+		try {
+			CaseStats stats = new CaseStats(eventLog);
+			Object caseId = null;
+			long start = 0;
+			long end = 0;
+			int events = 0;
+			int rework = 0;
+			while (stats.next()){
+				if (stats.caseStart){
+					if (events > 0){
+						result.addRow(caseId, new Timestamp(start), new Timestamp(end), end - start, events, rework);
+					}
+					caseId = stats.caseId;
+					start = stats.time;
+					events = 0;
+					rework = 0;
+				}
+				end = stats.time;
+				events++;
+				rework += stats.rework?1:0;
+			}
+			if (events > 0){
+				result.addRow(caseId, new Timestamp(start), new Timestamp(end), end - start, events, rework);
+			}
+		} finally {
+			EventLog.close(eventLog);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the frequency and the sojourn time of each activity. See the other activityStats.
+	 */
+	public static ResultSet activityStats(Connection conn, ResultSet eventLog) throws SQLException {
+		return activityStats(conn, eventLog, -1);
+	}
+
+	/**
+	 * Computes the frequency, the amount of rework and the sojourn time of each activity, in which the sojourn time of
+	 * an event is the time since the events with the preceding timestamp in its case. The first events of a case have
+	 * no sojourn time. If a quantile is given, e.g. 0.5 for the median, the quantile of the sojourn times is estimated
+	 * with a logarithmic histogram per activity, which has a relative error of at most 1/64.
+	 * The events are read as a stream, such that only the current case and the identifiers of the cases are kept in
+	 * memory.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * The events must be ordered by case identifier and timestamp, e.g.: ACTIVITY_STATS((SELECT * FROM Event_Log ORDER BY 1, 3), 0.9).
+	 *
+	 * The returned statistics have five columns, or six if a quantile is given:
+	 * - the event label (EVENT_LABEL)
+	 * - the number of events with the label (FREQUENCY)
+	 * - the number of events with the label that occurred before in their case (REWORK_COUNT)
+	 * - the total sojourn time of the events with the label in milliseconds (TOTAL_SOJOURN)
+	 * - the average sojourn time of the events with the label that have one in milliseconds (AVG_SOJOURN)
+	 * - the quantile of these sojourn times in milliseconds (QUANTILE_SOJOURN)
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @param quantile	The quantile of the sojourn times to return, between 0 and 1, or a negative number for none.
+	 * @return			The statistics of each activity as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet activityStats(Connection conn, ResultSet eventLog, double quantile) throws SQLException {
+		if (quantile > 1){
+			EventLog.close(eventLog);
+			throw new SQLException("The quantile must be between 0 and 1");
+		}
+		SimpleResultSet result = new SimpleResultSet();
+		if ((eventLog == null) || (eventLog.getMetaData().getColumnCount() != 3) || EventLog.isColumnList(conn)){
+			result.addColumn("EVENT_LABEL", Types.VARCHAR, 255, 0);
+		}else{
+			ResultSetMetaData rsm = eventLog.getMetaData();
+			result.addColumn("EVENT_LABEL", rsm.getColumnType(2), rsm.getPrecision(2), 0);
+		}
+		result.addColumn("FREQUENCY", Types.INTEGER, 10, 0);
+		result.addColumn("REWORK_COUNT", Types.INTEGER, 10, 0);
+		result.addColumn("TOTAL_SOJOURN", Types.BIGINT, 19, 0);
+		result.addColumn("AVG_SOJOURN", Types.BIGINT, 19, 0);
+		if (quantile >= 0){
+			result.addColumn("QUANTILE_SOJOURN", Types.BIGINT, 19, 0);
+		}
+		if ((eventLog == null) || (eventLog.getMetaData().getColumnCount() != 3) || EventLog.isColumnList(conn)){
+			EventLog.close(eventLog);
+			return result;
+		}
+
+		CaseStats stats = new CaseStats(eventLog);
+		int[] frequency = new int[16];
+		int[] rework = new int[16];
+		int[] sojourns = new int[16];
+		long[] total = new long[16];
+		long[][] sketches = new long[16][];
+		try {
+			while (stats.next()){
+				int l = stats.label;
+				if (l == frequency.length){
+					frequency = Arrays.copyOf(frequency, l * 2);
+					rework = Arrays.copyOf(rework, l * 2);
+					sojourns = Arrays.copyOf(sojourns, l * 2);
+					total = Arrays.copyOf(total, l * 2);
+					sketches = Arrays.copyOf(sketches, l * 2);
+				}
+				frequency[l]++;
+				rework[l] += stats.rework?1:0;
+				if (stats.sojourn > 0){
+					sojourns[l]++;
+					total[l] += stats.sojourn;
+					if (quantile >= 0){
+						if (sketches[l] == null){
+							sketches[l] = new long[bucket(Long.MAX_VALUE) + 1];
+						}
+						sketches[l][bucket(stats.sojourn)]++;
+					}
+				}
+			}
+		} finally {
+			EventLog.close(eventLog);
+		}
+
+		for (int l = 0; l < stats.labels.size(); l++){
+			Object label = EventLog.labelValue(stats.labels.get(l));
+			Long average = (sojourns[l] > 0)?total[l] / sojourns[l]:null;
+			if (quantile >= 0){
+				Long q = (sojourns[l] > 0)?quantile(sketches[l], sojourns[l], quantile):null;
+				result.addRow(label, frequency[l], rework[l], total[l], average, q);
+			}else{
+				result.addRow(label, frequency[l], rework[l], total[l], average);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the next event, returning false if there are no more events.
+	 */
+	private boolean next() throws SQLException {
+		if (!eventLog.next()){
+			return false;
+		}
+		Object c = eventLog.getObject(1);
+		Object l = EventLog.labelKey(eventLog.getObject(2));
+		Timestamp ts = eventLog.getTimestamp(3);
+		time = (ts != null)?ts.getTime():0;
+		caseStart = first || ((caseId == null)?(c != null):!caseId.equals(c));
+		if (caseStart){
+			if (!caseIds.add(c)){
+				throw new SQLException("The event log must be ordered by case identifier and timestamp");
+			}
+			caseId = c;
+			caseCount++;
+			first = false;
+			batchTime = time;
+			previousBatchTime = time;
+		}else if (time < batchTime){
+			throw new SQLException("The event log must be ordered by case identifier and timestamp");
+		}else if (time > batchTime){
+			previousBatchTime = batchTime;
+			batchTime = time;
+		}
+		sojourn = batchTime - previousBatchTime;
+
+		Integer id = labelIds.get(l);
+		if (id == null){
+			id = labels.size();
+			labelIds.put(l, id);
+			labels.add(l);
+			if (id == labelCase.length){
+				labelCase = Arrays.copyOf(labelCase, id * 2);
+			}
+		}
+		label = id;
+		rework = labelCase[label] == caseCount;
+		labelCase[label] = caseCount;
+		return true;
+	}
+
+	/**
+	 * Returns the bucket of a non-negative time in a quantile sketch. Times below 2 * SUB_BUCKETS have their own bucket;
+	 * larger times share a bucket with the times that have the same highest seven bits.
+	 */
+	static int bucket(long value) {
+		if (value < 2 * SUB_BUCKETS){
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - 6;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * Returns the smallest time in a bucket.
+	 */
+	static long bucketValue(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS){
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		return (long) (bucket - shift * SUB_BUCKETS) << shift;
+	}
+
+	/**
+	 * Returns the estimated quantile of the times in a sketch with the given number of times.
+	 */
+	private static long quantile(long[] sketch, int count, double quantile) {
+		long rank = (long) Math.ceil(quantile * count);
+		long seen = 0;
+		for (int b = 0; b < sketch.length; b++){
+			seen += sketch[b];
+			if ((seen >= rank) && (seen > 0)){
+				return bucketValue(b);
+			}
+		}
+		return 0;
+	}
+}
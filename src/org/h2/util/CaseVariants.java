@@ -0,0 +1,364 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+
+import org.h2.api.Trigger;
+import org.h2.engine.SessionInterface;
+import org.h2.jdbc.JdbcConnection;
+
+/**
+ * A materialized mapping from the cases of an event table to their variants, which is kept in two tables next to the
+ * event table and maintained while events are inserted, such that a variant filter is a semi-join on an integer
+ * column instead of a computation of the variants of all cases. The tables of a mapping with the name N are:
+ * - N_CASES(CASE_ID, VARIANT_ID, EVENT_COUNT, LAST_TIME), with the variant, the number of events and the last
+ *   timestamp of each case
+ * - N_VARIANTS(VARIANT_ID, FREQUENCY, EVENT_COUNT, VARIANT), with the number of cases, the number of events and the
+ *   comma-separated labels of each variant
+ * E.g. the events of the cases of the ten most frequent variants:
+ * SELECT * FROM Event_Log WHERE Case_Id IN (SELECT CASE_ID FROM N_CASES WHERE VARIANT_ID IN
+ * (SELECT VARIANT_ID FROM N_VARIANTS ORDER BY FREQUENCY DESC LIMIT 10))
+ *
+ * A variant is the sequence of event labels of a case in the order of their timestamps, in which events with the
+ * same timestamp are in the order of their row identifiers (_ROWID_), which is the order in which they are inserted
+ * unless the event table has an integer primary key. The variant identifier is a 64-bit hash of the sequence
+ * that is extended with each label, so an event that is inserted after the last event of its case only updates the
+ * rows of its case and variants. An event that is earlier than the last event of its case causes the variant of the
+ * case to be computed again from the event table. The tables are updated by a trigger in the transaction of the
+ * insert, so rolled back inserts are not counted; deleted and updated events are not taken into account.
+ *
+ */
+public class CaseVariants {
+
+	private static final String TRIGGER_PREFIX = "CASE_VARIANTS_";
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * Creates a case to variant mapping with the given name over an event table, replacing an existing one with that
+	 * name. The tables of the mapping are created in the current schema, which must be the schema of the event table,
+	 * and filled with the variants of the events that are already in the table, after which a trigger maintains them.
+	 *
+	 * The first three columns of the event table must be:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * E.g.: CALL CREATE_CASE_VARIANTS('V', 'Event_Log')
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name		The name of the mapping.
+	 * @param tableName	The name of the event table, see CaseIndex.getTableSQL.
+	 * @return			The number of cases that were already in the table.
+	 * @throws SQLException
+	 */
+	public static int createCaseVariants(Connection conn, String name, String tableName) throws SQLException {
+		name = StringUtils.toUpperEnglish(name);
+		dropCaseVariants(conn, name);
+		String cases = StringUtils.quoteIdentifier(name + "_CASES");
+		String variants = StringUtils.quoteIdentifier(name + "_VARIANTS");
+		String table = CaseIndex.getTableSQL(conn, tableName);
+		Statement stat = conn.createStatement();
+		try {
+			String[] columns = columns(conn, table);
+			stat.execute("CREATE TABLE " + cases + " AS SELECT " + columns[0] + " CASE_ID, CAST(NULL AS BIGINT) VARIANT_ID, "
+					+ "CAST(NULL AS INT) EVENT_COUNT, CAST(NULL AS TIMESTAMP) LAST_TIME FROM " + table + " WHERE 1 = 0");
+			stat.execute("ALTER TABLE " + cases + " ALTER COLUMN CASE_ID SET NOT NULL");
+			stat.execute("ALTER TABLE " + cases + " ADD PRIMARY KEY(CASE_ID)");
+			stat.execute("CREATE INDEX " + StringUtils.quoteIdentifier(name + "_CASES_VARIANT") + " ON " + cases + "(VARIANT_ID)");
+			stat.execute("CREATE TABLE " + variants + "(VARIANT_ID BIGINT PRIMARY KEY, FREQUENCY INT, EVENT_COUNT INT, VARIANT VARCHAR)");
+
+			//Stream the events by case and add the variant of each case.
+			HashMap<Long,Object[]> variantRows = new HashMap<Long,Object[]>();
+			PreparedStatement insertCase = conn.prepareStatement("INSERT INTO " + cases + " VALUES (?, ?, ?, ?)");
+			int caseCount = 0;
+			try {
+				ResultSet rs = stat.executeQuery("SELECT " + columns[0] + ", " + columns[1] + ", " + columns[2] + " FROM " + table
+						+ " WHERE " + columns[0] + " IS NOT NULL ORDER BY 1, 3, _ROWID_");
+				Object caseId = null;
+				long variantId = 0;
+				int events = 0;
+				long lastTime = 0;
+				StringBuilder variant = new StringBuilder();
+				while (rs.next()){
+					Object c = rs.getObject(1);
+					if ((events > 0) && !caseId.equals(c)){
+						addCase(insertCase, variantRows, caseId, variantId, events, lastTime, variant.toString());
+						caseCount++;
+						events = 0;
+					}
+					if (events == 0){
+						caseId = c;
+						variantId = FNV_OFFSET;
+						variant.setLength(0);
+					}else{
+						variant.append(',');
+					}
+					String label = String.valueOf(rs.getObject(2));
+					variantId = extend(variantId, label);
+					variant.append(label);
+					lastTime = millis(rs.getObject(3));
+					events++;
+				}
+				rs.close();
+				if (events > 0){
+					addCase(insertCase, variantRows, caseId, variantId, events, lastTime, variant.toString());
+					caseCount++;
+				}
+			} finally {
+				insertCase.close();
+			}
+			PreparedStatement insertVariant = conn.prepareStatement("INSERT INTO " + variants + " VALUES (?, ?, ?, ?)");
+			try {
+				for (Object[] row: variantRows.values()){
+					for (int i = 0; i < row.length; i++){
+						insertVariant.setObject(i + 1, row[i]);
+					}
+					insertVariant.execute();
+				}
+			} finally {
+				insertVariant.close();
+			}
+			stat.execute("CREATE TRIGGER " + StringUtils.quoteIdentifier(TRIGGER_PREFIX + name) + " AFTER INSERT ON " + table
+					+ " FOR EACH ROW CALL \"" + InsertTrigger.class.getName() + "\"");
+			return caseCount;
+		} finally {
+			stat.close();
+		}
+	}
+
+	/**
+	 * Removes a case to variant mapping, its tables and its trigger.
+	 *
+	 * @param conn	The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name	The name of the mapping.
+	 * @return		True if the trigger of the mapping existed.
+	 * @throws SQLException
+	 */
+	public static boolean dropCaseVariants(Connection conn, String name) throws SQLException {
+		name = StringUtils.toUpperEnglish(name);
+		Statement stat = conn.createStatement();
+		try {
+			ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TRIGGERS WHERE TRIGGER_SCHEMA = SCHEMA() AND TRIGGER_NAME = "
+					+ StringUtils.quoteStringSQL(TRIGGER_PREFIX + name));
+			rs.next();
+			boolean existed = rs.getInt(1) > 0;
+			rs.close();
+			stat.execute("DROP TRIGGER IF EXISTS " + StringUtils.quoteIdentifier(TRIGGER_PREFIX + name));
+			stat.execute("DROP TABLE IF EXISTS " + StringUtils.quoteIdentifier(name + "_CASES"));
+			stat.execute("DROP TABLE IF EXISTS " + StringUtils.quoteIdentifier(name + "_VARIANTS"));
+			return existed;
+		} finally {
+			stat.close();
+		}
+	}
+
+	private static void addCase(PreparedStatement insertCase, HashMap<Long,Object[]> variantRows, Object caseId, long variantId,
+			int events, long lastTime, String variant) throws SQLException {
+		insertCase.setObject(1, caseId);
+		insertCase.setLong(2, variantId);
+		insertCase.setInt(3, events);
+		insertCase.setTimestamp(4, new Timestamp(lastTime));
+		insertCase.execute();
+		Object[] row = variantRows.get(variantId);
+		if (row == null){
+			variantRows.put(variantId, new Object[]{variantId, 1, events, variant});
+		}else{
+			row[1] = (Integer) row[1] + 1;
+		}
+	}
+
+	/**
+	 * Returns the identifier of the variant that is extended with a label: the FNV-1a hash of the 64-bit FNV-1a hashes
+	 * of the labels.
+	 */
+	static long extend(long variantId, String label) {
+		long h = FNV_OFFSET;
+		for (int i = 0; i < label.length(); i++){
+			h = (h ^ label.charAt(i)) * FNV_PRIME;
+		}
+		return (variantId ^ h) * FNV_PRIME;
+	}
+
+	private static long millis(Object time) {
+		return (time instanceof java.util.Date)?((java.util.Date) time).getTime():((time instanceof Number)?((Number) time).longValue():0);
+	}
+
+	/**
+	 * Returns the quoted names of the first three columns of a table, given its quoted name.
+	 */
+	private static String[] columns(Connection conn, String table) throws SQLException {
+		Statement stat = conn.createStatement();
+		try {
+			ResultSetMetaData rsm = stat.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0").getMetaData();
+			if (rsm.getColumnCount() < 3){
+				throw new SQLException("The event table must have a case identifier, an event label and a timestamp column");
+			}
+			String[] columns = new String[3];
+			for (int i = 0; i < 3; i++){
+				columns[i] = StringUtils.quoteIdentifier(rsm.getColumnName(i + 1));
+			}
+			return columns;
+		} finally {
+			stat.close();
+		}
+	}
+
+	/**
+	 * The trigger that updates the case to variant mapping with the name of the trigger for the inserted events.
+	 * Its statements are prepared once per session rather than for each inserted event.
+	 */
+	public static class InsertTrigger implements Trigger {
+
+		private String cases;
+		private String variants;
+		private String table;
+		private String[] columns;
+
+		private SessionInterface session;
+		private PreparedStatement selectCase;
+		private PreparedStatement selectEvents;
+		private PreparedStatement decrementVariant;
+		private PreparedStatement deleteVariant;
+		private PreparedStatement mergeCase;
+		private PreparedStatement incrementVariant;
+		private PreparedStatement insertVariant;
+
+		@Override
+		public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
+			String name = triggerName.substring(TRIGGER_PREFIX.length());
+			String schema = StringUtils.quoteIdentifier(schemaName) + ".";
+			cases = schema + StringUtils.quoteIdentifier(name + "_CASES");
+			variants = schema + StringUtils.quoteIdentifier(name + "_VARIANTS");
+			table = schema + StringUtils.quoteIdentifier(tableName);
+			columns = columns(conn, table);
+		}
+
+		/**
+		 * Prepares the statements of the trigger, unless they are already prepared for the session of the connection.
+		 * H2 passes a new connection for each event, but the statements remain valid as long as its session does.
+		 */
+		private void prepare(Connection conn) throws SQLException {
+			SessionInterface s = (conn instanceof JdbcConnection)?((JdbcConnection) conn).getSession():null;
+			if ((s != null) && (s == session)){
+				return;
+			}
+			close();
+			selectCase = conn.prepareStatement("SELECT C.VARIANT_ID, C.EVENT_COUNT, C.LAST_TIME, V.VARIANT FROM " + cases
+					+ " C LEFT JOIN " + variants + " V ON C.VARIANT_ID = V.VARIANT_ID WHERE C.CASE_ID = ?");
+			selectEvents = conn.prepareStatement("SELECT " + columns[1] + ", " + columns[2] + " FROM " + table
+					+ " WHERE " + columns[0] + " = ? ORDER BY 2, _ROWID_");
+			decrementVariant = conn.prepareStatement("UPDATE " + variants + " SET FREQUENCY = FREQUENCY - 1 WHERE VARIANT_ID = ?");
+			deleteVariant = conn.prepareStatement("DELETE FROM " + variants + " WHERE VARIANT_ID = ? AND FREQUENCY = 0");
+			mergeCase = conn.prepareStatement("MERGE INTO " + cases + " KEY(CASE_ID) VALUES (?, ?, ?, ?)");
+			incrementVariant = conn.prepareStatement("UPDATE " + variants + " SET FREQUENCY = FREQUENCY + 1 WHERE VARIANT_ID = ?");
+			insertVariant = conn.prepareStatement("INSERT INTO " + variants + " VALUES (?, 1, ?, ?)");
+			session = s;
+		}
+
+		@Override
+		public synchronized void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+			if ((newRow == null) || (newRow.length < 3) || (newRow[0] == null)){
+				return;
+			}
+			prepare(conn);
+			Object caseId = newRow[0];
+			String label = String.valueOf(newRow[1]);
+			long time = millis(newRow[2]);
+
+			//Find the current variant of the case.
+			long oldId = 0;
+			String oldVariant = null;
+			int events = 0;
+			long lastTime = 0;
+			selectCase.setObject(1, caseId);
+			ResultSet rs = selectCase.executeQuery();
+			if (rs.next()){
+				oldId = rs.getLong(1);
+				events = rs.getInt(2);
+				lastTime = millis(rs.getTimestamp(3));
+				oldVariant = rs.getString(4);
+			}
+			rs.close();
+
+			long newId;
+			String newVariant;
+			if (events == 0){
+				newId = extend(FNV_OFFSET, label);
+				newVariant = label;
+				events = 1;
+				lastTime = time;
+			}else if (time >= lastTime){
+				newId = extend(oldId, label);
+				newVariant = oldVariant + "," + label;
+				events++;
+				lastTime = time;
+			}else{
+				//The event is earlier than the last event of the case, so the variant is computed again.
+				newId = FNV_OFFSET;
+				StringBuilder variant = new StringBuilder();
+				events = 0;
+				selectEvents.setObject(1, caseId);
+				rs = selectEvents.executeQuery();
+				while (rs.next()){
+					String l = String.valueOf(rs.getObject(1));
+					lastTime = millis(rs.getObject(2));
+					newId = extend(newId, l);
+					variant.append((events > 0)?",":"").append(l);
+					events++;
+				}
+				rs.close();
+				newVariant = variant.toString();
+			}
+
+			if (oldVariant != null){
+				update(decrementVariant, oldId);
+				update(deleteVariant, oldId);
+			}
+			mergeCase.setObject(1, caseId);
+			mergeCase.setLong(2, newId);
+			mergeCase.setInt(3, events);
+			mergeCase.setTimestamp(4, new Timestamp(lastTime));
+			mergeCase.execute();
+			if (update(incrementVariant, newId) == 0){
+				insertVariant.setLong(1, newId);
+				insertVariant.setInt(2, events);
+				insertVariant.setString(3, newVariant);
+				insertVariant.execute();
+			}
+		}
+
+		private static int update(PreparedStatement prep, long variantId) throws SQLException {
+			prep.setLong(1, variantId);
+			return prep.executeUpdate();
+		}
+
+		@Override
+		public synchronized void close() throws SQLException {
+			PreparedStatement[] statements = {selectCase, selectEvents, decrementVariant, deleteVariant, mergeCase, incrementVariant, insertVariant};
+			for (PreparedStatement prep: statements){
+				JdbcUtils.closeSilently(prep);
+			}
+			selectCase = null;
+			selectEvents = null;
+			decrementVariant = null;
+			deleteVariant = null;
+			mergeCase = null;
+			incrementVariant = null;
+			insertVariant = null;
+			session = null;
+		}
+
+		@Override
+		public void remove() throws SQLException {
+			close();
+		}
+	}
+}
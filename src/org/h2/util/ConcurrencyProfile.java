@@ -0,0 +1,217 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * The number of intervals that are active over time, e.g. the number of running cases or the workload of each
+ * resource, computed with a sweep over the sorted start and end times instead of a range self-join.
+ *
+ */
+public class ConcurrencyProfile {
+
+	/**
+	 * Computes the concurrency profile as a step function. See the other concurrencyProfile.
+	 */
+	public static ResultSet concurrencyProfile(Connection conn, ResultSet intervals) throws SQLException {
+		return concurrencyProfile(conn, intervals, 0);
+	}
+
+	/**
+	 * Computes the number of active intervals over time. An interval is active from its start time up to, but not
+	 * including, its end time. The start and end times are sorted once per group and then swept in order, which takes
+	 * O(n log n) time. Without a bucket size, the result is a step function with a row for each time at which the number
+	 * of active intervals changes. With a bucket size, the result has a row for each bucket from the first to the last
+	 * change, with the maximum and the time-weighted average number of active intervals in that bucket.
+	 *
+	 * The intervals must have two columns, or three if the intervals are grouped, e.g. by resource:
+	 * - group (optional)
+	 * - start time
+	 * - end time
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * Intervals with a null time or that end before they start are ignored.
+	 * E.g. the number of running cases per hour:
+	 * CONCURRENCY_PROFILE((SELECT START_TIME, END_TIME FROM CASE_STATS(SELECT * FROM Event_Log ORDER BY 1, 3)), 3600000)
+	 *
+	 * Without a bucket size, the returned profile has two columns, preceded by the group if the intervals are grouped:
+	 * - the time from which the number of active intervals holds (TIME)
+	 * - the number of active intervals (ACTIVE)
+	 * With a bucket size, the returned profile has three columns, preceded by the group if the intervals are grouped:
+	 * - the start time of the bucket (BUCKET)
+	 * - the maximum number of active intervals in the bucket (MAX_ACTIVE)
+	 * - the time-weighted average number of active intervals in the bucket (AVG_ACTIVE)
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param intervals	The intervals as specified above.
+	 * @param bucket	The size of a bucket in milliseconds, or 0 for the step function.
+	 * @return			The concurrency profile as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet concurrencyProfile(Connection conn, ResultSet intervals, long bucket) throws SQLException {
+		if (bucket < 0){
+			EventLog.close(intervals);
+			throw new SQLException("The bucket size must not be negative");
+		}
+		SimpleResultSet result = new SimpleResultSet();
+		int columns = (intervals != null)?intervals.getMetaData().getColumnCount():0;
+		boolean grouped = columns == 3;
+		if (grouped){
+			ResultSetMetaData rsm = intervals.getMetaData();
+			result.addColumn(rsm.getColumnLabel(1), rsm.getColumnType(1), rsm.getPrecision(1), rsm.getScale(1));
+		}
+		if (bucket == 0){
+			result.addColumn("TIME", Types.TIMESTAMP, 23, 10);
+			result.addColumn("ACTIVE", Types.INTEGER, 10, 0);
+		}else{
+			result.addColumn("BUCKET", Types.TIMESTAMP, 23, 10);
+			result.addColumn("MAX_ACTIVE", Types.INTEGER, 10, 0);
+			result.addColumn("AVG_ACTIVE", Types.DOUBLE, 17, 0);
+		}
+		if (((columns != 2) && (columns != 3)) || EventLog.isColumnList(conn)){
+			EventLog.close(intervals);
+			return result;
+		}
+
+		//Read the intervals, numbering the groups.
+		ArrayList<Object> groups = new ArrayList<Object>();
+		HashMap<Object,Integer> groupIds = new HashMap<Object,Integer>();
+		int size = 0;
+		int[] intervalGroup = new int[1024];
+		long[] intervalStart = new long[1024];
+		long[] intervalEnd = new long[1024];
+		try {
+			while (intervals.next()){
+				Timestamp start = intervals.getTimestamp(columns - 1);
+				Timestamp end = intervals.getTimestamp(columns);
+				if ((start == null) || (end == null) || (end.getTime() < start.getTime())){
+					continue;
+				}
+				Object group = grouped?intervals.getObject(1):null;
+				Integer groupId = groupIds.get(group);
+				if (groupId == null){
+					groupId = groups.size();
+					groupIds.put(group, groupId);
+					groups.add(group);
+				}
+				if (size == intervalGroup.length){
+					intervalGroup = Arrays.copyOf(intervalGroup, size * 2);
+					intervalStart = Arrays.copyOf(intervalStart, size * 2);
+					intervalEnd = Arrays.copyOf(intervalEnd, size * 2);
+				}
+				intervalGroup[size] = groupId;
+				intervalStart[size] = start.getTime();
+				intervalEnd[size] = end.getTime();
+				size++;
+			}
+		} finally {
+			EventLog.close(intervals);
+		}
+
+		//Group the intervals with a counting sort.
+		int[] groupStart = new int[groups.size() + 1];
+		for (int i = 0; i < size; i++){
+			groupStart[intervalGroup[i] + 1]++;
+		}
+		for (int g = 0; g < groups.size(); g++){
+			groupStart[g + 1] += groupStart[g];
+		}
+		int[] next = Arrays.copyOf(groupStart, groups.size());
+		long[] starts = new long[size];
+		long[] ends = new long[size];
+		for (int i = 0; i < size; i++){
+			int pos = next[intervalGroup[i]]++;
+			starts[pos] = intervalStart[i];
+			ends[pos] = intervalEnd[i];
+		}
+
+		long[] times = new long[2 * size];
+		int[] levels = new int[2 * size];
+		for (int g = 0; g < groups.size(); g++){
+			int from = groupStart[g];
+			int to = groupStart[g + 1];
+			Arrays.sort(starts, from, to);
+			Arrays.sort(ends, from, to);
+
+			//Sweep over the start and end times, recording the times at which the number of active intervals changes.
+			int count = 0;
+			int level = 0;
+			int s = from;
+			int e = from;
+			while (e < to){
+				long time = (s < to)?Math.min(starts[s], ends[e]):ends[e];
+				int previous = level;
+				for (; (s < to) && (starts[s] == time); s++){
+					level++;
+				}
+				for (; (e < to) && (ends[e] == time); e++){
+					level--;
+				}
+				if (level != previous){
+					times[count] = time;
+					levels[count] = level;
+					count++;
+				}
+			}
+
+			Object group = groups.get(g);
+			if (bucket == 0){
+				for (int i = 0; i < count; i++){
+					addRow(result, grouped, group, new Timestamp(times[i]), levels[i]);
+				}
+			}else{
+				addBuckets(result, grouped, group, times, levels, count, bucket);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a row for each bucket from the bucket of the first change to the bucket of the last change.
+	 */
+	private static void addBuckets(SimpleResultSet result, boolean grouped, Object group, long[] times, int[] levels, int count, long bucket) {
+		if (count == 0){
+			return;
+		}
+		long b = Math.floorDiv(times[0], bucket) * bucket;
+		long area = 0;
+		int max = 0;
+		for (int i = 0; i < count - 1; i++){
+			long t = times[i];
+			while (t < times[i + 1]){
+				long segmentEnd = Math.min(times[i + 1], b + bucket);
+				area += levels[i] * (segmentEnd - t);
+				max = Math.max(max, levels[i]);
+				t = segmentEnd;
+				if (t == b + bucket){
+					addRow(result, grouped, group, new Timestamp(b), max, (double) area / bucket);
+					b += bucket;
+					area = 0;
+					max = 0;
+				}
+			}
+		}
+		if (times[count - 1] > b){
+			addRow(result, grouped, group, new Timestamp(b), max, (double) area / bucket);
+		}
+	}
+
+	private static void addRow(SimpleResultSet result, boolean grouped, Object group, Object... values) {
+		if (grouped){
+			Object[] row = new Object[values.length + 1];
+			row[0] = group;
+			System.arraycopy(values, 0, row, 1, values.length);
+			result.addRow(row);
+		}else{
+			result.addRow(values);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * Checks Declare constraints on an event log as a function that can be invoked in an SQL query.
+ * All constraints are checked in a single pass over the cases of the log.
+ *
+ */
+public class DeclareCheck {
+
+	private static final String[] TEMPLATES = {
+		"EXISTENCE", "ABSENCE", "INIT",
+		"RESPONDED_EXISTENCE", "COEXISTENCE", "NOT_COEXISTENCE",
+		"RESPONSE", "PRECEDENCE", "SUCCESSION", "NOT_SUCCESSION",
+		"CHAIN_RESPONSE", "CHAIN_PRECEDENCE"
+	};
+	private static final int EXISTENCE = 0, ABSENCE = 1, INIT = 2;
+	private static final int RESPONDED_EXISTENCE = 3, COEXISTENCE = 4, NOT_COEXISTENCE = 5;
+	private static final int RESPONSE = 6, PRECEDENCE = 7, SUCCESSION = 8, NOT_SUCCESSION = 9;
+	private static final int CHAIN_RESPONSE = 10, CHAIN_PRECEDENCE = 11;
+
+	//State bits of the constraint automata.
+	private static final int PENDING = 1; //an activation still waits for its target
+	private static final int SEEN = 2; //the first label has occurred
+
+	/**
+	 * Checks Declare constraints on an event log. Given an event log and a list of constraints, returns for each constraint
+	 * the number of cases that satisfy it and the number of cases that violate it.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The constraints are separated by semicolons and each constraint has the form TEMPLATE(A) or TEMPLATE(A,B), where A and B
+	 * are event labels, e.g.: 'response(A,B); not_coexistence(A,C)'. The supported templates are:
+	 * - EXISTENCE(A), ABSENCE(A), INIT(A)
+	 * - RESPONDED_EXISTENCE(A,B), COEXISTENCE(A,B), NOT_COEXISTENCE(A,B)
+	 * - RESPONSE(A,B), PRECEDENCE(A,B), SUCCESSION(A,B), NOT_SUCCESSION(A,B)
+	 * - CHAIN_RESPONSE(A,B), CHAIN_PRECEDENCE(A,B)
+	 * The order of the events in a case is the order of their timestamps.
+	 *
+	 * The returned result has one row per constraint and six columns:
+	 * - the constraint (CONSTRAINT)
+	 * - the number of cases (CASES)
+	 * - the number of cases that satisfy the constraint (SATISFIED)
+	 * - the number of cases that violate the constraint (VIOLATED)
+	 * - the number of satisfying cases in which the constraint is not activated (VACUOUS)
+	 * - the fraction of cases that satisfy the constraint, or NULL if there are no cases (SUPPORT)
+	 *
+	 * @param conn			The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog		An event log as specified above.
+	 * @param constraints	The constraints as specified above.
+	 * @return				The result of checking the constraints as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet declareCheck(Connection conn, ResultSet eventLog, String constraints) throws SQLException {
+		EventLog log = EventLog.read(conn, eventLog);
+
+		SimpleResultSet result = new SimpleResultSet();
+		result.addColumn("CONSTRAINT", Types.VARCHAR, 255, 0);
+		result.addColumn("CASES", Types.INTEGER, 10, 0);
+		result.addColumn("SATISFIED", Types.INTEGER, 10, 0);
+		result.addColumn("VIOLATED", Types.INTEGER, 10, 0);
+		result.addColumn("VACUOUS", Types.INTEGER, 10, 0);
+		result.addColumn("SUPPORT", Types.DOUBLE, 17, 0);
+		if ((log == null) || (constraints == null)){
+			return result;
+		}
+
+		//Parse the constraints and replace their labels by label identifiers (-1 if the label does not occur in the log).
+		HashMap<String,Integer> labelIds = new HashMap<String,Integer>();
+		for (int l = 0; l < log.getLabelCount(); l++){
+			labelIds.put(log.getLabelName(l), l);
+		}
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<int[]> parsed = new ArrayList<int[]>();
+		for (String constraint: constraints.split(";")){
+			if (constraint.trim().isEmpty()){
+				continue;
+			}
+			int[] c = parse(constraint, labelIds);
+			names.add(TEMPLATES[c[0]] + constraint.substring(constraint.indexOf('(')).trim());
+			parsed.add(c);
+		}
+		int k = parsed.size();
+		int[] template = new int[k];
+		int[] first = new int[k];
+		int[] second = new int[k];
+		for (int i = 0; i < k; i++){
+			template[i] = parsed.get(i)[0];
+			first[i] = parsed.get(i)[1];
+			second[i] = parsed.get(i)[2];
+		}
+
+		//Index the automaton constraints by the labels that change their state.
+		int n = log.getLabelCount();
+		int[][] byLabel = new int[n][];
+		int[] byLabelCount = new int[n];
+		for (int i = 0; i < k; i++){
+			if (template[i] >= RESPONSE){
+				addToIndex(byLabel, byLabelCount, first[i], i);
+				if (second[i] != first[i]){
+					addToIndex(byLabel, byLabelCount, second[i], i);
+				}
+			}
+		}
+
+		int[] state = new int[k];
+		boolean[] violated = new boolean[k];
+		int[] satisfied = new int[k];
+		int[] vacuous = new int[k];
+		long[] present = new long[(n + 63) / 64];
+		for (int c = 0; c < log.getCaseCount(); c++){
+			int start = log.getCaseStart(c);
+			int end = log.getCaseEnd(c);
+			Arrays.fill(state, 0);
+			Arrays.fill(violated, false);
+
+			//Run the automata over the events of the case.
+			for (int e = start; e < end; e++){
+				int l = log.getEventLabel(e);
+				present[l >>> 6] |= 1L << l;
+				for (int j = 0; j < byLabelCount[l]; j++){
+					int i = byLabel[l][j];
+					int a = first[i];
+					int b = second[i];
+					switch (template[i]){
+					case RESPONSE:
+						if (l == b) state[i] &= ~PENDING;
+						if (l == a) state[i] |= PENDING;
+						break;
+					case PRECEDENCE:
+						if ((l == b) && ((state[i] & SEEN) == 0)) violated[i] = true;
+						if (l == a) state[i] |= SEEN;
+						break;
+					case SUCCESSION:
+						if (l == b){
+							state[i] &= ~PENDING;
+							if ((state[i] & SEEN) == 0) violated[i] = true;
+						}
+						if (l == a) state[i] |= PENDING | SEEN;
+						break;
+					case NOT_SUCCESSION:
+						if ((l == b) && ((state[i] & SEEN) != 0)) violated[i] = true;
+						if (l == a) state[i] |= SEEN;
+						break;
+					case CHAIN_RESPONSE:
+						if ((l == a) && ((e + 1 == end) || (log.getEventLabel(e + 1) != b))) violated[i] = true;
+						break;
+					case CHAIN_PRECEDENCE:
+						if ((l == b) && ((e == start) || (log.getEventLabel(e - 1) != a))) violated[i] = true;
+						break;
+					default:
+					}
+				}
+			}
+
+			//Evaluate the constraints at the end of the case, using the label bitset for the existence constraints.
+			for (int i = 0; i < k; i++){
+				boolean hasA = isPresent(present, first[i]);
+				boolean hasB = isPresent(present, second[i]);
+				boolean ok;
+				boolean activated;
+				switch (template[i]){
+				case EXISTENCE: ok = hasA; activated = true; break;
+				case ABSENCE: ok = !hasA; activated = true; break;
+				case INIT: ok = log.getEventLabel(start) == first[i]; activated = true; break;
+				case RESPONDED_EXISTENCE: ok = !hasA || hasB; activated = hasA; break;
+				case COEXISTENCE: ok = hasA == hasB; activated = hasA || hasB; break;
+				case NOT_COEXISTENCE: ok = !(hasA && hasB); activated = hasA || hasB; break;
+				case PRECEDENCE:
+				case CHAIN_PRECEDENCE: ok = !violated[i]; activated = hasB; break;
+				case SUCCESSION: ok = !violated[i] && ((state[i] & PENDING) == 0); activated = hasA || hasB; break;
+				default: ok = !violated[i] && ((state[i] & PENDING) == 0); activated = hasA; break;
+				}
+				if (ok){
+					satisfied[i]++;
+					if (!activated){
+						vacuous[i]++;
+					}
+				}
+			}
+
+			//Clear the label bitset for the next case.
+			for (int e = start; e < end; e++){
+				present[log.getEventLabel(e) >>> 6] = 0;
+			}
+		}
+
+		int cases = log.getCaseCount();
+		for (int i = 0; i < k; i++){
+			Double support = (cases > 0)?(double) satisfied[i] / cases:null;
+			result.addRow(names.get(i), cases, satisfied[i], cases - satisfied[i], vacuous[i], support);
+		}
+		return result;
+	}
+
+	/**
+	 * Parses a constraint of the form TEMPLATE(A) or TEMPLATE(A,B) into its template and label identifiers.
+	 */
+	private static int[] parse(String constraint, HashMap<String,Integer> labelIds) throws SQLException {
+		int open = constraint.indexOf('(');
+		int close = constraint.lastIndexOf(')');
+		if ((open < 0) || (close < open)){
+			throw new SQLException("Invalid constraint: " + constraint.trim());
+		}
+		String name = StringUtils.toUpperEnglish(constraint.substring(0, open).trim());
+		int template = Arrays.asList(TEMPLATES).indexOf(name);
+		String[] labels = constraint.substring(open + 1, close).split(",");
+		int arity = (template <= INIT)?1:2;
+		if ((template < 0) || (labels.length != arity)){
+			throw new SQLException("Invalid constraint: " + constraint.trim());
+		}
+		int[] c = {template, -1, -1};
+		for (int i = 0; i < arity; i++){
+			Integer labelId = labelIds.get(labels[i].trim());
+			c[i + 1] = (labelId != null)?labelId:-1;
+		}
+		return c;
+	}
+
+	private static void addToIndex(int[][] byLabel, int[] byLabelCount, int label, int constraint) {
+		if (label < 0){
+			return;
+		}
+		if (byLabel[label] == null){
+			byLabel[label] = new int[4];
+		}else if (byLabelCount[label] == byLabel[label].length){
+			byLabel[label] = Arrays.copyOf(byLabel[label], byLabelCount[label] * 2);
+		}
+		byLabel[label][byLabelCount[label]++] = constraint;
+	}
+
+	private static boolean isPresent(long[] present, int label) {
+		return (label >= 0) && ((present[label >>> 6] & (1L << label)) != 0);
+	}
+}
@@ -0,0 +1,111 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * The difference between the directly follows graphs of two event logs, e.g. of two periods, computed without
+ * two DFG invocations and an outer join of their results.
+ *
+ */
+public class DfgDiff {
+
+	/**
+	 * Implements the directly follows graph difference. Both event logs are read with one label dictionary, after which
+	 * the directly follows counts of the two logs are computed in parallel, as in DFG. Returns each pair of event labels
+	 * that directly follow each other in some case of either log, together with the number of times that this happens
+	 * in each log.
+	 *
+	 * Both event logs must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * E.g.: DFG_DIFF((SELECT * FROM Event_Log WHERE Time &lt; '2020-01-01'), (SELECT * FROM Event_Log WHERE Time &gt;= '2020-01-01'))
+	 *
+	 * The returned difference has five columns:
+	 * - the event label for the preceding event (EVENT_LABEL_P)
+	 * - the event label for the succeeding event (EVENT_LABEL_S)
+	 * - the number of times that the succeeding event directly follows the preceding event in the first log (FREQUENCY_A)
+	 * - the number of times that the succeeding event directly follows the preceding event in the second log (FREQUENCY_B)
+	 * - the difference FREQUENCY_B - FREQUENCY_A (DELTA)
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLogA	The first event log as specified above.
+	 * @param eventLogB	The second event log as specified above.
+	 * @return			The difference between the directly follows graphs as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet dfgDiff(Connection conn, ResultSet eventLogA, ResultSet eventLogB) throws SQLException {
+		EventLog logA = null;
+		EventLog logB = null;
+		try {
+			if (!EventLog.isColumnList(conn)){
+				ArrayList<Object> labels = new ArrayList<Object>();
+				HashMap<Object,Integer> labelIds = new HashMap<Object,Integer>();
+				logA = read(eventLogA, labels, labelIds);
+				logB = read(eventLogB, labels, labelIds);
+			}
+		} finally {
+			EventLog.close(eventLogA);
+			EventLog.close(eventLogB);
+		}
+
+		//The labels have the type of a log that has events, if any.
+		EventLog typed = ((logA != null) && (logA.getEventCount() > 0))?logA:logB;
+		SimpleResultSet result = new SimpleResultSet();
+		EventLog.addLabelColumn(result, "EVENT_LABEL_P", typed);
+		EventLog.addLabelColumn(result, "EVENT_LABEL_S", typed);
+		result.addColumn("FREQUENCY_A", Types.INTEGER, 10, 0);
+		result.addColumn("FREQUENCY_B", Types.INTEGER, 10, 0);
+		result.addColumn("DELTA", Types.INTEGER, 10, 0);
+		if (logA == null){
+			return result;
+		}
+
+		//Count the first log on another thread and the second log on the current thread.
+		final EventLog fLogA = logA;
+		final int[][][] countsA = new int[1][][];
+		Task task = new Task() {
+			@Override
+			public void call() {
+				countsA[0] = DirectlyFollows.count(fLogA, null);
+			}
+		}.execute();
+		int[][] countsB = DirectlyFollows.count(logB, null);
+		task.get();
+
+		int[][] a = countsA[0];
+		for (int p = 0; p < a.length; p++){
+			for (int s = 0; s < a.length; s++){
+				if ((a[p][s] > 0) || (countsB[p][s] > 0)){
+					result.addRow(logA.getLabel(p), logA.getLabel(s), a[p][s], countsB[p][s], countsB[p][s] - a[p][s]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads one of the event logs with the shared label dictionary. A log without rows arrives as null and a log of
+	 * one row arrives as a single row value; neither has directly follows pairs, so both are read as an empty log.
+	 */
+	private static EventLog read(ResultSet eventLog, ArrayList<Object> labels, HashMap<Object,Integer> labelIds) throws SQLException {
+		if (eventLog == null){
+			return EventLog.empty(labels);
+		}
+		int columns = eventLog.getMetaData().getColumnCount();
+		if (columns == 3){
+			return EventLog.read(eventLog, labels, labelIds);
+		}else if ((columns == 1) && eventLog.next() && !eventLog.next()){
+			return EventLog.empty(labels);
+		}
+		throw new SQLException("The event logs must have three columns: case identifier, event label and timestamp");
+	}
+}
\ No newline at end of file
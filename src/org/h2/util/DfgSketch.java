@@ -0,0 +1,472 @@
+package org.h2.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+import org.h2.mvstore.DataUtils;
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * An approximate directly follows graph with bounded memory. The frequencies of the edges are counted in a
+ * count-min sketch, which never underestimates a frequency and overestimates it by at most 2.72 / width times the
+ * total number of edges with probability 1 - e^-depth. The most frequent edges are kept in a list of heavy hitters,
+ * such that the graph can be returned without knowing the edges in advance.
+ *
+ * Sketches with the same width and depth can be merged, e.g. the sketches of the partitions of a log, and are
+ * stored as BINARY values, such that a sketch can be computed once per partition and kept in a table.
+ *
+ * A sketch is stored as follows (all numbers big-endian): magic number, version, width, depth, the maximum number of
+ * heavy hitters, the total number of edges, the counters as variable size longs, the number of heavy hitters and the
+ * labels of each heavy hitter as strings (see EventLogFile).
+ *
+ */
+public class DfgSketch {
+
+	private static final int MAGIC = 0x48324453;
+	private static final int VERSION = 1;
+
+	/**
+	 * The default dimensions, which take 2.5 MB of counters.
+	 */
+	public static final int DEFAULT_WIDTH = 1 << 16;
+	public static final int DEFAULT_DEPTH = 5;
+	public static final int DEFAULT_HEAVY_HITTERS = 1000;
+
+	private final int width;
+	private final int depth;
+	private final int maxHeavyHitters;
+	private final long[] counters;
+	private long total;
+	private final HashMap<Long,Edge> heavyHitters = new HashMap<Long,Edge>();
+	/**
+	 * The heavy hitters, ordered by the frequency they had when they were queued. Since frequencies only increase,
+	 * that frequency is a lower bound, and the head is only brought up to date when a heavy hitter must be evicted.
+	 */
+	private final PriorityQueue<Edge> leastFrequent = new PriorityQueue<Edge>(11, new Comparator<Edge>() {
+		@Override
+		public int compare(Edge e1, Edge e2) {
+			return (e1.queued < e2.queued)?-1:((e1.queued > e2.queued)?1:0);
+		}
+	});
+
+	/**
+	 * An event label with its 64 bit hash.
+	 */
+	static class Label {
+		final String text;
+		final long hash;
+
+		Label(String text) {
+			this.text = text;
+			this.hash = hash(text);
+		}
+	}
+
+	/**
+	 * An edge between two labels, with its 64 bit hash and its estimated frequency.
+	 */
+	static class Edge {
+		final String labelP;
+		final String labelS;
+		final long hash;
+		long frequency;
+		/** The frequency of the edge when it was added to the queue of least frequent heavy hitters. */
+		long queued;
+
+		Edge(String labelP, String labelS, long hash) {
+			this.labelP = labelP;
+			this.labelS = labelS;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * Creates an empty sketch.
+	 *
+	 * @param width				The number of counters per row.
+	 * @param depth				The number of rows, each with its own hash function.
+	 * @param maxHeavyHitters	The maximum number of heavy hitters.
+	 */
+	public DfgSketch(int width, int depth, int maxHeavyHitters) {
+		if ((width <= 0) || (depth <= 0) || (maxHeavyHitters < 0) || ((long) width * depth > Integer.MAX_VALUE)){
+			throw new IllegalArgumentException("Invalid sketch dimensions " + width + " x " + depth);
+		}
+		this.width = width;
+		this.depth = depth;
+		this.maxHeavyHitters = maxHeavyHitters;
+		this.counters = new long[width * depth];
+	}
+
+	/**
+	 * Computes the sketch of an event log with the default dimensions. See the other dfgSketch.
+	 */
+	public static byte[] dfgSketch(Connection conn, ResultSet eventLog) throws SQLException {
+		return dfgSketch(conn, eventLog, DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_HEAVY_HITTERS);
+	}
+
+	/**
+	 * Computes the sketch of the directly follows graph of an event log (see DFG), reading the events as a stream,
+	 * such that only the events with the last two timestamps of the current case are kept in memory.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * The events must be ordered by case identifier and timestamp, e.g.: SELECT * FROM Event_Log ORDER BY 1, 3.
+	 *
+	 * @param conn				The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog			An event log as specified above.
+	 * @param width				The number of counters per row of the sketch.
+	 * @param depth				The number of rows of the sketch.
+	 * @param maxHeavyHitters	The maximum number of edges that is returned by APPROXIMATE_DFG.
+	 * @return					The sketch as a BINARY value.
+	 * @throws SQLException
+	 */
+	public static byte[] dfgSketch(Connection conn, ResultSet eventLog, int width, int depth, int maxHeavyHitters) throws SQLException {
+		DfgSketch sketch;
+		try {
+			sketch = new DfgSketch(width, depth, maxHeavyHitters);
+		} catch (IllegalArgumentException e) {
+			EventLog.close(eventLog);
+			throw new SQLException(e.getMessage());
+		}
+		if ((eventLog != null) && (eventLog.getMetaData().getColumnCount() == 3) && !EventLog.isColumnList(conn)){
+			try {
+				sketch.addAll(eventLog);
+			} finally {
+				EventLog.close(eventLog);
+			}
+		}else{
+			EventLog.close(eventLog);
+		}
+		return sketch.toBytes();
+	}
+
+	/**
+	 * Merges two sketches with the same width and depth, e.g.: DFG_SKETCH_MERGE(s1, s2). A null sketch is ignored.
+	 *
+	 * @param sketch1	A sketch.
+	 * @param sketch2	Another sketch.
+	 * @return			The sketch of the union of the event logs of both sketches.
+	 * @throws SQLException
+	 */
+	public static byte[] dfgSketchMerge(byte[] sketch1, byte[] sketch2) throws SQLException {
+		if (sketch1 == null){
+			return sketch2;
+		}
+		if (sketch2 == null){
+			return sketch1;
+		}
+		DfgSketch sketch = fromBytes(sketch1);
+		sketch.merge(fromBytes(sketch2));
+		return sketch.toBytes();
+	}
+
+	/**
+	 * Returns the heavy hitters of a sketch as a directly follows graph, ordered by descending frequency.
+	 *
+	 * The returned directly follows graph has three columns:
+	 * - the event label for the preceding event (EVENT_LABEL_P)
+	 * - the event label for the succeeding event (EVENT_LABEL_S)
+	 * - the estimated number of times that the succeeding event directly follows the preceding event (FREQUENCY)
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param sketch	A sketch.
+	 * @return			The approximate directly follows graph as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet approximateDfg(Connection conn, byte[] sketch) throws SQLException {
+		SimpleResultSet result = new SimpleResultSet();
+		result.addColumn("EVENT_LABEL_P", Types.VARCHAR, 255, 0);
+		result.addColumn("EVENT_LABEL_S", Types.VARCHAR, 255, 0);
+		result.addColumn("FREQUENCY", Types.BIGINT, 19, 0);
+		if ((sketch == null) || EventLog.isColumnList(conn)){
+			return result;
+		}
+		for (Edge edge: fromBytes(sketch).getHeavyHitters()){
+			result.addRow(edge.labelP, edge.labelS, edge.frequency);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the estimated frequency of an edge, also if it is not a heavy hitter.
+	 *
+	 * @param sketch	A sketch.
+	 * @param labelP	The event label of the preceding event.
+	 * @param labelS	The event label of the succeeding event.
+	 * @return			The estimated number of times that the succeeding event directly follows the preceding event.
+	 * @throws SQLException
+	 */
+	public static long dfgSketchEstimate(byte[] sketch, String labelP, String labelS) throws SQLException {
+		if (sketch == null){
+			return 0;
+		}
+		return fromBytes(sketch).estimate(hash(new Label(labelP).hash, new Label(labelS).hash));
+	}
+
+	/**
+	 * Adds the edges of an event log that is ordered by case identifier and timestamp. Events with the same timestamp
+	 * directly follow all events with the preceding timestamp, as in DirectlyFollows.
+	 */
+	void addAll(ResultSet eventLog) throws SQLException {
+		HashMap<Object,Label> labels = new HashMap<Object,Label>();
+		ArrayList<Label> antecedents = new ArrayList<Label>();
+		ArrayList<Label> consequents = new ArrayList<Label>();
+		Object caseId = null;
+		long time = 0;
+		boolean first = true;
+		while (eventLog.next()){
+			Object c = eventLog.getObject(1);
+			Object l = eventLog.getObject(2);
+			Label label = labels.get(l);
+			if (label == null){
+				label = new Label(String.valueOf(EventLog.labelKey(l)));
+				labels.put(l, label);
+			}
+			Timestamp ts = eventLog.getTimestamp(3);
+			long t = (ts != null)?ts.getTime():0;
+			if (first || ((caseId == null)?(c != null):!caseId.equals(c))){
+				antecedents.clear();
+				consequents.clear();
+				caseId = c;
+				first = false;
+			}else if (t < time){
+				throw new SQLException("The event log must be ordered by case identifier and timestamp");
+			}else if (t > time){
+				ArrayList<Label> swap = antecedents;
+				antecedents = consequents;
+				consequents = swap;
+				consequents.clear();
+			}
+			time = t;
+			for (int i = 0; i < antecedents.size(); i++){
+				add(antecedents.get(i), label, 1);
+			}
+			consequents.add(label);
+		}
+	}
+
+	/**
+	 * Adds the given number of occurrences of an edge.
+	 */
+	public void add(String labelP, String labelS, long count) {
+		add(new Label(labelP), new Label(labelS), count);
+	}
+
+	private void add(Label labelP, Label labelS, long count) {
+		long hash = hash(labelP.hash, labelS.hash);
+		long h2 = (hash >>> 32) | 1;
+		long estimate = Long.MAX_VALUE;
+		for (int d = 0; d < depth; d++){
+			int i = d * width + (int) (((hash + d * h2) >>> 1) % width);
+			counters[i] += count;
+			estimate = Math.min(estimate, counters[i]);
+		}
+		total += count;
+		Edge known = heavyHitters.get(hash);
+		if (known != null){
+			known.frequency = estimate;
+		}else{
+			offer(labelP, labelS, hash, estimate);
+		}
+	}
+
+	/**
+	 * Returns the estimated frequency of the edge with the given hash.
+	 */
+	long estimate(long hash) {
+		long h2 = (hash >>> 32) | 1;
+		long estimate = Long.MAX_VALUE;
+		for (int d = 0; d < depth; d++){
+			estimate = Math.min(estimate, counters[d * width + (int) (((hash + d * h2) >>> 1) % width)]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Keeps an edge as a heavy hitter if there is room or if it is more frequent than the least frequent heavy hitter.
+	 */
+	private void offer(Label labelP, Label labelS, long hash, long estimate) {
+		if (maxHeavyHitters == 0){
+			return;
+		}
+		if (heavyHitters.size() >= maxHeavyHitters){
+			//Requeue heavy hitters that have become more frequent, until the head is the least frequent one.
+			Edge min = leastFrequent.peek();
+			while ((estimate > min.queued) && (min.frequency > min.queued)){
+				leastFrequent.poll();
+				queue(min);
+				min = leastFrequent.peek();
+			}
+			if (estimate <= min.queued){
+				return;
+			}
+			leastFrequent.poll();
+			heavyHitters.remove(min.hash);
+		}
+		Edge edge = new Edge(labelP.text, labelS.text, hash);
+		edge.frequency = estimate;
+		put(edge);
+	}
+
+	private void put(Edge edge) {
+		heavyHitters.put(edge.hash, edge);
+		queue(edge);
+	}
+
+	private void queue(Edge edge) {
+		edge.queued = edge.frequency;
+		leastFrequent.add(edge);
+	}
+
+	/**
+	 * Adds the counts of another sketch with the same dimensions to this sketch.
+	 */
+	public void merge(DfgSketch other) throws SQLException {
+		if ((width != other.width) || (depth != other.depth)){
+			throw new SQLException("Cannot merge sketches of " + width + " x " + depth + " and " + other.width + " x " + other.depth);
+		}
+		for (int i = 0; i < counters.length; i++){
+			counters[i] += other.counters[i];
+		}
+		total += other.total;
+		//Re-estimate the candidates of both sketches and keep the most frequent ones.
+		ArrayList<Edge> candidates = new ArrayList<Edge>(heavyHitters.values());
+		for (Edge edge: other.heavyHitters.values()){
+			if (!heavyHitters.containsKey(edge.hash)){
+				candidates.add(edge);
+			}
+		}
+		heavyHitters.clear();
+		leastFrequent.clear();
+		for (Edge edge: candidates){
+			edge.frequency = estimate(edge.hash);
+		}
+		sort(candidates);
+		for (int i = 0; (i < candidates.size()) && (i < maxHeavyHitters); i++){
+			put(candidates.get(i));
+		}
+	}
+
+	/**
+	 * Returns the heavy hitters, ordered by descending frequency.
+	 */
+	public ArrayList<Edge> getHeavyHitters() {
+		ArrayList<Edge> result = new ArrayList<Edge>(heavyHitters.values());
+		sort(result);
+		return result;
+	}
+
+	private static void sort(ArrayList<Edge> edges) {
+		Collections.sort(edges, new Comparator<Edge>() {
+			@Override
+			public int compare(Edge e1, Edge e2) {
+				return (e1.frequency > e2.frequency)?-1:((e1.frequency < e2.frequency)?1:0);
+			}
+		});
+	}
+
+	/**
+	 * Returns the total number of edges that was added.
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Serializes the sketch.
+	 */
+	public byte[] toBytes() throws SQLException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(width);
+			out.writeInt(depth);
+			out.writeInt(maxHeavyHitters);
+			out.writeLong(total);
+			for (long counter: counters){
+				DataUtils.writeVarLong(out, counter);
+			}
+			out.writeInt(heavyHitters.size());
+			for (Edge edge: heavyHitters.values()){
+				EventLogFile.writeString(out, edge.labelP);
+				EventLogFile.writeString(out, edge.labelS);
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new SQLException("Cannot write the sketch", e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Deserializes a sketch.
+	 */
+	public static DfgSketch fromBytes(byte[] bytes) throws SQLException {
+		try {
+			ByteBuffer buff = ByteBuffer.wrap(bytes);
+			if ((buff.getInt() != MAGIC) || (buff.getInt() != VERSION)){
+				throw new SQLException("Not a DFG sketch");
+			}
+			DfgSketch sketch = new DfgSketch(buff.getInt(), buff.getInt(), buff.getInt());
+			sketch.total = buff.getLong();
+			for (int i = 0; i < sketch.counters.length; i++){
+				sketch.counters[i] = DataUtils.readVarLong(buff);
+			}
+			int n = buff.getInt();
+			for (int i = 0; i < n; i++){
+				String labelP = EventLogFile.readString(buff);
+				String labelS = EventLogFile.readString(buff);
+				Edge edge = new Edge(labelP, labelS, hash(new Label(labelP).hash, new Label(labelS).hash));
+				edge.frequency = sketch.estimate(edge.hash);
+				sketch.put(edge);
+			}
+			return sketch;
+		} catch (RuntimeException e) {
+			throw new SQLException("Not a DFG sketch", e);
+		}
+	}
+
+	/**
+	 * A 64 bit hash of a string (FNV-1a, followed by the finalization step of MurmurHash3).
+	 */
+	private static long hash(String s) {
+		long h = 0xcbf29ce484222325L;
+		if (s != null){
+			for (int i = 0; i < s.length(); i++){
+				h ^= s.charAt(i);
+				h *= 0x100000001b3L;
+			}
+		}
+		return hash(h);
+	}
+
+	private static long hash(long hashP, long hashS) {
+		return hash(hashP * 0x9E3779B97F4A7C15L + hashS);
+	}
+
+	private static long hash(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
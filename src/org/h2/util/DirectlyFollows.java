@@ -0,0 +1,170 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * Counts how often the events with one label directly follow the events with another label in an event log.
+ * The counts are the basis of the directly follows graph (DFG) and of the other discovery functions.
+ *
+ */
+public class DirectlyFollows {
+
+	/**
+	 * Implements the directly follows graph. Given an event log, returns each pair of event labels of events that
+	 * directly follow each other in some case, together with the number of times that this happens.
+	 * The pairs are the same as those of the weakly follows relation: events with the same timestamp directly
+	 * follow all events with the preceding timestamp.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The returned directly follows graph has three columns:
+	 * - the event label for the preceding event (EVENT_LABEL_P)
+	 * - the event label for the succeeding event (EVENT_LABEL_S)
+	 * - the number of times that the succeeding event directly follows the preceding event (FREQUENCY)
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @return			The directly follows graph for the given event log as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet dfg(Connection conn, ResultSet eventLog) throws SQLException {
+		EventLog log = EventLog.read(conn, eventLog);
+
+		SimpleResultSet result = new SimpleResultSet();
+		EventLog.addLabelColumn(result, "EVENT_LABEL_P", log);
+		EventLog.addLabelColumn(result, "EVENT_LABEL_S", log);
+		result.addColumn("FREQUENCY", Types.INTEGER, 10, 0);
+		if (log == null){
+			return result;
+		}
+
+		int[][] counts = count(log, null);
+		for (int a = 0; a < counts.length; a++){
+			for (int b = 0; b < counts.length; b++){
+				if (counts[a][b] > 0){
+					result.addRow(log.getLabel(a), log.getLabel(b), counts[a][b]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Implements the directly follows graph on abstract labels, without collapsing. See the other dfg.
+	 */
+	public static ResultSet dfg(Connection conn, ResultSet eventLog, ResultSet mapping) throws SQLException {
+		return dfg(conn, eventLog, mapping, false);
+	}
+
+	/**
+	 * Implements the directly follows graph in terms of abstract labels, e.g. the groups of an activity hierarchy,
+	 * to which the event labels are mapped by a label mapping (see LabelMapping). The directly follows counts are
+	 * computed on the event labels and then mapped, such that the mapping is applied once per label instead of
+	 * once per event.
+	 *
+	 * The event log must be as specified for the other dfg, and the mapping must have two columns:
+	 * - event label
+	 * - abstract label
+	 *
+	 * The returned directly follows graph has the three columns of the other dfg, of which the first two contain
+	 * abstract labels.
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @param mapping	A label mapping as specified above.
+	 * @param collapse	If true, events that are mapped to the same abstract label back to back are collapsed into one event.
+	 * @return			The directly follows graph on abstract labels.
+	 * @throws SQLException
+	 */
+	public static ResultSet dfg(Connection conn, ResultSet eventLog, ResultSet mapping, boolean collapse) throws SQLException {
+		EventLog log = EventLog.read(conn, eventLog);
+		LabelMapping labelMapping = LabelMapping.read(log, mapping);
+
+		SimpleResultSet result = new SimpleResultSet();
+		labelMapping.addLabelColumn(result, "EVENT_LABEL_P");
+		labelMapping.addLabelColumn(result, "EVENT_LABEL_S");
+		result.addColumn("FREQUENCY", Types.INTEGER, 10, 0);
+		if (log == null){
+			return result;
+		}
+
+		int[][] counts = labelMapping.map(count(log, null), collapse);
+		for (int a = 0; a < counts.length; a++){
+			for (int b = 0; b < counts.length; b++){
+				if (counts[a][b] > 0){
+					result.addRow(labelMapping.getLabel(a), labelMapping.getLabel(b), counts[a][b]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the directly follows pairs of an event log in a single pass over its cases.
+	 * counts[a][b] is the number of times that an event with label identifier b directly follows an event with
+	 * label identifier a, where events with the same timestamp directly follow all events with the preceding timestamp.
+	 *
+	 * Optionally also counts the length-two loops: loops[a][b] is the number of times that an event with label b
+	 * directly follows an event with label a, and is directly followed by an event with label a (different from b),
+	 * where directly follows is defined over events with the same timestamp as for the counts. Without events with
+	 * the same timestamp, this is the number of times that a case has the labels a, b, a at consecutive positions.
+	 *
+	 * @param log	The event log.
+	 * @param loops	A label count x label count matrix to which the length-two loops are added, or null.
+	 * @return		The directly follows counts.
+	 */
+	public static int[][] count(EventLog log, int[][] loops) {
+		int[][] counts = new int[log.getLabelCount()][log.getLabelCount()];
+		for (int c = 0; c < log.getCaseCount(); c++){
+			int end = log.getCaseEnd(c);
+			int sp = -1; //start index of the batch before the antecedents, if any
+			int sa = log.getCaseStart(c); //start index of the antecedents
+			int sc = log.nextBatch(sa, end); //start index of the consequents
+			while (sc < end){
+				int ec = log.nextBatch(sc, end);
+				for (int i = sa; i < sc; i++){
+					int[] row = counts[log.getEventLabel(i)];
+					for (int j = sc; j < ec; j++){
+						row[log.getEventLabel(j)]++;
+					}
+				}
+				if ((loops != null) && (sp >= 0)){
+					countLoops(log, loops, sp, sa, sc, ec);
+				}
+				sp = sa;
+				sa = sc;
+				sc = ec;
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Adds the length-two loops a, b, a of three consecutive batches of events with the same timestamp to loops,
+	 * where the batches are the events in [sp, sa), [sa, sc) and [sc, ec).
+	 */
+	private static void countLoops(EventLog log, int[][] loops, int sp, int sa, int sc, int ec) {
+		for (int i = sp; i < sa; i++){
+			int a = log.getEventLabel(i);
+			for (int k = sc; k < ec; k++){
+				if (log.getEventLabel(k) == a){
+					for (int j = sa; j < sc; j++){
+						int b = log.getEventLabel(j);
+						if (b != a){
+							loops[a][b]++;
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,464 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * A dictionary-encoded representation of an event log, as it is used by the process mining functions.
+ *
+ * Event labels are replaced by integer identifiers from a label dictionary. The events of each case are
+ * stored consecutively and ordered by time, such that the events of case c are at the positions
+ * getCaseStart(c) up to (but not including) getCaseEnd(c).
+ *
+ */
+public class EventLog {
+
+	private final ArrayList<Object> labels;
+	private final HashMap<Object,Integer> labelIds;
+	private final Object[] caseIds;
+	private final int[] caseStart;
+	private final int[] eventLabels;
+	private final long[] eventTimes;
+	private String[] columnNames = {"CASE_ID", "EVENT_LABEL", "EVENT_TIME"};
+	private int caseIdType = Types.VARCHAR;
+	private int caseIdPrecision = 255;
+	private int labelType = Types.VARCHAR;
+	private int labelPrecision = 255;
+
+	/**
+	 * Creates an event log from its dictionary-encoded parts.
+	 *
+	 * @param labels		The label dictionary, such that label identifier i refers to labels.get(i).
+	 * @param caseIds		The case identifiers.
+	 * @param caseStart		The position of the first event of each case, followed by the number of events.
+	 * @param eventLabels	The label identifier of each event.
+	 * @param eventTimes	The time of each event in milliseconds.
+	 */
+	public EventLog(ArrayList<Object> labels, Object[] caseIds, int[] caseStart, int[] eventLabels, long[] eventTimes) {
+		this.labels = labels;
+		this.labelIds = new HashMap<Object,Integer>();
+		for (int i = 0; i < labels.size(); i++){
+			labelIds.put(labels.get(i), i);
+		}
+		this.caseIds = caseIds;
+		this.caseStart = caseStart;
+		this.eventLabels = eventLabels;
+		this.eventTimes = eventTimes;
+	}
+
+	/**
+	 * Creates an event log without events.
+	 */
+	public static EventLog empty() {
+		return empty(new ArrayList<Object>());
+	}
+
+	/**
+	 * Creates an event log without events on the given label dictionary, such that it has the same label identifiers
+	 * as the other logs that are read with that dictionary.
+	 */
+	static EventLog empty(ArrayList<Object> labels) {
+		return new EventLog(labels, new Object[0], new int[1], new int[0], new long[0]);
+	}
+
+	/**
+	 * Reads an event log from a result set. The result set must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * The events of each case are sorted by time. Events with the same time keep the order in which they were read.
+	 *
+	 * @param eventLog	An event log as specified above.
+	 * @return			The dictionary-encoded event log.
+	 * @throws SQLException
+	 */
+	public static EventLog read(ResultSet eventLog) throws SQLException {
+		return read(eventLog, new ArrayList<Object>(), new HashMap<Object,Integer>());
+	}
+
+	/**
+	 * Reads an event log from a result set, adding its labels to the given label dictionary, such that several logs
+	 * that are read with the same dictionary have the same label identifiers. The label count of each such log is the
+	 * size of the dictionary, which may grow while further logs are read. See the other read.
+	 *
+	 * @param eventLog	An event log.
+	 * @param labels	The label dictionary.
+	 * @param labelIds	The identifier of each label in the dictionary.
+	 * @return			The dictionary-encoded event log.
+	 * @throws SQLException
+	 */
+	static EventLog read(ResultSet eventLog, ArrayList<Object> labels, HashMap<Object,Integer> labelIds) throws SQLException {
+		if (eventLog instanceof EventLogFile.MappedResultSet){
+			//An imported event log file is built straight from the sections of the file, without reading its rows.
+			return ((EventLogFile.MappedResultSet) eventLog).read(labels, labelIds);
+		}
+		ArrayList<Object> caseIdList = new ArrayList<Object>();
+		HashMap<Object,Integer> caseIndexes = new HashMap<Object,Integer>();
+
+		//Read the events in arrival order, remembering the case index of each event.
+		int size = 0;
+		int[] eventCase = new int[1024];
+		int[] eventLabel = new int[1024];
+		long[] eventTime = new long[1024];
+		while (eventLog.next()){
+			Object caseId = eventLog.getObject(1);
+			Integer caseIndex = caseIndexes.get(caseId);
+			if (caseIndex == null){
+				caseIndex = caseIdList.size();
+				caseIndexes.put(caseId, caseIndex);
+				caseIdList.add(caseId);
+			}
+			Object label = labelKey(eventLog.getObject(2));
+			Integer labelId = labelIds.get(label);
+			if (labelId == null){
+				labelId = labels.size();
+				labelIds.put(label, labelId);
+				labels.add(label);
+			}
+			Timestamp ts = eventLog.getTimestamp(3);
+			if (size == eventCase.length){
+				eventCase = Arrays.copyOf(eventCase, size * 2);
+				eventLabel = Arrays.copyOf(eventLabel, size * 2);
+				eventTime = Arrays.copyOf(eventTime, size * 2);
+			}
+			eventCase[size] = caseIndex;
+			eventLabel[size] = labelId;
+			eventTime[size] = (ts!=null)?ts.getTime():0;
+			size++;
+		}
+
+		EventLog log = build(labels, caseIdList.toArray(), eventCase, eventLabel, eventTime, size);
+		ResultSetMetaData rsm = eventLog.getMetaData();
+		log.setColumnNames(rsm.getColumnLabel(1), rsm.getColumnLabel(2), rsm.getColumnLabel(3));
+		log.setCaseIdType(rsm.getColumnType(1), rsm.getPrecision(1));
+		log.setLabelType(rsm.getColumnType(2), rsm.getPrecision(2));
+		return log;
+	}
+
+	/**
+	 * Creates an event log from events in arrival order, grouping them by case and sorting the events of each
+	 * case by time. Events with the same time keep their arrival order.
+	 *
+	 * @param labels		The label dictionary.
+	 * @param caseIds		The case identifiers.
+	 * @param eventCase		The case index of each event.
+	 * @param eventLabel	The label identifier of each event.
+	 * @param eventTime		The time of each event in milliseconds.
+	 * @param size			The number of events.
+	 * @return				The event log.
+	 */
+	static EventLog build(ArrayList<Object> labels, Object[] caseIds, int[] eventCase, int[] eventLabel, long[] eventTime, int size) {
+		//Group the events by case (counting sort, which keeps the arrival order within a case).
+		int caseCount = caseIds.length;
+		int[] caseStart = new int[caseCount + 1];
+		for (int i = 0; i < size; i++){
+			caseStart[eventCase[i] + 1]++;
+		}
+		for (int c = 0; c < caseCount; c++){
+			caseStart[c + 1] += caseStart[c];
+		}
+		int[] next = Arrays.copyOf(caseStart, caseCount);
+		int[] labelsByCase = new int[size];
+		long[] timesByCase = new long[size];
+		for (int i = 0; i < size; i++){
+			int pos = next[eventCase[i]]++;
+			labelsByCase[pos] = eventLabel[i];
+			timesByCase[pos] = eventTime[i];
+		}
+
+		//Sort the events of each case by time.
+		int[] labelBuffer = new int[size];
+		long[] timeBuffer = new long[size];
+		for (int c = 0; c < caseCount; c++){
+			sortByTime(timesByCase, labelsByCase, caseStart[c], caseStart[c + 1], timeBuffer, labelBuffer);
+		}
+
+		return new EventLog(labels, caseIds, caseStart, labelsByCase, timesByCase);
+	}
+
+	/**
+	 * Stable merge sort of the events in [from, to) by time, using the given buffers as scratch space.
+	 */
+	static void sortByTime(long[] times, int[] labels, int from, int to, long[] timeBuffer, int[] labelBuffer) {
+		if (to - from < 16){
+			for (int i = from + 1; i < to; i++){
+				long t = times[i];
+				int l = labels[i];
+				int j = i - 1;
+				while ((j >= from) && (times[j] > t)){
+					times[j + 1] = times[j];
+					labels[j + 1] = labels[j];
+					j--;
+				}
+				times[j + 1] = t;
+				labels[j + 1] = l;
+			}
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		sortByTime(times, labels, from, mid, timeBuffer, labelBuffer);
+		sortByTime(times, labels, mid, to, timeBuffer, labelBuffer);
+		if (times[mid - 1] <= times[mid]){
+			return;
+		}
+		System.arraycopy(times, from, timeBuffer, from, to - from);
+		System.arraycopy(labels, from, labelBuffer, from, to - from);
+		int i = from;
+		int j = mid;
+		for (int k = from; k < to; k++){
+			if ((j >= to) || ((i < mid) && (timeBuffer[i] <= timeBuffer[j]))){
+				times[k] = timeBuffer[i];
+				labels[k] = labelBuffer[i++];
+			}else{
+				times[k] = timeBuffer[j];
+				labels[k] = labelBuffer[j++];
+			}
+		}
+	}
+
+	/**
+	 * Reads the event log that is passed to a process mining function and closes the internal statement
+	 * that was created to pass it. Returns null if the function need not compute its result, because
+	 * there is no data in the event log, the event log does not have three columns, or the connection
+	 * specifies that only the column list should be returned.
+	 *
+	 * @param conn		The database connection that is passed to the function.
+	 * @param eventLog	The event log that is passed to the function.
+	 * @return			The dictionary-encoded event log or null.
+	 * @throws SQLException
+	 */
+	public static EventLog read(Connection conn, ResultSet eventLog) throws SQLException {
+		EventLog log = null;
+		if ((eventLog != null) && (eventLog.getMetaData().getColumnCount() == 3) && !isColumnList(conn)){
+			log = read(eventLog);
+		}
+		close(eventLog);
+		return log;
+	}
+
+	/**
+	 * Returns the key by which a label is looked up. A label of multiple columns, which is selected as a row value,
+	 * e.g. (Activity, Lifecycle), arrives as an array; it is wrapped such that it is hashed and compared by its values,
+	 * without concatenating the columns into a string.
+	 *
+	 * @param label	The label as it is read from the event log.
+	 * @return		The label itself, or the wrapped label if it has multiple columns.
+	 */
+	public static Object labelKey(Object label) {
+		return (label instanceof Object[])?new MultiLabel((Object[]) label):label;
+	}
+
+	/**
+	 * Returns the label of a key that is returned by labelKey.
+	 */
+	public static Object labelValue(Object key) {
+		return (key instanceof MultiLabel)?((MultiLabel) key).values:key;
+	}
+
+	/**
+	 * A label of multiple columns, with its hash code computed once.
+	 */
+	static final class MultiLabel {
+		final Object[] values;
+		private final int hashCode;
+
+		MultiLabel(Object[] values) {
+			this.values = values;
+			this.hashCode = Arrays.deepHashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof MultiLabel) && (hashCode == ((MultiLabel) o).hashCode) && Arrays.deepEquals(values, ((MultiLabel) o).values);
+		}
+
+		@Override
+		public String toString() {
+			StatementBuilder buff = new StatementBuilder("(");
+			for (Object value: values){
+				buff.appendExceptFirst(", ");
+				buff.append(String.valueOf(value));
+			}
+			return buff.append(')').toString();
+		}
+	}
+
+	/**
+	 * Adds a column to a function result that contains event labels. The column has the type of the event
+	 * labels in the given log, or VARCHAR if there is no log.
+	 *
+	 * @param result	The function result.
+	 * @param name		The name of the column.
+	 * @param log		The event log or null.
+	 */
+	public static void addLabelColumn(SimpleResultSet result, String name, EventLog log) {
+		if (log == null){
+			result.addColumn(name, Types.VARCHAR, 255, 0);
+		}else{
+			result.addColumn(name, log.getLabelType(), log.getLabelPrecision(), 0);
+		}
+	}
+
+	/**
+	 * Adds a column to a function result that contains case identifiers. The column has the type of the case
+	 * identifiers in the given log, or VARCHAR if there is no log.
+	 *
+	 * @param result	The function result.
+	 * @param name		The name of the column.
+	 * @param log		The event log or null.
+	 */
+	public static void addCaseIdColumn(SimpleResultSet result, String name, EventLog log) {
+		if (log == null){
+			result.addColumn(name, Types.VARCHAR, 255, 0);
+		}else{
+			result.addColumn(name, log.getCaseIdType(), log.getCaseIdPrecision(), 0);
+		}
+	}
+
+	/**
+	 * Returns true if the connection only requests the column list of a function result,
+	 * in which case the function need not compute its result.
+	 *
+	 * @param conn	The database connection that is passed to the function.
+	 * @return		True if only the column list is requested.
+	 * @throws SQLException
+	 */
+	public static boolean isColumnList(Connection conn) throws SQLException {
+		return conn.getMetaData().getURL().equals("jdbc:columnlist:connection");
+	}
+
+	/**
+	 * Closes the internal statement that was created to pass a subquery as a result set to a function.
+	 *
+	 * @param rs	The result set that was passed to the function, may be null.
+	 * @throws SQLException
+	 */
+	public static void close(ResultSet rs) throws SQLException {
+		if (rs == null){
+			return;
+		}
+		Statement statement = rs.getStatement();
+		if (statement != null){
+			statement.close();
+		}else{
+			rs.close();
+		}
+	}
+
+	public int getCaseCount() {
+		return caseIds.length;
+	}
+
+	public int getEventCount() {
+		return caseStart[caseIds.length];
+	}
+
+	public int getLabelCount() {
+		return labels.size();
+	}
+
+	public Object getLabel(int labelId) {
+		return labelValue(labels.get(labelId));
+	}
+
+	/**
+	 * Returns the label as a string, e.g. to match it with a label in a constraint or a model. A label of multiple
+	 * columns is returned as (value1, value2, ...).
+	 */
+	public String getLabelName(int labelId) {
+		Object label = labels.get(labelId);
+		return (label != null)?label.toString():null;
+	}
+
+	/**
+	 * Returns the identifier of the given label, or -1 if the label does not occur in the log.
+	 */
+	public int getLabelId(Object label) {
+		Integer labelId = labelIds.get(labelKey(label));
+		return (labelId != null)?labelId:-1;
+	}
+
+	/**
+	 * Returns the position of the first event in [start, end) that has a later time than the event at start,
+	 * or end if there is no such event. The events from start up to that position form a batch of events
+	 * with the same time.
+	 */
+	public int nextBatch(int start, int end) {
+		long time = eventTimes[start];
+		int next = start + 1;
+		while ((next < end) && (eventTimes[next] == time)){
+			next++;
+		}
+		return next;
+	}
+
+	public Object getCaseId(int caseIndex) {
+		return caseIds[caseIndex];
+	}
+
+	public int getCaseStart(int caseIndex) {
+		return caseStart[caseIndex];
+	}
+
+	public int getCaseEnd(int caseIndex) {
+		return caseStart[caseIndex + 1];
+	}
+
+	public int getEventLabel(int event) {
+		return eventLabels[event];
+	}
+
+	public long getEventTime(int event) {
+		return eventTimes[event];
+	}
+
+	public String getColumnName(int column) {
+		return columnNames[column];
+	}
+
+	public void setColumnNames(String caseIdColumn, String labelColumn, String timeColumn) {
+		columnNames = new String[]{caseIdColumn, labelColumn, timeColumn};
+	}
+
+	public int getCaseIdType() {
+		return caseIdType;
+	}
+
+	public int getCaseIdPrecision() {
+		return caseIdPrecision;
+	}
+
+	public void setCaseIdType(int caseIdType, int caseIdPrecision) {
+		this.caseIdType = caseIdType;
+		this.caseIdPrecision = caseIdPrecision;
+	}
+
+	public int getLabelType() {
+		return labelType;
+	}
+
+	public int getLabelPrecision() {
+		return labelPrecision;
+	}
+
+	public void setLabelType(int labelType, int labelPrecision) {
+		this.labelType = labelType;
+		this.labelPrecision = labelPrecision;
+	}
+}
@@ -0,0 +1,479 @@
+package org.h2.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.h2.engine.Constants;
+import org.h2.mvstore.DataUtils;
+import org.h2.store.fs.FileUtils;
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+import org.h2.value.DataType;
+import org.h2.value.ValueString;
+
+/**
+ * A compact binary file format for event logs, with functions to export an event log to such a file
+ * and to import it again. Importing memory-maps the file, in chunks such that it can be larger than 2 GB,
+ * and the events can be scanned without parsing.
+ *
+ * The file consists of the following sections (all numbers big-endian):
+ * - header: magic number, version, the names of the three columns, the SQL type and precision of the case
+ *   identifier, the SQL type and precision of the event label and the encoding of the case identifiers
+ * - label dictionary: the number of labels, followed by each label as a string
+ * - case table: the number of cases and events, the width of a label identifier (1, 2 or 4 bytes),
+ *   the case identifiers, the event offset of each case and the first timestamp of each case
+ * - label section: the label identifier of each event
+ * - timestamp section: for each event the difference with the previous event of the same case, as a variable
+ *   size long
+ * A string is stored as its length in bytes (-1 for null), followed by its UTF-8 encoding. Labels, and case identifiers
+ * that are not integers, are stored as strings and converted back to their SQL type when the file is imported. Types
+ * that do not survive that conversion, like row values or binary data, are imported as VARCHAR.
+ *
+ */
+public class EventLogFile {
+
+	private static final int MAGIC = 0x48324C47;
+	private static final int VERSION = 3;
+	private static final byte CASE_IDS_AS_LONG = 0;
+	private static final byte CASE_IDS_AS_STRING = 1;
+
+	/**
+	 * Exports an event log to a binary event log file.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param fileName	The name of the file to write.
+	 * @param eventLog	An event log as specified above.
+	 * @return			The number of exported events.
+	 * @throws SQLException
+	 */
+	public static int exportEventLog(Connection conn, String fileName, ResultSet eventLog) throws SQLException {
+		if (EventLog.isColumnList(conn)){
+			EventLog.close(eventLog);
+			return 0;
+		}
+		//If there is no data in the eventLog, export an empty log
+		EventLog log;
+		if ((eventLog == null) || (eventLog.getMetaData().getColumnCount() != 3)){
+			log = EventLog.empty();
+		}else{
+			log = EventLog.read(eventLog);
+		}
+		EventLog.close(eventLog);
+		try {
+			write(log, fileName);
+		} catch (IOException e) {
+			throw new SQLException("Cannot write the event log file " + fileName, e);
+		}
+		return log.getEventCount();
+	}
+
+	/**
+	 * Imports an event log from a binary event log file. The file is memory-mapped and its events are
+	 * returned on demand.
+	 *
+	 * The returned event log has the same column names and types as the exported event log:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * If the function is passed directly as the event log of another process mining function, e.g.:
+	 * SELECT * FROM FOLLOWS(IMPORT_EVENTLOG('log.bin')), that function builds its dictionary-encoded event log
+	 * straight from the label dictionary, case table and label and timestamp sections of the file (see EventLog.read),
+	 * without reading rows. In a subquery, e.g.: SELECT * FROM FOLLOWS(SELECT * FROM IMPORT_EVENTLOG('log.bin')),
+	 * the events are returned as rows of boxed values, which the function dictionary-encodes again.
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param fileName	The name of the file to read.
+	 * @return			The event log that is stored in the file.
+	 * @throws SQLException
+	 */
+	public static ResultSet importEventLog(Connection conn, String fileName) throws SQLException {
+		if (fileName == null){
+			SimpleResultSet result = new SimpleResultSet();
+			result.addColumn("CASE_ID", Types.VARCHAR, 255, 0);
+			result.addColumn("EVENT_LABEL", Types.VARCHAR, 255, 0);
+			result.addColumn("EVENT_TIME", Types.TIMESTAMP, 0, 0);
+			return result;
+		}
+		Reader reader;
+		try {
+			reader = new Reader(new MappedFile(fileName));
+		} catch (IOException e) {
+			throw new SQLException("Cannot read the event log file " + fileName, e);
+		}
+		MappedResultSet result = new MappedResultSet(reader, EventLog.isColumnList(conn));
+		result.addColumn(reader.columnNames[0], reader.caseIdType, reader.caseIdPrecision, 0);
+		result.addColumn(reader.columnNames[1], reader.labelType, reader.labelPrecision, 0);
+		result.addColumn(reader.columnNames[2], Types.TIMESTAMP, 0, 0);
+		return result;
+	}
+
+	private static void write(EventLog log, String fileName) throws IOException {
+		int caseCount = log.getCaseCount();
+		int eventCount = log.getEventCount();
+		int labelCount = log.getLabelCount();
+		boolean caseIdsAsLong = isIntegerType(log.getCaseIdType());
+		for (int c = 0; caseIdsAsLong && (c < caseCount); c++){
+			caseIdsAsLong = log.getCaseId(c) instanceof Number;
+		}
+		int caseIdType = log.getCaseIdType();
+		int caseIdPrecision = log.getCaseIdPrecision();
+		if (!caseIdsAsLong && !isStringConvertible(caseIdType)){
+			caseIdType = Types.VARCHAR;
+			caseIdPrecision = Integer.MAX_VALUE;
+		}
+		int labelType = log.getLabelType();
+		int labelPrecision = log.getLabelPrecision();
+		if (!isStringConvertible(labelType)){
+			labelType = Types.VARCHAR;
+			labelPrecision = Integer.MAX_VALUE;
+		}
+		int labelWidth = (labelCount <= 0x100)?1:((labelCount <= 0x10000)?2:4);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(FileUtils.newOutputStream(fileName, false), 64 * 1024));
+		try {
+			//Header
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for (int i = 0; i < 3; i++){
+				writeString(out, log.getColumnName(i));
+			}
+			out.writeInt(caseIdType);
+			out.writeInt(caseIdPrecision);
+			out.writeInt(labelType);
+			out.writeInt(labelPrecision);
+			out.writeByte(caseIdsAsLong?CASE_IDS_AS_LONG:CASE_IDS_AS_STRING);
+
+			//Label dictionary
+			out.writeInt(labelCount);
+			for (int l = 0; l < labelCount; l++){
+				writeString(out, log.getLabelName(l));
+			}
+
+			//Case table
+			out.writeInt(caseCount);
+			out.writeInt(eventCount);
+			out.writeByte(labelWidth);
+			for (int c = 0; c < caseCount; c++){
+				Object caseId = log.getCaseId(c);
+				if (caseIdsAsLong){
+					out.writeLong(((Number) caseId).longValue());
+				}else{
+					writeString(out, (caseId != null)?caseId.toString():null);
+				}
+			}
+			for (int c = 0; c <= caseCount; c++){
+				out.writeInt((c < caseCount)?log.getCaseStart(c):eventCount);
+			}
+			for (int c = 0; c < caseCount; c++){
+				out.writeLong((log.getCaseEnd(c) > log.getCaseStart(c))?log.getEventTime(log.getCaseStart(c)):0);
+			}
+
+			//Label section
+			for (int e = 0; e < eventCount; e++){
+				int labelId = log.getEventLabel(e);
+				if (labelWidth == 1){
+					out.writeByte(labelId);
+				}else if (labelWidth == 2){
+					out.writeShort(labelId);
+				}else{
+					out.writeInt(labelId);
+				}
+			}
+
+			//Timestamp section
+			for (int c = 0; c < caseCount; c++){
+				for (int e = log.getCaseStart(c) + 1; e < log.getCaseEnd(c); e++){
+					DataUtils.writeVarLong(out, log.getEventTime(e) - log.getEventTime(e - 1));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static boolean isIntegerType(int sqlType) {
+		return (sqlType == Types.TINYINT) || (sqlType == Types.SMALLINT) || (sqlType == Types.INTEGER) || (sqlType == Types.BIGINT);
+	}
+
+	/**
+	 * Returns true if a value of the given SQL type can be stored as its string and converted back without loss.
+	 */
+	private static boolean isStringConvertible(int sqlType) {
+		switch (sqlType){
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.BOOLEAN:
+		case Types.BIT:
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+		case Types.DATE:
+		case Types.TIME:
+		case Types.TIMESTAMP:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Converts a string that is read from the file back to a value of the given SQL type.
+	 */
+	private static Object fromString(String s, int sqlType) {
+		if ((s == null) || (sqlType == Types.VARCHAR)){
+			return s;
+		}
+		return ValueString.get(s).convertTo(DataType.convertSQLTypeToValueType(sqlType)).getObject();
+	}
+
+	static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null){
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(Constants.UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(ByteBuffer buff) {
+		int length = buff.getInt();
+		if (length < 0){
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buff.get(bytes);
+		return new String(bytes, Constants.UTF8);
+	}
+
+	/**
+	 * The result set of an imported event log file. A process mining function that gets it as its event log builds
+	 * the dictionary-encoded event log from the file instead of reading the rows (see EventLog.read).
+	 */
+	static class MappedResultSet extends SimpleResultSet {
+
+		private final Reader reader;
+
+		MappedResultSet(Reader reader, boolean columnList) {
+			super(columnList?null:reader);
+			this.reader = reader;
+			//The columns remain available after the last row, like those of a subquery that is passed to a function.
+			setAutoClose(false);
+		}
+
+		/**
+		 * Builds the event log that is stored in the file, adding its labels to the given label dictionary.
+		 * See EventLog.read.
+		 */
+		EventLog read(ArrayList<Object> labels, HashMap<Object,Integer> labelIds) {
+			return reader.read(labels, labelIds);
+		}
+	}
+
+	/**
+	 * Reads the events from a mapped event log file. Only the header, the label dictionary and the case table
+	 * are decoded up front; the events are decoded while they are read.
+	 */
+	private static class Reader implements SimpleRowSource {
+
+		final MappedFile file;
+		final String[] columnNames = new String[3];
+		final int caseIdType;
+		final int caseIdPrecision;
+		final int labelType;
+		final int labelPrecision;
+		final Object[] labels;
+		final Object[] caseIds;
+		final int[] caseStart;
+		final long[] caseTime;
+		final int labelWidth;
+		final long labelSection;
+		final long timeSection;
+		long pos;
+		int caseIndex;
+		int event;
+		long time;
+
+		Reader(MappedFile file) throws IOException {
+			this.file = file;
+			if ((file.length() < 8) || (readInt() != MAGIC) || (readInt() != VERSION)){
+				throw new IOException("Not an event log file of version " + VERSION);
+			}
+			for (int i = 0; i < 3; i++){
+				columnNames[i] = readString();
+			}
+			caseIdType = readInt();
+			caseIdPrecision = readInt();
+			labelType = readInt();
+			labelPrecision = readInt();
+			boolean caseIdsAsLong = file.get(pos++) == CASE_IDS_AS_LONG;
+			labels = new Object[readInt()];
+			for (int l = 0; l < labels.length; l++){
+				labels[l] = fromString(readString(), labelType);
+			}
+			int caseCount = readInt();
+			int eventCount = readInt();
+			labelWidth = file.get(pos++);
+			caseIds = new Object[caseCount];
+			for (int c = 0; c < caseCount; c++){
+				caseIds[c] = caseIdsAsLong?(Object) readLong():fromString(readString(), caseIdType);
+			}
+			caseStart = new int[caseCount + 1];
+			for (int c = 0; c <= caseCount; c++){
+				caseStart[c] = readInt();
+			}
+			caseTime = new long[caseCount];
+			for (int c = 0; c < caseCount; c++){
+				caseTime[c] = readLong();
+			}
+			labelSection = pos;
+			timeSection = labelSection + (long) labelWidth * eventCount;
+			reset();
+		}
+
+		private int readInt() {
+			int x = file.getInt(pos);
+			pos += 4;
+			return x;
+		}
+
+		private long readLong() {
+			long x = file.getLong(pos);
+			pos += 8;
+			return x;
+		}
+
+		private String readString() {
+			int length = readInt();
+			if (length < 0){
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			file.get(pos, bytes);
+			pos += length;
+			return new String(bytes, Constants.UTF8);
+		}
+
+		/**
+		 * Reads a variable size long, as it is written by DataUtils.writeVarLong.
+		 */
+		private long readVarLong() {
+			long x = file.get(pos++);
+			if (x >= 0){
+				return x;
+			}
+			x &= 0x7f;
+			for (int s = 7; s < 64; s += 7){
+				long b = file.get(pos++);
+				x |= (b & 0x7f) << s;
+				if (b >= 0){
+					break;
+				}
+			}
+			return x;
+		}
+
+		private int readLabelId(int e) {
+			long p = labelSection + (long) labelWidth * e;
+			if (labelWidth == 1){
+				return file.get(p) & 0xff;
+			}else if (labelWidth == 2){
+				return file.getShort(p) & 0xffff;
+			}else{
+				return file.getInt(p);
+			}
+		}
+
+		/**
+		 * Builds the event log that is stored in the file, mapping the label identifiers of the file to the given
+		 * label dictionary. The events in the file are already grouped by case and ordered by time.
+		 */
+		EventLog read(ArrayList<Object> dictionary, HashMap<Object,Integer> dictionaryIds) {
+			int[] labelMap = new int[labels.length];
+			for (int l = 0; l < labels.length; l++){
+				Integer labelId = dictionaryIds.get(labels[l]);
+				if (labelId == null){
+					labelId = dictionary.size();
+					dictionaryIds.put(labels[l], labelId);
+					dictionary.add(labels[l]);
+				}
+				labelMap[l] = labelId;
+			}
+			int caseCount = caseIds.length;
+			int[] eventLabels = new int[caseStart[caseCount]];
+			long[] eventTimes = new long[caseStart[caseCount]];
+			long p = pos;
+			pos = timeSection;
+			for (int c = 0; c < caseCount; c++){
+				long t = caseTime[c];
+				for (int e = caseStart[c]; e < caseStart[c + 1]; e++){
+					if (e > caseStart[c]){
+						t += readVarLong();
+					}
+					eventLabels[e] = labelMap[readLabelId(e)];
+					eventTimes[e] = t;
+				}
+			}
+			pos = p;
+			EventLog log = new EventLog(dictionary, caseIds.clone(), caseStart.clone(), eventLabels, eventTimes);
+			log.setColumnNames(columnNames[0], columnNames[1], columnNames[2]);
+			log.setCaseIdType(caseIdType, caseIdPrecision);
+			log.setLabelType(labelType, labelPrecision);
+			return log;
+		}
+
+		@Override
+		public Object[] readRow() throws SQLException {
+			if (event >= caseStart[caseStart.length - 1]){
+				return null;
+			}
+			while (event >= caseStart[caseIndex + 1]){
+				caseIndex++;
+			}
+			if (event == caseStart[caseIndex]){
+				time = caseTime[caseIndex];
+			}else{
+				time += readVarLong();
+			}
+			int labelId = readLabelId(event);
+			event++;
+			return new Object[]{caseIds[caseIndex], labels[labelId], new Timestamp(time)};
+		}
+
+		@Override
+		public void close() {
+			// the mapping is released when the buffers are garbage collected
+		}
+
+		@Override
+		public void reset() {
+			caseIndex = 0;
+			event = 0;
+			pos = timeSection;
+		}
+	}
+}
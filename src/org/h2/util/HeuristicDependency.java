@@ -0,0 +1,87 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * An implementation of the dependency graph of the Heuristics Miner as a function that can be invoked
+ * in an SQL query.
+ *
+ */
+public class HeuristicDependency {
+
+	/**
+	 * Implements the dependency measures of the Heuristics Miner. Given an event log, returns the pairs of event labels
+	 * of which the dependency measure reaches the threshold. With |a>b| the number of times that b directly follows a
+	 * (see DFG) and |a>>b| the number of times that a case contains a, b, a at consecutive positions (where events with the same
+	 * timestamp directly follow all events with the preceding timestamp, as for |a>b|, see DirectlyFollows.count), the measures are:
+	 * - dependency: (|a>b| - |b>a|) / (|a>b| + |b>a| + 1) for a different from b,
+	 *   and the length-one loop measure |a>a| / (|a>a| + 1) for a equal to b
+	 * - length-two loop dependency: (|a>>b| + |b>>a|) / (|a>>b| + |b>>a| + 1) for a different from b
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The returned dependency graph has five columns:
+	 * - the event label for the preceding event (EVENT_LABEL_P)
+	 * - the event label for the succeeding event (EVENT_LABEL_S)
+	 * - the number of times that the succeeding event directly follows the preceding event (FREQUENCY)
+	 * - the dependency measure (DEPENDENCY)
+	 * - the length-two loop dependency measure, or null if the labels are equal (LOOP_DEPENDENCY)
+	 * It contains the pairs that directly follow each other at least once and for which either measure is at least
+	 * the threshold.
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @param threshold	The minimal dependency measure of a returned pair.
+	 * @return			The dependency graph for the given event log as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet heuristicDependency(Connection conn, ResultSet eventLog, double threshold) throws SQLException {
+		EventLog log = EventLog.read(conn, eventLog);
+
+		SimpleResultSet result = new SimpleResultSet();
+		EventLog.addLabelColumn(result, "EVENT_LABEL_P", log);
+		EventLog.addLabelColumn(result, "EVENT_LABEL_S", log);
+		result.addColumn("FREQUENCY", Types.INTEGER, 10, 0);
+		result.addColumn("DEPENDENCY", Types.DOUBLE, 17, 0);
+		result.addColumn("LOOP_DEPENDENCY", Types.DOUBLE, 17, 0);
+		if (log == null){
+			return result;
+		}
+
+		int n = log.getLabelCount();
+		int[][] loops = new int[n][n];
+		int[][] counts = DirectlyFollows.count(log, loops);
+		for (int a = 0; a < n; a++){
+			for (int b = 0; b < n; b++){
+				int ab = counts[a][b];
+				if (ab == 0){
+					continue;
+				}
+				double dependency;
+				Double loopDependency;
+				if (a == b){
+					dependency = (double) ab / (ab + 1);
+					loopDependency = null;
+				}else{
+					int ba = counts[b][a];
+					int abab = loops[a][b] + loops[b][a];
+					dependency = (double) (ab - ba) / (ab + ba + 1);
+					loopDependency = (double) abab / (abab + 1);
+				}
+				if ((dependency >= threshold) || ((loopDependency != null) && (loopDependency >= threshold))){
+					result.addRow(log.getLabel(a), log.getLabel(b), ab, dependency, loopDependency);
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,816 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.util.CaseSample.Variant;
+
+/**
+ * An implementation of the Inductive Miner - infrequent as a function that can be invoked in an SQL query.
+ * It discovers a process tree, which is sound by construction, by recursively finding a cut in the directly-follows
+ * graph of a log and splitting the log into one sub-log per part of the cut. The logs are kept as dictionary-encoded
+ * variants with their numbers of cases, and the sub-logs of a cut are mined in parallel if they are large enough.
+ *
+ */
+public class InductiveMiner {
+
+	/**
+	 * The default noise threshold, which is also the default of the Inductive Miner - infrequent.
+	 */
+	private static final double NOISE_THRESHOLD = 0.2;
+
+	/**
+	 * The minimal number of events of a sub-log that is mined by a separate thread.
+	 */
+	private static final long EVENTS_PER_TASK = 10000;
+
+	//The operators of the nodes of a process tree.
+	static final int SEQUENCE = 0;
+	static final int XOR = 1;
+	static final int PARALLEL = 2;
+	static final int LOOP = 3;
+	static final int ACTIVITY = 4;
+	static final int TAU = 5;
+	private static final String[] OPERATORS = {"SEQUENCE", "XOR", "PARALLEL", "LOOP", "ACTIVITY", "TAU"};
+
+	/**
+	 * Discovers a process tree with the default noise threshold. See the other inductiveMiner.
+	 */
+	public static ResultSet inductiveMiner(Connection conn, ResultSet eventLog) throws SQLException {
+		return inductiveMiner(conn, eventLog, NOISE_THRESHOLD);
+	}
+
+	/**
+	 * Discovers a process tree from an event log. A log is split by the first cut that is found in its directly-follows
+	 * graph: an exclusive choice (XOR), sequence (SEQUENCE), concurrency (PARALLEL) or loop (LOOP) cut. If there is none,
+	 * the cut is searched again after filtering infrequent behavior: the edges of which the frequency is less than
+	 * noiseThreshold times that of the most frequent outgoing edge of the same label, and the start and end labels of
+	 * which the frequency is less than noiseThreshold times that of the most frequent one. If there still is none, the
+	 * log falls through to: an activity that occurs once in each case in parallel with the rest, a loop over the cases
+	 * split where an end label is followed by a start label, or a flower model. Events that do not fit a cut are left out
+	 * of the sub-logs, and empty cases are only modelled by a skip if there are at least noiseThreshold times the number
+	 * of cases of them. A noise threshold of 0 gives the behavior of the plain Inductive Miner.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The returned process tree has one row per node, in depth-first order, and five columns:
+	 * - the identifier of the node, starting at 1 for the root (NODE_ID)
+	 * - the identifier of the parent, or null for the root (PARENT_ID)
+	 * - the position of the node among the children of its parent, starting at 1, or null for the root (CHILD_INDEX)
+	 * - the operator: SEQUENCE, XOR, PARALLEL, LOOP, ACTIVITY or TAU for a silent step (OPERATOR)
+	 * - the event label of an ACTIVITY, or null (EVENT_LABEL)
+	 * The first child of a LOOP is its body and the other children are the alternatives to redo it.
+	 *
+	 * @param conn				The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog			An event log as specified above.
+	 * @param noiseThreshold	The noise threshold as specified above, between 0 and 1.
+	 * @return					The process tree for the given event log as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet inductiveMiner(Connection conn, ResultSet eventLog, double noiseThreshold) throws SQLException {
+		EventLog log = EventLog.read(conn, eventLog);
+
+		SimpleResultSet result = new SimpleResultSet();
+		result.addColumn("NODE_ID", Types.INTEGER, 10, 0);
+		result.addColumn("PARENT_ID", Types.INTEGER, 10, 0);
+		result.addColumn("CHILD_INDEX", Types.INTEGER, 10, 0);
+		result.addColumn("OPERATOR", Types.VARCHAR, 8, 0);
+		EventLog.addLabelColumn(result, "EVENT_LABEL", log);
+		if (log == null){
+			return result;
+		}
+
+		SubLog variants = new SubLog();
+		for (int c = 0; c < log.getCaseCount(); c++){
+			variants.add(new Variant(log, c), 1);
+		}
+		Node root = new Miner(log.getLabelCount(), noiseThreshold).mine(variants);
+		addRows(result, log, root, null, null, new int[1]);
+		return result;
+	}
+
+	/**
+	 * Adds the rows of a node and its descendants in depth-first order.
+	 */
+	private static void addRows(SimpleResultSet result, EventLog log, Node node, Integer parentId, Integer childIndex, int[] lastId) {
+		int id = ++lastId[0];
+		result.addRow(id, parentId, childIndex, OPERATORS[node.operator], (node.operator == ACTIVITY)?log.getLabel(node.label):null);
+		for (int i = 0; i < node.children.length; i++){
+			addRows(result, log, node.children[i], id, i + 1, lastId);
+		}
+	}
+
+	/**
+	 * A node of a process tree.
+	 */
+	static class Node {
+
+		final int operator;
+		final int label;
+		final Node[] children;
+
+		Node(int operator, int label, Node[] children) {
+			this.operator = operator;
+			this.label = label;
+			this.children = children;
+		}
+
+		static Node activity(int label) {
+			return new Node(ACTIVITY, label, new Node[0]);
+		}
+
+		static Node tau() {
+			return new Node(TAU, -1, new Node[0]);
+		}
+
+		/**
+		 * Returns an operator node, taking over the children of a child with the same operator if that does not
+		 * change the behavior.
+		 */
+		static Node operator(int operator, Node... children) {
+			ArrayList<Node> list = new ArrayList<Node>();
+			for (Node child: children){
+				if ((child.operator == operator) && (operator != LOOP)){
+					list.addAll(Arrays.asList(child.children));
+				}else{
+					list.add(child);
+				}
+			}
+			return new Node(operator, -1, list.toArray(new Node[list.size()]));
+		}
+	}
+
+	/**
+	 * A log as a list of distinct variants with their numbers of cases.
+	 */
+	static class SubLog {
+
+		final ArrayList<Variant> variants = new ArrayList<Variant>();
+		final ArrayList<Integer> counts = new ArrayList<Integer>();
+		private final HashMap<Variant,Integer> indexes = new HashMap<Variant,Integer>();
+		long caseCount;
+		long eventCount;
+
+		void add(int[] labels, int count) {
+			add(new Variant(labels), count);
+		}
+
+		void add(Variant variant, int count) {
+			Integer v = indexes.get(variant);
+			if (v == null){
+				indexes.put(variant, variants.size());
+				variants.add(variant);
+				counts.add(count);
+			}else{
+				counts.set(v, counts.get(v) + count);
+			}
+			caseCount += count;
+			eventCount += (long) count * variant.labels.length;
+		}
+	}
+
+	/**
+	 * A cut of the labels of a log: the operator and the part of each label, by its local identifier.
+	 * The parts of a loop cut start with the body.
+	 */
+	static class Cut {
+
+		final int operator;
+		final int[] parts;
+		final int partCount;
+
+		Cut(int operator, int[] parts, int partCount) {
+			this.operator = operator;
+			this.parts = parts;
+			this.partCount = partCount;
+		}
+	}
+
+	/**
+	 * The directly-follows graph of a log, of which the labels have local identifiers 0 up to size.
+	 */
+	static class Dfg {
+
+		final int size;
+		final long[][] edges;
+		final long[] starts;
+		final long[] ends;
+
+		Dfg(int size) {
+			this.size = size;
+			edges = new long[size][size];
+			starts = new long[size];
+			ends = new long[size];
+		}
+
+		Dfg(SubLog log, int[] local, int size) {
+			this(size);
+			for (int v = 0; v < log.variants.size(); v++){
+				int[] labels = log.variants.get(v).labels;
+				int count = log.counts.get(v);
+				starts[local[labels[0]]] += count;
+				ends[local[labels[labels.length - 1]]] += count;
+				for (int i = 1; i < labels.length; i++){
+					edges[local[labels[i - 1]]][local[labels[i]]] += count;
+				}
+			}
+		}
+
+		/**
+		 * Returns the graph without the infrequent edges, start labels and end labels.
+		 */
+		Dfg filter(double noise) {
+			Dfg dfg = new Dfg(size);
+			long maxStart = 0;
+			long maxEnd = 0;
+			for (int a = 0; a < size; a++){
+				maxStart = Math.max(maxStart, starts[a]);
+				maxEnd = Math.max(maxEnd, ends[a]);
+				long maxOut = 0;
+				for (int b = 0; b < size; b++){
+					maxOut = Math.max(maxOut, edges[a][b]);
+				}
+				for (int b = 0; b < size; b++){
+					dfg.edges[a][b] = (edges[a][b] >= noise * maxOut)?edges[a][b]:0;
+				}
+			}
+			for (int a = 0; a < size; a++){
+				dfg.starts[a] = (starts[a] >= noise * maxStart)?starts[a]:0;
+				dfg.ends[a] = (ends[a] >= noise * maxEnd)?ends[a]:0;
+			}
+			return dfg;
+		}
+
+		/**
+		 * Returns the first cut that is found, or null.
+		 */
+		Cut findCut() {
+			Cut cut = xorCut();
+			if (cut == null){
+				cut = sequenceCut();
+			}
+			if (cut == null){
+				cut = parallelCut();
+			}
+			if (cut == null){
+				cut = loopCut();
+			}
+			return cut;
+		}
+
+		/**
+		 * The labels of an exclusive choice cut are not connected.
+		 */
+		private Cut xorCut() {
+			int[] parent = components();
+			for (int a = 0; a < size; a++){
+				for (int b = a + 1; b < size; b++){
+					if ((edges[a][b] > 0) || (edges[b][a] > 0)){
+						union(parent, a, b);
+					}
+				}
+			}
+			return cut(XOR, parent);
+		}
+
+		/**
+		 * Each label of a part of a sequence cut reaches the labels of the later parts, but not those of the earlier parts.
+		 * The parts are found by merging the labels that reach each other or that do not reach each other.
+		 */
+		private Cut sequenceCut() {
+			boolean[][] reach = new boolean[size][size];
+			int[] stack = new int[size];
+			for (int a = 0; a < size; a++){
+				int top = 0;
+				stack[top++] = a;
+				while (top > 0){
+					int x = stack[--top];
+					for (int y = 0; y < size; y++){
+						if ((edges[x][y] > 0) && !reach[a][y]){
+							reach[a][y] = true;
+							stack[top++] = y;
+						}
+					}
+				}
+			}
+			int[] parent = components();
+			for (int a = 0; a < size; a++){
+				for (int b = a + 1; b < size; b++){
+					if (reach[a][b] == reach[b][a]){
+						union(parent, a, b);
+					}
+				}
+			}
+			final Cut cut = cut(SEQUENCE, parent);
+			if (cut == null){
+				return null;
+			}
+
+			//Order the parts by the number of labels that reach them, and check that each part reaches the later parts only.
+			final int[] reachedBy = new int[cut.partCount];
+			for (int a = 0; a < size; a++){
+				for (int b = 0; b < size; b++){
+					if (reach[a][b] && (cut.parts[a] != cut.parts[b])){
+						reachedBy[cut.parts[b]]++;
+					}
+				}
+			}
+			Integer[] order = new Integer[cut.partCount];
+			for (int p = 0; p < order.length; p++){
+				order[p] = p;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer p1, Integer p2) {
+					return (reachedBy[p1] != reachedBy[p2])?Integer.compare(reachedBy[p1], reachedBy[p2]):p1.compareTo(p2);
+				}
+			});
+			int[] rank = new int[cut.partCount];
+			for (int p = 0; p < order.length; p++){
+				rank[order[p]] = p;
+			}
+			for (int a = 0; a < size; a++){
+				cut.parts[a] = rank[cut.parts[a]];
+			}
+			for (int a = 0; a < size; a++){
+				for (int b = 0; b < size; b++){
+					if ((cut.parts[a] < cut.parts[b]) && (!reach[a][b] || reach[b][a])){
+						return null;
+					}
+				}
+			}
+			return cut;
+		}
+
+		/**
+		 * The labels of different parts of a concurrency cut follow each other in both directions, and each part has a
+		 * start label and an end label. Parts without them are merged with the first part that has both.
+		 */
+		private Cut parallelCut() {
+			int[] parent = components();
+			for (int a = 0; a < size; a++){
+				for (int b = a + 1; b < size; b++){
+					if ((edges[a][b] == 0) || (edges[b][a] == 0)){
+						union(parent, a, b);
+					}
+				}
+			}
+			boolean[] hasStart = new boolean[size];
+			boolean[] hasEnd = new boolean[size];
+			for (int a = 0; a < size; a++){
+				hasStart[find(parent, a)] |= (starts[a] > 0);
+				hasEnd[find(parent, a)] |= (ends[a] > 0);
+			}
+			int first = -1;
+			for (int a = 0; a < size; a++){
+				int root = find(parent, a);
+				if (hasStart[root] && hasEnd[root]){
+					if (first == -1){
+						first = root;
+					}
+				}
+			}
+			if (first == -1){
+				return null;
+			}
+			for (int a = 0; a < size; a++){
+				int root = find(parent, a);
+				if (!hasStart[root] || !hasEnd[root]){
+					union(parent, first, a);
+				}
+			}
+			return cut(PARALLEL, parent);
+		}
+
+		/**
+		 * The body of a loop cut contains the start and end labels. Each other part is only entered from all end labels
+		 * and only left to all start labels; the labels of a part that is not are added to the body.
+		 */
+		private Cut loopCut() {
+			boolean[] body = new boolean[size];
+			for (int a = 0; a < size; a++){
+				body[a] = (starts[a] > 0) || (ends[a] > 0);
+			}
+			int[] parent;
+			boolean changed;
+			do {
+				changed = false;
+				parent = components();
+				for (int a = 0; a < size; a++){
+					for (int b = a + 1; b < size; b++){
+						if ((body[a] && body[b]) || (!body[a] && !body[b] && ((edges[a][b] > 0) || (edges[b][a] > 0)))){
+							union(parent, a, b);
+						}
+					}
+				}
+				boolean[] invalid = new boolean[size];
+				for (int y = 0; y < size; y++){
+					if (body[y]){
+						continue;
+					}
+					boolean fromEnd = false;
+					boolean fromAllEnds = true;
+					boolean toStart = false;
+					boolean toAllStarts = true;
+					for (int x = 0; x < size; x++){
+						if (!body[x]){
+							continue;
+						}
+						if ((edges[x][y] > 0) && (ends[x] == 0)){
+							invalid[find(parent, y)] = true;
+						}
+						if ((edges[y][x] > 0) && (starts[x] == 0)){
+							invalid[find(parent, y)] = true;
+						}
+						if (ends[x] > 0){
+							fromEnd |= (edges[x][y] > 0);
+							fromAllEnds &= (edges[x][y] > 0);
+						}
+						if (starts[x] > 0){
+							toStart |= (edges[y][x] > 0);
+							toAllStarts &= (edges[y][x] > 0);
+						}
+					}
+					if ((fromEnd && !fromAllEnds) || (toStart && !toAllStarts)){
+						invalid[find(parent, y)] = true;
+					}
+				}
+				for (int a = 0; a < size; a++){
+					if (!body[a] && invalid[find(parent, a)]){
+						body[a] = true;
+						changed = true;
+					}
+				}
+			} while (changed);
+
+			int body0 = -1;
+			for (int a = 0; a < size; a++){
+				if (body[a]){
+					body0 = a;
+					break;
+				}
+			}
+			if (body0 == -1){
+				return null;
+			}
+			Cut cut = cut(LOOP, parent);
+			if (cut == null){
+				return null;
+			}
+			//Number the body as the first part.
+			int bodyPart = cut.parts[body0];
+			for (int a = 0; a < size; a++){
+				int p = cut.parts[a];
+				cut.parts[a] = (p == bodyPart)?0:(p < bodyPart)?p + 1:p;
+			}
+			return cut;
+		}
+
+		private int[] components() {
+			int[] parent = new int[size];
+			for (int a = 0; a < size; a++){
+				parent[a] = a;
+			}
+			return parent;
+		}
+
+		private static int find(int[] parent, int a) {
+			while (parent[a] != a){
+				parent[a] = parent[parent[a]];
+				a = parent[a];
+			}
+			return a;
+		}
+
+		private static void union(int[] parent, int a, int b) {
+			int ra = find(parent, a);
+			int rb = find(parent, b);
+			if (ra != rb){
+				parent[Math.max(ra, rb)] = Math.min(ra, rb);
+			}
+		}
+
+		/**
+		 * Returns the cut of which the parts are the components, numbered in the order of their first label,
+		 * or null if there is only one component.
+		 */
+		private Cut cut(int operator, int[] parent) {
+			int[] parts = new int[size];
+			int[] partOfRoot = new int[size];
+			Arrays.fill(partOfRoot, -1);
+			int partCount = 0;
+			for (int a = 0; a < size; a++){
+				int root = find(parent, a);
+				if (partOfRoot[root] == -1){
+					partOfRoot[root] = partCount++;
+				}
+				parts[a] = partOfRoot[root];
+			}
+			return (partCount > 1)?new Cut(operator, parts, partCount):null;
+		}
+	}
+
+	/**
+	 * Mines the process tree of a log. The sub-logs of a cut are mined by separate threads if they have at least
+	 * EVENTS_PER_TASK events and fewer than one thread per processor is busy.
+	 */
+	static class Miner {
+
+		private final int labelCount;
+		private final double noise;
+		private final AtomicInteger idleThreads;
+
+		Miner(int labelCount, double noise) {
+			this.labelCount = labelCount;
+			this.noise = noise;
+			this.idleThreads = new AtomicInteger(Runtime.getRuntime().availableProcessors() - 1);
+		}
+
+		Node mine(SubLog log) {
+			//Empty cases are modelled by a skip if they are frequent and are left out otherwise.
+			long empty = 0;
+			for (int v = 0; v < log.variants.size(); v++){
+				if (log.variants.get(v).labels.length == 0){
+					empty += log.counts.get(v);
+				}
+			}
+			if (empty == log.caseCount){
+				return Node.tau();
+			}
+			if (empty > 0){
+				SubLog rest = new SubLog();
+				for (int v = 0; v < log.variants.size(); v++){
+					if (log.variants.get(v).labels.length > 0){
+						rest.add(log.variants.get(v), log.counts.get(v));
+					}
+				}
+				if (empty >= noise * log.caseCount){
+					return Node.operator(XOR, Node.tau(), mine(rest));
+				}
+				log = rest;
+			}
+
+			//Give the labels of the log local identifiers in the order of their global identifiers.
+			boolean[] occurs = new boolean[labelCount];
+			for (Variant variant: log.variants){
+				for (int label: variant.labels){
+					occurs[label] = true;
+				}
+			}
+			int[] local = new int[labelCount];
+			IntArray alphabet = new IntArray();
+			for (int label = 0; label < labelCount; label++){
+				local[label] = occurs[label]?alphabet.size():-1;
+				if (occurs[label]){
+					alphabet.add(label);
+				}
+			}
+
+			//A single activity, which is repeated if it occurs more than once in enough cases.
+			if (alphabet.size() == 1){
+				long repeated = 0;
+				for (int v = 0; v < log.variants.size(); v++){
+					if (log.variants.get(v).labels.length > 1){
+						repeated += log.counts.get(v);
+					}
+				}
+				Node activity = Node.activity(alphabet.get(0));
+				return ((repeated == 0) || (repeated < noise * log.caseCount))?activity:Node.operator(LOOP, activity, Node.tau());
+			}
+
+			Dfg dfg = new Dfg(log, local, alphabet.size());
+			Cut cut = dfg.findCut();
+			if ((cut == null) && (noise > 0)){
+				cut = dfg.filter(noise).findCut();
+			}
+			if (cut != null){
+				return Node.operator(cut.operator, mineAll(split(log, local, cut)));
+			}
+			return fallThrough(log, local, alphabet, dfg);
+		}
+
+		/**
+		 * Splits a log into one sub-log per part of a cut, leaving out the events that do not fit the cut.
+		 */
+		private static SubLog[] split(SubLog log, int[] local, Cut cut) {
+			SubLog[] logs = new SubLog[cut.partCount];
+			for (int p = 0; p < logs.length; p++){
+				logs[p] = new SubLog();
+			}
+			for (int v = 0; v < log.variants.size(); v++){
+				int[] labels = log.variants.get(v).labels;
+				int count = log.counts.get(v);
+				int[] parts = new int[labels.length];
+				for (int i = 0; i < labels.length; i++){
+					parts[i] = cut.parts[local[labels[i]]];
+				}
+				if (cut.operator == XOR){
+					//The case goes to the part that has most of its events.
+					int[] events = new int[cut.partCount];
+					int best = 0;
+					for (int part: parts){
+						events[part]++;
+						best = (events[part] > events[best])?part:best;
+					}
+					logs[best].add(project(labels, parts, best), count);
+				}else if (cut.operator == PARALLEL){
+					for (int p = 0; p < logs.length; p++){
+						logs[p].add(project(labels, parts, p), count);
+					}
+				}else if (cut.operator == SEQUENCE){
+					int[] assigned = splitSequence(parts, cut.partCount);
+					for (int p = 0; p < logs.length; p++){
+						IntArray segment = new IntArray();
+						for (int i = 0; i < labels.length; i++){
+							if ((assigned[i] == p) && (parts[i] == p)){
+								segment.add(labels[i]);
+							}
+						}
+						logs[p].add(toArray(segment), count);
+					}
+				}else{
+					//Each maximal run of events of the same part is an iteration of the body or a redo, and an empty body
+					//is added before, between and after redos that are not separated by the body.
+					int start = 0;
+					if (parts[0] != 0){
+						logs[0].add(new int[0], count);
+					}
+					for (int i = 1; i <= labels.length; i++){
+						if ((i == labels.length) || (parts[i] != parts[start])){
+							logs[parts[start]].add(Arrays.copyOfRange(labels, start, i), count);
+							if ((parts[start] != 0) && ((i == labels.length) || (parts[i] != 0))){
+								logs[0].add(new int[0], count);
+							}
+							start = i;
+						}
+					}
+				}
+			}
+			return logs;
+		}
+
+		/**
+		 * Assigns the events of a case to the parts of a sequence cut in order, such that the fewest events are
+		 * assigned to a part that they do not belong to.
+		 */
+		private static int[] splitSequence(int[] parts, int partCount) {
+			int n = parts.length;
+			int[] cost = new int[partCount];
+			int[] from = new int[n * partCount];
+			for (int p = 0; p < partCount; p++){
+				cost[p] = (parts[0] != p)?1:0;
+			}
+			for (int i = 1; i < n; i++){
+				//The cheapest assignment of the previous events to this part or an earlier one.
+				int best = 0;
+				int bestCost = Integer.MAX_VALUE;
+				for (int p = 0; p < partCount; p++){
+					if (cost[p] < bestCost){
+						best = p;
+						bestCost = cost[p];
+					}
+					from[i * partCount + p] = best;
+					cost[p] = bestCost + ((parts[i] != p)?1:0);
+				}
+			}
+			int[] assigned = new int[n];
+			int p = 0;
+			for (int q = 1; q < partCount; q++){
+				p = (cost[q] < cost[p])?q:p;
+			}
+			for (int i = n - 1; i >= 0; i--){
+				assigned[i] = p;
+				p = from[i * partCount + p];
+			}
+			return assigned;
+		}
+
+		private static int[] project(int[] labels, int[] parts, int part) {
+			IntArray projection = new IntArray();
+			for (int i = 0; i < labels.length; i++){
+				if (parts[i] == part){
+					projection.add(labels[i]);
+				}
+			}
+			return toArray(projection);
+		}
+
+		private static int[] toArray(IntArray array) {
+			int[] result = new int[array.size()];
+			array.toArray(result);
+			return result;
+		}
+
+		/**
+		 * Mines the sub-logs of a cut, the first one by this thread and the others by separate threads if possible.
+		 */
+		private Node[] mineAll(final SubLog[] logs) {
+			final Node[] nodes = new Node[logs.length];
+			Task[] tasks = new Task[logs.length];
+			for (int i = 1; i < logs.length; i++){
+				if ((logs[i].eventCount >= EVENTS_PER_TASK) && startThread()){
+					final int p = i;
+					tasks[i] = new Task() {
+						@Override
+						public void call() {
+							try {
+								nodes[p] = mine(logs[p]);
+							} finally {
+								idleThreads.incrementAndGet();
+							}
+						}
+					}.execute();
+				}
+			}
+			for (int i = 0; i < logs.length; i++){
+				if (tasks[i] == null){
+					nodes[i] = mine(logs[i]);
+				}
+			}
+			for (Task task: tasks){
+				if (task != null){
+					task.get();
+				}
+			}
+			return nodes;
+		}
+
+		private boolean startThread() {
+			while (true){
+				int idle = idleThreads.get();
+				if (idle <= 0){
+					return false;
+				}
+				if (idleThreads.compareAndSet(idle, idle - 1)){
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Returns the model of a log without a cut: an activity that occurs once in each case in parallel with the rest,
+		 * a loop over the cases split where an end label is followed by a start label, or a flower model.
+		 */
+		private Node fallThrough(SubLog log, int[] local, IntArray alphabet, Dfg dfg) {
+			for (int a = 0; a < alphabet.size(); a++){
+				int label = alphabet.get(a);
+				boolean once = true;
+				for (int v = 0; once && (v < log.variants.size()); v++){
+					int occurrences = 0;
+					for (int l: log.variants.get(v).labels){
+						occurrences += (l == label)?1:0;
+					}
+					once = (occurrences == 1);
+				}
+				if (once){
+					SubLog rest = new SubLog();
+					for (int v = 0; v < log.variants.size(); v++){
+						int[] labels = log.variants.get(v).labels;
+						int[] parts = new int[labels.length];
+						for (int i = 0; i < labels.length; i++){
+							parts[i] = (labels[i] == label)?1:0;
+						}
+						rest.add(project(labels, parts, 0), log.counts.get(v));
+					}
+					return Node.operator(PARALLEL, Node.activity(label), mine(rest));
+				}
+			}
+
+			SubLog iterations = new SubLog();
+			boolean split = false;
+			for (int v = 0; v < log.variants.size(); v++){
+				int[] labels = log.variants.get(v).labels;
+				int start = 0;
+				for (int i = 1; i < labels.length; i++){
+					if ((dfg.ends[local[labels[i - 1]]] > 0) && (dfg.starts[local[labels[i]]] > 0)){
+						iterations.add(Arrays.copyOfRange(labels, start, i), log.counts.get(v));
+						start = i;
+						split = true;
+					}
+				}
+				iterations.add(Arrays.copyOfRange(labels, start, labels.length), log.counts.get(v));
+			}
+			if (split){
+				return Node.operator(LOOP, mine(iterations), Node.tau());
+			}
+
+			Node[] activities = new Node[alphabet.size()];
+			for (int a = 0; a < activities.length; a++){
+				activities[a] = Node.activity(alphabet.get(a));
+			}
+			return Node.operator(LOOP, Node.operator(XOR, activities), Node.tau());
+		}
+	}
+}
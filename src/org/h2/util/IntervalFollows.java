@@ -0,0 +1,264 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * The follows and concurrency relations of an event log with start and complete lifecycle events, in which the
+ * start and complete event of an activity instance are paired into an interval.
+ *
+ */
+public class IntervalFollows {
+
+	private static final int START = 0;
+	private static final int COMPLETE = 1;
+	private static final int OTHER = 2;
+
+	/**
+	 * Implements the interval follows relation. The start and complete events of each case are paired into intervals
+	 * per activity, pairing a complete event with the earliest unpaired start event of the same activity. A complete
+	 * event without a start event, an event without a lifecycle transition and a start event that is never completed
+	 * are intervals without duration. Events with another lifecycle transition are skipped.
+	 *
+	 * Interval y directly follows interval x if y starts after x completes and no other interval lies between them,
+	 * i.e. starts after x completes and completes before y starts. For intervals without duration this is the weakly
+	 * follows relation of FOLLOWS. Intervals x and y are concurrent if they overlap, i.e. each starts before the other ends;
+	 * this is returned in both directions.
+	 * Both relations are computed by sorting the intervals of each case by start time and sweeping over them, which takes
+	 * O(n log n) time per case, plus the time to report the pairs.
+	 *
+	 * The event log must have four columns:
+	 * - case identifier
+	 * - event label
+	 * - lifecycle transition ('start', 'complete' or null)
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The returned relations have four columns:
+	 * - the relation, FOLLOWS or CONCURRENT (RELATION)
+	 * - the event label for the preceding interval (EVENT_LABEL_P)
+	 * - the event label for the succeeding or concurrent interval (EVENT_LABEL_S)
+	 * - the number of pairs of intervals in the relation (FREQUENCY)
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @return			The interval relations for the given event log as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet intervalFollows(Connection conn, ResultSet eventLog) throws SQLException {
+		SimpleResultSet result = new SimpleResultSet();
+		result.addColumn("RELATION", Types.VARCHAR, 10, 0);
+		if ((eventLog == null) || (eventLog.getMetaData().getColumnCount() != 4) || EventLog.isColumnList(conn)){
+			result.addColumn("EVENT_LABEL_P", Types.VARCHAR, 255, 0);
+			result.addColumn("EVENT_LABEL_S", Types.VARCHAR, 255, 0);
+			result.addColumn("FREQUENCY", Types.INTEGER, 10, 0);
+			EventLog.close(eventLog);
+			return result;
+		}
+		ResultSetMetaData rsm = eventLog.getMetaData();
+		result.addColumn("EVENT_LABEL_P", rsm.getColumnType(2), rsm.getPrecision(2), 0);
+		result.addColumn("EVENT_LABEL_S", rsm.getColumnType(2), rsm.getPrecision(2), 0);
+		result.addColumn("FREQUENCY", Types.INTEGER, 10, 0);
+
+		//Read the events, encoding the lifecycle transition in the lowest bit of the sort key, such that
+		//a start event is sorted before a complete event with the same timestamp.
+		ArrayList<Object> labels = new ArrayList<Object>();
+		HashMap<Object,Integer> labelIds = new HashMap<Object,Integer>();
+		HashMap<Object,Integer> caseIndexes = new HashMap<Object,Integer>();
+		int size = 0;
+		int[] eventCase = new int[1024];
+		int[] eventLabel = new int[1024];
+		long[] eventKey = new long[1024];
+		try {
+			while (eventLog.next()){
+				int lifecycle = lifecycle(eventLog.getString(3));
+				if (lifecycle == OTHER){
+					continue;
+				}
+				Object caseId = eventLog.getObject(1);
+				Integer caseIndex = caseIndexes.get(caseId);
+				if (caseIndex == null){
+					caseIndex = caseIndexes.size();
+					caseIndexes.put(caseId, caseIndex);
+				}
+				Object label = EventLog.labelKey(eventLog.getObject(2));
+				Integer labelId = labelIds.get(label);
+				if (labelId == null){
+					labelId = labels.size();
+					labelIds.put(label, labelId);
+					labels.add(label);
+				}
+				Timestamp ts = eventLog.getTimestamp(4);
+				if (size == eventCase.length){
+					eventCase = Arrays.copyOf(eventCase, size * 2);
+					eventLabel = Arrays.copyOf(eventLabel, size * 2);
+					eventKey = Arrays.copyOf(eventKey, size * 2);
+				}
+				eventCase[size] = caseIndex;
+				eventLabel[size] = labelId;
+				eventKey[size] = (((ts != null)?ts.getTime():0) << 1) | lifecycle;
+				size++;
+			}
+		} finally {
+			EventLog.close(eventLog);
+		}
+		EventLog log = EventLog.build(labels, new Object[caseIndexes.size()], eventCase, eventLabel, eventKey, size);
+
+		int n = labels.size();
+		int[][] follows = new int[n][n];
+		int[][] concurrent = new int[n][n];
+		long[] start = new long[0];
+		long[] end = new long[0];
+		int[] label = new int[0];
+		long[] openStart = new long[0];
+		int[] openNext = new int[0];
+		int[] openHead = new int[n];
+		int[] openTail = new int[n];
+		Arrays.fill(openHead, -1);
+		for (int c = 0; c < log.getCaseCount(); c++){
+			int from = log.getCaseStart(c);
+			int to = log.getCaseEnd(c);
+			if (start.length < to - from){
+				start = new long[to - from];
+				end = new long[to - from];
+				label = new int[to - from];
+				openStart = new long[to - from];
+				openNext = new int[to - from];
+			}
+
+			//Pair the events into intervals, keeping a FIFO list of unpaired start events per activity.
+			int count = 0;
+			int open = 0;
+			for (int e = from; e < to; e++){
+				int l = log.getEventLabel(e);
+				long t = log.getEventTime(e) >> 1;
+				if ((log.getEventTime(e) & 1) == START){
+					openStart[open] = t;
+					openNext[open] = -1;
+					if (openHead[l] < 0){
+						openHead[l] = open;
+					}else{
+						openNext[openTail[l]] = open;
+					}
+					openTail[l] = open;
+					open++;
+				}else{
+					start[count] = t;
+					if (openHead[l] >= 0){
+						start[count] = openStart[openHead[l]];
+						openHead[l] = openNext[openHead[l]];
+					}
+					end[count] = t;
+					label[count] = l;
+					count++;
+				}
+			}
+			for (int e = from; e < to; e++){
+				int l = log.getEventLabel(e);
+				while (openHead[l] >= 0){
+					start[count] = openStart[openHead[l]];
+					end[count] = start[count];
+					label[count] = l;
+					count++;
+					openHead[l] = openNext[openHead[l]];
+				}
+			}
+
+			sweep(start, end, label, count, follows, concurrent);
+		}
+
+		for (int a = 0; a < n; a++){
+			for (int b = 0; b < n; b++){
+				if (follows[a][b] > 0){
+					result.addRow("FOLLOWS", EventLog.labelValue(labels.get(a)), EventLog.labelValue(labels.get(b)), follows[a][b]);
+				}
+			}
+		}
+		for (int a = 0; a < n; a++){
+			for (int b = 0; b < n; b++){
+				if (concurrent[a][b] > 0){
+					result.addRow("CONCURRENT", EventLog.labelValue(labels.get(a)), EventLog.labelValue(labels.get(b)), concurrent[a][b]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the pairs of intervals of one case in the follows and concurrency relations to the counts.
+	 */
+	static void sweep(long[] start, long[] end, int[] label, int count, int[][] follows, int[][] concurrent) {
+		//Sort the intervals by start time.
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++){
+			order[i] = i;
+		}
+		long[] sortedStart = Arrays.copyOf(start, count);
+		EventLog.sortByTime(sortedStart, order, 0, count, new long[count], new int[count]);
+		long[] sortedEnd = new long[count];
+		int[] sortedLabel = new int[count];
+		for (int i = 0; i < count; i++){
+			sortedEnd[i] = end[order[i]];
+			sortedLabel[i] = label[order[i]];
+		}
+
+		//minEnd[i] is the earliest end of the intervals that start at position i or later.
+		long[] minEnd = new long[count + 1];
+		minEnd[count] = Long.MAX_VALUE;
+		for (int i = count - 1; i >= 0; i--){
+			minEnd[i] = Math.min(sortedEnd[i], minEnd[i + 1]);
+		}
+
+		for (int x = 0; x < count; x++){
+			//The candidates are the intervals that start when or after x ends and after x starts, such that intervals
+			//without duration at the same time do not follow each other. A candidate directly follows x, unless another
+			//candidate ends before it starts, i.e. if it starts before or at the earliest end of the candidates.
+			int first = (sortedStart[x] < sortedEnd[x])?firstStart(sortedStart, count, sortedEnd[x], false):firstStart(sortedStart, count, sortedStart[x], true);
+			long limit = minEnd[first];
+			for (int y = first; (y < count) && (sortedStart[y] <= limit); y++){
+				follows[sortedLabel[x]][sortedLabel[y]]++;
+			}
+			//The intervals that start after x starts and before x ends overlap with x, unless one of them has no duration
+			//and lies at the start of the other.
+			for (int y = x + 1; (y < count) && (sortedStart[y] < sortedEnd[x]); y++){
+				if (sortedStart[x] < sortedEnd[y]){
+					concurrent[sortedLabel[x]][sortedLabel[y]]++;
+					concurrent[sortedLabel[y]][sortedLabel[x]]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the position of the first interval that starts at (or, if strict, after) the given time.
+	 */
+	private static int firstStart(long[] sortedStart, int count, long time, boolean strict) {
+		int low = 0;
+		int high = count;
+		while (low < high){
+			int mid = (low + high) >>> 1;
+			if ((sortedStart[mid] < time) || (strict && (sortedStart[mid] == time))){
+				low = mid + 1;
+			}else{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static int lifecycle(String transition) {
+		if ((transition == null) || transition.equalsIgnoreCase("complete")){
+			return COMPLETE;
+		}
+		return transition.equalsIgnoreCase("start")?START:OTHER;
+	}
+}
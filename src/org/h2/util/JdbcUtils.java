@@ -28,6 +28,7 @@ import org.h2.engine.SysProperties;
 import org.h2.message.DbException;
 import org.h2.store.DataHandler;
 import org.h2.util.Utils.ClassFactory;
+import org.h2.value.TraceDataTypesHandler;
 
 /**
  * This is a utility class with JDBC helper functions.
@@ -125,14 +126,17 @@ public class JdbcUtils {
         }
 
         String customTypeHandlerClass = SysProperties.CUSTOM_DATA_TYPES_HANDLER;
+        CustomDataTypesHandler userHandler = null;
         if (customTypeHandlerClass != null) {
             try {
-                customDataTypesHandler = (CustomDataTypesHandler)
+                userHandler = (CustomDataTypesHandler)
                         loadUserClass(customTypeHandlerClass).newInstance();
             } catch (Exception e) {
                 throw DbException.convert(e);
             }
         }
+        // the TRACE data type is always available
+        customDataTypesHandler = new TraceDataTypesHandler(userHandler);
     }
 
     /**
@@ -0,0 +1,148 @@
+package org.h2.util;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * A mapping of the labels of an event log to abstract labels, e.g. of activities to the groups of an activity hierarchy.
+ * The mapping is applied to the label dictionary of the log rather than to its events, such that a relation on the
+ * labels of the log, like the directly follows counts, is mapped to the abstract labels at a cost that depends on the
+ * number of labels only.
+ *
+ */
+public class LabelMapping {
+
+	private final ArrayList<Object> labels = new ArrayList<Object>();
+	private final int[] abstractLabels;
+	private int labelType = Types.VARCHAR;
+	private int labelPrecision = 255;
+
+	private LabelMapping(int labelCount) {
+		abstractLabels = new int[labelCount];
+	}
+
+	/**
+	 * Reads a label mapping for an event log and closes the internal statement that was created to pass it.
+	 * The mapping must have two columns:
+	 * - label
+	 * - abstract label
+	 * The columns must be given in that order, but must not necessarily have a particular name. A label may be a row value
+	 * of several columns, like the labels of the log. Labels that are not in the mapping are mapped to themselves, and a
+	 * label that is in the mapping more than once is mapped to the first of its abstract labels, and a mapping without
+	 * rows, which arrives as null, maps each label to itself.
+	 * The abstract labels have the type of the abstract labels in the mapping, unless some label of the log is not in
+	 * the mapping and has another type, in which case all abstract labels are converted to VARCHAR.
+	 *
+	 * @param log		The dictionary-encoded event log, or null if there is no log.
+	 * @param mapping	The mapping as specified above.
+	 * @return			The mapping of the label identifiers of the log to abstract label identifiers, which is empty
+	 * 					if there is no log, but which has the type of the abstract labels.
+	 * @throws SQLException	If the mapping does not have two columns, e.g. because a mapping of one row arrives as a
+	 * 						single row value rather than as a result set of two columns.
+	 */
+	public static LabelMapping read(EventLog log, ResultSet mapping) throws SQLException {
+		LabelMapping result = new LabelMapping((log != null)?log.getLabelCount():0);
+		if ((mapping != null) && (mapping.getMetaData().getColumnCount() != 2)){
+			EventLog.close(mapping);
+			throw new SQLException("The label mapping must have two columns: label and abstract label");
+		}
+		if (mapping != null){
+			ResultSetMetaData rsm = mapping.getMetaData();
+			result.labelType = rsm.getColumnType(2);
+			result.labelPrecision = rsm.getPrecision(2);
+		}else if (log != null){
+			result.labelType = log.getLabelType();
+			result.labelPrecision = log.getLabelPrecision();
+		}
+		if (log == null){
+			EventLog.close(mapping);
+			return result;
+		}
+
+		//Read the abstract label of each label of the log, in the order of the mapping.
+		Object[] targets = new Object[log.getLabelCount()];
+		boolean[] mapped = new boolean[targets.length];
+		while ((mapping != null) && mapping.next()){
+			int label = log.getLabelId(mapping.getObject(1));
+			if ((label >= 0) && !mapped[label]){
+				targets[label] = EventLog.labelKey(mapping.getObject(2));
+				mapped[label] = true;
+			}
+		}
+		EventLog.close(mapping);
+
+		//Unmapped labels keep their own value, which must fit in the column of the abstract labels.
+		boolean convert = false;
+		for (int label = 0; label < targets.length; label++){
+			if (!mapped[label]){
+				targets[label] = EventLog.labelKey(log.getLabel(label));
+				convert |= (log.getLabelType() != result.labelType);
+			}
+		}
+		if (convert){
+			result.labelType = Types.VARCHAR;
+			result.labelPrecision = Integer.MAX_VALUE;
+			for (int label = 0; label < targets.length; label++){
+				targets[label] = (targets[label] != null)?targets[label].toString():null;
+			}
+		}
+
+		//Number the abstract labels in the order of the labels of the log.
+		HashMap<Object,Integer> labelIds = new HashMap<Object,Integer>();
+		for (int label = 0; label < targets.length; label++){
+			Integer id = labelIds.get(targets[label]);
+			if (id == null){
+				id = result.labels.size();
+				labelIds.put(targets[label], id);
+				result.labels.add(targets[label]);
+			}
+			result.abstractLabels[label] = id;
+		}
+		return result;
+	}
+
+	/**
+	 * Maps counts of pairs of labels to counts of pairs of abstract labels.
+	 *
+	 * @param counts	A label count x label count matrix, e.g. the directly follows counts (see DirectlyFollows.count).
+	 * @param collapse	If true, the pairs of which both labels are mapped to the same abstract label are left out, which
+	 * 					is the same as collapsing events that are mapped to the same abstract label back to back.
+	 * @return			The abstract label count x abstract label count matrix.
+	 */
+	public int[][] map(int[][] counts, boolean collapse) {
+		int[][] result = new int[labels.size()][labels.size()];
+		for (int a = 0; a < counts.length; a++){
+			int[] row = result[abstractLabels[a]];
+			for (int b = 0; b < counts.length; b++){
+				if ((counts[a][b] > 0) && (!collapse || (abstractLabels[a] != abstractLabels[b]))){
+					row[abstractLabels[b]] += counts[a][b];
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a column to a function result that contains abstract labels.
+	 *
+	 * @param result	The function result.
+	 * @param name		The name of the column.
+	 */
+	public void addLabelColumn(SimpleResultSet result, String name) {
+		result.addColumn(name, labelType, labelPrecision, 0);
+	}
+
+	public int getLabelCount() {
+		return labels.size();
+	}
+
+	public Object getLabel(int abstractLabel) {
+		return EventLog.labelValue(labels.get(abstractLabel));
+	}
+}
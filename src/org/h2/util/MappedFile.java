@@ -0,0 +1,101 @@
+package org.h2.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.h2.store.fs.FilePathNioMapped;
+
+/**
+ * A file that is memory-mapped read-only in chunks, such that it can be larger than 2 GB. Values are read at
+ * an absolute position in the file. A value of up to 8 bytes can be read at any position, also where it crosses
+ * the boundary between two chunks, because each chunk also maps the first bytes of the next chunk.
+ *
+ */
+public class MappedFile {
+
+	private static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+	private static final int OVERLAP = 8;
+
+	private final ByteBuffer[] chunks;
+	private final int chunkSize;
+	private final long length;
+
+	/**
+	 * Maps a file in chunks of 1 GB.
+	 *
+	 * @param fileName	The name of the file.
+	 * @throws IOException
+	 */
+	public MappedFile(String fileName) throws IOException {
+		this(fileName, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Maps a file in chunks of the given size.
+	 *
+	 * @param fileName	The name of the file.
+	 * @param chunkSize	The size of a chunk, which must be at least 8 bytes.
+	 * @throws IOException
+	 */
+	public MappedFile(String fileName, int chunkSize) throws IOException {
+		this.chunkSize = chunkSize;
+		this.chunks = FilePathNioMapped.mapReadOnly(fileName, chunkSize, OVERLAP);
+		ByteBuffer last = chunks[chunks.length - 1];
+		this.length = (long) (chunks.length - 1) * chunkSize + last.limit();
+	}
+
+	/**
+	 * Returns the length of the file in bytes.
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * Returns the chunk that contains the given position.
+	 */
+	private ByteBuffer chunk(long pos) {
+		return chunks[(int) (pos / chunkSize)];
+	}
+
+	/**
+	 * Returns the offset of the given position in its chunk.
+	 */
+	private int offset(long pos) {
+		return (int) (pos % chunkSize);
+	}
+
+	public byte get(long pos) {
+		return chunk(pos).get(offset(pos));
+	}
+
+	public short getShort(long pos) {
+		return chunk(pos).getShort(offset(pos));
+	}
+
+	public int getInt(long pos) {
+		return chunk(pos).getInt(offset(pos));
+	}
+
+	public long getLong(long pos) {
+		return chunk(pos).getLong(offset(pos));
+	}
+
+	/**
+	 * Reads bytes at the given position, which may span several chunks.
+	 *
+	 * @param pos	The position.
+	 * @param dst	The array into which the bytes are read; as many bytes are read as the array is long.
+	 */
+	public void get(long pos, byte[] dst) {
+		int done = 0;
+		while (done < dst.length){
+			ByteBuffer chunk = chunk(pos + done).duplicate();
+			int offset = offset(pos + done);
+			int n = Math.min(dst.length - done, chunkSize - offset);
+			chunk.position(offset);
+			chunk.get(dst, done, n);
+			done += n;
+		}
+	}
+}
@@ -0,0 +1,517 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * Row pattern matching over the events of each case, a subset of SQL MATCH_RECOGNIZE. The pattern is a regular
+ * expression over pattern variables, which is compiled to a non-deterministic automaton that is run over the events of
+ * each case in one pass, keeping the earliest start for each state, such that patterns with gaps, e.g. 'A X* C', do not
+ * need self joins. With a maximum duration, the automaton is run from each start in turn instead, because an earlier
+ * start that runs out of time must not hide a later start in the same state.
+ *
+ */
+public class MatchRecognize {
+
+	private static final int VARIABLE = 0;
+	private static final int SPLIT = 1;
+	private static final int JUMP = 2;
+	private static final int START_ANCHOR = 3;
+	private static final int END_ANCHOR = 4;
+	private static final int MATCH = 5;
+	private static final int SEQUENCE = 6;
+	private static final int ALTERNATION = 7;
+	private static final int REPETITION = 8;
+
+	/**
+	 * A node of a parsed pattern: a variable, an anchor, a sequence, an alternation or a repetition.
+	 */
+	private static class Node {
+		int type;
+		int variable;
+		ArrayList<Node> children = new ArrayList<Node>();
+		int min;
+		int max;
+
+		Node(int type) {
+			this.type = type;
+		}
+	}
+
+	/**
+	 * The pattern variable that matched an event, linked to the variables that matched the preceding events.
+	 */
+	private static class Step {
+		final int variable;
+		final Step previous;
+
+		Step(int variable, Step previous) {
+			this.variable = variable;
+			this.previous = previous;
+		}
+	}
+
+	private final String pattern;
+	private int pos;
+	private final ArrayList<String> variables = new ArrayList<String>();
+
+	private int[] code = new int[16];
+	private int[] arg1 = new int[16];
+	private int[] arg2 = new int[16];
+	private int size;
+
+	//The threads of the automaton: the state, the start event and the matched variables.
+	private int[] pcs, starts, nextPcs, nextStarts;
+	private Step[] steps, nextSteps;
+	private int count, nextCount;
+	private int[] added;
+	private int generation;
+
+	private MatchRecognize(String pattern) {
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Finds the matches of a pattern in the cases of an event log. See the other matchRecognize.
+	 */
+	public static ResultSet matchRecognize(Connection conn, ResultSet eventLog, String pattern) throws SQLException {
+		return matchRecognize(conn, eventLog, pattern, -1);
+	}
+
+	/**
+	 * Finds the matches of a pattern in the cases of an event log, in which the events of a case are in the order of
+	 * their timestamps. The pattern is a regular expression over pattern variables, with concatenation, alternation
+	 * (|), grouping, the quantifiers *, +, ?, {n}, {n,} and {n,m}, and the anchors ^ and $ for the start and the end of
+	 * a case. Each variable is defined by the boolean column of the event log with the same name, which takes the place
+	 * of the DEFINE clause of MATCH_RECOGNIZE. A variable without a column matches any event. Like ONE ROW PER MATCH
+	 * AFTER MATCH SKIP PAST LAST ROW, the matches of a case do not overlap: the match that starts at the earliest event
+	 * is taken, and of those the longest, after which the search continues after the match. Matches without events are
+	 * ignored. If a maximum duration is given, the first and the last event of a match are at most that many
+	 * milliseconds apart.
+	 * The events are read as a stream, such that only the current case and the identifiers of the cases are kept in
+	 * memory.
+	 *
+	 * The event log must have two columns, followed by the columns that define the pattern variables:
+	 * - case identifier
+	 * - timestamp
+	 * - for each pattern variable, a boolean that is true if the event matches the variable
+	 * The first two columns must be given in that order, but must not necessarily have a particular name.
+	 * The events must be ordered by case identifier and timestamp.
+	 * E.g.: MATCH_RECOGNIZE((SELECT Case_Id, Time, Activity = 'A' AS A, Activity &lt;&gt; 'B' AS X, Activity = 'C' AS C
+	 * FROM Event_Log ORDER BY 1, 2), 'A X* C', 2 * 24 * 60 * 60 * 1000)
+	 *
+	 * The returned matches have six columns:
+	 * - the case identifier (CASE_ID)
+	 * - the number of the match within its case, starting at 1 (MATCH_NUMBER)
+	 * - the timestamp of the first event of the match (START_TIME)
+	 * - the timestamp of the last event of the match (END_TIME)
+	 * - the number of events of the match (EVENT_COUNT)
+	 * - the pattern variable that matched each event of the match, separated by spaces (CLASSIFIER)
+	 *
+	 * @param conn			The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog		An event log as specified above.
+	 * @param pattern		The pattern.
+	 * @param maxDuration	The maximum duration of a match in milliseconds, or a negative number for no maximum.
+	 * @return				The matches as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet matchRecognize(Connection conn, ResultSet eventLog, String pattern, long maxDuration) throws SQLException {
+		SimpleResultSet result = new SimpleResultSet();
+		boolean columnList = (eventLog == null) || (eventLog.getMetaData().getColumnCount() < 2) || EventLog.isColumnList(conn);
+		if (columnList){
+			result.addColumn("CASE_ID", Types.VARCHAR, 255, 0);
+		}else{
+			ResultSetMetaData rsm = eventLog.getMetaData();
+			result.addColumn("CASE_ID", rsm.getColumnType(1), rsm.getPrecision(1), rsm.getScale(1));
+		}
+		result.addColumn("MATCH_NUMBER", Types.INTEGER, 10, 0);
+		result.addColumn("START_TIME", Types.TIMESTAMP, 23, 10);
+		result.addColumn("END_TIME", Types.TIMESTAMP, 23, 10);
+		result.addColumn("EVENT_COUNT", Types.INTEGER, 10, 0);
+		result.addColumn("CLASSIFIER", Types.VARCHAR, Integer.MAX_VALUE, 0);
+		if (columnList || (pattern == null)){
+			EventLog.close(eventLog);
+			return result;
+		}
+
+		try {
+			MatchRecognize matcher = new MatchRecognize(pattern);
+			matcher.compile();
+
+			//The column of each variable, or 0 if the variable matches any event.
+			ResultSetMetaData rsm = eventLog.getMetaData();
+			int[] columns = new int[matcher.variables.size()];
+			for (int v = 0; v < columns.length; v++){
+				for (int c = 3; c <= rsm.getColumnCount(); c++){
+					if (rsm.getColumnLabel(c).equalsIgnoreCase(matcher.variables.get(v))){
+						columns[v] = c;
+					}
+				}
+			}
+
+			Object caseId = null;
+			HashSet<Object> caseIds = new HashSet<Object>();
+			long[] times = new long[16];
+			boolean[][] defined = new boolean[16][];
+			int events = 0;
+			boolean first = true;
+			while (eventLog.next()){
+				Object c = eventLog.getObject(1);
+				Timestamp ts = eventLog.getTimestamp(2);
+				long time = (ts != null)?ts.getTime():0;
+				if (first || ((caseId == null)?(c != null):!caseId.equals(c))){
+					if (!caseIds.add(c)){
+						throw new SQLException("The event log must be ordered by case identifier and timestamp");
+					}
+					matcher.match(result, caseId, times, defined, events, maxDuration);
+					caseId = c;
+					events = 0;
+					first = false;
+				}else if (time < times[events - 1]){
+					throw new SQLException("The event log must be ordered by case identifier and timestamp");
+				}
+				if (events == times.length){
+					times = Arrays.copyOf(times, events * 2);
+					defined = Arrays.copyOf(defined, events * 2);
+				}
+				boolean[] d = new boolean[columns.length];
+				for (int v = 0; v < columns.length; v++){
+					d[v] = (columns[v] == 0) || eventLog.getBoolean(columns[v]);
+				}
+				times[events] = time;
+				defined[events] = d;
+				events++;
+			}
+			matcher.match(result, caseId, times, defined, events, maxDuration);
+		} finally {
+			EventLog.close(eventLog);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the matches in the events of one case and adds them to the result.
+	 */
+	private void match(SimpleResultSet result, Object caseId, long[] times, boolean[][] defined, int events, long maxDuration) {
+		//With a maximum duration, a thread that starts later may match where an earlier thread in the same state runs out
+		//of time, so the threads of one start are run at a time, starting at each event in turn.
+		boolean oneStart = (maxDuration >= 0);
+		int matchNumber = 0;
+		int from = 0;
+		while (from < events){
+			int bestStart = -1;
+			int bestEnd = -1;
+			Step bestSteps = null;
+			count = 0;
+			for (int i = from; ; i++){
+				if ((bestStart < 0) && (i < events) && (!oneStart || (i == from))){
+					generation++;
+					for (int t = 0; t < count; t++){
+						added[pcs[t]] = generation;
+					}
+					add(pcs, starts, steps, 0, i, null, i, events, true);
+				}
+				//Record the matches of the threads that have consumed at least one event.
+				int kept = 0;
+				for (int t = 0; t < count; t++){
+					if ((code[pcs[t]] == MATCH) && (starts[t] < i)){
+						if ((bestStart < 0) || (starts[t] < bestStart) || ((starts[t] == bestStart) && (i - 1 > bestEnd))){
+							bestStart = starts[t];
+							bestEnd = i - 1;
+							bestSteps = steps[t];
+						}
+					}
+				}
+				//Only threads that start no later than the best match can still give a better match.
+				for (int t = 0; t < count; t++){
+					if ((bestStart < 0) || (starts[t] <= bestStart)){
+						pcs[kept] = pcs[t];
+						starts[kept] = starts[t];
+						steps[kept] = steps[t];
+						kept++;
+					}
+				}
+				count = kept;
+				if (i == events){
+					break;
+				}
+				generation++;
+				nextCount = 0;
+				for (int t = 0; t < count; t++){
+					int pc = pcs[t];
+					if ((code[pc] == VARIABLE) && defined[i][arg1[pc]]
+							&& ((maxDuration < 0) || (times[i] - times[starts[t]] <= maxDuration))){
+						add(nextPcs, nextStarts, nextSteps, pc + 1, starts[t], new Step(arg1[pc], steps[t]), i + 1, events, false);
+					}
+				}
+				int[] p = pcs; pcs = nextPcs; nextPcs = p;
+				int[] s = starts; starts = nextStarts; nextStarts = s;
+				Step[] st = steps; steps = nextSteps; nextSteps = st;
+				count = nextCount;
+				if (((bestStart >= 0) || oneStart) && (count == 0)){
+					break;
+				}
+			}
+			if (bestStart < 0){
+				if (oneStart){
+					from++;
+					continue;
+				}
+				break;
+			}
+			matchNumber++;
+			StringBuilder classifier = new StringBuilder();
+			for (Step step = bestSteps; step != null; step = step.previous){
+				classifier.insert(0, variables.get(step.variable));
+				if (step.previous != null){
+					classifier.insert(0, ' ');
+				}
+			}
+			result.addRow(caseId, matchNumber, new Timestamp(times[bestStart]), new Timestamp(times[bestEnd]),
+					bestEnd - bestStart + 1, classifier.toString());
+			from = bestEnd + 1;
+		}
+	}
+
+	/**
+	 * Adds a thread in a state to a list of threads, following the jumps, splits and anchors. A state that is already
+	 * in the list keeps its thread, which has the same or an earlier start because the threads are added in the order
+	 * of their start.
+	 */
+	private void add(int[] toPcs, int[] toStarts, Step[] toSteps, int pc, int start, Step step, int event, int events, boolean current) {
+		if (added[pc] == generation){
+			return;
+		}
+		added[pc] = generation;
+		switch (code[pc]){
+		case SPLIT:
+			add(toPcs, toStarts, toSteps, arg1[pc], start, step, event, events, current);
+			add(toPcs, toStarts, toSteps, arg2[pc], start, step, event, events, current);
+			return;
+		case JUMP:
+			add(toPcs, toStarts, toSteps, arg1[pc], start, step, event, events, current);
+			return;
+		case START_ANCHOR:
+			if (event == 0){
+				add(toPcs, toStarts, toSteps, pc + 1, start, step, event, events, current);
+			}
+			return;
+		case END_ANCHOR:
+			if (event == events){
+				add(toPcs, toStarts, toSteps, pc + 1, start, step, event, events, current);
+			}
+			return;
+		default:
+			int n = current?count++:nextCount++;
+			toPcs[n] = pc;
+			toStarts[n] = start;
+			toSteps[n] = step;
+		}
+	}
+
+	/**
+	 * Parses the pattern and compiles it into the states of the automaton.
+	 */
+	private void compile() throws SQLException {
+		Node node = parseAlternation();
+		if (pos < pattern.length()){
+			throw error();
+		}
+		emit(node);
+		emit(MATCH, 0, 0);
+		pcs = new int[size];
+		starts = new int[size];
+		steps = new Step[size];
+		nextPcs = new int[size];
+		nextStarts = new int[size];
+		nextSteps = new Step[size];
+		added = new int[size];
+	}
+
+	private Node parseAlternation() throws SQLException {
+		Node sequence = parseSequence();
+		if (!readIf('|')){
+			return sequence;
+		}
+		Node node = new Node(ALTERNATION);
+		node.children.add(sequence);
+		do {
+			node.children.add(parseSequence());
+		} while (readIf('|'));
+		return node;
+	}
+
+	private Node parseSequence() throws SQLException {
+		Node node = new Node(SEQUENCE);
+		while (true){
+			skipSpace();
+			if ((pos == pattern.length()) || (pattern.charAt(pos) == '|') || (pattern.charAt(pos) == ')')){
+				return node;
+			}
+			Node item = parseItem();
+			while (true){
+				Node repetition = new Node(REPETITION);
+				repetition.children.add(item);
+				if (readIf('*')){
+					repetition.max = -1;
+				}else if (readIf('+')){
+					repetition.min = 1;
+					repetition.max = -1;
+				}else if (readIf('?')){
+					repetition.max = 1;
+				}else if (readIf('{')){
+					repetition.min = readNumber();
+					repetition.max = repetition.min;
+					if (readIf(',')){
+						skipSpace();
+						repetition.max = (pos < pattern.length()) && Character.isDigit(pattern.charAt(pos))?readNumber():-1;
+					}
+					if (!readIf('}') || ((repetition.max >= 0) && (repetition.max < repetition.min))){
+						throw error();
+					}
+				}else{
+					break;
+				}
+				item = repetition;
+			}
+			node.children.add(item);
+		}
+	}
+
+	private Node parseItem() throws SQLException {
+		if (readIf('(')){
+			Node node = parseAlternation();
+			if (!readIf(')')){
+				throw error();
+			}
+			return node;
+		}else if (readIf('^')){
+			return new Node(START_ANCHOR);
+		}else if (readIf('$')){
+			return new Node(END_ANCHOR);
+		}
+		int start = pos;
+		while ((pos < pattern.length()) && (Character.isLetterOrDigit(pattern.charAt(pos)) || (pattern.charAt(pos) == '_'))){
+			pos++;
+		}
+		if (start == pos){
+			throw error();
+		}
+		String name = StringUtils.toUpperEnglish(pattern.substring(start, pos));
+		Node node = new Node(VARIABLE);
+		node.variable = variables.indexOf(name);
+		if (node.variable < 0){
+			node.variable = variables.size();
+			variables.add(name);
+		}
+		return node;
+	}
+
+	private int readNumber() throws SQLException {
+		skipSpace();
+		int start = pos;
+		while ((pos < pattern.length()) && Character.isDigit(pattern.charAt(pos))){
+			pos++;
+		}
+		if (start == pos){
+			throw error();
+		}
+		return Integer.parseInt(pattern.substring(start, pos));
+	}
+
+	private boolean readIf(char c) {
+		skipSpace();
+		if ((pos < pattern.length()) && (pattern.charAt(pos) == c)){
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	private void skipSpace() {
+		while ((pos < pattern.length()) && Character.isWhitespace(pattern.charAt(pos))){
+			pos++;
+		}
+	}
+
+	private SQLException error() {
+		return new SQLException("Syntax error in pattern at position " + (pos + 1) + ": " + pattern);
+	}
+
+	/**
+	 * Emits the states of a node. A repetition emits its child once for each required occurrence, followed by a loop
+	 * or by the optional occurrences.
+	 */
+	private void emit(Node node) {
+		switch (node.type){
+		case VARIABLE:
+			emit(VARIABLE, node.variable, 0);
+			break;
+		case START_ANCHOR:
+		case END_ANCHOR:
+			emit(node.type, 0, 0);
+			break;
+		case SEQUENCE:
+			for (Node child : node.children){
+				emit(child);
+			}
+			break;
+		case ALTERNATION: {
+			int[] jumps = new int[node.children.size() - 1];
+			for (int i = 0; i < jumps.length; i++){
+				int split = emit(SPLIT, size + 1, 0);
+				emit(node.children.get(i));
+				jumps[i] = emit(JUMP, 0, 0);
+				arg2[split] = size;
+			}
+			emit(node.children.get(jumps.length));
+			for (int jump : jumps){
+				arg1[jump] = size;
+			}
+			break;
+		}
+		default: {
+			Node child = node.children.get(0);
+			for (int i = 0; i < node.min; i++){
+				emit(child);
+			}
+			if (node.max < 0){
+				int split = emit(SPLIT, size + 1, 0);
+				emit(child);
+				emit(JUMP, split, 0);
+				arg2[split] = size;
+			}else{
+				int[] splits = new int[node.max - node.min];
+				for (int i = 0; i < splits.length; i++){
+					splits[i] = emit(SPLIT, size + 1, 0);
+					emit(child);
+				}
+				for (int split : splits){
+					arg2[split] = size;
+				}
+			}
+		}
+		}
+	}
+
+	private int emit(int type, int a1, int a2) {
+		if (size == code.length){
+			code = Arrays.copyOf(code, size * 2);
+			arg1 = Arrays.copyOf(arg1, size * 2);
+			arg2 = Arrays.copyOf(arg2, size * 2);
+		}
+		code[size] = type;
+		arg1[size] = a1;
+		arg2[size] = a2;
+		return size++;
+	}
+}
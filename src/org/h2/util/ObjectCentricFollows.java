@@ -0,0 +1,273 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * The directly follows relation of an object-centric event log, in which an event can relate to several objects
+ * of several types. For each object type, the objects of that type are the cases, such that the relation is
+ * computed for each type without flattening the log to one case notion per query.
+ *
+ */
+public class ObjectCentricFollows {
+
+	/**
+	 * Implements the object-centric directly follows relation. Given the events and the relation between events
+	 * and objects, returns for each object type each pair of event labels of events that directly follow each other
+	 * for some object of that type, together with the number of times that this happens. As in FOLLOWS, events with
+	 * the same timestamp directly follow all events with the preceding timestamp.
+	 *
+	 * The events are sorted by time once; the events of each object are then obtained in time order by a counting sort
+	 * on the relation. The object types are processed in parallel.
+	 *
+	 * The events must have three columns:
+	 * - event identifier
+	 * - event label
+	 * - timestamp
+	 * The relation between events and objects must have three columns:
+	 * - event identifier
+	 * - object identifier
+	 * - object type
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * E.g.: OC_FOLLOWS((SELECT Id, Activity, Time FROM Events), (SELECT Event_Id, Object_Id, Object_Type FROM Event_Objects))
+	 *
+	 * The returned relation has four columns:
+	 * - the object type (OBJECT_TYPE)
+	 * - the event label for the preceding event (EVENT_LABEL_P)
+	 * - the event label for the succeeding event (EVENT_LABEL_S)
+	 * - the number of times that the succeeding event directly follows the preceding event for an object of the type (FREQUENCY)
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param events	The events as specified above.
+	 * @param links		The relation between events and objects as specified above.
+	 * @return			The object-centric directly follows relation as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet objectCentricFollows(Connection conn, ResultSet events, ResultSet links) throws SQLException {
+		SimpleResultSet result = new SimpleResultSet();
+		if ((events == null) || (links == null) || (events.getMetaData().getColumnCount() != 3) || (links.getMetaData().getColumnCount() != 3)
+				|| EventLog.isColumnList(conn)){
+			result.addColumn("OBJECT_TYPE", Types.VARCHAR, 255, 0);
+			result.addColumn("EVENT_LABEL_P", Types.VARCHAR, 255, 0);
+			result.addColumn("EVENT_LABEL_S", Types.VARCHAR, 255, 0);
+			result.addColumn("FREQUENCY", Types.INTEGER, 10, 0);
+			EventLog.close(events);
+			EventLog.close(links);
+			return result;
+		}
+		ResultSetMetaData lrsm = links.getMetaData();
+		result.addColumn("OBJECT_TYPE", lrsm.getColumnType(3), lrsm.getPrecision(3), 0);
+		ResultSetMetaData ersm = events.getMetaData();
+		result.addColumn("EVENT_LABEL_P", ersm.getColumnType(2), ersm.getPrecision(2), 0);
+		result.addColumn("EVENT_LABEL_S", ersm.getColumnType(2), ersm.getPrecision(2), 0);
+		result.addColumn("FREQUENCY", Types.INTEGER, 10, 0);
+
+		//Read the events.
+		final ArrayList<Object> labels = new ArrayList<Object>();
+		HashMap<Object,Integer> labelIds = new HashMap<Object,Integer>();
+		HashMap<Object,Integer> eventIds = new HashMap<Object,Integer>();
+		int eventCount = 0;
+		int[] eventLabel = new int[1024];
+		long[] eventTime = new long[1024];
+		try {
+			while (events.next()){
+				Object eventId = events.getObject(1);
+				if (eventIds.containsKey(eventId)){
+					continue;
+				}
+				Object label = EventLog.labelKey(events.getObject(2));
+				Integer labelId = labelIds.get(label);
+				if (labelId == null){
+					labelId = labels.size();
+					labelIds.put(label, labelId);
+					labels.add(label);
+				}
+				Timestamp ts = events.getTimestamp(3);
+				if (eventCount == eventLabel.length){
+					eventLabel = Arrays.copyOf(eventLabel, eventCount * 2);
+					eventTime = Arrays.copyOf(eventTime, eventCount * 2);
+				}
+				eventIds.put(eventId, eventCount);
+				eventLabel[eventCount] = labelId;
+				eventTime[eventCount] = (ts != null)?ts.getTime():0;
+				eventCount++;
+			}
+		} finally {
+			EventLog.close(events);
+		}
+
+		//Sort the events by time once, which gives each event its rank.
+		int[] order = new int[eventCount];
+		for (int e = 0; e < eventCount; e++){
+			order[e] = e;
+		}
+		long[] sortedTime = Arrays.copyOf(eventTime, eventCount);
+		EventLog.sortByTime(sortedTime, order, 0, eventCount, new long[eventCount], new int[eventCount]);
+		int[] rank = new int[eventCount];
+		for (int r = 0; r < eventCount; r++){
+			rank[order[r]] = r;
+		}
+
+		//Read the relation, numbering the object types and the objects of each type.
+		final ArrayList<Object> types = new ArrayList<Object>();
+		HashMap<Object,Integer> typeIds = new HashMap<Object,Integer>();
+		final ArrayList<ArrayList<Object>> objects = new ArrayList<ArrayList<Object>>();
+		ArrayList<HashMap<Object,Integer>> objectIds = new ArrayList<HashMap<Object,Integer>>();
+		int linkCount = 0;
+		int[] linkRank = new int[1024];
+		int[] linkObject = new int[1024];
+		int[] linkType = new int[1024];
+		try {
+			while (links.next()){
+				Integer e = eventIds.get(links.getObject(1));
+				if (e == null){
+					continue;
+				}
+				Object type = links.getObject(3);
+				Integer typeId = typeIds.get(type);
+				if (typeId == null){
+					typeId = types.size();
+					typeIds.put(type, typeId);
+					types.add(type);
+					objects.add(new ArrayList<Object>());
+					objectIds.add(new HashMap<Object,Integer>());
+				}
+				Object object = links.getObject(2);
+				Integer objectId = objectIds.get(typeId).get(object);
+				if (objectId == null){
+					objectId = objects.get(typeId).size();
+					objectIds.get(typeId).put(object, objectId);
+					objects.get(typeId).add(object);
+				}
+				if (linkCount == linkRank.length){
+					linkRank = Arrays.copyOf(linkRank, linkCount * 2);
+					linkObject = Arrays.copyOf(linkObject, linkCount * 2);
+					linkType = Arrays.copyOf(linkType, linkCount * 2);
+				}
+				linkRank[linkCount] = rank[e];
+				linkObject[linkCount] = objectId;
+				linkType[linkCount] = typeId;
+				linkCount++;
+			}
+		} finally {
+			EventLog.close(links);
+		}
+
+		//Order the relation by event rank and then group it by type (both counting sorts, which are stable).
+		int[] byRank = countingSort(linkRank, linkCount, eventCount, null);
+		final int[] typeStart = new int[types.size() + 1];
+		final int[] byType = countingSort(linkType, linkCount, types.size(), typeStart, byRank);
+
+		//Compute the directly follows counts of each type; each thread takes the next type that is not counted yet.
+		final int[][][] counts = new int[types.size()][][];
+		final int[] fRank = linkRank;
+		final int[] fObject = linkObject;
+		final int[] fOrder = order;
+		final long[] fTime = sortedTime;
+		final int[] fLabel = eventLabel;
+		final AtomicInteger next = new AtomicInteger();
+		Task[] tasks = new Task[Math.max(0, Math.min(Runtime.getRuntime().availableProcessors(), types.size()) - 1)];
+		for (int t = 0; t < tasks.length; t++){
+			tasks[t] = new Task() {
+				@Override
+				public void call() {
+					countAll(labels, objects, byType, typeStart, fObject, fRank, fOrder, fTime, fLabel, next, counts);
+				}
+			}.execute();
+		}
+		countAll(labels, objects, byType, typeStart, linkObject, linkRank, order, sortedTime, eventLabel, next, counts);
+		for (Task task: tasks){
+			task.get();
+		}
+
+		for (int t = 0; t < types.size(); t++){
+			for (int a = 0; a < labels.size(); a++){
+				for (int b = 0; b < labels.size(); b++){
+					if (counts[t][a][b] > 0){
+						result.addRow(types.get(t), EventLog.labelValue(labels.get(a)), EventLog.labelValue(labels.get(b)), counts[t][a][b]);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the directly follows pairs of the objects of each type that is not counted yet by another thread, taking
+	 * the types one at a time from a shared counter.
+	 */
+	static void countAll(ArrayList<Object> labels, ArrayList<ArrayList<Object>> objects, int[] links, int[] typeStart,
+			int[] linkObject, int[] linkRank, int[] order, long[] sortedTime, int[] eventLabel, AtomicInteger next, int[][][] counts) {
+		for (int type = next.getAndIncrement(); type < counts.length; type = next.getAndIncrement()){
+			counts[type] = count(labels, objects.get(type).size(), links, typeStart[type], typeStart[type + 1],
+					linkObject, linkRank, order, sortedTime, eventLabel);
+		}
+	}
+
+	/**
+	 * Counts the directly follows pairs of the objects of one type, given the links of that type in the order of
+	 * their event rank.
+	 */
+	static int[][] count(ArrayList<Object> labels, int objectCount, int[] links, int from, int to,
+			int[] linkObject, int[] linkRank, int[] order, long[] sortedTime, int[] eventLabel) {
+		int[] caseStart = new int[objectCount + 1];
+		for (int i = from; i < to; i++){
+			caseStart[linkObject[links[i]] + 1]++;
+		}
+		for (int o = 0; o < objectCount; o++){
+			caseStart[o + 1] += caseStart[o];
+		}
+		int[] next = Arrays.copyOf(caseStart, objectCount);
+		int[] labelsByObject = new int[to - from];
+		long[] timesByObject = new long[to - from];
+		for (int i = from; i < to; i++){
+			int link = links[i];
+			int pos = next[linkObject[link]]++;
+			labelsByObject[pos] = eventLabel[order[linkRank[link]]];
+			timesByObject[pos] = sortedTime[linkRank[link]];
+		}
+		EventLog log = new EventLog(labels, new Object[objectCount], caseStart, labelsByObject, timesByObject);
+		return DirectlyFollows.count(log, null);
+	}
+
+	/**
+	 * Returns the positions 0..n-1 in the order of their keys, where 0 &lt;= key &lt; keyCount, keeping the order of
+	 * positions with the same key. If start is not null, it receives the start of each key in the result.
+	 */
+	private static int[] countingSort(int[] keys, int n, int keyCount, int[] start) {
+		int[] identity = new int[n];
+		for (int i = 0; i < n; i++){
+			identity[i] = i;
+		}
+		return countingSort(keys, n, keyCount, start, identity);
+	}
+
+	/**
+	 * Returns the given positions in the order of their keys, keeping the order of positions with the same key.
+	 */
+	private static int[] countingSort(int[] keys, int n, int keyCount, int[] start, int[] positions) {
+		int[] offsets = (start != null)?start:new int[keyCount + 1];
+		for (int i = 0; i < n; i++){
+			offsets[keys[positions[i]] + 1]++;
+		}
+		for (int k = 0; k < keyCount; k++){
+			offsets[k + 1] += offsets[k];
+		}
+		int[] next = Arrays.copyOf(offsets, keyCount);
+		int[] result = new int[n];
+		for (int i = 0; i < n; i++){
+			result[next[keys[positions[i]]]++] = positions[i];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,403 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.h2.api.Trigger;
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * A directly follows graph over a sliding time window of an event table, which is maintained while events are
+ * inserted, such that it can be queried without reading the event table.
+ *
+ * The window ends at the latest timestamp that was inserted. An edge is counted at the time of its succeeding event
+ * and expires when that time leaves the window. The counts of the edges are kept in a time wheel with one bucket per
+ * 1/64th of the window, such that the window moves in steps of that size. The state of each case (its last two
+ * timestamp batches) is kept in an open addressing hash table; cases of which the last event left the window are
+ * removed when the table grows, so an edge of which the preceding event has left the window may be missed.
+ *
+ * The events of a case must be inserted in the order of their timestamps; an event that is earlier than the last
+ * event of its case is not counted. Deleted and updated events and rolled back inserts are not taken into account.
+ * Like the case indexes, the online directly follows graphs are kept in memory by the database, by name, and must be
+ * created again after the database is opened.
+ *
+ */
+public class OnlineDfg {
+
+	/**
+	 * The number of buckets of the time wheel, a power of two, such that the slot of a tick is its lowest bits.
+	 */
+	private static final int SLOTS = 64;
+
+	private static final String TRIGGER_PREFIX = "ONLINE_DFG_";
+
+	private final long bucketWidth;
+	private final ArrayList<Object> labels = new ArrayList<Object>();
+	private final HashMap<Object,Integer> labelIds = new HashMap<Object,Integer>();
+	private int[][] counts = new int[0][0];
+	private final EdgeCounts[] wheel = new EdgeCounts[SLOTS];
+	private long tick = Long.MIN_VALUE;
+	private final CaseTable cases = new CaseTable();
+
+	/**
+	 * Creates an empty online directly follows graph.
+	 *
+	 * @param window	The length of the window in milliseconds.
+	 */
+	public OnlineDfg(long window) {
+		bucketWidth = Math.max(1, window / SLOTS);
+		for (int i = 0; i < SLOTS; i++){
+			wheel[i] = new EdgeCounts();
+		}
+	}
+
+	/**
+	 * Creates an online directly follows graph with the given name over an event table, replacing an existing one
+	 * with that name. The events that are already in the table are added, after which a trigger adds the events that
+	 * are inserted into the table.
+	 *
+	 * The first three columns of the event table must be:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * @param conn			The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name			The name of the online directly follows graph.
+	 * @param tableName		The name of the event table, see CaseIndex.getTableSQL.
+	 * @param windowSeconds	The length of the window in seconds.
+	 * @return				The number of events that were already in the table.
+	 * @throws SQLException
+	 */
+	public static int createOnlineDfg(Connection conn, String name, String tableName, long windowSeconds) throws SQLException {
+		if (windowSeconds <= 0){
+			throw new SQLException("The window must be positive");
+		}
+		String trigger = StringUtils.quoteIdentifier(TRIGGER_PREFIX + name);
+		String table = CaseIndex.getTableSQL(conn, tableName);
+		OnlineDfg dfg = new OnlineDfg(windowSeconds * 1000);
+		int events = 0;
+		Statement stat = conn.createStatement();
+		try {
+			stat.execute("DROP TRIGGER IF EXISTS " + trigger);
+			ResultSet rs = stat.executeQuery("SELECT * FROM " + table + " ORDER BY 3");
+			while (rs.next()){
+				dfg.add(rs.getObject(1), rs.getObject(2), rs.getObject(3));
+				events++;
+			}
+			rs.close();
+			HashMap<String,OnlineDfg> dfgs = CaseIndex.getDatabase(conn).getOnlineDfgs();
+			synchronized (dfgs){
+				dfgs.put(name, dfg);
+			}
+			stat.execute("CREATE TRIGGER " + trigger + " AFTER INSERT ON " + table + " FOR EACH ROW CALL \"" + InsertTrigger.class.getName() + "\"");
+		} finally {
+			stat.close();
+		}
+		return events;
+	}
+
+	/**
+	 * Removes an online directly follows graph and its trigger.
+	 *
+	 * @param conn	The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name	The name of the online directly follows graph.
+	 * @return		True if it existed.
+	 * @throws SQLException
+	 */
+	public static boolean dropOnlineDfg(Connection conn, String name) throws SQLException {
+		HashMap<String,OnlineDfg> dfgs = CaseIndex.getDatabase(conn).getOnlineDfgs();
+		boolean existed;
+		synchronized (dfgs){
+			existed = dfgs.remove(name) != null;
+		}
+		Statement stat = conn.createStatement();
+		try {
+			stat.execute("DROP TRIGGER IF EXISTS " + StringUtils.quoteIdentifier(TRIGGER_PREFIX + name));
+		} finally {
+			stat.close();
+		}
+		return existed;
+	}
+
+	/**
+	 * Returns the current counts of an online directly follows graph.
+	 *
+	 * The returned directly follows graph has three columns:
+	 * - the event label for the preceding event (EVENT_LABEL_P)
+	 * - the event label for the succeeding event (EVENT_LABEL_S)
+	 * - the number of times that the succeeding event directly follows the preceding event within the window (FREQUENCY)
+	 *
+	 * @param conn	The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param name	The name of the online directly follows graph.
+	 * @return		The directly follows graph as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet onlineDfg(Connection conn, String name) throws SQLException {
+		SimpleResultSet result = new SimpleResultSet();
+		EventLog.addLabelColumn(result, "EVENT_LABEL_P", null);
+		EventLog.addLabelColumn(result, "EVENT_LABEL_S", null);
+		result.addColumn("FREQUENCY", Types.INTEGER, 10, 0);
+		if ((name == null) || EventLog.isColumnList(conn)){
+			return result;
+		}
+		OnlineDfg dfg;
+		HashMap<String,OnlineDfg> dfgs = CaseIndex.getDatabase(conn).getOnlineDfgs();
+		synchronized (dfgs){
+			dfg = dfgs.get(name);
+		}
+		if (dfg == null){
+			throw new SQLException("Online DFG " + name + " not found");
+		}
+		synchronized (dfg){
+			for (int a = 0; a < dfg.counts.length; a++){
+				for (int b = 0; b < dfg.counts.length; b++){
+					if (dfg.counts[a][b] > 0){
+						result.addRow(dfg.labels.get(a), dfg.labels.get(b), dfg.counts[a][b]);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds an event. Events with the same timestamp directly follow all events of the same case with the preceding
+	 * timestamp, as in DirectlyFollows.
+	 *
+	 * @param caseId	The case identifier.
+	 * @param label		The event label.
+	 * @param time		The timestamp as a java.util.Date or a number of milliseconds.
+	 */
+	public synchronized void add(Object caseId, Object label, Object time) {
+		if (caseId == null){
+			return;
+		}
+		long t = (time instanceof java.util.Date)?((java.util.Date) time).getTime():((time instanceof Number)?((Number) time).longValue():0);
+		Object key = EventLog.labelKey(label);
+		Integer labelId = labelIds.get(key);
+		if (labelId == null){
+			labelId = labels.size();
+			labelIds.put(key, labelId);
+			labels.add(label);
+			int[][] newCounts = new int[labels.size()][];
+			for (int a = 0; a < newCounts.length; a++){
+				newCounts[a] = (a < counts.length)?Arrays.copyOf(counts[a], newCounts.length):new int[newCounts.length];
+			}
+			counts = newCounts;
+		}
+
+		//Move the window, expiring the buckets that leave it.
+		long eventTick = Math.floorDiv(t, bucketWidth);
+		if (eventTick > tick){
+			for (long i = Math.max(tick + 1, eventTick - SLOTS + 1); i <= eventTick; i++){
+				expire(wheel[(int) (i & (SLOTS - 1))]);
+			}
+			tick = eventTick;
+		}
+
+		int slot = cases.find(caseId);
+		if ((slot < 0) || (t > cases.times[slot])){
+			if (slot < 0){
+				slot = cases.insert(caseId, tick - SLOTS, bucketWidth);
+			}else{
+				cases.previous[slot] = cases.current[slot];
+				cases.current[slot] = null;
+			}
+			cases.times[slot] = t;
+		}else if (t < cases.times[slot]){
+			return;
+		}
+		int[] previous = cases.previous[slot];
+		if ((previous != null) && (eventTick > tick - SLOTS)){
+			EdgeCounts bucket = wheel[(int) (eventTick & (SLOTS - 1))];
+			for (int a: previous){
+				counts[a][labelId]++;
+				bucket.add(((long) a << 32) | labelId);
+			}
+		}
+		int[] current = cases.current[slot];
+		if (current == null){
+			current = new int[]{labelId};
+		}else{
+			current = Arrays.copyOf(current, current.length + 1);
+			current[current.length - 1] = labelId;
+		}
+		cases.current[slot] = current;
+	}
+
+	private void expire(EdgeCounts bucket) {
+		for (int i = 0; i < bucket.keys.length; i++){
+			if (bucket.values[i] > 0){
+				long edge = bucket.keys[i];
+				counts[(int) (edge >>> 32)][(int) edge] -= bucket.values[i];
+			}
+		}
+		bucket.clear();
+	}
+
+	/**
+	 * A hash table from edges to counts with open addressing and linear probing, which is cleared as a whole.
+	 */
+	private static class EdgeCounts {
+		long[] keys = new long[16];
+		int[] values = new int[16];
+		int size;
+
+		void add(long key) {
+			if (size * 2 >= keys.length){
+				long[] oldKeys = keys;
+				int[] oldValues = values;
+				keys = new long[oldKeys.length * 2];
+				values = new int[oldKeys.length * 2];
+				for (int i = 0; i < oldKeys.length; i++){
+					if (oldValues[i] > 0){
+						int j = slot(oldKeys[i]);
+						keys[j] = oldKeys[i];
+						values[j] = oldValues[i];
+					}
+				}
+			}
+			int i = slot(key);
+			if (values[i] == 0){
+				keys[i] = key;
+				size++;
+			}
+			values[i]++;
+		}
+
+		/**
+		 * Returns the slot that contains the key, or the empty slot where it belongs.
+		 */
+		int slot(long key) {
+			int mask = keys.length - 1;
+			int i = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+			while ((values[i] != 0) && (keys[i] != key)){
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		void clear() {
+			if (size > 0){
+				Arrays.fill(values, 0);
+				size = 0;
+			}
+		}
+	}
+
+	/**
+	 * A hash table from case identifiers to the timestamp and the labels of the last two timestamp batches of the case,
+	 * with open addressing and linear probing.
+	 */
+	private static class CaseTable {
+		Object[] keys = new Object[16];
+		long[] times = new long[16];
+		int[][] previous = new int[16][];
+		int[][] current = new int[16][];
+		int size;
+
+		int find(Object caseId) {
+			int mask = keys.length - 1;
+			for (int i = hash(caseId) & mask; keys[i] != null; i = (i + 1) & mask){
+				if (keys[i].equals(caseId)){
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Inserts a case; when the table is full, first removes the cases of which the last event is before the given tick.
+		 */
+		int insert(Object caseId, long minTick, long bucketWidth) {
+			if (size * 2 >= keys.length){
+				Object[] oldKeys = keys;
+				long[] oldTimes = times;
+				int[][] oldPrevious = previous;
+				int[][] oldCurrent = current;
+				int live = 0;
+				for (int i = 0; i < oldKeys.length; i++){
+					if ((oldKeys[i] != null) && (Math.floorDiv(oldTimes[i], bucketWidth) > minTick)){
+						live++;
+					}
+				}
+				int capacity = 16;
+				while (capacity < live * 4){
+					capacity *= 2;
+				}
+				keys = new Object[capacity];
+				times = new long[capacity];
+				previous = new int[capacity][];
+				current = new int[capacity][];
+				size = 0;
+				for (int i = 0; i < oldKeys.length; i++){
+					if ((oldKeys[i] != null) && (Math.floorDiv(oldTimes[i], bucketWidth) > minTick)){
+						int j = put(oldKeys[i]);
+						times[j] = oldTimes[i];
+						previous[j] = oldPrevious[i];
+						current[j] = oldCurrent[i];
+					}
+				}
+			}
+			return put(caseId);
+		}
+
+		private int put(Object caseId) {
+			int mask = keys.length - 1;
+			int i = hash(caseId) & mask;
+			while (keys[i] != null){
+				i = (i + 1) & mask;
+			}
+			keys[i] = caseId;
+			size++;
+			return i;
+		}
+
+		private static int hash(Object caseId) {
+			int h = caseId.hashCode() * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+
+	/**
+	 * The trigger that adds the inserted events to the online directly follows graph with the name of the trigger.
+	 */
+	public static class InsertTrigger implements Trigger {
+
+		private OnlineDfg dfg;
+
+		@Override
+		public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
+			if (triggerName.startsWith(TRIGGER_PREFIX)){
+				HashMap<String,OnlineDfg> dfgs = CaseIndex.getDatabase(conn).getOnlineDfgs();
+				synchronized (dfgs){
+					dfg = dfgs.get(triggerName.substring(TRIGGER_PREFIX.length()));
+				}
+			}
+		}
+
+		@Override
+		public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+			if ((dfg != null) && (newRow != null) && (newRow.length >= 3)){
+				dfg.add(newRow[0], newRow[1], newRow[2]);
+			}
+		}
+
+		@Override
+		public void close() throws SQLException {
+			dfg = null;
+		}
+
+		@Override
+		public void remove() throws SQLException {
+			dfg = null;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * The weakly follows relation for each partition of an event log, computed in a single pass, such that the relation
+ * per resource group, region or month does not need a FOLLOWS invocation per partition.
+ *
+ */
+public class PartitionedFollows {
+
+	/**
+	 * Implements the partitioned weakly follows relation, which FOLLOWS returns for an event log with a leading
+	 * partition column. The events of a case that are in different partitions are considered separately, e.g. when
+	 * the partition is a month, the relation of a month only contains the pairs of events in that month.
+	 *
+	 * The event log must have four columns:
+	 * - partition
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The returned relation has three columns:
+	 * - the partition, with the name of the partition column
+	 * - the event label for the preceding event (EVENT_LABEL_P)
+	 * - the event label for the succeeding event (EVENT_LABEL_S)
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @return			The weakly follows relation of each partition.
+	 * @throws SQLException
+	 */
+	public static ResultSet partitionedFollows(Connection conn, ResultSet eventLog) throws SQLException {
+		SimpleResultSet result = new SimpleResultSet();
+		ResultSetMetaData rsm = eventLog.getMetaData();
+		result.addColumn(rsm.getColumnLabel(1), rsm.getColumnType(1), rsm.getPrecision(1), rsm.getScale(1));
+		result.addColumn("EVENT_LABEL_P", rsm.getColumnType(3), rsm.getPrecision(3), 0);
+		result.addColumn("EVENT_LABEL_S", rsm.getColumnType(3), rsm.getPrecision(3), 0);
+		if (EventLog.isColumnList(conn)){
+			EventLog.close(eventLog);
+			return result;
+		}
+
+		//Read the events, numbering the partitions and the cases of each partition.
+		ArrayList<Object> partitions = new ArrayList<Object>();
+		HashMap<Object,Integer> partitionIds = new HashMap<Object,Integer>();
+		ArrayList<HashMap<Object,Integer>> partitionCases = new ArrayList<HashMap<Object,Integer>>();
+		ArrayList<Object> labels = new ArrayList<Object>();
+		HashMap<Object,Integer> labelIds = new HashMap<Object,Integer>();
+		int caseCount = 0;
+		int[] casePartition = new int[1024];
+		int size = 0;
+		int[] eventCase = new int[1024];
+		int[] eventLabel = new int[1024];
+		long[] eventTime = new long[1024];
+		try {
+			while (eventLog.next()){
+				Object partition = eventLog.getObject(1);
+				Integer partitionId = partitionIds.get(partition);
+				if (partitionId == null){
+					partitionId = partitions.size();
+					partitionIds.put(partition, partitionId);
+					partitions.add(partition);
+					partitionCases.add(new HashMap<Object,Integer>());
+				}
+				HashMap<Object,Integer> cases = partitionCases.get(partitionId);
+				Object caseId = eventLog.getObject(2);
+				Integer caseIndex = cases.get(caseId);
+				if (caseIndex == null){
+					caseIndex = caseCount++;
+					cases.put(caseId, caseIndex);
+					if (caseIndex == casePartition.length){
+						casePartition = Arrays.copyOf(casePartition, caseIndex * 2);
+					}
+					casePartition[caseIndex] = partitionId;
+				}
+				Object label = EventLog.labelKey(eventLog.getObject(3));
+				Integer labelId = labelIds.get(label);
+				if (labelId == null){
+					labelId = labels.size();
+					labelIds.put(label, labelId);
+					labels.add(label);
+				}
+				Timestamp ts = eventLog.getTimestamp(4);
+				if (size == eventCase.length){
+					eventCase = Arrays.copyOf(eventCase, size * 2);
+					eventLabel = Arrays.copyOf(eventLabel, size * 2);
+					eventTime = Arrays.copyOf(eventTime, size * 2);
+				}
+				eventCase[size] = caseIndex;
+				eventLabel[size] = labelId;
+				eventTime[size] = (ts != null)?ts.getTime():0;
+				size++;
+			}
+		} finally {
+			EventLog.close(eventLog);
+		}
+		EventLog log = EventLog.build(labels, new Object[caseCount], eventCase, eventLabel, eventTime, size);
+
+		//Set the bits of the pairs in a label x label bit matrix per partition, which is allocated by the first pair.
+		int n = labels.size();
+		long[][] matrices = new long[partitions.size()][];
+		for (int c = 0; c < caseCount; c++){
+			int end = log.getCaseEnd(c);
+			int sa = log.getCaseStart(c);
+			int sc = log.nextBatch(sa, end);
+			while (sc < end){
+				long[] matrix = matrices[casePartition[c]];
+				if (matrix == null){
+					matrix = new long[(int) (((long) n * n + 63) >>> 6)];
+					matrices[casePartition[c]] = matrix;
+				}
+				int ec = log.nextBatch(sc, end);
+				for (int i = sa; i < sc; i++){
+					long row = (long) log.getEventLabel(i) * n;
+					for (int j = sc; j < ec; j++){
+						long bit = row + log.getEventLabel(j);
+						matrix[(int) (bit >>> 6)] |= 1L << bit;
+					}
+				}
+				sa = sc;
+				sc = ec;
+			}
+		}
+
+		for (int p = 0; p < partitions.size(); p++){
+			long[] matrix = matrices[p];
+			if (matrix == null){
+				continue;
+			}
+			for (int w = 0; w < matrix.length; w++){
+				long word = matrix[w];
+				while (word != 0){
+					long bit = ((long) w << 6) + Long.numberOfTrailingZeros(word);
+					result.addRow(partitions.get(p), EventLog.labelValue(labels.get((int) (bit / n))), EventLog.labelValue(labels.get((int) (bit % n))));
+					word &= word - 1;
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,177 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A Petri net as it is used by the conformance checking functions. Places and transitions are numbered,
+ * and the arcs are stored as the input and output places of each transition, with their weights.
+ *
+ */
+public class PetriNet {
+
+	final Object[] placeIds;
+	final int[] initialMarking;
+	final int[] finalMarking;
+	final Object[] transitionIds;
+	final String[] transitionLabels;
+	final int[][] inPlaces;
+	final int[][] inWeights;
+	final int[][] outPlaces;
+	final int[][] outWeights;
+
+	private PetriNet(Object[] placeIds, int[] initialMarking, int[] finalMarking, Object[] transitionIds, String[] transitionLabels) {
+		this.placeIds = placeIds;
+		this.initialMarking = initialMarking;
+		this.finalMarking = finalMarking;
+		this.transitionIds = transitionIds;
+		this.transitionLabels = transitionLabels;
+		int t = transitionIds.length;
+		inPlaces = new int[t][0];
+		inWeights = new int[t][0];
+		outPlaces = new int[t][0];
+		outWeights = new int[t][0];
+	}
+
+	/**
+	 * Reads a Petri net from three tables (or views).
+	 *
+	 * The places table must have three columns:
+	 * - place identifier
+	 * - number of tokens in the initial marking
+	 * - number of tokens in the final marking
+	 * The transitions table must have two columns:
+	 * - transition identifier
+	 * - label, which is matched with the event labels of the log, or null for a silent transition
+	 * The arcs table must have two or three columns:
+	 * - source, which is a place or transition identifier
+	 * - target, which is a transition or place identifier
+	 * - optionally, the weight of the arc (1 if omitted)
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * The tables are looked up in the current schema, by their name as given or else in upper case (see CaseIndex.getTableSQL).
+	 *
+	 * @param conn			The database connection.
+	 * @param places		The name of the places table.
+	 * @param transitions	The name of the transitions table.
+	 * @param arcs			The name of the arcs table.
+	 * @return				The Petri net.
+	 * @throws SQLException
+	 */
+	public static PetriNet read(Connection conn, String places, String transitions, String arcs) throws SQLException {
+		Statement stat = conn.createStatement();
+		try {
+			ArrayList<Object> placeIds = new ArrayList<Object>();
+			HashMap<Object,Integer> placeIndexes = new HashMap<Object,Integer>();
+			int[] initialMarking = new int[16];
+			int[] finalMarking = new int[16];
+			ResultSet rs = stat.executeQuery("SELECT * FROM " + CaseIndex.getTableSQL(conn, places));
+			while (rs.next()){
+				int p = placeIds.size();
+				if (p == initialMarking.length){
+					initialMarking = Arrays.copyOf(initialMarking, p * 2);
+					finalMarking = Arrays.copyOf(finalMarking, p * 2);
+				}
+				placeIds.add(rs.getObject(1));
+				placeIndexes.put(rs.getObject(1), p);
+				initialMarking[p] = rs.getInt(2);
+				finalMarking[p] = rs.getInt(3);
+			}
+			rs.close();
+
+			ArrayList<Object> transitionIds = new ArrayList<Object>();
+			ArrayList<String> transitionLabels = new ArrayList<String>();
+			HashMap<Object,Integer> transitionIndexes = new HashMap<Object,Integer>();
+			rs = stat.executeQuery("SELECT * FROM " + CaseIndex.getTableSQL(conn, transitions));
+			while (rs.next()){
+				transitionIndexes.put(rs.getObject(1), transitionIds.size());
+				transitionIds.add(rs.getObject(1));
+				transitionLabels.add(rs.getString(2));
+			}
+			rs.close();
+
+			int placeCount = placeIds.size();
+			PetriNet net = new PetriNet(placeIds.toArray(), Arrays.copyOf(initialMarking, placeCount), Arrays.copyOf(finalMarking, placeCount),
+					transitionIds.toArray(), transitionLabels.toArray(new String[0]));
+			rs = stat.executeQuery("SELECT * FROM " + CaseIndex.getTableSQL(conn, arcs));
+			boolean weighted = rs.getMetaData().getColumnCount() >= 3;
+			while (rs.next()){
+				Object source = rs.getObject(1);
+				Object target = rs.getObject(2);
+				int weight = weighted?rs.getInt(3):1;
+				Integer p = placeIndexes.get(source);
+				Integer t = transitionIndexes.get(target);
+				if ((p != null) && (t != null)){
+					net.inPlaces[t] = append(net.inPlaces[t], p);
+					net.inWeights[t] = append(net.inWeights[t], weight);
+					continue;
+				}
+				t = transitionIndexes.get(source);
+				p = placeIndexes.get(target);
+				if ((p != null) && (t != null)){
+					net.outPlaces[t] = append(net.outPlaces[t], p);
+					net.outWeights[t] = append(net.outWeights[t], weight);
+					continue;
+				}
+				throw new SQLException("Arc from " + source + " to " + target + " does not connect a place and a transition");
+			}
+			rs.close();
+			return net;
+		} finally {
+			stat.close();
+		}
+	}
+
+	private static int[] append(int[] array, int value) {
+		int[] result = Arrays.copyOf(array, array.length + 1);
+		result[array.length] = value;
+		return result;
+	}
+
+	/**
+	 * Returns for each label identifier of the given event log the transitions that have that label.
+	 *
+	 * @param log	The event log.
+	 * @return		The transitions per label identifier, an empty array if no transition has the label.
+	 */
+	public int[][] getTransitionsByLabel(EventLog log) {
+		HashMap<String,Integer> labelIds = new HashMap<String,Integer>();
+		for (int l = 0; l < log.getLabelCount(); l++){
+			labelIds.put(log.getLabelName(l), l);
+		}
+		int[][] byLabel = new int[log.getLabelCount()][0];
+		for (int t = 0; t < transitionLabels.length; t++){
+			Integer l = (transitionLabels[t] != null)?labelIds.get(transitionLabels[t]):null;
+			if (l != null){
+				byLabel[l] = append(byLabel[l], t);
+			}
+		}
+		return byLabel;
+	}
+
+	public int getPlaceCount() {
+		return placeIds.length;
+	}
+
+	public int getTransitionCount() {
+		return transitionIds.length;
+	}
+
+	/**
+	 * Returns true if the transition is enabled in the marking.
+	 */
+	public boolean isEnabled(int transition, int[] marking) {
+		int[] places = inPlaces[transition];
+		int[] weights = inWeights[transition];
+		for (int i = 0; i < places.length; i++){
+			if (marking[places[i]] < weights[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,293 @@
+package org.h2.util;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative integers, in the style of a roaring bitmap. The integers are partitioned by their
+ * upper 16 bits into chunks. A chunk with at most 4096 integers stores their lower 16 bits in a sorted array,
+ * a chunk with more integers stores them as a bitmap of 65536 bits.
+ *
+ */
+public class RoaringBitmap {
+
+	/**
+	 * The maximum number of integers in an array chunk.
+	 */
+	private static final int MAX_ARRAY_SIZE = 4096;
+
+	private char[] keys = new char[4];
+	private Chunk[] chunks = new Chunk[4];
+	private int size;
+
+	/**
+	 * The integers with the same upper 16 bits. Either array or bitmap is null.
+	 */
+	private static class Chunk {
+		char[] array;
+		long[] bitmap;
+		int cardinality;
+
+		Chunk(char[] array, long[] bitmap, int cardinality) {
+			this.array = array;
+			this.bitmap = bitmap;
+			this.cardinality = cardinality;
+		}
+
+		boolean contains(char low) {
+			if (array != null){
+				return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+			}
+			return (bitmap[low >>> 6] & (1L << low)) != 0;
+		}
+
+		void add(char low) {
+			if (array != null){
+				//Fast path for integers that are added in ascending order.
+				int pos = ((cardinality > 0) && (array[cardinality - 1] < low))?-cardinality - 1:Arrays.binarySearch(array, 0, cardinality, low);
+				if (pos >= 0){
+					return;
+				}
+				pos = -pos - 1;
+				if (cardinality == MAX_ARRAY_SIZE){
+					toBitmap();
+					add(low);
+					return;
+				}
+				if (cardinality == array.length){
+					array = Arrays.copyOf(array, Math.min(MAX_ARRAY_SIZE, cardinality * 2));
+				}
+				System.arraycopy(array, pos, array, pos + 1, cardinality - pos);
+				array[pos] = low;
+				cardinality++;
+			}else{
+				long bit = 1L << low;
+				if ((bitmap[low >>> 6] & bit) == 0){
+					bitmap[low >>> 6] |= bit;
+					cardinality++;
+				}
+			}
+		}
+
+		void toBitmap() {
+			bitmap = new long[1024];
+			for (int i = 0; i < cardinality; i++){
+				bitmap[array[i] >>> 6] |= 1L << array[i];
+			}
+			array = null;
+		}
+
+		/**
+		 * Converts a bitmap chunk with few integers to an array chunk.
+		 */
+		Chunk optimize() {
+			if ((bitmap != null) && (cardinality <= MAX_ARRAY_SIZE)){
+				char[] a = new char[cardinality];
+				int n = 0;
+				for (int w = 0; w < 1024; w++){
+					long word = bitmap[w];
+					while (word != 0){
+						a[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+				return new Chunk(a, null, cardinality);
+			}
+			return this;
+		}
+
+		Chunk and(Chunk other) {
+			if ((array != null) && (other.array != null)){
+				char[] a = new char[Math.min(cardinality, other.cardinality)];
+				int n = 0;
+				for (int i = 0, j = 0; (i < cardinality) && (j < other.cardinality);){
+					if (array[i] < other.array[j]){
+						i++;
+					}else if (array[i] > other.array[j]){
+						j++;
+					}else{
+						a[n++] = array[i];
+						i++;
+						j++;
+					}
+				}
+				return new Chunk(a, null, n);
+			}
+			if ((array != null) || (other.array != null)){
+				Chunk arrayChunk = (array != null)?this:other;
+				Chunk bitmapChunk = (array != null)?other:this;
+				char[] a = new char[arrayChunk.cardinality];
+				int n = 0;
+				for (int i = 0; i < arrayChunk.cardinality; i++){
+					if (bitmapChunk.contains(arrayChunk.array[i])){
+						a[n++] = arrayChunk.array[i];
+					}
+				}
+				return new Chunk(a, null, n);
+			}
+			long[] b = new long[1024];
+			int n = 0;
+			for (int w = 0; w < 1024; w++){
+				b[w] = bitmap[w] & other.bitmap[w];
+				n += Long.bitCount(b[w]);
+			}
+			return new Chunk(null, b, n).optimize();
+		}
+
+		Chunk or(Chunk other) {
+			if ((array != null) && (other.array != null) && (cardinality + other.cardinality <= MAX_ARRAY_SIZE)){
+				char[] a = new char[cardinality + other.cardinality];
+				int n = 0;
+				int i = 0;
+				int j = 0;
+				while ((i < cardinality) || (j < other.cardinality)){
+					if ((j >= other.cardinality) || ((i < cardinality) && (array[i] < other.array[j]))){
+						a[n++] = array[i++];
+					}else if ((i >= cardinality) || (array[i] > other.array[j])){
+						a[n++] = other.array[j++];
+					}else{
+						a[n++] = array[i++];
+						j++;
+					}
+				}
+				return new Chunk(a, null, n);
+			}
+			long[] b = new long[1024];
+			for (Chunk c: new Chunk[]{this, other}){
+				if (c.array != null){
+					for (int i = 0; i < c.cardinality; i++){
+						b[c.array[i] >>> 6] |= 1L << c.array[i];
+					}
+				}else{
+					for (int w = 0; w < 1024; w++){
+						b[w] |= c.bitmap[w];
+					}
+				}
+			}
+			int n = 0;
+			for (int w = 0; w < 1024; w++){
+				n += Long.bitCount(b[w]);
+			}
+			return new Chunk(null, b, n).optimize();
+		}
+
+		int toArray(int high, int[] target, int offset) {
+			if (array != null){
+				for (int i = 0; i < cardinality; i++){
+					target[offset++] = high | array[i];
+				}
+				return offset;
+			}
+			for (int w = 0; w < 1024; w++){
+				long word = bitmap[w];
+				while (word != 0){
+					target[offset++] = high | ((w << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return offset;
+		}
+	}
+
+	/**
+	 * Adds an integer. Adding integers in ascending order is fastest.
+	 *
+	 * @param x	The integer, which must not be negative.
+	 */
+	public void add(int x) {
+		char high = (char) (x >>> 16);
+		int pos = ((size > 0) && (keys[size - 1] == high))?size - 1:Arrays.binarySearch(keys, 0, size, high);
+		if (pos < 0){
+			pos = -pos - 1;
+			insertChunk(pos, high, new Chunk(new char[4], null, 0));
+		}
+		chunks[pos].add((char) x);
+	}
+
+	private void insertChunk(int pos, char high, Chunk chunk) {
+		if (size == keys.length){
+			keys = Arrays.copyOf(keys, size * 2);
+			chunks = Arrays.copyOf(chunks, size * 2);
+		}
+		System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+		System.arraycopy(chunks, pos, chunks, pos + 1, size - pos);
+		keys[pos] = high;
+		chunks[pos] = chunk;
+		size++;
+	}
+
+	/**
+	 * Returns true if the set contains the integer.
+	 */
+	public boolean contains(int x) {
+		int pos = Arrays.binarySearch(keys, 0, size, (char) (x >>> 16));
+		return (pos >= 0) && chunks[pos].contains((char) x);
+	}
+
+	/**
+	 * Returns the number of integers in the set.
+	 */
+	public int getCardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < size; i++){
+			cardinality += chunks[i].cardinality;
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Returns the intersection of this set and the other set as a new set.
+	 */
+	public RoaringBitmap and(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		for (int i = 0, j = 0; (i < size) && (j < other.size);){
+			if (keys[i] < other.keys[j]){
+				i++;
+			}else if (keys[i] > other.keys[j]){
+				j++;
+			}else{
+				Chunk chunk = chunks[i].and(other.chunks[j]);
+				if (chunk.cardinality > 0){
+					result.insertChunk(result.size, keys[i], chunk);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the union of this set and the other set as a new set.
+	 */
+	public RoaringBitmap or(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while ((i < size) || (j < other.size)){
+			if ((j >= other.size) || ((i < size) && (keys[i] < other.keys[j]))){
+				result.insertChunk(result.size, keys[i], chunks[i].or(new Chunk(new char[0], null, 0)));
+				i++;
+			}else if ((i >= size) || (keys[i] > other.keys[j])){
+				result.insertChunk(result.size, other.keys[j], other.chunks[j].or(new Chunk(new char[0], null, 0)));
+				j++;
+			}else{
+				result.insertChunk(result.size, keys[i], chunks[i].or(other.chunks[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the integers in the set in ascending order.
+	 */
+	public int[] toArray() {
+		int[] result = new int[getCardinality()];
+		int offset = 0;
+		for (int i = 0; i < size; i++){
+			offset = chunks[i].toArray(keys[i] << 16, result, offset);
+		}
+		return result;
+	}
+}
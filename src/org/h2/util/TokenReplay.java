@@ -0,0 +1,162 @@
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * Token-based replay of an event log on a Petri net as a function that can be invoked in an SQL query.
+ * The cases are replayed in parallel, each thread with its own marking vector.
+ *
+ */
+public class TokenReplay {
+
+	/**
+	 * The minimal number of cases that is replayed by a thread.
+	 */
+	private static final int CASES_PER_THREAD = 1000;
+
+	/**
+	 * Replays each case of an event log on a Petri net that is stored in tables (see PetriNet.read).
+	 * Each event fires a transition with the same label, preferring a transition that is enabled. Tokens that are
+	 * needed to fire it, but are not in the marking, are counted as missing. Events of which the label is not the label
+	 * of a transition are skipped, and silent transitions are never fired. At the end of a case the tokens of the final
+	 * marking are consumed; the tokens that are left are counted as remaining.
+	 *
+	 * The event log must have three columns:
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The returned result has one row per case and six columns:
+	 * - the case identifier (CASE_ID)
+	 * - the number of produced tokens, including the initial marking (PRODUCED)
+	 * - the number of consumed tokens, including the final marking (CONSUMED)
+	 * - the number of missing tokens (MISSING)
+	 * - the number of remaining tokens (REMAINING)
+	 * - the fitness 1/2 (1 - MISSING / CONSUMED) + 1/2 (1 - REMAINING / PRODUCED) (FITNESS)
+	 * It ends with an aggregate row for the whole log, of which the case identifier is null, the token counts are
+	 * the sums over all cases and the fitness is computed from these sums.
+	 *
+	 * @param conn			The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog		An event log as specified above.
+	 * @param places		The name of the places table.
+	 * @param transitions	The name of the transitions table.
+	 * @param arcs			The name of the arcs table.
+	 * @return				The replay result as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet tokenReplay(Connection conn, ResultSet eventLog, String places, String transitions, String arcs) throws SQLException {
+		final EventLog log = EventLog.read(conn, eventLog);
+
+		SimpleResultSet result = new SimpleResultSet();
+		EventLog.addCaseIdColumn(result, "CASE_ID", log);
+		result.addColumn("PRODUCED", Types.BIGINT, 19, 0);
+		result.addColumn("CONSUMED", Types.BIGINT, 19, 0);
+		result.addColumn("MISSING", Types.BIGINT, 19, 0);
+		result.addColumn("REMAINING", Types.BIGINT, 19, 0);
+		result.addColumn("FITNESS", Types.DOUBLE, 17, 0);
+		if (log == null){
+			return result;
+		}
+
+		final PetriNet net = PetriNet.read(conn, places, transitions, arcs);
+		final int[][] byLabel = net.getTransitionsByLabel(log);
+		final int caseCount = log.getCaseCount();
+		final int[][] tokens = new int[4][caseCount];
+
+		//Replay the cases in ranges, one range per thread; the last range is replayed by the current thread.
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), caseCount / CASES_PER_THREAD));
+		Task[] tasks = new Task[threads - 1];
+		for (int i = 0; i < threads - 1; i++){
+			final int from = (int) ((long) caseCount * i / threads);
+			final int to = (int) ((long) caseCount * (i + 1) / threads);
+			tasks[i] = new Task() {
+				@Override
+				public void call() {
+					replay(log, net, byLabel, from, to, tokens);
+				}
+			}.execute();
+		}
+		replay(log, net, byLabel, (int) ((long) caseCount * (threads - 1) / threads), caseCount, tokens);
+		for (Task task: tasks){
+			task.get();
+		}
+
+		long[] total = new long[4];
+		for (int c = 0; c < caseCount; c++){
+			for (int i = 0; i < 4; i++){
+				total[i] += tokens[i][c];
+			}
+			result.addRow(log.getCaseId(c), (long) tokens[0][c], (long) tokens[1][c], (long) tokens[2][c], (long) tokens[3][c],
+					fitness(tokens[0][c], tokens[1][c], tokens[2][c], tokens[3][c]));
+		}
+		result.addRow(null, total[0], total[1], total[2], total[3], fitness(total[0], total[1], total[2], total[3]));
+		return result;
+	}
+
+	/**
+	 * Replays the cases in [from, to) and stores the produced, consumed, missing and remaining tokens of each case.
+	 */
+	static void replay(EventLog log, PetriNet net, int[][] byLabel, int from, int to, int[][] tokens) {
+		int[] marking = new int[net.getPlaceCount()];
+		for (int c = from; c < to; c++){
+			System.arraycopy(net.initialMarking, 0, marking, 0, marking.length);
+			int produced = 0;
+			int consumed = 0;
+			int missing = 0;
+			for (int p = 0; p < marking.length; p++){
+				produced += marking[p];
+			}
+			for (int e = log.getCaseStart(c); e < log.getCaseEnd(c); e++){
+				int[] candidates = byLabel[log.getEventLabel(e)];
+				if (candidates.length == 0){
+					continue;
+				}
+				int t = candidates[0];
+				for (int i = 1; (i < candidates.length) && !net.isEnabled(t, marking); i++){
+					t = candidates[i];
+				}
+				int[] in = net.inPlaces[t];
+				for (int i = 0; i < in.length; i++){
+					int w = net.inWeights[t][i];
+					if (marking[in[i]] < w){
+						missing += w - marking[in[i]];
+						marking[in[i]] = w;
+					}
+					marking[in[i]] -= w;
+					consumed += w;
+				}
+				int[] out = net.outPlaces[t];
+				for (int i = 0; i < out.length; i++){
+					marking[out[i]] += net.outWeights[t][i];
+					produced += net.outWeights[t][i];
+				}
+			}
+			int remaining = 0;
+			for (int p = 0; p < marking.length; p++){
+				int f = net.finalMarking[p];
+				if (marking[p] < f){
+					missing += f - marking[p];
+				}else{
+					remaining += marking[p] - f;
+				}
+				consumed += f;
+			}
+			tokens[0][c] = produced;
+			tokens[1][c] = consumed;
+			tokens[2][c] = missing;
+			tokens[3][c] = remaining;
+		}
+	}
+
+	private static double fitness(long produced, long consumed, long missing, long remaining) {
+		double m = (consumed == 0)?0:(double) missing / consumed;
+		double r = (produced == 0)?0:(double) remaining / produced;
+		return 0.5 * (1 - m) + 0.5 * (1 - r);
+	}
+}
@@ -0,0 +1,124 @@
+package org.h2.util;
+
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueTrace;
+
+/**
+ * Functions on values of the TRACE data type, which store the activity sequence of a case as packed dictionary ids
+ * (see ValueTrace). The functions compare the packed bytes of the ids instead of decoding them. An argument can also be
+ * given as its string representation, e.g. '1,5,3', or as an array of ids.
+ *
+ */
+public class TraceFunctions {
+
+	/**
+	 * Returns the number of activities of a trace, e.g.: TRACE_LENGTH(Trace).
+	 *
+	 * @param trace	A trace.
+	 * @return		The number of activities or null if the trace is null.
+	 */
+	public static Integer traceLength(Value trace) {
+		byte[] t = packed(trace);
+		return (t == null)?null:ValueTrace.length(t);
+	}
+
+	/**
+	 * Returns true if a trace contains an activity, e.g.: TRACE_CONTAINS(Trace, 5).
+	 *
+	 * @param trace		A trace.
+	 * @param activity	The dictionary id of an activity.
+	 * @return			True if the trace contains the activity or null if the trace is null.
+	 */
+	public static Boolean traceContains(Value trace, int activity) {
+		byte[] t = packed(trace);
+		if (t == null){
+			return null;
+		}
+		if (activity < 0){
+			return false;
+		}
+		byte[] a = new byte[5];
+		int length = ValueTrace.pack(activity, a, 0);
+		for (int i = 0; i < t.length; i = next(t, i)){
+			if (equals(t, i, a, 0, length)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if a trace starts with the activities of another trace, e.g.: TRACE_PREFIX(Trace, '1,5').
+	 * Because a packed trace consists of whole ids, this is the case if its packed bytes start with those of the prefix.
+	 *
+	 * @param trace		A trace.
+	 * @param prefix	The prefix.
+	 * @return			True if the trace starts with the prefix or null if either is null.
+	 */
+	public static Boolean tracePrefix(Value trace, Value prefix) {
+		byte[] t = packed(trace);
+		byte[] p = packed(prefix);
+		if ((t == null) || (p == null)){
+			return null;
+		}
+		return (p.length <= t.length) && equals(t, 0, p, 0, p.length);
+	}
+
+	/**
+	 * Returns true if the activities of another trace occur in a trace in the same order, possibly with other
+	 * activities in between, e.g.: TRACE_SUBSEQUENCE(Trace, '1,3').
+	 *
+	 * @param trace			A trace.
+	 * @param subsequence	The subsequence.
+	 * @return				True if the trace contains the subsequence or null if either is null.
+	 */
+	public static Boolean traceSubsequence(Value trace, Value subsequence) {
+		byte[] t = packed(trace);
+		byte[] s = packed(subsequence);
+		if ((t == null) || (s == null)){
+			return null;
+		}
+		int j = 0;
+		for (int i = 0; (i < t.length) && (j < s.length); i = next(t, i)){
+			int end = next(s, j);
+			if (equals(t, i, s, j, end - j)){
+				j = end;
+			}
+		}
+		return j == s.length;
+	}
+
+	private static byte[] packed(Value trace) {
+		if ((trace == null) || (trace == ValueNull.INSTANCE)){
+			return null;
+		}
+		return trace.convertTo(ValueTrace.TRACE).getBytesNoCopy();
+	}
+
+	/**
+	 * Returns the position after the id that starts at the given position.
+	 */
+	private static int next(byte[] packed, int pos) {
+		while (packed[pos] < 0){
+			pos++;
+		}
+		return pos + 1;
+	}
+
+	/**
+	 * Returns true if the given ranges of bytes are equal. If the range of b is one packed id, this is the case only if
+	 * the range of a is the same id, because the last byte of an id is the only byte with the highest bit cleared.
+	 */
+	private static boolean equals(byte[] a, int aPos, byte[] b, int bPos, int length) {
+		if (aPos + length > a.length){
+			return false;
+		}
+		for (int i = 0; i < length; i++){
+			if (a[aPos + i] != b[bPos + i]){
+				return false;
+			}
+		}
+		return true;
+	}
+}
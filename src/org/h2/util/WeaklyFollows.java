@@ -1,154 +1,215 @@
-package org.h2.util;
-
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.sql.Timestamp;
-import java.sql.Types;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-
-import org.h2.tools.SimpleResultSet;
-
-/**
- * An implementation of the weakly follows relation as a function that can be invoked
- * in an SQL query.
- * 
- */
-public class WeaklyFollows {
-	
-	/**
-	 * Implements the weakly follows relation. Given an event log, returns the weakly follows relation for that
-	 * event log, in terms of the event labels of events that directly follow each other in some case.
-	 * 
-	 * The event log must have three columns: 
-	 * - case identifier
-	 * - event label
-	 * - timestamp
-	 * The columns must be given in that order, but must not necessarily have a particular name.
-	 * The timestamp must be of a 'Time' SQL type.
-	 * 
-	 * The returned weakly follows relation has two columns:
-	 * - the event label for the preceding event (EVENT_LABEL_P)
-	 * - the event label for the succeeding event (EVENT_LABEL_S)
-	 * 
-	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
-	 * @param eventLog	An event log as specified above.
-	 * @return			The weakly follows relation for the given event log as specified above.
-	 * @throws SQLException
-	 */
-	public static ResultSet weaklyFollows(Connection conn, ResultSet eventLog) throws SQLException {
-		
-		class LogEvent implements Comparable<LogEvent> {
-			long time;
-			Object label;
-			
-			LogEvent(long time, Object label){
-				this.time = time;
-				this.label = label;
-			}
-			
-			@Override
-			public int compareTo(LogEvent e2) {
-				if (time - e2.time < 0){
-					return -1;
-				}else{
-					if (time - e2.time > 0){
-						return 1;
-					}else{
-						return 0;
-					}
-				}
-			}
-		}
-		
-		//If there is no data in the eventLog, return an empty result
-		//Also, if the connection specifies that only the columnlist should be returned, return an empty result
-		if ((eventLog == null) || (eventLog.getMetaData().getColumnCount() != 3) || conn.getMetaData().getURL().equals("jdbc:columnlist:connection")){
-			SimpleResultSet result = new SimpleResultSet();
-			result.addColumn("EVENT_LABEL_P", Types.VARCHAR, 255, 0);
-			result.addColumn("EVENT_LABEL_S", Types.VARCHAR, 255, 0);
-			return result;
-		}
-
-		//Map of case identifiers to sequences for that case. Each sequence is a list of log events.
-		Map<Object,List<LogEvent>> caseId2Sequence = new HashMap<Object,List<LogEvent>>();
-		//Map of antecedent log event labels (in a weakly follows relation) to their consequent log event labels.
-		Map<Object, Set<Object>> antecedent2consequents = new HashMap<Object, Set<Object>>();
-		
-		//For each event in the event log:
-		while (eventLog.next()){
-			Object caseId = eventLog.getObject(1);
-			List<LogEvent> sequence = caseId2Sequence.get(caseId);
-			if (sequence == null){
-				sequence = new ArrayList<LogEvent>();
-				caseId2Sequence.put(caseId, sequence);
-			}
-			//Add the event to the sequence that belongs to the case identifier of that event.
-			Timestamp ts = eventLog.getTimestamp(3);
-			sequence.add(new LogEvent((ts!=null)?ts.getTime():0, eventLog.getObject(2)));
-		}
-		
-		//For each sequence that is constructed in this manner:
-		for (List<LogEvent> sequence: caseId2Sequence.values()){
-			//Sort the sequence.
-			Collections.sort(sequence);
-			int sa = 0; //start index of the antecedents
-			int ea = 0; //end index of the antecedents, this is the index of the last event that has the same timestamp as sequence[sa]
-			long aTime = sequence.get(sa).time;
-			while ((ea+1 < sequence.size()) && (aTime == sequence.get(ea+1).time)){
-				ea++;
-			}
-			int sc = ea+1; //start index of the consequents
-			int ec = sc; //end index of the consequents, this is the index of the last event that has the same timestamp as sequence[sc]
-			//While there are consequents:
-			while (ec < sequence.size()){
-				long cTime = sequence.get(sc).time;
-				while ((ec+1 < sequence.size()) && (cTime == sequence.get(ec+1).time)){
-					ec++;
-				}
-				//Add all antecendent/consequent combinations to antecedent2consequents.
-				for (int i = sa; i <= ea; i++){
-					Set<Object> consequents = antecedent2consequents.get(sequence.get(i).label);
-					if (consequents == null){
-						consequents = new HashSet<Object>();
-						antecedent2consequents.put(sequence.get(i).label, consequents);
-					}
-					for (int j = sc; j <= ec; j++){
-						consequents.add(sequence.get(j).label);
-					}
-				}
-				//Go the the next batch of antercedents/consequents.
-				sa = sc;
-				ea = ec;
-				sc = ea+1;
-				ec = sc;
-			}
-		}
-		
-		//Create the result.
-		SimpleResultSet result = new SimpleResultSet();
-		ResultSetMetaData rsm = eventLog.getMetaData();
-		result.addColumn("EVENT_LABEL_P", rsm.getColumnType(2), rsm.getPrecision(2), 0);
-		result.addColumn("EVENT_LABEL_S", rsm.getColumnType(2), rsm.getPrecision(2), 0);
-
-		//For each antecedent/consequent combination:
-		for (Entry<Object,Set<Object>> acs: antecedent2consequents.entrySet()){
-			Object a = acs.getKey();
-			for (Object c: acs.getValue()){
-				result.addRow(a,c);
-			}
-		}
-	    
-	    eventLog.getStatement().close();
-	    
-		return result;
-	}
-}
+package org.h2.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.h2.tools.SimpleResultSet;
+
+/**
+ * An implementation of the weakly follows relation as a function that can be invoked
+ * in an SQL query.
+ * 
+ */
+public class WeaklyFollows {
+	
+	/**
+	 * Implements the weakly follows relation. Given an event log, returns the weakly follows relation for that
+	 * event log, in terms of the event labels of events that directly follow each other in some case.
+	 * 
+	 * The event log must have three columns: 
+	 * - case identifier
+	 * - event label
+	 * - timestamp
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 * The timestamp must be of a 'Time' SQL type.
+	 * The event label may also be a row value of several columns, e.g. (Activity, Lifecycle), see EventLog.labelKey.
+	 * The event log may also have a leading partition column, see PartitionedFollows.
+	 * 
+	 * The returned weakly follows relation has two columns:
+	 * - the event label for the preceding event (EVENT_LABEL_P)
+	 * - the event label for the succeeding event (EVENT_LABEL_S)
+	 * 
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @return			The weakly follows relation for the given event log as specified above.
+	 * @throws SQLException
+	 */
+	public static ResultSet weaklyFollows(Connection conn, ResultSet eventLog) throws SQLException {
+		
+		class LogEvent implements Comparable<LogEvent> {
+			long time;
+			Object label;
+			
+			LogEvent(long time, Object label){
+				this.time = time;
+				this.label = label;
+			}
+			
+			@Override
+			public int compareTo(LogEvent e2) {
+				if (time - e2.time < 0){
+					return -1;
+				}else{
+					if (time - e2.time > 0){
+						return 1;
+					}else{
+						return 0;
+					}
+				}
+			}
+		}
+		
+		//If the eventLog is an imported event log file, compute the relation on the event log that is built from the file.
+		if (eventLog instanceof EventLogFile.MappedResultSet){
+			return weaklyFollows(conn, eventLog, null, false);
+		}
+
+		//If the eventLog has a leading partition column, return the weakly follows relation per partition.
+		if ((eventLog != null) && (eventLog.getMetaData().getColumnCount() == 4)){
+			return PartitionedFollows.partitionedFollows(conn, eventLog);
+		}
+
+		//If there is no data in the eventLog, return an empty result
+		//Also, if the connection specifies that only the columnlist should be returned, return an empty result
+		if ((eventLog == null) || (eventLog.getMetaData().getColumnCount() != 3) || conn.getMetaData().getURL().equals("jdbc:columnlist:connection")){
+			SimpleResultSet result = new SimpleResultSet();
+			result.addColumn("EVENT_LABEL_P", Types.VARCHAR, 255, 0);
+			result.addColumn("EVENT_LABEL_S", Types.VARCHAR, 255, 0);
+			return result;
+		}
+
+		//Map of case identifiers to sequences for that case. Each sequence is a list of log events.
+		Map<Object,List<LogEvent>> caseId2Sequence = new HashMap<Object,List<LogEvent>>();
+		//Map of antecedent log event labels (in a weakly follows relation) to their consequent log event labels.
+		Map<Object, Set<Object>> antecedent2consequents = new HashMap<Object, Set<Object>>();
+		
+		//For each event in the event log:
+		while (eventLog.next()){
+			Object caseId = eventLog.getObject(1);
+			List<LogEvent> sequence = caseId2Sequence.get(caseId);
+			if (sequence == null){
+				sequence = new ArrayList<LogEvent>();
+				caseId2Sequence.put(caseId, sequence);
+			}
+			//Add the event to the sequence that belongs to the case identifier of that event.
+			Timestamp ts = eventLog.getTimestamp(3);
+			sequence.add(new LogEvent((ts!=null)?ts.getTime():0, EventLog.labelKey(eventLog.getObject(2))));
+		}
+		
+		//For each sequence that is constructed in this manner:
+		for (List<LogEvent> sequence: caseId2Sequence.values()){
+			//Sort the sequence.
+			Collections.sort(sequence);
+			int sa = 0; //start index of the antecedents
+			int ea = 0; //end index of the antecedents, this is the index of the last event that has the same timestamp as sequence[sa]
+			long aTime = sequence.get(sa).time;
+			while ((ea+1 < sequence.size()) && (aTime == sequence.get(ea+1).time)){
+				ea++;
+			}
+			int sc = ea+1; //start index of the consequents
+			int ec = sc; //end index of the consequents, this is the index of the last event that has the same timestamp as sequence[sc]
+			//While there are consequents:
+			while (ec < sequence.size()){
+				long cTime = sequence.get(sc).time;
+				while ((ec+1 < sequence.size()) && (cTime == sequence.get(ec+1).time)){
+					ec++;
+				}
+				//Add all antecendent/consequent combinations to antecedent2consequents.
+				for (int i = sa; i <= ea; i++){
+					Set<Object> consequents = antecedent2consequents.get(sequence.get(i).label);
+					if (consequents == null){
+						consequents = new HashSet<Object>();
+						antecedent2consequents.put(sequence.get(i).label, consequents);
+					}
+					for (int j = sc; j <= ec; j++){
+						consequents.add(sequence.get(j).label);
+					}
+				}
+				//Go the the next batch of antercedents/consequents.
+				sa = sc;
+				ea = ec;
+				sc = ea+1;
+				ec = sc;
+			}
+		}
+		
+		//Create the result.
+		SimpleResultSet result = new SimpleResultSet();
+		ResultSetMetaData rsm = eventLog.getMetaData();
+		result.addColumn("EVENT_LABEL_P", rsm.getColumnType(2), rsm.getPrecision(2), 0);
+		result.addColumn("EVENT_LABEL_S", rsm.getColumnType(2), rsm.getPrecision(2), 0);
+
+		//For each antecedent/consequent combination:
+		for (Entry<Object,Set<Object>> acs: antecedent2consequents.entrySet()){
+			Object a = EventLog.labelValue(acs.getKey());
+			for (Object c: acs.getValue()){
+				result.addRow(a,EventLog.labelValue(c));
+			}
+		}
+	    
+	    eventLog.getStatement().close();
+	    
+		return result;
+	}
+
+	/**
+	 * Implements the weakly follows relation on abstract labels, without collapsing. See the other weaklyFollows.
+	 */
+	public static ResultSet weaklyFollows(Connection conn, ResultSet eventLog, ResultSet mapping) throws SQLException {
+		return weaklyFollows(conn, eventLog, mapping, false);
+	}
+
+	/**
+	 * Implements the weakly follows relation in terms of abstract labels, e.g. the groups of an activity hierarchy,
+	 * to which the event labels are mapped by a label mapping (see LabelMapping). The relation is computed on the
+	 * dictionary-encoded event log, of which the directly follows pairs are the weakly follows pairs (see
+	 * DirectlyFollows.count), and then mapped, such that the mapping is applied once per label instead of once per event.
+	 *
+	 * The event log must have three columns as specified for the other weaklyFollows, and the mapping must have two columns:
+	 * - event label
+	 * - abstract label
+	 * The columns must be given in that order, but must not necessarily have a particular name.
+	 *
+	 * The returned weakly follows relation has the two columns of the other weaklyFollows, which contain abstract labels.
+	 *
+	 * @param conn		The database connection. Automatically passed by H2 through the SQL query of which the invocation is a part.
+	 * @param eventLog	An event log as specified above.
+	 * @param mapping	A label mapping as specified above.
+	 * @param collapse	If true, events that are mapped to the same abstract label back to back are collapsed into one event.
+	 * @return			The weakly follows relation on abstract labels.
+	 * @throws SQLException
+	 */
+	public static ResultSet weaklyFollows(Connection conn, ResultSet eventLog, ResultSet mapping, boolean collapse) throws SQLException {
+		EventLog log = EventLog.read(conn, eventLog);
+		LabelMapping labelMapping = LabelMapping.read(log, mapping);
+
+		SimpleResultSet result = new SimpleResultSet();
+		labelMapping.addLabelColumn(result, "EVENT_LABEL_P");
+		labelMapping.addLabelColumn(result, "EVENT_LABEL_S");
+		if (log == null){
+			return result;
+		}
+
+		int[][] counts = labelMapping.map(DirectlyFollows.count(log, null), collapse);
+		for (int a = 0; a < counts.length; a++){
+			for (int b = 0; b < counts.length; b++){
+				if (counts[a][b] > 0){
+					result.addRow(labelMapping.getLabel(a), labelMapping.getLabel(b));
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.value;
+
+import java.sql.Types;
+import org.h2.api.CustomDataTypesHandler;
+import org.h2.message.DbException;
+import org.h2.store.DataHandler;
+import org.h2.util.JdbcUtils;
+
+/**
+ * The data types handler that provides the TRACE data type (see ValueTrace).
+ * It is always installed, and passes the other data types on to the handler
+ * of the system property h2.customDataTypesHandler, if there is one. Without
+ * such a handler, the other data types behave as if there were no handler at
+ * all; in particular, an int[] is a Java object unless it is stored as TRACE.
+ */
+public class TraceDataTypesHandler implements CustomDataTypesHandler {
+
+    private static final DataType TRACE_DATA_TYPE = new DataType();
+
+    /**
+     * The handler of the other custom data types, or null.
+     */
+    private final CustomDataTypesHandler next;
+
+    static {
+        DataType dt = TRACE_DATA_TYPE;
+        dt.type = ValueTrace.TRACE;
+        dt.name = "TRACE";
+        dt.sqlType = Types.OTHER;
+        dt.jdbc = "Trace";
+        dt.prefix = "'";
+        dt.suffix = "'";
+        dt.maxPrecision = Integer.MAX_VALUE;
+        dt.defaultPrecision = Integer.MAX_VALUE;
+        dt.defaultDisplaySize = Integer.MAX_VALUE;
+        dt.memory = 40;
+    }
+
+    public TraceDataTypesHandler() {
+        this(null);
+    }
+
+    /**
+     * Creates the handler.
+     *
+     * @param next the handler of the other custom data types, or null
+     */
+    public TraceDataTypesHandler(CustomDataTypesHandler next) {
+        this.next = next;
+    }
+
+    @Override
+    public DataType getDataTypeByName(String name) {
+        if ("TRACE".equalsIgnoreCase(name)) {
+            return TRACE_DATA_TYPE;
+        }
+        return next != null ? next.getDataTypeByName(name) : null;
+    }
+
+    @Override
+    public DataType getDataTypeById(int type) {
+        if (type == ValueTrace.TRACE) {
+            return TRACE_DATA_TYPE;
+        }
+        return next != null ? next.getDataTypeById(type) : null;
+    }
+
+    @Override
+    public int getDataTypeOrder(int type) {
+        if (type == ValueTrace.TRACE) {
+            return 53_000;
+        } else if (next != null) {
+            return next.getDataTypeOrder(type);
+        }
+        throw DbException.throwInternalError("type:" + type);
+    }
+
+    @Override
+    public Value convert(Value source, int targetType) {
+        if (targetType != ValueTrace.TRACE) {
+            if (next != null) {
+                return next.convert(source, targetType);
+            }
+            throw DbException.throwInternalError("type=" + targetType);
+        }
+        switch (source.getType()) {
+        case ValueTrace.TRACE:
+            return source;
+        case Value.BYTES:
+            // also the read path of a stored trace, which getNoCopy checks
+            // to be in canonical form
+            return ValueTrace.getNoCopy(source.getBytes());
+        case Value.JAVA_OBJECT: {
+            Object x = JdbcUtils.deserialize(source.getBytesNoCopy(), null);
+            if (x instanceof int[]) {
+                return ValueTrace.get((int[]) x);
+            }
+            return ValueTrace.get(x.toString());
+        }
+        case Value.ARRAY: {
+            Value[] list = ((ValueArray) source).getList();
+            int[] ids = new int[list.length];
+            for (int i = 0; i < list.length; i++) {
+                ids[i] = list[i].getInt();
+            }
+            return ValueTrace.get(ids);
+        }
+        default:
+            return ValueTrace.get(source.getString());
+        }
+    }
+
+    @Override
+    public String getDataTypeClassName(int type) {
+        if (type == ValueTrace.TRACE) {
+            return int[].class.getName();
+        } else if (next != null) {
+            return next.getDataTypeClassName(type);
+        }
+        throw DbException.throwInternalError("type=" + type);
+    }
+
+    @Override
+    public int getTypeIdFromClass(Class<?> cls) {
+        // an int[] is only a trace if it is converted to one, e.g. when it is
+        // stored in a TRACE column or by CAST(? AS TRACE)
+        return next != null ? next.getTypeIdFromClass(cls) : Value.JAVA_OBJECT;
+    }
+
+    @Override
+    public Value getValue(int type, Object data, DataHandler dataHandler) {
+        if (type != ValueTrace.TRACE) {
+            if (next != null) {
+                return next.getValue(type, data, dataHandler);
+            } else if (data == null) {
+                return ValueNull.INSTANCE;
+            }
+            return ValueJavaObject.getNoCopy(data, null, dataHandler);
+        }
+        if (data == null) {
+            return ValueNull.INSTANCE;
+        } else if (data instanceof int[]) {
+            return ValueTrace.get((int[]) data);
+        } else if (data instanceof byte[]) {
+            return ValueTrace.getNoCopy((byte[]) data);
+        }
+        return ValueTrace.get(data.toString());
+    }
+
+    @Override
+    public Object getObject(Value value, Class<?> cls) {
+        if (value.getType() == ValueTrace.TRACE) {
+            return cls == int[].class ? ((ValueTrace) value).getIds()
+                    : value.getObject();
+        } else if (next != null) {
+            return next.getObject(value, cls);
+        }
+        throw DbException.getUnsupportedException("converting to class "
+                + cls.getName());
+    }
+
+    @Override
+    public boolean supportsAdd(int type) {
+        return type != ValueTrace.TRACE && next != null && next.supportsAdd(type);
+    }
+
+    @Override
+    public int getAddProofType(int type) {
+        return type != ValueTrace.TRACE && next != null ? next.getAddProofType(type) : type;
+    }
+
+}
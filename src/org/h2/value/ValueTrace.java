@@ -0,0 +1,283 @@
+/*
+ * Copyright 2004-2014 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (http://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.value;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import org.h2.api.ErrorCode;
+import org.h2.engine.Mode;
+import org.h2.message.DbException;
+import org.h2.table.Column;
+import org.h2.util.StatementBuilder;
+import org.h2.util.StringUtils;
+
+/**
+ * Implementation of the TRACE data type: the sequence of activities of a case,
+ * as a sequence of non-negative dictionary ids. The ids are stored packed, as
+ * unsigned variable-length integers of seven bits per byte, least significant
+ * group first, where the highest bit of a byte is set if the id continues in
+ * the next byte. Because each byte tells whether an id ends there, the length,
+ * prefix and containment checks can work on the packed form without decoding.
+ */
+public class ValueTrace extends Value {
+
+    /**
+     * The value type of the TRACE data type.
+     */
+    public static final int TRACE = 1000;
+
+    private static final ValueTrace EMPTY = new ValueTrace(new byte[0]);
+
+    private final byte[] packed;
+    private int hash;
+
+    private ValueTrace(byte[] packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * Get or create a trace value from its packed form, without copying it.
+     * Only the canonical packed form, as created by pack, is accepted, because
+     * equals and hashCode compare the packed bytes.
+     *
+     * @param packed the packed ids
+     * @return the value
+     */
+    public static ValueTrace getNoCopy(byte[] packed) {
+        if (!isCanonical(packed)) {
+            throw DbException.get(ErrorCode.DATA_CONVERSION_ERROR_1,
+                    "TRACE " + StringUtils.convertBytesToHex(packed));
+        }
+        return packed.length == 0 ? EMPTY : new ValueTrace(packed);
+    }
+
+    /**
+     * Check if the packed ids are in canonical form: each id ends with a byte
+     * that does not continue, an id of more than one byte does not end with a
+     * group of zero (an overlong encoding), and each id fits in a non-negative
+     * int.
+     *
+     * @param packed the packed ids
+     * @return true if the packed ids are in canonical form
+     */
+    private static boolean isCanonical(byte[] packed) {
+        int bytes = 0;
+        for (byte b : packed) {
+            bytes++;
+            if (b < 0) {
+                if (bytes == 5) {
+                    return false;
+                }
+            } else {
+                if (b == 0 && bytes > 1) {
+                    return false;
+                } else if (bytes == 5 && b > 0x07) {
+                    return false;
+                }
+                bytes = 0;
+            }
+        }
+        return bytes == 0;
+    }
+
+    /**
+     * Get or create a trace value for the given ids.
+     *
+     * @param ids the ids, which must not be negative
+     * @return the value
+     */
+    public static ValueTrace get(int[] ids) {
+        byte[] buff = new byte[ids.length * 5];
+        int pos = 0;
+        for (int id : ids) {
+            pos = pack(id, buff, pos);
+        }
+        return getNoCopy(Arrays.copyOf(buff, pos));
+    }
+
+    /**
+     * Get or create a trace value from its string representation, the
+     * comma-separated ids, e.g. '1,5,3'.
+     *
+     * @param s the string
+     * @return the value
+     */
+    public static ValueTrace get(String s) {
+        String[] parts = s.trim().isEmpty() ? new String[0] : s.split(",");
+        int[] ids = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                ids[i] = Integer.parseInt(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw DbException.get(ErrorCode.DATA_CONVERSION_ERROR_1, e, s);
+        }
+        return get(ids);
+    }
+
+    /**
+     * Packs an id into the buffer at the given position.
+     *
+     * @param id the id, which must not be negative
+     * @param buff the buffer
+     * @param pos the position
+     * @return the position after the packed id
+     */
+    public static int pack(int id, byte[] buff, int pos) {
+        if (id < 0) {
+            throw DbException.get(ErrorCode.DATA_CONVERSION_ERROR_1,
+                    "TRACE " + id);
+        }
+        while ((id & ~0x7f) != 0) {
+            buff[pos++] = (byte) (0x80 | (id & 0x7f));
+            id >>>= 7;
+        }
+        buff[pos++] = (byte) id;
+        return pos;
+    }
+
+    /**
+     * Get the ids of this trace.
+     *
+     * @return the ids
+     */
+    public int[] getIds() {
+        int[] ids = new int[length(packed)];
+        int pos = 0;
+        for (int i = 0; i < ids.length; i++) {
+            int id = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = packed[pos++];
+                id |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Get the number of ids in a packed trace, which is the number of bytes
+     * that end an id.
+     *
+     * @param packed the packed ids
+     * @return the number of ids
+     */
+    public static int length(byte[] packed) {
+        int length = 0;
+        for (byte b : packed) {
+            if (b >= 0) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public String getSQL() {
+        return "CAST(" + StringUtils.quoteStringSQL(getString()) + " AS TRACE)";
+    }
+
+    @Override
+    public int getType() {
+        return TRACE;
+    }
+
+    @Override
+    public long getPrecision() {
+        return packed.length;
+    }
+
+    @Override
+    public int getDisplaySize() {
+        return getString().length();
+    }
+
+    @Override
+    public int getMemory() {
+        return packed.length + 40;
+    }
+
+    @Override
+    public String getString() {
+        StatementBuilder buff = new StatementBuilder();
+        for (int id : getIds()) {
+            buff.appendExceptFirst(",");
+            buff.append(id);
+        }
+        return buff.toString();
+    }
+
+    @Override
+    public Object getObject() {
+        return getIds();
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return Arrays.copyOf(packed, packed.length);
+    }
+
+    @Override
+    public byte[] getBytesNoCopy() {
+        return packed;
+    }
+
+    @Override
+    public void set(PreparedStatement prep, int parameterIndex)
+            throws SQLException {
+        prep.setBytes(parameterIndex, packed);
+    }
+
+    @Override
+    public Value convertTo(int targetType, int precision, Mode mode,
+            Column column) {
+        switch (targetType) {
+        case Value.BYTES:
+            return ValueBytes.getNoCopy(packed);
+        case Value.ARRAY: {
+            int[] ids = getIds();
+            Value[] list = new Value[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                list[i] = ValueInt.get(ids[i]);
+            }
+            return ValueArray.get(list);
+        }
+        default:
+            return super.convertTo(targetType, precision, mode, column);
+        }
+    }
+
+    @Override
+    protected int compareSecure(Value v, CompareMode mode) {
+        int[] a = getIds();
+        int[] b = ((ValueTrace) v).getIds();
+        for (int i = 0; i < a.length && i < b.length; i++) {
+            if (a[i] != b[i]) {
+                return a[i] < b[i] ? -1 : 1;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = Arrays.hashCode(packed);
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ValueTrace
+                && Arrays.equals(packed, ((ValueTrace) other).packed);
+    }
+
+}